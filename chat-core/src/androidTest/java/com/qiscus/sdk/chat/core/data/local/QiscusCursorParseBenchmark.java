@@ -0,0 +1,168 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cost of reading 1000 comment rows, the per row column lookups and eager json parsing of the previous parser
+ * against the column indexes resolved once per cursor and the extras kept as strings until they are read.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusCursorParseBenchmark {
+    private static final int ROWS = 1000;
+    private static final int RUNS = 20;
+    private static final long ROOM_ID = 1;
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+        new QiscusDbOpenHelper(InstrumentationRegistry.getTargetContext()).onCreate(database);
+
+        SQLiteStatement statement = database.compileStatement(QiscusDb.CommentTable.INSERT_OR_REPLACE);
+        database.beginTransaction();
+        try {
+            long now = System.currentTimeMillis();
+            for (int i = 1; i <= ROWS; i++) {
+                QiscusDb.CommentTable.bind(statement, createComment(i, now));
+                statement.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            statement.close();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void parse1000Comments() {
+        assertEquals(ROWS, readPerRowLookups().size());
+        assertEquals(ROWS, readResolvedColumns(false).size());
+
+        long perRowMedian = QiscusBenchmark.measure("1000 comments, SELECT * with per row column lookups and eager json",
+                RUNS, this::readPerRowLookups);
+        long resolvedMedian = QiscusBenchmark.measure("1000 comments, column list with resolved columns and lazy json",
+                RUNS, () -> readResolvedColumns(false));
+        QiscusBenchmark.assertFaster("1000 comments, resolved columns", resolvedMedian, perRowMedian);
+        QiscusBenchmark.measure("1000 comments, column list with resolved columns, json read", RUNS,
+                () -> readResolvedColumns(true));
+    }
+
+    private List<QiscusComment> readPerRowLookups() {
+        Cursor cursor = database.rawQuery("SELECT * FROM " + QiscusDb.CommentTable.TABLE_NAME
+                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC", new String[]{String.valueOf(ROOM_ID)});
+        List<QiscusComment> qiscusComments = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                qiscusComments.add(parseWithPerRowLookups(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return qiscusComments;
+    }
+
+    private List<QiscusComment> readResolvedColumns(boolean readJson) {
+        Cursor cursor = database.rawQuery("SELECT " + QiscusDb.CommentTable.COLUMNS
+                + " FROM " + QiscusDb.CommentTable.TABLE_NAME
+                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC", new String[]{String.valueOf(ROOM_ID)});
+        List<QiscusComment> qiscusComments = new ArrayList<>();
+        try {
+            QiscusDb.CommentTable.Columns columns = new QiscusDb.CommentTable.Columns(cursor);
+            while (cursor.moveToNext()) {
+                QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, columns);
+                if (readJson) {
+                    qiscusComment.getExtras();
+                    qiscusComment.getUserExtras();
+                }
+                qiscusComments.add(qiscusComment);
+            }
+        } finally {
+            cursor.close();
+        }
+        return qiscusComments;
+    }
+
+    /**
+     * The comment parser before the column indexes were resolved once per cursor.
+     */
+    private static QiscusComment parseWithPerRowLookups(Cursor cursor) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_ID)));
+        qiscusComment.setRoomId(cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_ROOM_ID)));
+        qiscusComment.setUniqueId(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_UNIQUE_ID)));
+        qiscusComment.setCommentBeforeId(cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_COMMENT_BEFORE_ID)));
+        qiscusComment.setMessage(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_MESSAGE)));
+        qiscusComment.setSender(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_SENDER)));
+        qiscusComment.setSenderEmail(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_SENDER_EMAIL)));
+        qiscusComment.setSenderAvatar(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_SENDER_AVATAR)));
+        qiscusComment.setTime(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_TIME))));
+        qiscusComment.setState(cursor.getInt(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_STATE)));
+        qiscusComment.setDeleted(cursor.getInt(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_DELETED)) == 1);
+        qiscusComment.setHardDeleted(cursor.getInt(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_HARD_DELETED)) == 1);
+        qiscusComment.setRawType(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_TYPE)));
+        qiscusComment.setExtraPayload(cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_PAYLOAD)));
+
+        try {
+            String extras = cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_EXTRAS));
+            qiscusComment.setExtras(extras == null ? null : new JSONObject(extras));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        try {
+            String userExtras = cursor.getString(cursor.getColumnIndexOrThrow(QiscusDb.CommentTable.COLUMN_USER_EXTRAS));
+            qiscusComment.setUserExtras(userExtras == null ? null : new JSONObject(userExtras));
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        return qiscusComment;
+    }
+
+    private static QiscusComment createComment(int id, long now) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(id);
+        qiscusComment.setRoomId(ROOM_ID);
+        qiscusComment.setUniqueId("comment-" + id);
+        qiscusComment.setCommentBeforeId(id - 1);
+        qiscusComment.setMessage("Message number " + id + " with some text to read");
+        qiscusComment.setSender("User " + id % 10);
+        qiscusComment.setSenderEmail("user" + id % 10 + "@example.com");
+        qiscusComment.setSenderAvatar("https://example.com/avatar/" + id % 10 + ".png");
+        qiscusComment.setTime(new Date(now - id * 1000L));
+        qiscusComment.setState(QiscusComment.STATE_READ);
+        qiscusComment.setRawType("text");
+        qiscusComment.setExtraPayload("{}");
+        qiscusComment.setRawExtras("{\"pinned\":false,\"tags\":[\"a\",\"b\"],\"meta\":{\"source\":\"android\",\"v\":" + id + "}}");
+        qiscusComment.setRawUserExtras("{\"role\":\"member\",\"score\":" + id + "}");
+        return qiscusComment;
+    }
+}
@@ -0,0 +1,150 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Every comments query of {@link QiscusDataBaseHelper} has to search the comments table through an index.
+ * The statements come from the query builders of the helper, they are checked with EXPLAIN QUERY PLAN on an in
+ * memory database created with the schema of {@link QiscusDbOpenHelper}.
+ * The LIKE search used while the full text index is being built is not checked, it matches substrings of any
+ * comment, which no index covers.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusDbQueryPlanTest {
+
+    private static final String COMMENTS = QiscusDb.CommentTable.TABLE_NAME;
+    private static final Pattern COMMENTS_SCAN = Pattern.compile("^SCAN (TABLE )?" + COMMENTS + "\\b");
+    private static final Pattern COMMENTS_INDEX_SCAN =
+            Pattern.compile("^SCAN (TABLE )?" + COMMENTS + " USING (COVERING )?INDEX ");
+
+    private SQLiteDatabase database;
+
+    @Before
+    public void setUp() {
+        database = SQLiteDatabase.create(null);
+        new QiscusDbOpenHelper(InstrumentationRegistry.getTargetContext()).onCreate(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void commentLookupsUseAnIndex() {
+        assertUsesIndex(QiscusDataBaseHelper.commentExistsQuery());
+        assertUsesIndex(QiscusDataBaseHelper.commentByUniqueIdQuery());
+        assertUsesIndex(QiscusDataBaseHelper.commentByIdQuery());
+        assertUsesIndex(QiscusDataBaseHelper.commentByBeforeIdQuery());
+        assertUsesIndex(QiscusDataBaseHelper.commentsByUniqueIdsQuery(3));
+    }
+
+    @Test
+    public void roomCommentsUseAnIndex() {
+        for (boolean untilTime : new boolean[]{true, false}) {
+            for (boolean limited : new boolean[]{true, false}) {
+                assertUsesIndex(QiscusDataBaseHelper.roomCommentsQuery(untilTime, limited));
+            }
+        }
+        assertUsesIndex(QiscusDataBaseHelper.commentsAfterQuery());
+        assertUsesIndex(QiscusDataBaseHelper.roomLatestCommentQuery());
+    }
+
+    @Test
+    public void commentPagesUseAnIndex() {
+        for (boolean older : new boolean[]{true, false}) {
+            assertUsesIndex(QiscusDataBaseHelper.commentsPageQuery(older, false));
+            assertUsesIndex(QiscusDataBaseHelper.commentsPageQuery(older, true));
+        }
+    }
+
+    @Test
+    public void commentSearchesUseAnIndex() {
+        for (boolean inRoom : new boolean[]{true, false}) {
+            for (boolean afterLastComment : new boolean[]{true, false}) {
+                assertUsesIndex(QiscusDataBaseHelper.searchCommentsQuery(true, inRoom, afterLastComment,
+                        !afterLastComment));
+            }
+        }
+        //Without the index ready only the room narrows the search
+        assertUsesIndex(QiscusDataBaseHelper.searchCommentsQuery(false, true, false, true));
+    }
+
+    @Test
+    public void commentStatesUseAnIndex() {
+        for (int state : new int[]{QiscusComment.STATE_DELIVERED, QiscusComment.STATE_READ}) {
+            assertUsesIndex(QiscusDataBaseHelper.roomLatestCommentQuery(state));
+            assertUsesIndex(QiscusDataBaseHelper.updateCommentStatesQuery(state));
+        }
+        assertUsesIndex(QiscusDataBaseHelper.pendingCommentsQuery());
+    }
+
+    @Test
+    public void commentWritesUseAnIndex() {
+        assertUsesIndex("UPDATE " + COMMENTS + " SET " + QiscusDb.CommentTable.COLUMN_MESSAGE + " = ?"
+                + " WHERE " + QiscusDataBaseHelper.commentByUniqueIdWhere());
+        assertUsesIndex("DELETE FROM " + COMMENTS + " WHERE " + QiscusDataBaseHelper.commentByUniqueIdWhere());
+        assertUsesIndex("DELETE FROM " + COMMENTS + " WHERE " + QiscusDataBaseHelper.roomCommentsWhere(false));
+        assertUsesIndex("DELETE FROM " + COMMENTS + " WHERE " + QiscusDataBaseHelper.roomCommentsWhere(true));
+    }
+
+    @Test
+    public void roomLastCommentUsesAnIndex() {
+        assertUsesIndex(QiscusDb.RoomTable.UPDATE_LAST_COMMENT);
+    }
+
+    @Test
+    public void latestCommentReadsTheTimeIndexInOrder() {
+        //Every room is searched, the newest comment is the first row of the time index which is not filtered out
+        String sql = QiscusDataBaseHelper.latestCommentQuery();
+        List<String> plan = explain(sql);
+        boolean readsIndex = false;
+        for (String detail : plan) {
+            assertFalse("Sorts " + COMMENTS + ": " + plan + "\n" + sql, detail.startsWith("USE TEMP B-TREE"));
+            readsIndex |= COMMENTS_INDEX_SCAN.matcher(detail).find();
+        }
+        assertTrue("No index of " + COMMENTS + " read: " + plan + "\n" + sql, readsIndex);
+    }
+
+    private void assertUsesIndex(String sql) {
+        List<String> plan = explain(sql);
+        boolean searchesComments = false;
+        for (String detail : plan) {
+            assertFalse("Full scan of " + COMMENTS + ": " + plan + "\n" + sql, COMMENTS_SCAN.matcher(detail).find());
+            searchesComments |= detail.contains(COMMENTS);
+        }
+        assertTrue("No plan for " + COMMENTS + ": " + plan + "\n" + sql, searchesComments);
+    }
+
+    private List<String> explain(String sql) {
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detailIndex = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detailIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,138 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Room list loading for 50, 500 and 5000 rooms. The set based loading runs 2 queries without members and 3 with
+ * them, it is compared with looking up the members and the latest comment of every room, the 2 * rooms + 1
+ * queries the room list used to run.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusRoomListBenchmark {
+    private static final int MEMBERS_PER_ROOM = 3;
+    private static final int RUNS = 5;
+
+    private QiscusDataStore dataStore;
+
+    @Before
+    public void setUp() {
+        QiscusBenchmark.initQiscus();
+        dataStore = QiscusCore.getDataStore();
+        dataStore.clear();
+    }
+
+    @After
+    public void tearDown() {
+        dataStore.clear();
+    }
+
+    @Test
+    public void load50Rooms() {
+        benchmark(50);
+    }
+
+    @Test
+    public void load500Rooms() {
+        benchmark(500);
+    }
+
+    @Test
+    public void load5000Rooms() {
+        benchmark(5000);
+    }
+
+    private void benchmark(int roomCount) {
+        dataStore.addOrUpdateRooms(createRooms(roomCount));
+
+        List<QiscusChatRoom> rooms = dataStore.getChatRooms(roomCount, 0, true);
+        List<QiscusChatRoom> perRoomRooms = loadPerRoom(roomCount);
+        assertEquals(roomCount, rooms.size());
+        for (int i = 0; i < roomCount; i++) {
+            QiscusChatRoom room = rooms.get(i);
+            QiscusChatRoom perRoomRoom = perRoomRooms.get(i);
+            assertEquals(perRoomRoom.getId(), room.getId());
+            assertNotNull(room.getLastComment());
+            assertEquals(perRoomRoom.getLastComment().getUniqueId(), room.getLastComment().getUniqueId());
+            assertEquals(MEMBERS_PER_ROOM, room.getMember().size());
+        }
+
+        QiscusBenchmark.measure(roomCount + " rooms, set based, without members (2 queries)", RUNS,
+                () -> dataStore.getChatRooms(roomCount, 0, false));
+        long setBasedMedian = QiscusBenchmark.measure(roomCount + " rooms, set based, with members (3 queries)", RUNS,
+                () -> dataStore.getChatRooms(roomCount, 0, true));
+        long perRoomMedian = QiscusBenchmark.measure(roomCount + " rooms, per room lookups ("
+                + (2 * roomCount + 1) + " queries)", RUNS, () -> loadPerRoom(roomCount));
+        QiscusBenchmark.assertFaster(roomCount + " rooms, set based", setBasedMedian, perRoomMedian);
+    }
+
+    private List<QiscusChatRoom> loadPerRoom(int roomCount) {
+        List<QiscusChatRoom> rooms = dataStore.getChatRooms(roomCount, 0, false);
+        for (QiscusChatRoom room : rooms) {
+            room.setMember(dataStore.getRoomMembers(room.getId()));
+            room.setLastComment(dataStore.getLatestComment(room.getId()));
+        }
+        return rooms;
+    }
+
+    private static List<QiscusChatRoom> createRooms(int roomCount) {
+        List<QiscusRoomMember> members = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            QiscusRoomMember member = new QiscusRoomMember();
+            member.setEmail("user" + i + "@example.com");
+            member.setUsername("User " + i);
+            member.setAvatar("https://example.com/avatar/" + i + ".png");
+            members.add(member);
+        }
+
+        long now = System.currentTimeMillis();
+        List<QiscusChatRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 1; i <= roomCount; i++) {
+            QiscusChatRoom room = new QiscusChatRoom();
+            room.setId(i);
+            room.setUniqueId("room-" + i);
+            room.setDistinctId("room-" + i);
+            room.setName("Room " + i);
+            room.setGroup(true);
+            room.setAvatarUrl("https://example.com/room/" + i + ".png");
+
+            List<QiscusRoomMember> roomMembers = new ArrayList<>(MEMBERS_PER_ROOM);
+            for (int j = 0; j < MEMBERS_PER_ROOM; j++) {
+                roomMembers.add(members.get((i + j) % members.size()));
+            }
+            room.setMember(roomMembers);
+            room.setMemberCount(MEMBERS_PER_ROOM);
+
+            QiscusComment comment = new QiscusComment();
+            comment.setId(i);
+            comment.setRoomId(i);
+            comment.setUniqueId("comment-" + i);
+            comment.setMessage("Last message of room " + i);
+            comment.setSenderEmail(roomMembers.get(0).getEmail());
+            comment.setSender(roomMembers.get(0).getUsername());
+            comment.setTime(new Date(now - i * 1000L));
+            comment.setState(QiscusComment.STATE_ON_QISCUS);
+            room.setLastComment(comment);
+
+            rooms.add(room);
+        }
+        return rooms;
+    }
+}
@@ -0,0 +1,188 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.os.Build;
+import android.os.Debug;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Time and allocation of parsing big load_comments and rooms_info responses, with the json tree and
+ * {@link QiscusApiParser} as the api did before, and with {@link QiscusStreamParser}, which has to allocate less.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusStreamParserBenchmark {
+    private static final int COMMENTS = 1000;
+    private static final int ROOMS = 500;
+    private static final int RUNS = 10;
+    private static final long ROOM_ID = 1207;
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    @Test
+    public void parseComments() {
+        String json = createCommentsResponse(COMMENTS);
+        assertEquals(COMMENTS, parseCommentsTree(json).size());
+        assertEquals(COMMENTS, parseCommentsStream(json).size());
+
+        String name = COMMENTS + " comments (" + json.length() / 1024 + " KB)";
+        QiscusBenchmark.measure(name + ", json tree", RUNS, () -> parseCommentsTree(json));
+        QiscusBenchmark.measure(name + ", stream", RUNS, () -> parseCommentsStream(json));
+        assertAllocatesLess(name,
+                reportAllocation(name + ", stream", () -> parseCommentsStream(json)),
+                reportAllocation(name + ", json tree", () -> parseCommentsTree(json)));
+    }
+
+    @Test
+    public void parseChatRooms() {
+        String json = createRoomsResponse(ROOMS);
+        assertEquals(ROOMS, QiscusApiParser.parseQiscusChatRoomInfo(new JsonParser().parse(json)).size());
+        assertEquals(ROOMS, parseChatRoomsStream(json).size());
+
+        String name = ROOMS + " rooms (" + json.length() / 1024 + " KB)";
+        QiscusBenchmark.measure(name + ", json tree", RUNS, () -> parseChatRoomsTree(json));
+        QiscusBenchmark.measure(name + ", stream", RUNS, () -> parseChatRoomsStream(json));
+        assertAllocatesLess(name,
+                reportAllocation(name + ", stream", () -> parseChatRoomsStream(json)),
+                reportAllocation(name + ", json tree", () -> parseChatRoomsTree(json)));
+    }
+
+    private static List<QiscusComment> parseCommentsTree(String json) {
+        JsonElement jsonElement = new JsonParser().parse(ResponseBody.create(JSON, json).charStream());
+        List<QiscusComment> qiscusComments = new ArrayList<>();
+        for (JsonElement jsonComment : jsonElement.getAsJsonObject().get("results").getAsJsonObject()
+                .get("comments").getAsJsonArray()) {
+            qiscusComments.add(QiscusApiParser.parseQiscusComment(jsonComment, ROOM_ID));
+        }
+        return qiscusComments;
+    }
+
+    private static List<QiscusComment> parseCommentsStream(String json) {
+        return QiscusStreamParser.parseComments(ResponseBody.create(JSON, json), ROOM_ID)
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    private static List<QiscusChatRoom> parseChatRoomsTree(String json) {
+        return QiscusApiParser.parseQiscusChatRoomInfo(
+                new JsonParser().parse(ResponseBody.create(JSON, json).charStream()));
+    }
+
+    private static List<QiscusChatRoom> parseChatRoomsStream(String json) {
+        return QiscusStreamParser.parseChatRooms(ResponseBody.create(JSON, json))
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    /**
+     * Bytes allocated by the runtime while running the task once, only available from api 23.
+     *
+     * @return allocated bytes, -1 before api 23
+     */
+    private static long reportAllocation(String name, Runnable task) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return -1;
+        }
+        task.run();
+        long before = Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+        task.run();
+        long allocated = Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated")) - before;
+        QiscusBenchmark.report(name, String.format(Locale.US, "%.1f KB allocated", allocated / 1024.0));
+        return allocated;
+    }
+
+    private static void assertAllocatesLess(String name, long streamAllocated, long treeAllocated) {
+        if (streamAllocated < 0) {
+            return;
+        }
+        assertTrue(String.format(Locale.US, "%s, the stream allocated %.1f KB, the json tree %.1f KB", name,
+                streamAllocated / 1024.0, treeAllocated / 1024.0), streamAllocated < treeAllocated);
+    }
+
+    private static String createCommentsResponse(int count) {
+        StringBuilder json = new StringBuilder("{\"results\":{\"comments\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendComment(json, COMMENTS + count - i, ROOM_ID);
+        }
+        return json.append("]},\"status\":200}").toString();
+    }
+
+    private static String createRoomsResponse(int count) {
+        StringBuilder json = new StringBuilder("{\"results\":{\"rooms_info\":[");
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i)
+                    .append(",\"room_name\":\"Room ").append(i)
+                    .append("\",\"raw_room_name\":\"room-").append(i)
+                    .append("\",\"chat_type\":\"group\",\"unique_id\":\"room-").append(i)
+                    .append("\",\"options\":\"{\\\"color\\\":\\\"#ff8800\\\",\\\"muted\\\":false}\"")
+                    .append(",\"avatar_url\":\"https://example.com/room/").append(i).append(".png\"")
+                    .append(",\"unread_count\":").append(i % 7)
+                    .append(",\"is_public_channel\":false,\"room_total_participants\":3,\"participants\":[");
+            for (int j = 0; j < 3; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append("{\"email\":\"user").append(j).append("@example.com\",\"username\":\"User ").append(j)
+                        .append("\",\"avatar_url\":\"https://example.com/avatar/").append(j).append(".png\"")
+                        .append(",\"extras\":{\"role\":\"member\"},\"last_comment_received_id\":").append(i)
+                        .append(",\"last_comment_read_id\":").append(i).append('}');
+            }
+            json.append("],\"last_comment\":");
+            appendComment(json, i, i);
+            json.append('}');
+        }
+        return json.append("]},\"status\":200}").toString();
+    }
+
+    private static void appendComment(StringBuilder json, long id, long roomId) {
+        boolean reply = id % 5 == 0;
+        json.append("{\"id\":").append(id)
+                .append(",\"topic_id\":").append(roomId)
+                .append(",\"room_id\":").append(roomId)
+                .append(",\"room_name\":\"Room ").append(roomId)
+                .append("\",\"room_type\":\"group\",\"comment_before_id\":").append(id - 1)
+                .append(",\"message\":\"Message number ").append(id).append(" with a link https://example.com/").append(id)
+                .append("\",\"type\":\"").append(reply ? "reply" : "text").append("\",\"payload\":");
+        if (reply) {
+            json.append("{\"text\":\"Reply ").append(id).append("\",\"replied_comment_id\":").append(id - 1)
+                    .append(",\"replied_comment_message\":\"Message number ").append(id - 1)
+                    .append("\",\"replied_comment_type\":\"text\",\"replied_comment_payload\":{}}");
+        } else {
+            json.append("{}");
+        }
+        json.append(",\"extras\":{\"pinned\":false,\"tags\":[\"a\",\"b\"],\"score\":").append(id).append(".5}")
+                .append(",\"user_extras\":{\"role\":\"member\"}")
+                .append(",\"email\":\"user").append(id % 3).append("@example.com\"")
+                .append(",\"username\":\"User ").append(id % 3)
+                .append("\",\"user_avatar_url\":\"https://example.com/avatar/").append(id % 3).append(".png\"")
+                .append(",\"status\":\"read\",\"is_deleted\":false")
+                .append(",\"unique_id\":\"comment-").append(id)
+                .append("\",\"unix_nano_timestamp\":").append(1580000000000000000L + id * 1000000000L)
+                .append('}');
+    }
+}
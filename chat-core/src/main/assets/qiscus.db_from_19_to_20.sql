@@ -0,0 +1,8 @@
+/**
+ * migration db v19 to v20
+ */
+CREATE INDEX IF NOT EXISTS comments_room_id_time_index ON comments (room_id, time);
+CREATE INDEX IF NOT EXISTS comments_room_id_id_index ON comments (room_id, id);
+CREATE INDEX IF NOT EXISTS comments_id_index ON comments (id);
+CREATE INDEX IF NOT EXISTS comments_comment_before_id_index ON comments (comment_before_id);
+CREATE INDEX IF NOT EXISTS comments_state_index ON comments (state);
@@ -0,0 +1,14 @@
+/**
+ * migration db v20 to v21
+ */
+ALTER TABLE rooms ADD COLUMN last_comment_id LONG DEFAULT 0;
+ALTER TABLE rooms ADD COLUMN last_comment_unique_id TEXT;
+ALTER TABLE rooms ADD COLUMN last_comment_time LONG;
+UPDATE rooms SET
+    last_comment_id = IFNULL((SELECT id FROM comments WHERE room_id = rooms.id AND hard_deleted = 0
+        ORDER BY time DESC LIMIT 1), 0),
+    last_comment_unique_id = (SELECT unique_id FROM comments WHERE room_id = rooms.id AND hard_deleted = 0
+        ORDER BY time DESC LIMIT 1),
+    last_comment_time = (SELECT time FROM comments WHERE room_id = rooms.id AND hard_deleted = 0
+        ORDER BY time DESC LIMIT 1);
+CREATE INDEX IF NOT EXISTS rooms_last_comment_time_index ON rooms (last_comment_time);
@@ -0,0 +1,11 @@
+/**
+ * migration db v21 to v22
+ * Old comments are indexed in background by QiscusDataBaseHelper using comments_fts_backfill
+ */
+CREATE VIRTUAL TABLE IF NOT EXISTS comments_fts USING fts4(message);
+CREATE TRIGGER IF NOT EXISTS comments_fts_after_insert AFTER INSERT ON comments BEGIN INSERT INTO comments_fts (docid, message) VALUES (new.rowid, new.message); END;
+CREATE TRIGGER IF NOT EXISTS comments_fts_before_update BEFORE UPDATE OF message ON comments BEGIN DELETE FROM comments_fts WHERE docid = old.rowid; END;
+CREATE TRIGGER IF NOT EXISTS comments_fts_after_update AFTER UPDATE OF message ON comments BEGIN INSERT INTO comments_fts (docid, message) VALUES (new.rowid, new.message); END;
+CREATE TRIGGER IF NOT EXISTS comments_fts_before_delete BEFORE DELETE ON comments BEGIN DELETE FROM comments_fts WHERE docid = old.rowid; END;
+CREATE TABLE IF NOT EXISTS comments_fts_backfill (next_row_id LONG NOT NULL, last_row_id LONG NOT NULL);
+INSERT INTO comments_fts_backfill (next_row_id, last_row_id) SELECT 1, IFNULL(MAX(rowid), 0) FROM comments;
@@ -0,0 +1,4 @@
+/**
+ * migration db v22 to v23
+ */
+CREATE TABLE IF NOT EXISTS uploads (comment_unique_id TEXT PRIMARY KEY, room_id LONG NOT NULL, file_path TEXT NOT NULL, file_length LONG NOT NULL, file_last_modified LONG NOT NULL, url TEXT, attempts INTEGER DEFAULT 0);
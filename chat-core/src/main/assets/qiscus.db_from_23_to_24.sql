@@ -0,0 +1,4 @@
+/**
+ * migration db v23 to v24
+ */
+CREATE TABLE IF NOT EXISTS link_previews (url TEXT PRIMARY KEY, data TEXT NOT NULL, time LONG NOT NULL);
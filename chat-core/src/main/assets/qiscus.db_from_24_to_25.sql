@@ -0,0 +1,4 @@
+/**
+ * migration db v24 to v25
+ */
+CREATE INDEX IF NOT EXISTS comments_time_index ON comments (time);
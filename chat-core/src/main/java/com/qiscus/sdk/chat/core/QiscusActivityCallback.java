@@ -20,6 +20,7 @@ import android.app.Activity;
 import android.app.Application;
 import android.os.Bundle;
 
+import com.qiscus.sdk.chat.core.service.QiscusSyncScheduler;
 import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusServiceUtil;
 
@@ -85,5 +86,6 @@ enum QiscusActivityCallback implements Application.ActivityLifecycleCallbacks {
             activityTransition.cancel(true);
         }
         foreground = true;
+        QiscusSyncScheduler.getInstance().resume();
     }
 }
@@ -30,9 +30,12 @@ import com.google.gson.Gson;
 import com.qiscus.sdk.chat.core.data.local.QiscusCacheManager;
 import com.qiscus.sdk.chat.core.data.local.QiscusDataBaseHelper;
 import com.qiscus.sdk.chat.core.data.local.QiscusDataStore;
+import com.qiscus.sdk.chat.core.data.local.QiscusEventCache;
 import com.qiscus.sdk.chat.core.data.model.QiscusAccount;
+import com.qiscus.sdk.chat.core.data.model.QiscusAppConfig;
 import com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig;
 import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
+import com.qiscus.sdk.chat.core.data.remote.QiscusHttpClientFactory;
 import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
 import com.qiscus.sdk.chat.core.event.QiscusUserEvent;
 import com.qiscus.sdk.chat.core.service.QiscusNetworkCheckerJobService;
@@ -42,6 +45,7 @@ import com.qiscus.sdk.chat.core.util.BuildVersionUtil;
 import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusServiceUtil;
+import com.qiscus.sdk.chat.core.util.QiscusStartupTrace;
 
 import org.greenrobot.eventbus.EventBus;
 import org.json.JSONException;
@@ -203,6 +207,7 @@ public class QiscusCore {
     public static void initWithCustomServer(Application application, String qiscusAppId, String serverBaseUrl,
                                             String mqttBrokerUrl, boolean enableMqttLB, String baseURLLB) {
 
+        QiscusStartupTrace.start();
         appInstance = application;
         appId = qiscusAppId;
 
@@ -213,7 +218,8 @@ public class QiscusCore {
         appHandler = new Handler(QiscusCore.getApps().getApplicationContext().getMainLooper());
         taskExecutor = new ScheduledThreadPoolExecutor(5);
         localDataManager = new LocalDataManager();
-        dataStore = new QiscusDataBaseHelper();
+        QiscusDataBaseHelper dataBaseHelper = new QiscusDataBaseHelper();
+        dataStore = dataBaseHelper;
         heartBeat = 5000;
         automaticHeartBeat = 30000;
         networkConnectionInterval = 5000;
@@ -226,77 +232,123 @@ public class QiscusCore {
 
         getAppConfig();
         configureFcmToken();
+        dataBaseHelper.startSearchIndexBackfill();
     }
 
     public static void isBuiltIn(Boolean isBuiltInSDK) {
         isBuiltIn = isBuiltInSDK;
     }
 
+    /**
+     * Boot from the last app config right away when there is one, the fresh config is applied when it arrives.
+     */
     private static void getAppConfig() {
+        String configSource = appId + "@" + appServer;
+        QiscusAppConfig cachedAppConfig = localDataManager.getAppConfig(configSource);
+        if (cachedAppConfig != null) {
+            applyAppConfig(cachedAppConfig);
+            startServices();
+        }
+
         QiscusApi.getInstance()
                 .getAppConfig()
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(appConfig -> {
-                    enableEventReport = appConfig.getEnableEventReport();
-                    if (!appConfig.getBaseURL().isEmpty()) {
-                        String oldAppServer = appServer;
-                        String newAppServer = !appConfig.getBaseURL().endsWith("/") ?
-                                appConfig.getBaseURL() + "/" : appConfig.getBaseURL();
-
-                        if (!oldAppServer.equals(newAppServer) &&
-                                QiscusServiceUtil.isValidUrl(newAppServer)) {
-                            appServer = newAppServer;
-                        }
+                    QiscusStartupTrace.mark(QiscusStartupTrace.Phase.APP_CONFIG_FETCHED);
+                    localDataManager.setAppConfig(configSource, appConfig);
+                    if (cachedAppConfig == null) {
+                        applyAppConfig(appConfig);
+                        startServices();
+                    } else {
+                        updateAppConfig(appConfig);
                     }
+                }, throwable -> {
+                    QiscusErrorLogger.print(throwable);
+                    if (cachedAppConfig == null) {
+                        QiscusApi.getInstance().reInitiateInstance();
+                        QiscusCore.setCacheMqttBrokerUrl(mqttBrokerUrl, false);
+                        startServices();
+                    }
+                });
+    }
 
-                    QiscusApi.getInstance().reInitiateInstance();
+    private static void applyAppConfig(QiscusAppConfig appConfig) {
+        enableEventReport = appConfig.getEnableEventReport();
+        if (!appConfig.getBaseURL().isEmpty()) {
+            String oldAppServer = appServer;
+            String newAppServer = !appConfig.getBaseURL().endsWith("/") ?
+                    appConfig.getBaseURL() + "/" : appConfig.getBaseURL();
 
-                    if (!appConfig.getBrokerLBURL().isEmpty() &&
-                            QiscusServiceUtil.isValidUrl(appConfig.getBrokerLBURL())) {
-                        QiscusCore.baseURLLB = appConfig.getBrokerLBURL();
-                    }
+            if (!oldAppServer.equals(newAppServer) &&
+                    QiscusServiceUtil.isValidUrl(newAppServer)) {
+                appServer = newAppServer;
+            }
+        }
 
-                    if (!appConfig.getBrokerURL().isEmpty()) {
+        QiscusApi.getInstance().reInitiateInstance();
 
-                        String oldMqttBrokerUrl = QiscusCore.mqttBrokerUrl;
-                        String newMqttBrokerUrl = String.format("ssl://%s:1885",
-                                appConfig.getBrokerURL());
+        if (!appConfig.getBrokerLBURL().isEmpty() &&
+                QiscusServiceUtil.isValidUrl(appConfig.getBrokerLBURL())) {
+            QiscusCore.baseURLLB = appConfig.getBrokerLBURL();
+        }
 
-                        if (!oldMqttBrokerUrl.equals(newMqttBrokerUrl)) {
-                            QiscusCore.mqttBrokerUrl = newMqttBrokerUrl;
-                            QiscusCore.setCacheMqttBrokerUrl(newMqttBrokerUrl, false);
-                        } else {
-                            QiscusCore.setCacheMqttBrokerUrl(mqttBrokerUrl, false);
-                        }
-                    }
+        if (!appConfig.getBrokerURL().isEmpty()) {
 
-                    if (appConfig.getSyncInterval() != 0) {
-                        heartBeat = appConfig.getSyncInterval();
-                    }
+            String oldMqttBrokerUrl = QiscusCore.mqttBrokerUrl;
+            String newMqttBrokerUrl = String.format("ssl://%s:1885",
+                    appConfig.getBrokerURL());
 
-                    if (appConfig.getSyncOnConnect() != 0) {
-                        automaticHeartBeat = appConfig.getSyncOnConnect();
-                    }
+            if (!oldMqttBrokerUrl.equals(newMqttBrokerUrl)) {
+                QiscusCore.mqttBrokerUrl = newMqttBrokerUrl;
+                QiscusCore.setCacheMqttBrokerUrl(newMqttBrokerUrl, false);
+            } else {
+                QiscusCore.setCacheMqttBrokerUrl(mqttBrokerUrl, false);
+            }
+        }
 
-                    if (appConfig.getNetworkConnectionInterval() != 0) {
-                        networkConnectionInterval = appConfig.getNetworkConnectionInterval();
-                    }
+        if (appConfig.getSyncInterval() != 0) {
+            heartBeat = appConfig.getSyncInterval();
+        }
 
-                    enableRealtime = appConfig.getEnableRealtime();
-                    startSyncService();
-                    startNetworkCheckerService();
-                    QiscusCore.getApps().registerActivityLifecycleCallbacks(QiscusActivityCallback.INSTANCE);
+        if (appConfig.getSyncOnConnect() != 0) {
+            automaticHeartBeat = appConfig.getSyncOnConnect();
+        }
 
-                }, throwable -> {
-                    QiscusErrorLogger.print(throwable);
-                    QiscusApi.getInstance().reInitiateInstance();
-                    QiscusCore.setCacheMqttBrokerUrl(mqttBrokerUrl, false);
-                    startSyncService();
-                    startNetworkCheckerService();
-                    QiscusCore.getApps().registerActivityLifecycleCallbacks(QiscusActivityCallback.INSTANCE);
-                });
+        if (appConfig.getNetworkConnectionInterval() != 0) {
+            networkConnectionInterval = appConfig.getNetworkConnectionInterval();
+        }
+
+        enableRealtime = appConfig.getEnableRealtime();
+    }
+
+    /**
+     * Apply the fresh app config over the cached one the sdk was started with.
+     * The sync services read the intervals on every tick, only the mqtt connection needs to follow
+     * a different broker or realtime flag.
+     */
+    private static void updateAppConfig(QiscusAppConfig appConfig) {
+        String oldMqttBrokerUrl = getMqttBrokerUrl();
+        boolean oldEnableRealtime = enableRealtime;
+
+        applyAppConfig(appConfig);
+
+        if (!hasSetupUser()) {
+            return;
+        }
+
+        if (!oldMqttBrokerUrl.equals(getMqttBrokerUrl())) {
+            QiscusPusherApi.getInstance().disconnect();
+            QiscusPusherApi.getInstance().restartConnection();
+        } else if (oldEnableRealtime != enableRealtime) {
+            QiscusPusherApi.getInstance().restartConnection();
+        }
+    }
 
+    private static void startServices() {
+        startSyncService();
+        startNetworkCheckerService();
+        QiscusCore.getApps().registerActivityLifecycleCallbacks(QiscusActivityCallback.INSTANCE);
     }
 
     /**
@@ -976,7 +1028,9 @@ public class QiscusCore {
         }
         localDataManager.clearData();
         dataStore.clear();
+        QiscusEventCache.getInstance().clearLastSyncCommentId();
         QiscusCacheManager.getInstance().clearData();
+        QiscusHttpClientFactory.getInstance().evictCache();
         EventBus.getDefault().post(QiscusUserEvent.LOGOUT);
     }
 
@@ -1065,6 +1119,31 @@ public class QiscusCore {
             this.token = token;
         }
 
+        /**
+         * Last app config from the server, so the next start does not need to wait for it
+         *
+         * @param source app id and base url the sdk was initialized with
+         * @return cached app config, or null if there is none yet or it was fetched for another app or server
+         */
+        private QiscusAppConfig getAppConfig(String source) {
+            if (!source.equals(sharedPreferences.getString("cached_app_config_source", null))) {
+                return null;
+            }
+            try {
+                return gson.fromJson(sharedPreferences.getString("cached_app_config", null), QiscusAppConfig.class);
+            } catch (Exception e) {
+                QiscusErrorLogger.print(e);
+                return null;
+            }
+        }
+
+        private void setAppConfig(String source, QiscusAppConfig appConfig) {
+            sharedPreferences.edit()
+                    .putString("cached_app_config_source", source)
+                    .putString("cached_app_config", gson.toJson(appConfig))
+                    .apply();
+        }
+
         private String getFcmToken() {
             return sharedPreferences.getString("fcm_token", null);
         }
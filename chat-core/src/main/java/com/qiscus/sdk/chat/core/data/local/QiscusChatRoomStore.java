@@ -38,6 +38,8 @@ public interface QiscusChatRoomStore {
 
     void addOrUpdate(QiscusChatRoom qiscusChatRoom);
 
+    void addOrUpdateRooms(List<QiscusChatRoom> qiscusChatRooms);
+
     QiscusChatRoom getChatRoom(long roomId);
 
     QiscusChatRoom getChatRoom(String email);
@@ -50,12 +52,23 @@ public interface QiscusChatRoomStore {
 
     List<QiscusChatRoom> getChatRooms(int limit, int offset);
 
+    /**
+     * Load a page of rooms ordered by their last comment.
+     *
+     * @param withMembers false to skip loading room members, e.g for room list screens
+     */
+    List<QiscusChatRoom> getChatRooms(int limit, int offset, boolean withMembers);
+
     Observable<List<QiscusChatRoom>> getObservableChatRooms(int limit);
 
     Observable<List<QiscusChatRoom>> getObservableChatRooms(int limit, int offset);
 
+    Observable<List<QiscusChatRoom>> getObservableChatRooms(int limit, int offset, boolean withMembers);
+
     List<QiscusChatRoom> getChatRooms(List<Long> roomIds, List<String> uniqueIds);
 
+    List<QiscusChatRoom> getChatRooms(List<Long> roomIds, List<String> uniqueIds, boolean withMembers);
+
     void deleteChatRoom(long roomId);
 
     void addRoomMember(long roomId, QiscusRoomMember qiscusRoomMember, String distinctId);
@@ -66,6 +79,8 @@ public interface QiscusChatRoomStore {
 
     void addOrUpdateRoomMember(long roomId, QiscusRoomMember qiscusRoomMember, String distinctId);
 
+    void addOrUpdateRoomMembers(long roomId, List<QiscusRoomMember> qiscusRoomMembers, String distinctId);
+
     List<QiscusRoomMember> getRoomMembers(long roomId);
 
     void deleteRoomMember(long roomId, String email);
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.local;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * LRU cache of comment rows keyed by unique id, kept in front of {@link QiscusDataBaseHelper}.
+ * Entries are copies, so callers can freely change the comments they get without touching the cache.
+ * The size is read from {@link com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig#getCommentCacheSize()}
+ * on every access, so it can be changed after init, and 0 disables the cache.
+ * <p>
+ * Writers change the cache after their transaction is committed. A reader filling the cache after a miss takes the
+ * {@link #generation()} before its query and puts with {@link #putIfUnchanged(QiscusComment, long)}, so a row read
+ * before a write was committed is not cached over it.
+ */
+class QiscusCommentCache {
+
+    private final LinkedHashMap<String, QiscusComment> comments = new LinkedHashMap<>(16, 0.75f, true);
+    private long hitCount;
+    private long missCount;
+    private long generation;
+
+    synchronized QiscusComment get(String uniqueId) {
+        if (uniqueId == null || maxSize() <= 0) {
+            return null;
+        }
+
+        QiscusComment qiscusComment = comments.get(uniqueId);
+        if (qiscusComment == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return copy(qiscusComment);
+    }
+
+    synchronized void put(QiscusComment qiscusComment) {
+        int maxSize = maxSize();
+        if (qiscusComment == null || qiscusComment.getUniqueId() == null || maxSize <= 0) {
+            return;
+        }
+
+        generation++;
+        comments.put(qiscusComment.getUniqueId(), copy(qiscusComment));
+        trimToSize(maxSize);
+    }
+
+    /**
+     * Put of a comment read from the database, skipped when the cache was written since the read began.
+     *
+     * @param generation the {@link #generation()} taken before the comment was read
+     */
+    synchronized void putIfUnchanged(QiscusComment qiscusComment, long generation) {
+        if (this.generation == generation) {
+            put(qiscusComment);
+        }
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    synchronized void remove(String uniqueId) {
+        generation++;
+        comments.remove(uniqueId);
+    }
+
+    synchronized void removeRoom(long roomId) {
+        generation++;
+        Iterator<QiscusComment> iterator = comments.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getRoomId() == roomId) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Mirror of the bulk delivered/read state update, applied to the cached comments of the room.
+     */
+    synchronized void updateState(long roomId, long lastCommentId, int state) {
+        generation++;
+        for (QiscusComment qiscusComment : comments.values()) {
+            if (qiscusComment.getRoomId() == roomId && qiscusComment.getId() != -1
+                    && qiscusComment.getId() <= lastCommentId && qiscusComment.getState() < state) {
+                qiscusComment.setState(state);
+            }
+        }
+    }
+
+    /**
+     * Cached comments keep the sender name and avatar they were resolved with, follow the member when it changes.
+     */
+    synchronized void updateSender(QiscusRoomMember qiscusRoomMember) {
+        if (qiscusRoomMember == null || qiscusRoomMember.getEmail() == null) {
+            return;
+        }
+
+        generation++;
+        for (QiscusComment qiscusComment : comments.values()) {
+            if (qiscusRoomMember.getEmail().equals(qiscusComment.getSenderEmail())) {
+                qiscusComment.setSender(qiscusRoomMember.getUsername());
+                qiscusComment.setSenderAvatar(qiscusRoomMember.getAvatar());
+            }
+        }
+    }
+
+    synchronized void clear() {
+        generation++;
+        comments.clear();
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private void trimToSize(int maxSize) {
+        Iterator<String> iterator = comments.keySet().iterator();
+        while (comments.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private int maxSize() {
+        return QiscusCore.getChatConfig().getCommentCacheSize();
+    }
+
+    private static QiscusComment copy(QiscusComment source) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(source.getId());
+        qiscusComment.setRoomId(source.getRoomId());
+        qiscusComment.setUniqueId(source.getUniqueId());
+        qiscusComment.setCommentBeforeId(source.getCommentBeforeId());
+        qiscusComment.setMessage(source.getMessage());
+        qiscusComment.setSender(source.getSender());
+        qiscusComment.setSenderEmail(source.getSenderEmail());
+        qiscusComment.setSenderAvatar(source.getSenderAvatar());
+        qiscusComment.setTime(source.getTime() == null ? null : new Date(source.getTime().getTime()));
+        qiscusComment.setState(source.getState());
+        qiscusComment.setDeleted(source.isDeleted());
+        qiscusComment.setHardDeleted(source.isHardDeleted());
+        qiscusComment.setRawType(source.getRawType());
+        qiscusComment.setExtraPayload(source.getExtraPayload());
+        qiscusComment.setRawExtras(source.getRawExtras());
+        qiscusComment.setRawUserExtras(source.getRawUserExtras());
+        return qiscusComment;
+    }
+}
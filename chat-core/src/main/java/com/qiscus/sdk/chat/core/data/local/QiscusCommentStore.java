@@ -37,6 +37,8 @@ public interface QiscusCommentStore {
 
     void addOrUpdate(QiscusComment qiscusComment);
 
+    void addOrUpdateComments(List<QiscusComment> qiscusComments);
+
     void delete(QiscusComment qiscusComment);
 
     boolean deleteCommentsByRoomId(long roomId);
@@ -65,6 +67,25 @@ public interface QiscusCommentStore {
 
     Observable<List<QiscusComment>> getObservableOlderCommentsThan(QiscusComment qiscusComment, long roomId, int limit);
 
+    /**
+     * Load a page of comments older than the anchor, ordered newest first.
+     * Comments are compared by time then id, so every page costs the same whatever its position.
+     *
+     * @param anchor the oldest comment already shown, or null to get the latest page
+     */
+    List<QiscusComment> getOlderComments(long roomId, QiscusComment anchor, int limit);
+
+    Observable<List<QiscusComment>> getObservableOlderComments(long roomId, QiscusComment anchor, int limit);
+
+    /**
+     * Load a page of comments newer than the anchor, ordered newest first.
+     *
+     * @param anchor the newest comment already shown, or null to get the earliest page
+     */
+    List<QiscusComment> getNewerComments(long roomId, QiscusComment anchor, int limit);
+
+    Observable<List<QiscusComment>> getObservableNewerComments(long roomId, QiscusComment anchor, int limit);
+
     List<QiscusComment> getCommentsAfter(QiscusComment qiscusComment, long roomId);
 
     Observable<List<QiscusComment>> getObservableCommentsAfter(QiscusComment qiscusComment, long roomId);
@@ -81,7 +102,32 @@ public interface QiscusCommentStore {
 
     Observable<List<QiscusComment>> getObservablePendingComments();
 
+    /**
+     * Search comments of a room by words prefix, newest first. Every word of the query has to start a word of the
+     * message, e.g. "hel wor" finds "Hello world" but "llo" does not, it used to match any substring of the
+     * message. Prefer paging with the last comment, see {@link #searchComments(String, long, QiscusComment, int)}.
+     */
     List<QiscusComment> searchComments(String query, long roomId, int limit, int offset);
 
+    /**
+     * Search comments of every room by words prefix, newest first, like
+     * {@link #searchComments(String, long, int, int)}.
+     */
     List<QiscusComment> searchComments(String query, int limit, int offset);
+
+    /**
+     * Search comments of a room by words prefix, newest first. Every word of the query has to start a word of the
+     * message, e.g. "hel wor" finds "Hello world" but "llo" does not.
+     *
+     * @param lastComment last comment of the previous page, or null to get the first page
+     */
+    List<QiscusComment> searchComments(String query, long roomId, QiscusComment lastComment, int limit);
+
+    /**
+     * Search comments of every room by words prefix, newest first, like
+     * {@link #searchComments(String, long, QiscusComment, int)}.
+     *
+     * @param lastComment last comment of the previous page, or null to get the first page
+     */
+    List<QiscusComment> searchComments(String query, QiscusComment lastComment, int limit);
 }
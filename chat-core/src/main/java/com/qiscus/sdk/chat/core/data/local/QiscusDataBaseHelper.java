@@ -16,42 +16,81 @@
 
 package com.qiscus.sdk.chat.core.data.local;
 
+import android.content.Context;
 import android.database.Cursor;
-import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
+import androidx.core.util.Pair;
+
+import com.google.gson.Gson;
 import com.qiscus.sdk.chat.core.QiscusCore;
 import com.qiscus.sdk.chat.core.data.model.QiscusAccount;
 import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusFileUpload;
 import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
+import com.schinizer.rxunfurl.model.PreviewData;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import rx.Emitter;
 import rx.Observable;
 
 public class QiscusDataBaseHelper implements QiscusDataStore {
 
+    // Stay below SQLITE_MAX_VARIABLE_NUMBER (999 on older devices)
+    private static final int MAX_SQL_VARIABLES = 500;
+    private static final String SENDER_NAME = "sender_member_name";
+    private static final String SENDER_AVATAR = "sender_member_avatar";
+    private static final int SEARCH_BACKFILL_BATCH = 500;
+
     protected final SQLiteDatabase sqLiteReadDatabase;
     protected final SQLiteDatabase sqLiteWriteDatabase;
+    private final QiscusCommentCache commentCache = new QiscusCommentCache();
+    private final QiscusLocalPathIndex localPathIndex = new QiscusLocalPathIndex();
+    private final Gson gson = new Gson();
+    private volatile boolean searchIndexReady;
+    private boolean searchBackfillStarted;
 
     public QiscusDataBaseHelper() {
-        QiscusDbOpenHelper qiscusDbOpenHelper = new QiscusDbOpenHelper(QiscusCore.getApps());
+        this(QiscusCore.getApps());
+    }
+
+    QiscusDataBaseHelper(Context context) {
+        QiscusDbOpenHelper qiscusDbOpenHelper = new QiscusDbOpenHelper(context);
         sqLiteReadDatabase = qiscusDbOpenHelper.getReadableDatabase();
         sqLiteWriteDatabase = qiscusDbOpenHelper.getWritableDatabase();
     }
 
+    /**
+     * Index on background the comments stored before the search index existed, call it once the sdk has been
+     * initialized. Search goes through LIKE until every comment is indexed.
+     */
+    public synchronized void startSearchIndexBackfill() {
+        if (searchBackfillStarted) {
+            return;
+        }
+        searchBackfillStarted = true;
+        QiscusAndroidUtil.runOnBackgroundThread(this::backfillSearchIndex);
+    }
+
     @Override
     public void add(QiscusChatRoom qiscusChatRoom) {
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.RoomTable.TABLE_NAME, null,
                     QiscusDb.RoomTable.toContentValues(qiscusChatRoom), SQLiteDatabase.CONFLICT_ABORT);
+            updateRoomLastComment(qiscusChatRoom.getId());
             sqLiteWriteDatabase.setTransactionSuccessful();
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
@@ -60,9 +99,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }
 
         if (qiscusChatRoom.getMember() != null) {
-            for (QiscusRoomMember member : qiscusChatRoom.getMember()) {
-                addRoomMember(qiscusChatRoom.getId(), member, qiscusChatRoom.getDistinctId());
-            }
+            addOrUpdateRoomMembers(qiscusChatRoom.getId(), qiscusChatRoom.getMember(), qiscusChatRoom.getDistinctId());
         }
 
         QiscusComment comment = qiscusChatRoom.getLastComment();
@@ -73,7 +110,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public boolean isContains(QiscusChatRoom qiscusChatRoom) {
-        String query = "SELECT * FROM "
+        String query = "SELECT 1 FROM "
                 + QiscusDb.RoomTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomTable.COLUMN_ID + " = ?";
         String roomId = String.valueOf(qiscusChatRoom.getId());
@@ -102,9 +139,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
         if (qiscusChatRoom.getMember() != null && !qiscusChatRoom.getMember().isEmpty()) {
             deleteRoomMembers(qiscusChatRoom.getId());
-            for (QiscusRoomMember member : qiscusChatRoom.getMember()) {
-                addRoomMember(qiscusChatRoom.getId(), member, qiscusChatRoom.getDistinctId());
-            }
+            addOrUpdateRoomMembers(qiscusChatRoom.getId(), qiscusChatRoom.getMember(), qiscusChatRoom.getDistinctId());
         }
 
         QiscusComment comment = qiscusChatRoom.getLastComment();
@@ -122,9 +157,70 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }
     }
 
+    @Override
+    public void addOrUpdateRooms(List<QiscusChatRoom> qiscusChatRooms) {
+        if (qiscusChatRooms == null || qiscusChatRooms.isEmpty()) {
+            return;
+        }
+
+        List<String> lastCommentUniqueIds = new ArrayList<>();
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        SQLiteStatement roomStatement = null;
+        SQLiteStatement roomMemberStatement = null;
+        SQLiteStatement memberStatement = null;
+        SQLiteStatement commentStatement = null;
+        SQLiteStatement lastCommentStatement = null;
+        try {
+            roomStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.RoomTable.INSERT_OR_REPLACE);
+            roomMemberStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.RoomMemberTable.INSERT_OR_REPLACE);
+            memberStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.MemberTable.INSERT_OR_REPLACE);
+            commentStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.CommentTable.INSERT_OR_REPLACE);
+            lastCommentStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.RoomTable.UPDATE_LAST_COMMENT);
+
+            for (QiscusChatRoom qiscusChatRoom : qiscusChatRooms) {
+                QiscusDb.RoomTable.bind(roomStatement, qiscusChatRoom);
+                roomStatement.executeInsert();
+
+                List<QiscusRoomMember> members = qiscusChatRoom.getMember();
+                if (members != null && !members.isEmpty()) {
+                    sqLiteWriteDatabase.delete(QiscusDb.RoomMemberTable.TABLE_NAME,
+                            QiscusDb.RoomMemberTable.COLUMN_ROOM_ID + " =? ",
+                            new String[]{String.valueOf(qiscusChatRoom.getId())});
+                    String distinctId = qiscusChatRoom.getDistinctId() == null ? "default" : qiscusChatRoom.getDistinctId();
+                    for (QiscusRoomMember member : members) {
+                        QiscusDb.RoomMemberTable.bind(roomMemberStatement, qiscusChatRoom.getId(), distinctId, member);
+                        roomMemberStatement.executeInsert();
+                        QiscusDb.MemberTable.bind(memberStatement, member);
+                        memberStatement.executeInsert();
+                    }
+                }
+
+                QiscusComment comment = qiscusChatRoom.getLastComment();
+                if (comment != null && comment.getId() > 0) {
+                    QiscusDb.CommentTable.bind(commentStatement, comment);
+                    commentStatement.executeInsert();
+                    lastCommentUniqueIds.add(comment.getUniqueId());
+                }
+
+                lastCommentStatement.bindLong(1, qiscusChatRoom.getId());
+                lastCommentStatement.executeUpdateDelete();
+            }
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            closeStatements(roomStatement, roomMemberStatement, memberStatement, commentStatement, lastCommentStatement);
+            sqLiteWriteDatabase.endTransaction();
+        }
+
+        for (String uniqueId : lastCommentUniqueIds) {
+            commentCache.remove(uniqueId);
+        }
+    }
+
     @Override
     public QiscusChatRoom getChatRoom(long id) {
-        String query = "SELECT * FROM "
+        String query = "SELECT " + QiscusDb.RoomTable.COLUMNS + " FROM "
                 + QiscusDb.RoomTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomTable.COLUMN_ID + " =? ";
 
@@ -166,7 +262,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusChatRoom getChatRoom(String email, String distinctId) {
-        String query = "SELECT * FROM "
+        String query = "SELECT " + QiscusDb.RoomMemberTable.COLUMNS + " FROM "
                 + QiscusDb.RoomMemberTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomMemberTable.COLUMN_DISTINCT_ID + " =? "
                 + " AND " + QiscusDb.RoomMemberTable.COLUMN_USER_EMAIL
@@ -192,7 +288,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusChatRoom getChatRoomWithUniqueId(String uniqueId) {
-        String query = "SELECT * FROM "
+        String query = "SELECT " + QiscusDb.RoomTable.COLUMNS + " FROM "
                 + QiscusDb.RoomTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomTable.COLUMN_UNIQUE_ID + " =? ";
 
@@ -220,39 +316,26 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusChatRoom> getChatRooms(int limit, int offset) {
-        String roomTableName = QiscusDb.RoomTable.TABLE_NAME;
-        String commentTableName = QiscusDb.CommentTable.TABLE_NAME;
-
-        String limitStr = String.valueOf(limit);
-        String offsetStr = String.valueOf(offset);
+        return getChatRooms(limit, offset, true);
+    }
 
-        String query = "SELECT " + roomTableName + ".*" + " FROM "
+    @Override
+    public List<QiscusChatRoom> getChatRooms(int limit, int offset, boolean withMembers) {
+        String query = "SELECT " + QiscusDb.RoomTable.COLUMNS + " FROM "
                 + QiscusDb.RoomTable.TABLE_NAME
-                + " LEFT JOIN " + commentTableName
-                + " ON " + roomTableName + "." + QiscusDb.RoomTable.COLUMN_ID
-                + " = " + commentTableName + "." + QiscusDb.CommentTable.COLUMN_ROOM_ID
-                + " AND " + commentTableName + "." + QiscusDb.CommentTable.COLUMN_DELETED + " != 1"
-                + " AND " + commentTableName + "." + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " != 1"
-                + " GROUP BY " + roomTableName + "." + QiscusDb.RoomTable.COLUMN_ID
-                + " ORDER BY " + commentTableName + "." + QiscusDb.CommentTable.COLUMN_TIME
-                + " DESC "
+                + " ORDER BY " + QiscusDb.RoomTable.COLUMN_LAST_COMMENT_TIME + " DESC"
                 + " LIMIT " + "?"
                 + " OFFSET " + "?";
 
-        String[] args = new String[]{limitStr, offsetStr};
+        String[] args = new String[]{String.valueOf(limit), String.valueOf(offset)};
 
-        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusChatRoom> qiscusChatRooms = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            QiscusChatRoom qiscusChatRoom = QiscusDb.RoomTable.parseCursor(cursor);
-            qiscusChatRoom.setMember(getRoomMembers(qiscusChatRoom.getId()));
-            QiscusComment latestComment = getLatestComment(qiscusChatRoom.getId());
-            if (latestComment != null) {
-                qiscusChatRoom.setLastComment(latestComment);
-            }
-            qiscusChatRooms.add(qiscusChatRoom);
-        }
+        List<String> latestCommentIds = new ArrayList<>();
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
+        readRooms(cursor, qiscusChatRooms, latestCommentIds);
         cursor.close();
+
+        hydrateRooms(qiscusChatRooms, latestCommentIds, withMembers);
         return qiscusChatRooms;
     }
 
@@ -263,50 +346,69 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public Observable<List<QiscusChatRoom>> getObservableChatRooms(int limit, int offset) {
+        return getObservableChatRooms(limit, offset, true);
+    }
+
+    @Override
+    public Observable<List<QiscusChatRoom>> getObservableChatRooms(int limit, int offset, boolean withMembers) {
         return Observable.create(subscriber -> {
-            subscriber.onNext(getChatRooms(limit, offset));
+            subscriber.onNext(getChatRooms(limit, offset, withMembers));
             subscriber.onCompleted();
         }, Emitter.BackpressureMode.BUFFER);
     }
 
-    //TODO change to a prepared statement
     @Override
     public List<QiscusChatRoom> getChatRooms(List<Long> roomIds, List<String> uniqueIds) {
+        return getChatRooms(roomIds, uniqueIds, true);
+    }
+
+    @Override
+    public List<QiscusChatRoom> getChatRooms(List<Long> roomIds, List<String> uniqueIds, boolean withMembers) {
         List<QiscusChatRoom> qiscusChatRooms = new ArrayList<>();
         if (roomIds.isEmpty() && uniqueIds.isEmpty()) {
             return qiscusChatRooms;
         }
 
-        StringBuilder query = new StringBuilder("SELECT * FROM ").append(QiscusDb.RoomTable.TABLE_NAME).append(" WHERE ");
-        for (int i = 0; i < roomIds.size(); i++) {
-            query.append(QiscusDb.RoomTable.COLUMN_ID).append(" = ").append(roomIds.get(i));
-            if (i < roomIds.size() - 1) {
+        List<String> args = new ArrayList<>(roomIds.size() + uniqueIds.size());
+        for (Long roomId : roomIds) {
+            args.add(String.valueOf(roomId));
+        }
+        args.addAll(uniqueIds);
+
+        List<String> latestCommentIds = new ArrayList<>();
+        Set<Long> loadedRoomIds = new HashSet<>();
+        int roomIdsCount = roomIds.size();
+        for (int i = 0; i < args.size(); i += MAX_SQL_VARIABLES) {
+            int end = Math.min(args.size(), i + MAX_SQL_VARIABLES);
+            int idsInChunk = Math.max(0, Math.min(end, roomIdsCount) - i);
+            int uniqueIdsInChunk = (end - i) - idsInChunk;
+
+            StringBuilder query = new StringBuilder("SELECT ").append(QiscusDb.RoomTable.COLUMNS).append(" FROM ")
+                    .append(QiscusDb.RoomTable.TABLE_NAME).append(" WHERE ");
+            if (idsInChunk > 0) {
+                query.append(QiscusDb.RoomTable.COLUMN_ID).append(" IN (").append(placeholders(idsInChunk)).append(")");
+            }
+            if (idsInChunk > 0 && uniqueIdsInChunk > 0) {
                 query.append(" OR ");
             }
-        }
+            if (uniqueIdsInChunk > 0) {
+                query.append(QiscusDb.RoomTable.COLUMN_UNIQUE_ID).append(" IN (").append(placeholders(uniqueIdsInChunk)).append(")");
+            }
 
-        if (!roomIds.isEmpty() && !uniqueIds.isEmpty()) {
-            query.append(" OR ");
-        }
+            List<QiscusChatRoom> chunkRooms = new ArrayList<>();
+            Cursor cursor = sqLiteReadDatabase.rawQuery(query.toString(),
+                    args.subList(i, end).toArray(new String[0]));
+            readRooms(cursor, chunkRooms, latestCommentIds);
+            cursor.close();
 
-        for (int i = 0; i < uniqueIds.size(); i++) {
-            query.append(QiscusDb.RoomTable.COLUMN_UNIQUE_ID).append(" = ").append(DatabaseUtils.sqlEscapeString(uniqueIds.get(i)));
-            if (i < uniqueIds.size() - 1) {
-                query.append(" OR ");
+            for (QiscusChatRoom qiscusChatRoom : chunkRooms) {
+                if (loadedRoomIds.add(qiscusChatRoom.getId())) {
+                    qiscusChatRooms.add(qiscusChatRoom);
+                }
             }
         }
 
-        Cursor cursor = sqLiteReadDatabase.rawQuery(query.toString(), null);
-        while (cursor.moveToNext()) {
-            QiscusChatRoom qiscusChatRoom = QiscusDb.RoomTable.parseCursor(cursor);
-            qiscusChatRoom.setMember(getRoomMembers(qiscusChatRoom.getId()));
-            QiscusComment latestComment = getLatestComment(qiscusChatRoom.getId());
-            if (latestComment != null) {
-                qiscusChatRoom.setLastComment(latestComment);
-            }
-            qiscusChatRooms.add(qiscusChatRoom);
-        }
-        cursor.close();
+        hydrateRooms(qiscusChatRooms, latestCommentIds, withMembers);
         sortRooms(qiscusChatRooms);
         return qiscusChatRooms;
     }
@@ -345,7 +447,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public boolean isContainsRoomMember(long roomId, String email) {
-        String query = "SELECT * FROM "
+        String query = "SELECT 1 FROM "
                 + QiscusDb.RoomMemberTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomMemberTable.COLUMN_ROOM_ID + " =? "
                 + " AND " + QiscusDb.RoomMemberTable.COLUMN_USER_EMAIL
@@ -396,9 +498,41 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         addOrUpdate(qiscusRoomMember);
     }
 
+    @Override
+    public void addOrUpdateRoomMembers(long roomId, List<QiscusRoomMember> qiscusRoomMembers, String distinctId) {
+        if (qiscusRoomMembers == null || qiscusRoomMembers.isEmpty()) {
+            return;
+        }
+
+        distinctId = distinctId == null ? "default" : distinctId;
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        SQLiteStatement roomMemberStatement = null;
+        SQLiteStatement memberStatement = null;
+        try {
+            roomMemberStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.RoomMemberTable.INSERT_OR_REPLACE);
+            memberStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.MemberTable.INSERT_OR_REPLACE);
+            for (QiscusRoomMember member : qiscusRoomMembers) {
+                QiscusDb.RoomMemberTable.bind(roomMemberStatement, roomId, distinctId, member);
+                roomMemberStatement.executeInsert();
+                QiscusDb.MemberTable.bind(memberStatement, member);
+                memberStatement.executeInsert();
+            }
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            closeStatements(roomMemberStatement, memberStatement);
+            sqLiteWriteDatabase.endTransaction();
+        }
+
+        for (QiscusRoomMember member : qiscusRoomMembers) {
+            commentCache.updateSender(member);
+        }
+    }
+
     @Override
     public List<QiscusRoomMember> getRoomMembers(long roomId) {
-        String query = "SELECT * FROM "
+        String query = "SELECT " + QiscusDb.RoomMemberTable.COLUMNS + " FROM "
                 + QiscusDb.RoomMemberTable.TABLE_NAME + " WHERE "
                 + QiscusDb.RoomMemberTable.COLUMN_ROOM_ID + " =? ";
 
@@ -467,7 +601,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public boolean isContains(QiscusRoomMember qiscusRoomMember) {
-        String query = "SELECT * FROM "
+        String query = "SELECT 1 FROM "
                 + QiscusDb.MemberTable.TABLE_NAME + " WHERE "
                 + QiscusDb.MemberTable.COLUMN_USER_EMAIL + " =? ";
 
@@ -495,6 +629,8 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        commentCache.updateSender(qiscusRoomMember);
     }
 
     @Override
@@ -509,11 +645,13 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        commentCache.updateSender(qiscusRoomMember);
     }
 
     @Override
     public QiscusRoomMember getMember(String email) {
-        String query = "SELECT * FROM "
+        String query = "SELECT " + QiscusDb.MemberTable.COLUMNS + " FROM "
                 + QiscusDb.MemberTable.TABLE_NAME + " WHERE "
                 + QiscusDb.MemberTable.COLUMN_USER_EMAIL + " =? ";
 
@@ -539,16 +677,23 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public void add(QiscusComment qiscusComment) {
+        boolean added = false;
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
-            sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.CommentTable.TABLE_NAME, null,
+            long rowId = sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.CommentTable.TABLE_NAME, null,
                     QiscusDb.CommentTable.toContentValues(qiscusComment), SQLiteDatabase.CONFLICT_ABORT);
+            updateRoomLastComment(qiscusComment.getRoomId());
             sqLiteWriteDatabase.setTransactionSuccessful();
+            added = rowId != -1;
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        if (added) {
+            commentCache.put(qiscusComment);
+        }
     }
 
     @Override
@@ -558,6 +703,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.FilesTable.TABLE_NAME, null,
                     QiscusDb.FilesTable.toContentValues(roomId, commentId, localPath), SQLiteDatabase.CONFLICT_ABORT);
             sqLiteWriteDatabase.setTransactionSuccessful();
+            localPathIndex.put(roomId, commentId, localPath);
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
@@ -567,13 +713,9 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
 
     public boolean isContains(QiscusComment qiscusComment) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_UNIQUE_ID + " =? ";
-
         String[] args = new String[]{qiscusComment.getUniqueId()};
 
-        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
+        Cursor cursor = sqLiteReadDatabase.rawQuery(commentExistsQuery(), args);
         boolean contains = cursor.getCount() > 0;
         cursor.close();
         return contains;
@@ -582,7 +724,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public boolean isContainsFileOfComment(long commentId) {
-        String query = "SELECT * FROM "
+        String query = "SELECT 1 FROM "
                 + QiscusDb.FilesTable.TABLE_NAME + " WHERE "
                 + QiscusDb.FilesTable.COLUMN_COMMENT_ID + " =? ";
 
@@ -596,20 +738,27 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public void update(QiscusComment qiscusComment) {
-        String where = QiscusDb.CommentTable.COLUMN_UNIQUE_ID + " =? ";
+        String where = commentByUniqueIdWhere();
 
         String[] args = new String[]{qiscusComment.getUniqueId()};
 
+        boolean updated = false;
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
-            sqLiteWriteDatabase.update(QiscusDb.CommentTable.TABLE_NAME,
+            int rows = sqLiteWriteDatabase.update(QiscusDb.CommentTable.TABLE_NAME,
                     QiscusDb.CommentTable.toContentValues(qiscusComment), where, args);
+            updateRoomLastComment(qiscusComment.getRoomId());
             sqLiteWriteDatabase.setTransactionSuccessful();
+            updated = rows > 0;
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        if (updated) {
+            commentCache.put(qiscusComment);
+        }
     }
 
 
@@ -624,6 +773,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             sqLiteWriteDatabase.update(QiscusDb.FilesTable.TABLE_NAME,
                     QiscusDb.FilesTable.toContentValues(roomId, commentId, localPath), where, args);
             sqLiteWriteDatabase.setTransactionSuccessful();
+            localPathIndex.put(roomId, commentId, localPath);
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
@@ -633,16 +783,67 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public void addOrUpdate(QiscusComment qiscusComment) {
+        boolean saved = false;
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
-            sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.CommentTable.TABLE_NAME, null,
+            long rowId = sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.CommentTable.TABLE_NAME, null,
                     QiscusDb.CommentTable.toContentValues(qiscusComment), SQLiteDatabase.CONFLICT_REPLACE);
+            updateRoomLastComment(qiscusComment.getRoomId());
             sqLiteWriteDatabase.setTransactionSuccessful();
+            saved = rowId != -1;
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        if (saved) {
+            commentCache.put(qiscusComment);
+        } else {
+            commentCache.remove(qiscusComment.getUniqueId());
+        }
+    }
+
+    @Override
+    public void addOrUpdateComments(List<QiscusComment> qiscusComments) {
+        if (qiscusComments == null || qiscusComments.isEmpty()) {
+            return;
+        }
+
+        boolean saved = false;
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        SQLiteStatement statement = null;
+        SQLiteStatement lastCommentStatement = null;
+        try {
+            statement = sqLiteWriteDatabase.compileStatement(QiscusDb.CommentTable.INSERT_OR_REPLACE);
+            Set<Long> roomIds = new HashSet<>();
+            for (QiscusComment qiscusComment : qiscusComments) {
+                QiscusDb.CommentTable.bind(statement, qiscusComment);
+                statement.executeInsert();
+                roomIds.add(qiscusComment.getRoomId());
+            }
+
+            lastCommentStatement = sqLiteWriteDatabase.compileStatement(QiscusDb.RoomTable.UPDATE_LAST_COMMENT);
+            for (Long roomId : roomIds) {
+                lastCommentStatement.bindLong(1, roomId);
+                lastCommentStatement.executeUpdateDelete();
+            }
+            sqLiteWriteDatabase.setTransactionSuccessful();
+            saved = true;
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            closeStatements(statement, lastCommentStatement);
+            sqLiteWriteDatabase.endTransaction();
+        }
+
+        for (QiscusComment qiscusComment : qiscusComments) {
+            if (saved) {
+                commentCache.put(qiscusComment);
+            } else {
+                commentCache.remove(qiscusComment.getUniqueId());
+            }
+        }
     }
 
     @Override
@@ -652,6 +853,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.FilesTable.TABLE_NAME, null,
                     QiscusDb.FilesTable.toContentValues(roomId, commentId, localPath), SQLiteDatabase.CONFLICT_REPLACE);
             sqLiteWriteDatabase.setTransactionSuccessful();
+            localPathIndex.put(roomId, commentId, localPath);
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
@@ -661,19 +863,22 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public void delete(QiscusComment qiscusComment) {
-        String where = QiscusDb.CommentTable.COLUMN_UNIQUE_ID + " =? ";
+        String where = commentByUniqueIdWhere();
         String[] args = new String[]{qiscusComment.getUniqueId()};
 
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.delete(QiscusDb.CommentTable.TABLE_NAME, where, args);
+            updateRoomLastComment(qiscusComment.getRoomId());
             sqLiteWriteDatabase.setTransactionSuccessful();
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+        commentCache.remove(qiscusComment.getUniqueId());
         deleteLocalPath(qiscusComment.getId());
+        deleteUpload(qiscusComment.getUniqueId());
     }
 
     @Override
@@ -688,18 +893,20 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             deleteLocalPath(comment.getId());
         }
 
-        String where = QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? ";
+        String where = roomCommentsWhere(false);
         String[] args = new String[]{String.valueOf(roomId)};
 
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.delete(QiscusDb.CommentTable.TABLE_NAME, where, args);
+            updateRoomLastComment(roomId);
             sqLiteWriteDatabase.setTransactionSuccessful();
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+        commentCache.removeRoom(roomId);
 
         return true;
     }
@@ -716,71 +923,84 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             deleteLocalPath(comment.getId());
         }
 
-        String where = QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_TIME + " <=? ";
+        String where = roomCommentsWhere(true);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(timestampOffset)};
 
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.delete(QiscusDb.CommentTable.TABLE_NAME, where, args);
+            updateRoomLastComment(roomId);
             sqLiteWriteDatabase.setTransactionSuccessful();
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+        commentCache.removeRoom(roomId);
 
         return true;
     }
 
     @Override
     public void updateLastDeliveredComment(long roomId, long commentId) {
-        String sql = "UPDATE " + QiscusDb.CommentTable.TABLE_NAME
-                + " SET " + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_DELIVERED
-                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
-                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " <= " + "?"
-                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " != -1"
-                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " < " + QiscusComment.STATE_DELIVERED;
+        String sql = updateCommentStatesQuery(QiscusComment.STATE_DELIVERED);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(commentId)};
 
+        boolean updated = false;
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.execSQL(sql, args);
             sqLiteWriteDatabase.setTransactionSuccessful();
+            updated = true;
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        if (updated) {
+            commentCache.updateState(roomId, commentId, QiscusComment.STATE_DELIVERED);
+        }
     }
 
     @Override
     public void updateLastReadComment(long roomId, long commentId) {
-        String sql = "UPDATE " + QiscusDb.CommentTable.TABLE_NAME
-                + " SET " + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_READ
-                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
-                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " <= " + "?"
-                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " != -1"
-                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " < " + QiscusComment.STATE_READ;
+        String sql = updateCommentStatesQuery(QiscusComment.STATE_READ);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(commentId)};
 
+        boolean updated = false;
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
             sqLiteWriteDatabase.execSQL(sql, args);
             sqLiteWriteDatabase.setTransactionSuccessful();
+            updated = true;
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteWriteDatabase.endTransaction();
         }
+
+        if (updated) {
+            commentCache.updateState(roomId, commentId, QiscusComment.STATE_READ);
+        }
     }
 
     @Override
     public File getLocalPath(long commentId) {
-        String query = "SELECT * FROM "
+        String localPath = localPathIndex.get(commentId);
+        if (localPath != null) {
+            File file = new File(localPath);
+            if (file.exists()) {
+                return file;
+            }
+            //The file has been deleted outside of the sdk, stop binding it as downloaded
+            localPathIndex.remove(commentId);
+        }
+
+        String query = "SELECT " + QiscusDb.FilesTable.COLUMN_LOCAL_PATH + " FROM "
                 + QiscusDb.FilesTable.TABLE_NAME + " WHERE "
                 + QiscusDb.FilesTable.COLUMN_COMMENT_ID + " =? ";
 
@@ -800,12 +1020,61 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }
     }
 
+    @Override
+    public File getLocalPath(long roomId, long commentId) {
+        if (!localPathIndex.isOpen(roomId)) {
+            return getLocalPath(commentId);
+        }
+        String localPath = localPathIndex.get(roomId, commentId);
+        return localPath == null ? null : new File(localPath);
+    }
+
+    @Override
+    public void openLocalPaths(long roomId) {
+        if (!localPathIndex.open(roomId)) {
+            return;
+        }
+
+        String query = "SELECT " + QiscusDb.FilesTable.COLUMN_COMMENT_ID + ", "
+                + QiscusDb.FilesTable.COLUMN_LOCAL_PATH + " FROM "
+                + QiscusDb.FilesTable.TABLE_NAME + " WHERE "
+                + QiscusDb.FilesTable.COLUMN_ROOM_ID + " =? ";
+
+        String[] args = new String[]{String.valueOf(roomId)};
+
+        Map<Long, String> localPaths = new HashMap<>();
+        Cursor cursor = null;
+        try {
+            cursor = sqLiteReadDatabase.rawQuery(query, args);
+            while (cursor.moveToNext()) {
+                String localPath = QiscusDb.FilesTable.parseCursor(cursor);
+                if (new File(localPath).exists()) {
+                    localPaths.put(cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.FilesTable.COLUMN_COMMENT_ID)),
+                            localPath);
+                }
+            }
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+            localPathIndex.onLoaded(roomId, localPaths);
+        }
+    }
+
+    @Override
+    public void closeLocalPaths(long roomId) {
+        localPathIndex.close(roomId);
+    }
+
     @Override
     public void deleteLocalPath(long commentId) {
         File file = getLocalPath(commentId);
         if (file != null) {
             file.delete();
         }
+        localPathIndex.remove(commentId);
 
         sqLiteWriteDatabase.beginTransactionNonExclusive();
         try {
@@ -821,22 +1090,143 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }
     }
 
+    @Override
+    public void addOrUpdateUpload(QiscusFileUpload qiscusFileUpload) {
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.UploadTable.TABLE_NAME, null,
+                    QiscusDb.UploadTable.toContentValues(qiscusFileUpload), SQLiteDatabase.CONFLICT_REPLACE);
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            sqLiteWriteDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public QiscusFileUpload getUpload(String commentUniqueId) {
+        String query = "SELECT " + QiscusDb.UploadTable.COLUMNS + " FROM "
+                + QiscusDb.UploadTable.TABLE_NAME + " WHERE "
+                + QiscusDb.UploadTable.COLUMN_COMMENT_UNIQUE_ID + " =? ";
+
+        String[] args = new String[]{commentUniqueId};
+
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
+        QiscusFileUpload qiscusFileUpload = null;
+        if (cursor.moveToNext()) {
+            qiscusFileUpload = QiscusDb.UploadTable.parseCursor(cursor);
+        }
+        cursor.close();
+        return qiscusFileUpload;
+    }
+
+    @Override
+    public List<QiscusFileUpload> getUploads() {
+        String query = "SELECT " + QiscusDb.UploadTable.COLUMNS + " FROM " + QiscusDb.UploadTable.TABLE_NAME;
+
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, null);
+        List<QiscusFileUpload> qiscusFileUploads = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            qiscusFileUploads.add(QiscusDb.UploadTable.parseCursor(cursor));
+        }
+        cursor.close();
+        return qiscusFileUploads;
+    }
+
+    @Override
+    public void deleteUpload(String commentUniqueId) {
+        String where = QiscusDb.UploadTable.COLUMN_COMMENT_UNIQUE_ID + " =? ";
+        String[] args = new String[]{commentUniqueId};
+
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteWriteDatabase.delete(QiscusDb.UploadTable.TABLE_NAME, where, args);
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            sqLiteWriteDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public void addOrUpdateLinkPreview(String url, PreviewData previewData) {
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteWriteDatabase.insertWithOnConflict(QiscusDb.LinkPreviewTable.TABLE_NAME, null,
+                    QiscusDb.LinkPreviewTable.toContentValues(url, gson.toJson(previewData),
+                            System.currentTimeMillis()), SQLiteDatabase.CONFLICT_REPLACE);
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            sqLiteWriteDatabase.endTransaction();
+        }
+    }
+
+    @Override
+    public Pair<PreviewData, Long> getLinkPreview(String url, long maxAge) {
+        String query = "SELECT " + QiscusDb.LinkPreviewTable.COLUMN_DATA + ", "
+                + QiscusDb.LinkPreviewTable.COLUMN_TIME + " FROM "
+                + QiscusDb.LinkPreviewTable.TABLE_NAME + " WHERE "
+                + QiscusDb.LinkPreviewTable.COLUMN_URL + " =? AND "
+                + QiscusDb.LinkPreviewTable.COLUMN_TIME + " >=? ";
+
+        String[] args = new String[]{url, String.valueOf(System.currentTimeMillis() - maxAge)};
+
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
+        Pair<PreviewData, Long> linkPreview = null;
+        if (cursor.moveToNext()) {
+            try {
+                linkPreview = Pair.create(gson.fromJson(QiscusDb.LinkPreviewTable.parseCursor(cursor), PreviewData.class),
+                        QiscusDb.LinkPreviewTable.parseTime(cursor));
+            } catch (Exception e) {
+                QiscusErrorLogger.print(e);
+            }
+        }
+        cursor.close();
+        return linkPreview;
+    }
+
+    @Override
+    public void deleteLinkPreviews(long maxAge) {
+        String where = QiscusDb.LinkPreviewTable.COLUMN_TIME + " <? ";
+        String[] args = new String[]{String.valueOf(System.currentTimeMillis() - maxAge)};
+
+        sqLiteWriteDatabase.beginTransactionNonExclusive();
+        try {
+            sqLiteWriteDatabase.delete(QiscusDb.LinkPreviewTable.TABLE_NAME, where, args);
+            sqLiteWriteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            QiscusErrorLogger.print(e);
+        } finally {
+            sqLiteWriteDatabase.endTransaction();
+        }
+    }
+
     @Override
     public QiscusComment getComment(String uniqueId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_UNIQUE_ID + " =? ";
+        QiscusComment cachedComment = commentCache.get(uniqueId);
+        if (cachedComment != null) {
+            //Cached with the resolved sender, which follows member updates
+            if (cachedComment.getSender() == null) {
+                setSender(cachedComment);
+            }
+            return cachedComment;
+        }
+
+        String query = commentByUniqueIdQuery();
 
         String[] args = new String[]{uniqueId};
 
+        //Taken before the read, so a row read before a write is committed is not cached over that write
+        long cacheGeneration = commentCache.generation();
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         if (cursor.moveToNext()) {
             QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
-            QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
-            if (qiscusRoomMember != null) {
-                qiscusComment.setSender(qiscusRoomMember.getUsername());
-                qiscusComment.setSenderAvatar(qiscusRoomMember.getAvatar());
-            }
+            setSender(qiscusComment);
+            commentCache.putIfUnchanged(qiscusComment, cacheGeneration);
             cursor.close();
             return qiscusComment;
         } else {
@@ -847,9 +1237,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     //done
     private QiscusComment getComment(long id) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ID + " =? ";
+        String query = commentByIdQuery();
 
         String[] args = new String[]{String.valueOf(id)};
 
@@ -871,9 +1259,7 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusComment getCommentByBeforeId(long beforeId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_COMMENT_BEFORE_ID + " =? ";
+        String query = commentByBeforeIdQuery();
 
         String[] args = new String[]{String.valueOf(beforeId)};
 
@@ -895,18 +1281,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> getComments(long roomId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC";
+        String query = roomCommentsQuery(false, false);
 
         String[] args = new String[]{String.valueOf(roomId)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -920,19 +1303,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> getComments(long roomId, int limit) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
-                + " LIMIT " + "?";
+        String query = roomCommentsQuery(false, true);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(limit)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -946,19 +1325,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> getComments(long roomId, long timestampOffset) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_TIME + " <= " + "?" + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC";
+        String query = roomCommentsQuery(true, false);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(timestampOffset)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -988,21 +1363,16 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> getOlderCommentsThan(QiscusComment qiscusComment, long roomId, int limit) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_TIME + " <= " + "?" + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
-                + " LIMIT " + "?";
+        String query = roomCommentsQuery(true, true);
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(qiscusComment.getTime().getTime()),
         String.valueOf(limit)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment comment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment comment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(comment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 comment.setSender(qiscusRoomMember.getUsername());
@@ -1022,6 +1392,52 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }, Emitter.BackpressureMode.BUFFER);
     }
 
+    @Override
+    public List<QiscusComment> getOlderComments(long roomId, QiscusComment anchor, int limit) {
+        return getCommentsPage(roomId, anchor, true, limit);
+    }
+
+    @Override
+    public Observable<List<QiscusComment>> getObservableOlderComments(long roomId, QiscusComment anchor, int limit) {
+        return Observable.create(subscriber -> {
+            subscriber.onNext(getOlderComments(roomId, anchor, limit));
+            subscriber.onCompleted();
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    @Override
+    public List<QiscusComment> getNewerComments(long roomId, QiscusComment anchor, int limit) {
+        List<QiscusComment> qiscusComments = getCommentsPage(roomId, anchor, false, limit);
+        Collections.reverse(qiscusComments);
+        return qiscusComments;
+    }
+
+    @Override
+    public Observable<List<QiscusComment>> getObservableNewerComments(long roomId, QiscusComment anchor, int limit) {
+        return Observable.create(subscriber -> {
+            subscriber.onNext(getNewerComments(roomId, anchor, limit));
+            subscriber.onCompleted();
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    private List<QiscusComment> getCommentsPage(long roomId, QiscusComment anchor, boolean older, int limit) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(roomId));
+        if (anchor != null) {
+            String anchorTime = String.valueOf(anchor.getTime().getTime());
+            args.add(anchorTime);
+            args.add(anchorTime);
+            args.add(String.valueOf(anchor.getId()));
+        }
+        args.add(String.valueOf(limit));
+
+        String query = commentsPageQuery(older, anchor != null);
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, args.toArray(new String[0]));
+        List<QiscusComment> qiscusComments = readCommentsWithSender(cursor);
+        cursor.close();
+        return qiscusComments;
+    }
+
     @Override
     public List<QiscusComment> getCommentsAfter(QiscusComment qiscusComment, long roomId) {
         QiscusComment savedComment = getComment(qiscusComment.getId());
@@ -1029,20 +1445,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             return new ArrayList<>();
         }
 
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND ("
-                + QiscusDb.CommentTable.COLUMN_TIME + " >= " + "?" + " OR "
-                + QiscusDb.CommentTable.COLUMN_ID + " = -1) " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC";
+        String query = commentsAfterQuery();
 
         String[] args = new String[]{String.valueOf(roomId), String.valueOf(savedComment.getTime().getTime())};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment comment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment comment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(comment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 comment.setSender(qiscusRoomMember.getUsername());
@@ -1064,17 +1475,13 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusComment getLatestComment() {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ID + " != -1 " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC "
-                + " LIMIT " + 1;
+        String query = latestCommentQuery();
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, null);
         QiscusComment qiscusComment = null;
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -1087,19 +1494,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusComment getLatestComment(long roomId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME
-                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
-                + " LIMIT " + 1;
+        String query = roomLatestCommentQuery();
 
         String[] args = new String[]{String.valueOf(roomId)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         QiscusComment qiscusComment = null;
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -1112,20 +1515,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusComment getLatestDeliveredComment(long roomId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ID + " != -1 "
-                + " AND " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
-                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_DELIVERED
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
-                + " LIMIT " + 1;
+        String query = roomLatestCommentQuery(QiscusComment.STATE_DELIVERED);
 
         String[] args = new String[]{String.valueOf(roomId)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         QiscusComment qiscusComment = null;
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -1138,20 +1536,15 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public QiscusComment getLatestReadComment(long roomId) {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ID + " != -1 "
-                + " AND " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
-                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_READ
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
-                + " LIMIT " + 1;
+        String query = roomLatestCommentQuery(QiscusComment.STATE_READ);
 
         String[] args = new String[]{String.valueOf(roomId)};
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
         QiscusComment qiscusComment = null;
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -1164,15 +1557,13 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> getPendingComments() {
-        String query = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_PENDING
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " ASC";
+        String query = pendingCommentsQuery();
 
         Cursor cursor = sqLiteReadDatabase.rawQuery(query, null);
         List<QiscusComment> qiscusComments = new ArrayList<>();
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
         while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
+            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
             QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
             if (qiscusRoomMember != null) {
                 qiscusComment.setSender(qiscusRoomMember.getUsername());
@@ -1194,57 +1585,123 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
 
     @Override
     public List<QiscusComment> searchComments(String query, long roomId, int limit, int offset) {
-        String sql = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_MESSAGE + " LIKE ? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC "
-                + " LIMIT " + "?" + " OFFSET " + "?";
+        return searchComments(query, roomId, null, limit, offset);
+    }
 
-        String queryLike = "%" + query + "%";
-        String[] args = new String[]{String.valueOf(roomId), queryLike, String.valueOf(limit), String.valueOf(offset)};
+    @Override
+    public List<QiscusComment> searchComments(String query, int limit, int offset) {
+        return searchComments(query, null, null, limit, offset);
+    }
 
-        Cursor cursor = sqLiteReadDatabase.rawQuery(sql, args);
-        List<QiscusComment> qiscusComments = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
-            QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
-            if (qiscusRoomMember != null) {
-                qiscusComment.setSender(qiscusRoomMember.getUsername());
-                qiscusComment.setSenderAvatar(qiscusRoomMember.getAvatar());
+    @Override
+    public List<QiscusComment> searchComments(String query, long roomId, QiscusComment lastComment, int limit) {
+        return searchComments(query, roomId, lastComment, limit, null);
+    }
+
+    @Override
+    public List<QiscusComment> searchComments(String query, QiscusComment lastComment, int limit) {
+        return searchComments(query, null, lastComment, limit, null);
+    }
+
+    /**
+     * Search comments newest first, through the full text index once it has been fully built,
+     * or through LIKE while old comments are still being indexed.
+     *
+     * @param roomId      null to search in every room
+     * @param lastComment last comment of the previous page, null to load the first page
+     * @param offset      null when paging with the last comment
+     */
+    private List<QiscusComment> searchComments(String query, Long roomId, QiscusComment lastComment,
+                                               int limit, Integer offset) {
+        boolean fullText = searchIndexReady;
+        List<String> args = new ArrayList<>();
+        if (fullText) {
+            String matchQuery = QiscusDb.CommentSearchTable.toMatchQuery(query);
+            if (matchQuery == null) {
+                return new ArrayList<>();
             }
-            qiscusComments.add(qiscusComment);
+            args.add(matchQuery);
+        } else {
+            args.add("%" + query + "%");
         }
+        if (roomId != null) {
+            args.add(String.valueOf(roomId));
+        }
+        if (lastComment != null) {
+            String lastTime = String.valueOf(lastComment.getTime().getTime());
+            args.add(lastTime);
+            args.add(lastTime);
+            args.add(String.valueOf(lastComment.getId()));
+        }
+        args.add(String.valueOf(limit));
+        if (offset != null) {
+            args.add(String.valueOf(offset));
+        }
+
+        String sql = searchCommentsQuery(fullText, roomId != null, lastComment != null, offset != null);
+        Cursor cursor = sqLiteReadDatabase.rawQuery(sql, args.toArray(new String[0]));
+        List<QiscusComment> qiscusComments = readCommentsWithSender(cursor);
         cursor.close();
         return qiscusComments;
     }
 
-    @Override
-    public List<QiscusComment> searchComments(String query, int limit, int offset) {
-        String sql = "SELECT * FROM "
-                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
-                + QiscusDb.CommentTable.COLUMN_MESSAGE + " LIKE ? " + " AND "
-                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
-                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC "
-                + " LIMIT " + "?" + " OFFSET " + "?";
+    private long[] getSearchBackfillRange() {
+        String query = "SELECT " + QiscusDb.CommentSearchBackfillTable.COLUMN_NEXT_ROW_ID + ", "
+                + QiscusDb.CommentSearchBackfillTable.COLUMN_LAST_ROW_ID + " FROM "
+                + QiscusDb.CommentSearchBackfillTable.TABLE_NAME + " LIMIT 1";
 
-        String queryLike = "%" + query + "%";
-        String[] args = new String[]{queryLike, String.valueOf(limit), String.valueOf(offset)};
+        Cursor cursor = sqLiteReadDatabase.rawQuery(query, null);
+        try {
+            if (cursor.moveToNext()) {
+                return new long[]{
+                        cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentSearchBackfillTable.COLUMN_NEXT_ROW_ID)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(QiscusDb.CommentSearchBackfillTable.COLUMN_LAST_ROW_ID))
+                };
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
 
-        Cursor cursor = sqLiteReadDatabase.rawQuery(sql, args);
-        List<QiscusComment> qiscusComments = new ArrayList<>();
-        while (cursor.moveToNext()) {
-            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor);
-            QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
-            if (qiscusRoomMember != null) {
-                qiscusComment.setSender(qiscusRoomMember.getUsername());
-                qiscusComment.setSenderAvatar(qiscusRoomMember.getAvatar());
+    /**
+     * Index comments stored before the search index existed, a small batch per transaction
+     * so writes from the app are not blocked for long.
+     */
+    private void backfillSearchIndex() {
+        String indexSql = "INSERT INTO " + QiscusDb.CommentSearchTable.TABLE_NAME
+                + " (" + QiscusDb.CommentSearchTable.COLUMN_DOC_ID + ", " + QiscusDb.CommentSearchTable.COLUMN_MESSAGE + ")"
+                + " SELECT rowid, " + QiscusDb.CommentTable.COLUMN_MESSAGE
+                + " FROM " + QiscusDb.CommentTable.TABLE_NAME
+                + " WHERE rowid BETWEEN ? AND ?"
+                + " AND rowid NOT IN (SELECT " + QiscusDb.CommentSearchTable.COLUMN_DOC_ID
+                + " FROM " + QiscusDb.CommentSearchTable.TABLE_NAME
+                + " WHERE " + QiscusDb.CommentSearchTable.COLUMN_DOC_ID + " BETWEEN ? AND ?)";
+        String progressSql = "UPDATE " + QiscusDb.CommentSearchBackfillTable.TABLE_NAME
+                + " SET " + QiscusDb.CommentSearchBackfillTable.COLUMN_NEXT_ROW_ID + " = ?";
+
+        long[] range;
+        while ((range = getSearchBackfillRange()) != null) {
+            long from = range[0];
+            long to = Math.min(range[1], from + SEARCH_BACKFILL_BATCH - 1);
+
+            sqLiteWriteDatabase.beginTransactionNonExclusive();
+            try {
+                if (from > range[1]) {
+                    sqLiteWriteDatabase.delete(QiscusDb.CommentSearchBackfillTable.TABLE_NAME, null, null);
+                } else {
+                    sqLiteWriteDatabase.execSQL(indexSql, new Object[]{from, to, from, to});
+                    sqLiteWriteDatabase.execSQL(progressSql, new Object[]{to + 1});
+                }
+                sqLiteWriteDatabase.setTransactionSuccessful();
+            } catch (Exception e) {
+                QiscusErrorLogger.print(e);
+                return;
+            } finally {
+                sqLiteWriteDatabase.endTransaction();
             }
-            qiscusComments.add(qiscusComment);
         }
-        cursor.close();
-        return qiscusComments;
+        searchIndexReady = true;
     }
 
     @Override
@@ -1256,12 +1713,371 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
             sqLiteReadDatabase.delete(QiscusDb.RoomMemberTable.TABLE_NAME, null, null);
             sqLiteReadDatabase.delete(QiscusDb.FilesTable.TABLE_NAME, null, null);
             sqLiteReadDatabase.delete(QiscusDb.CommentTable.TABLE_NAME, null, null);
+            sqLiteReadDatabase.delete(QiscusDb.UploadTable.TABLE_NAME, null, null);
+            sqLiteReadDatabase.delete(QiscusDb.LinkPreviewTable.TABLE_NAME, null, null);
             sqLiteReadDatabase.setTransactionSuccessful();
+            localPathIndex.clear();
         } catch (Exception e) {
             QiscusErrorLogger.print(e);
         } finally {
             sqLiteReadDatabase.endTransaction();
         }
+        commentCache.clear();
+    }
+
+    public long getCommentCacheHitCount() {
+        return commentCache.getHitCount();
+    }
+
+    public long getCommentCacheMissCount() {
+        return commentCache.getMissCount();
+    }
+
+    private void setSender(QiscusComment qiscusComment) {
+        QiscusRoomMember qiscusRoomMember = getMember(qiscusComment.getSenderEmail());
+        if (qiscusRoomMember != null) {
+            qiscusComment.setSender(qiscusRoomMember.getUsername());
+            qiscusComment.setSenderAvatar(qiscusRoomMember.getAvatar());
+        }
+    }
+
+    private void updateRoomLastComment(long roomId) {
+        sqLiteWriteDatabase.execSQL(QiscusDb.RoomTable.UPDATE_LAST_COMMENT, new Object[]{roomId});
+    }
+
+    private void readRooms(Cursor cursor, List<QiscusChatRoom> qiscusChatRooms, List<String> latestCommentIds) {
+        int latestCommentIndex = cursor.getColumnIndexOrThrow(QiscusDb.RoomTable.COLUMN_LAST_COMMENT_UNIQUE_ID);
+        QiscusDb.RoomTable.Columns roomColumns = new QiscusDb.RoomTable.Columns(cursor);
+        while (cursor.moveToNext()) {
+            qiscusChatRooms.add(QiscusDb.RoomTable.parseCursor(cursor, roomColumns));
+            if (!cursor.isNull(latestCommentIndex)) {
+                latestCommentIds.add(cursor.getString(latestCommentIndex));
+            }
+        }
+    }
+
+    /**
+     * Attach last comments and, when requested, members to the given rooms using set based queries
+     * instead of querying them room by room.
+     */
+    private void hydrateRooms(List<QiscusChatRoom> qiscusChatRooms, List<String> latestCommentIds,
+                              boolean withMembers) {
+        if (qiscusChatRooms.isEmpty()) {
+            return;
+        }
+
+        Map<Long, QiscusComment> latestComments = new HashMap<>();
+        for (QiscusComment qiscusComment : getCommentsWithSender(latestCommentIds)) {
+            latestComments.put(qiscusComment.getRoomId(), qiscusComment);
+        }
+
+        Map<Long, List<QiscusRoomMember>> roomMembers = null;
+        if (withMembers) {
+            List<Long> roomIds = new ArrayList<>(qiscusChatRooms.size());
+            for (QiscusChatRoom qiscusChatRoom : qiscusChatRooms) {
+                roomIds.add(qiscusChatRoom.getId());
+            }
+            roomMembers = getRoomMembers(roomIds);
+        }
+
+        for (QiscusChatRoom qiscusChatRoom : qiscusChatRooms) {
+            QiscusComment latestComment = latestComments.get(qiscusChatRoom.getId());
+            if (latestComment != null) {
+                qiscusChatRoom.setLastComment(latestComment);
+            }
+            if (roomMembers != null) {
+                List<QiscusRoomMember> members = roomMembers.get(qiscusChatRoom.getId());
+                qiscusChatRoom.setMember(members == null ? new ArrayList<>() : members);
+            }
+        }
+    }
+
+    private List<QiscusComment> getCommentsWithSender(List<String> uniqueIds) {
+        List<QiscusComment> qiscusComments = new ArrayList<>(uniqueIds.size());
+
+        for (int i = 0; i < uniqueIds.size(); i += MAX_SQL_VARIABLES) {
+            List<String> chunk = uniqueIds.subList(i, Math.min(uniqueIds.size(), i + MAX_SQL_VARIABLES));
+            String query = commentsByUniqueIdsQuery(chunk.size());
+
+            Cursor cursor = sqLiteReadDatabase.rawQuery(query, chunk.toArray(new String[0]));
+            qiscusComments.addAll(readCommentsWithSender(cursor));
+            cursor.close();
+        }
+        return qiscusComments;
+    }
+
+    /*
+     * Statements of the comments queries, package private so QiscusDbQueryPlanTest checks the query plans
+     * of the same SQL these queries run.
+     */
+
+    static String selectComments() {
+        return "SELECT " + QiscusDb.CommentTable.COLUMNS + " FROM " + QiscusDb.CommentTable.TABLE_NAME;
+    }
+
+    /**
+     * Select comments together with the latest name and avatar of their sender, read the result
+     * with {@link #readCommentsWithSender(Cursor)}
+     */
+    static String selectCommentsWithSender() {
+        String commentTableName = QiscusDb.CommentTable.TABLE_NAME;
+        String memberTableName = QiscusDb.MemberTable.TABLE_NAME;
+        return "SELECT " + QiscusDb.CommentTable.COLUMNS + ", "
+                + memberTableName + "." + QiscusDb.MemberTable.COLUMN_USER_NAME + " AS " + SENDER_NAME + ", "
+                + memberTableName + "." + QiscusDb.MemberTable.COLUMN_USER_AVATAR + " AS " + SENDER_AVATAR
+                + " FROM " + commentTableName
+                + " LEFT JOIN " + memberTableName
+                + " ON " + memberTableName + "." + QiscusDb.MemberTable.COLUMN_USER_EMAIL
+                + " = " + commentTableName + "." + QiscusDb.CommentTable.COLUMN_SENDER_EMAIL;
+    }
+
+    static String commentExistsQuery() {
+        return "SELECT 1 FROM " + QiscusDb.CommentTable.TABLE_NAME + " WHERE " + commentByUniqueIdWhere();
+    }
+
+    static String commentByUniqueIdWhere() {
+        return QiscusDb.CommentTable.COLUMN_UNIQUE_ID + " =? ";
+    }
+
+    static String commentByUniqueIdQuery() {
+        return selectComments() + " WHERE " + commentByUniqueIdWhere();
+    }
+
+    static String commentByIdQuery() {
+        return selectComments() + " WHERE " + QiscusDb.CommentTable.COLUMN_ID + " =? ";
+    }
+
+    static String commentByBeforeIdQuery() {
+        return selectComments() + " WHERE " + QiscusDb.CommentTable.COLUMN_COMMENT_BEFORE_ID + " =? ";
+    }
+
+    static String commentsByUniqueIdsQuery(int count) {
+        return selectCommentsWithSender()
+                + " WHERE " + QiscusDb.CommentTable.TABLE_NAME + "." + QiscusDb.CommentTable.COLUMN_UNIQUE_ID
+                + " IN (" + placeholders(count) + ")";
+    }
+
+    /**
+     * @param untilTime comments up to a time, bound after the room id
+     * @param limited   a limit bound last
+     */
+    static String roomCommentsQuery(boolean untilTime, boolean limited) {
+        return selectComments() + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
+                + (untilTime ? QiscusDb.CommentTable.COLUMN_TIME + " <= " + "?" + " AND " : "")
+                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
+                + (limited ? " LIMIT " + "?" : "");
+    }
+
+    /**
+     * @param untilTime comments up to a time, bound after the room id
+     */
+    static String roomCommentsWhere(boolean untilTime) {
+        return QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
+                + (untilTime ? " AND " + QiscusDb.CommentTable.COLUMN_TIME + " <=? " : "");
+    }
+
+    /**
+     * A page of the comments of a room sorted by time then id, newest first when older.
+     *
+     * @param anchored after the room id, the time twice then the id of the comment the page continues from
+     */
+    static String commentsPageQuery(boolean older, boolean anchored) {
+        String commentTableName = QiscusDb.CommentTable.TABLE_NAME;
+        String time = commentTableName + "." + QiscusDb.CommentTable.COLUMN_TIME;
+        String id = commentTableName + "." + QiscusDb.CommentTable.COLUMN_ID;
+        String comparison = older ? " < " : " > ";
+        String order = older ? " DESC" : " ASC";
+
+        StringBuilder query = new StringBuilder(selectCommentsWithSender())
+                .append(" WHERE ").append(commentTableName).append(".")
+                .append(QiscusDb.CommentTable.COLUMN_ROOM_ID).append(" =? ")
+                .append(" AND ").append(commentTableName).append(".")
+                .append(QiscusDb.CommentTable.COLUMN_HARD_DELETED).append(" = ").append(0);
+        if (anchored) {
+            query.append(" AND (").append(time).append(comparison).append("?")
+                    .append(" OR (").append(time).append(" = ?")
+                    .append(" AND ").append(id).append(comparison).append("?))");
+        }
+        return query.append(" ORDER BY ").append(time).append(order).append(", ").append(id).append(order)
+                .append(" LIMIT ?")
+                .toString();
+    }
+
+    static String commentsAfterQuery() {
+        return selectComments() + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND ("
+                + QiscusDb.CommentTable.COLUMN_TIME + " >= " + "?" + " OR "
+                + QiscusDb.CommentTable.COLUMN_ID + " = -1) " + " AND "
+                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC";
+    }
+
+    static String latestCommentQuery() {
+        return selectComments() + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_ID + " != -1 " + " AND "
+                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC "
+                + " LIMIT " + 1;
+    }
+
+    static String roomLatestCommentQuery() {
+        return selectComments()
+                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? " + " AND "
+                + QiscusDb.CommentTable.COLUMN_HARD_DELETED + " = " + 0
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
+                + " LIMIT " + 1;
+    }
+
+    static String roomLatestCommentQuery(int state) {
+        return selectComments() + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_ID + " != -1 "
+                + " AND " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
+                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " = " + state
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC"
+                + " LIMIT " + 1;
+    }
+
+    static String pendingCommentsQuery() {
+        return selectComments() + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_STATE + " = " + QiscusComment.STATE_PENDING
+                + " ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " ASC";
+    }
+
+    /**
+     * Raise the state of the comments of a room up to an id, binds the room id then the comment id.
+     */
+    static String updateCommentStatesQuery(int state) {
+        return "UPDATE " + QiscusDb.CommentTable.TABLE_NAME
+                + " SET " + QiscusDb.CommentTable.COLUMN_STATE + " = " + state
+                + " WHERE " + QiscusDb.CommentTable.COLUMN_ROOM_ID + " =? "
+                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " <= " + "?"
+                + " AND " + QiscusDb.CommentTable.COLUMN_ID + " != -1"
+                + " AND " + QiscusDb.CommentTable.COLUMN_STATE + " < " + state;
+    }
+
+    /**
+     * Comments matching a search newest first, binds the match or LIKE pattern, the room id when in a room,
+     * the time twice then the id of the last comment when after it, then the limit and the offset if any.
+     *
+     * @param fullText through the full text index, or through LIKE while it is still being built
+     */
+    static String searchCommentsQuery(boolean fullText, boolean inRoom, boolean afterLastComment,
+                                      boolean withOffset) {
+        String commentTableName = QiscusDb.CommentTable.TABLE_NAME;
+
+        StringBuilder sql = new StringBuilder(selectCommentsWithSender()).append(" WHERE ");
+        if (fullText) {
+            sql.append(commentTableName).append(".rowid IN (SELECT ")
+                    .append(QiscusDb.CommentSearchTable.COLUMN_DOC_ID)
+                    .append(" FROM ").append(QiscusDb.CommentSearchTable.TABLE_NAME)
+                    .append(" WHERE ").append(QiscusDb.CommentSearchTable.TABLE_NAME).append(" MATCH ?)");
+        } else {
+            sql.append(commentTableName).append(".").append(QiscusDb.CommentTable.COLUMN_MESSAGE).append(" LIKE ?");
+        }
+
+        sql.append(" AND ").append(commentTableName).append(".")
+                .append(QiscusDb.CommentTable.COLUMN_HARD_DELETED).append(" = ").append(0);
+
+        if (inRoom) {
+            sql.append(" AND ").append(commentTableName).append(".")
+                    .append(QiscusDb.CommentTable.COLUMN_ROOM_ID).append(" = ?");
+        }
+
+        if (afterLastComment) {
+            sql.append(" AND (").append(commentTableName).append(".").append(QiscusDb.CommentTable.COLUMN_TIME)
+                    .append(" < ?").append(" OR (").append(commentTableName).append(".")
+                    .append(QiscusDb.CommentTable.COLUMN_TIME).append(" = ?").append(" AND ")
+                    .append(commentTableName).append(".").append(QiscusDb.CommentTable.COLUMN_ID).append(" < ?))");
+        }
+
+        sql.append(" ORDER BY ").append(commentTableName).append(".").append(QiscusDb.CommentTable.COLUMN_TIME)
+                .append(" DESC, ").append(commentTableName).append(".").append(QiscusDb.CommentTable.COLUMN_ID)
+                .append(" DESC")
+                .append(" LIMIT ?");
+        if (withOffset) {
+            sql.append(" OFFSET ?");
+        }
+        return sql.toString();
+    }
+
+    private List<QiscusComment> readCommentsWithSender(Cursor cursor) {
+        List<QiscusComment> qiscusComments = new ArrayList<>(cursor.getCount());
+        int senderNameIndex = cursor.getColumnIndexOrThrow(SENDER_NAME);
+        int senderAvatarIndex = cursor.getColumnIndexOrThrow(SENDER_AVATAR);
+        QiscusDb.CommentTable.Columns commentColumns = new QiscusDb.CommentTable.Columns(cursor);
+        while (cursor.moveToNext()) {
+            QiscusComment qiscusComment = QiscusDb.CommentTable.parseCursor(cursor, commentColumns);
+            if (!cursor.isNull(senderNameIndex)) {
+                qiscusComment.setSender(cursor.getString(senderNameIndex));
+                qiscusComment.setSenderAvatar(cursor.getString(senderAvatarIndex));
+            }
+            qiscusComments.add(qiscusComment);
+        }
+        return qiscusComments;
+    }
+
+    private Map<Long, List<QiscusRoomMember>> getRoomMembers(List<Long> roomIds) {
+        Map<Long, List<QiscusRoomMember>> roomMembers = new HashMap<>();
+        String roomMemberTableName = QiscusDb.RoomMemberTable.TABLE_NAME;
+        String memberTableName = QiscusDb.MemberTable.TABLE_NAME;
+
+        for (int i = 0; i < roomIds.size(); i += MAX_SQL_VARIABLES) {
+            List<Long> chunk = roomIds.subList(i, Math.min(roomIds.size(), i + MAX_SQL_VARIABLES));
+            String[] args = new String[chunk.size()];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = String.valueOf(chunk.get(j));
+            }
+
+            String query = "SELECT " + QiscusDb.MemberTable.COLUMNS + ", "
+                    + roomMemberTableName + "." + QiscusDb.RoomMemberTable.COLUMN_ROOM_ID + ", "
+                    + roomMemberTableName + "." + QiscusDb.RoomMemberTable.COLUMN_LAST_DELIVERED + ", "
+                    + roomMemberTableName + "." + QiscusDb.RoomMemberTable.COLUMN_LAST_READ
+                    + " FROM " + roomMemberTableName
+                    + " INNER JOIN " + memberTableName
+                    + " ON " + memberTableName + "." + QiscusDb.MemberTable.COLUMN_USER_EMAIL
+                    + " = " + roomMemberTableName + "." + QiscusDb.RoomMemberTable.COLUMN_USER_EMAIL
+                    + " WHERE " + roomMemberTableName + "." + QiscusDb.RoomMemberTable.COLUMN_ROOM_ID
+                    + " IN (" + placeholders(args.length) + ")";
+
+            Cursor cursor = sqLiteReadDatabase.rawQuery(query, args);
+            QiscusDb.MemberTable.Columns memberColumns = new QiscusDb.MemberTable.Columns(cursor);
+            while (cursor.moveToNext()) {
+                QiscusRoomMember member = QiscusDb.MemberTable.getMember(cursor, memberColumns);
+                member.setLastDeliveredCommentId(QiscusDb.RoomMemberTable.getLastDeliveredCommentId(cursor));
+                member.setLastReadCommentId(QiscusDb.RoomMemberTable.getLastReadCommentId(cursor));
+
+                long roomId = QiscusDb.RoomMemberTable.getRoomId(cursor);
+                List<QiscusRoomMember> members = roomMembers.get(roomId);
+                if (members == null) {
+                    members = new ArrayList<>();
+                    roomMembers.put(roomId, members);
+                }
+                members.add(member);
+            }
+            cursor.close();
+        }
+        return roomMembers;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                placeholders.append(", ");
+            }
+            placeholders.append("?");
+        }
+        return placeholders.toString();
+    }
+
+    private void closeStatements(SQLiteStatement... statements) {
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
     }
 
     private void sortRooms(List<QiscusChatRoom> qiscusChatRooms) {
@@ -18,9 +18,11 @@ package com.qiscus.sdk.chat.core.data.local;
 
 import android.content.ContentValues;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
 
 import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusFileUpload;
 import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
 
 import org.json.JSONException;
@@ -30,7 +32,29 @@ import java.util.Date;
 
 final class QiscusDb {
     static final String DATABASE_NAME = "qiscus.db";
-    static final int DATABASE_VERSION = 19;
+    static final int DATABASE_VERSION = 25;
+
+    /**
+     * Comma separated columns qualified with the table, so the same list works in joins.
+     */
+    static String columns(String table, String... columns) {
+        StringBuilder builder = new StringBuilder();
+        for (String column : columns) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(table).append('.').append(column);
+        }
+        return builder.toString();
+    }
+
+    static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
 
     abstract static class RoomTable {
         static final String TABLE_NAME = "rooms";
@@ -44,6 +68,9 @@ final class QiscusDb {
         static final String COLUMN_UNREAD_COUNT = "unread_count";
         static final String COLUMN_IS_CHANNEL = "is_channel";
         static final String COLUMN_MEMBER_COUNT = "member_count";
+        static final String COLUMN_LAST_COMMENT_ID = "last_comment_id";
+        static final String COLUMN_LAST_COMMENT_UNIQUE_ID = "last_comment_unique_id";
+        static final String COLUMN_LAST_COMMENT_TIME = "last_comment_time";
 
         static final String CREATE =
                 "CREATE TABLE " + TABLE_NAME + " (" +
@@ -56,9 +83,43 @@ final class QiscusDb {
                         COLUMN_AVATAR_URL + " TEXT," +
                         COLUMN_UNREAD_COUNT + " INTEGER DEFAULT 0," +
                         COLUMN_IS_CHANNEL + " INTEGER DEFAULT 0," +
-                        COLUMN_MEMBER_COUNT + " INTEGER DEFAULT 0" +
+                        COLUMN_MEMBER_COUNT + " INTEGER DEFAULT 0," +
+                        COLUMN_LAST_COMMENT_ID + " LONG DEFAULT 0," +
+                        COLUMN_LAST_COMMENT_UNIQUE_ID + " TEXT," +
+                        COLUMN_LAST_COMMENT_TIME + " LONG" +
                         " ); ";
 
+        /**
+         * Columns read by {@link Columns} plus the last comment unique id, select these instead of *
+         */
+        static final String COLUMNS = columns(TABLE_NAME, COLUMN_ID, COLUMN_DISTINCT_ID, COLUMN_UNIQUE_ID, COLUMN_NAME,
+                COLUMN_IS_GROUP, COLUMN_OPTIONS, COLUMN_AVATAR_URL, COLUMN_UNREAD_COUNT, COLUMN_IS_CHANNEL,
+                COLUMN_MEMBER_COUNT, COLUMN_LAST_COMMENT_UNIQUE_ID);
+
+        static final String[] CREATE_INDEXES = {
+                "CREATE INDEX IF NOT EXISTS rooms_last_comment_time_index ON " + TABLE_NAME
+                        + " (" + COLUMN_LAST_COMMENT_TIME + ");"
+        };
+
+        /**
+         * Copy id, unique id and time of the latest not hard deleted comment into the room row,
+         * so the room list can be ordered without touching the comments table.
+         */
+        static final String UPDATE_LAST_COMMENT =
+                "UPDATE " + TABLE_NAME + " SET " +
+                        COLUMN_LAST_COMMENT_ID + " = IFNULL(" + latestComment(CommentTable.COLUMN_ID) + ", 0), " +
+                        COLUMN_LAST_COMMENT_UNIQUE_ID + " = " + latestComment(CommentTable.COLUMN_UNIQUE_ID) + ", " +
+                        COLUMN_LAST_COMMENT_TIME + " = " + latestComment(CommentTable.COLUMN_TIME) +
+                        " WHERE " + COLUMN_ID + " = ?";
+
+        static final String INSERT_OR_REPLACE =
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                        COLUMN_ID + ", " + COLUMN_DISTINCT_ID + ", " + COLUMN_UNIQUE_ID + ", " +
+                        COLUMN_NAME + ", " + COLUMN_IS_GROUP + ", " + COLUMN_OPTIONS + ", " +
+                        COLUMN_AVATAR_URL + ", " + COLUMN_UNREAD_COUNT + ", " + COLUMN_IS_CHANNEL + ", " +
+                        COLUMN_MEMBER_COUNT +
+                        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
         static ContentValues toContentValues(QiscusChatRoom qiscusChatRoom) {
             ContentValues values = new ContentValues();
             values.put(COLUMN_ID, qiscusChatRoom.getId());
@@ -74,25 +135,79 @@ final class QiscusDb {
             return values;
         }
 
+        private static String latestComment(String column) {
+            return "(SELECT " + column + " FROM " + CommentTable.TABLE_NAME +
+                    " WHERE " + CommentTable.COLUMN_ROOM_ID + " = " + TABLE_NAME + "." + COLUMN_ID +
+                    " AND " + CommentTable.COLUMN_HARD_DELETED + " = 0" +
+                    " ORDER BY " + CommentTable.COLUMN_TIME + " DESC LIMIT 1)";
+        }
+
+        static void bind(SQLiteStatement statement, QiscusChatRoom qiscusChatRoom) {
+            statement.clearBindings();
+            statement.bindLong(1, qiscusChatRoom.getId());
+            bindString(statement, 2, qiscusChatRoom.getDistinctId());
+            bindString(statement, 3, qiscusChatRoom.getUniqueId());
+            bindString(statement, 4, qiscusChatRoom.getName());
+            statement.bindLong(5, qiscusChatRoom.isGroup() ? 1 : 0);
+            bindString(statement, 6, qiscusChatRoom.getOptions() == null ? null : qiscusChatRoom.getOptions().toString());
+            bindString(statement, 7, qiscusChatRoom.getAvatarUrl());
+            statement.bindLong(8, qiscusChatRoom.getUnreadCount());
+            statement.bindLong(9, qiscusChatRoom.isChannel() ? 1 : 0);
+            statement.bindLong(10, qiscusChatRoom.getMemberCount());
+        }
+
         static QiscusChatRoom parseCursor(Cursor cursor) {
+            return parseCursor(cursor, new Columns(cursor));
+        }
+
+        static QiscusChatRoom parseCursor(Cursor cursor, Columns columns) {
             QiscusChatRoom qiscusChatRoom = new QiscusChatRoom();
-            qiscusChatRoom.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-            qiscusChatRoom.setDistinctId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DISTINCT_ID)));
-            qiscusChatRoom.setUniqueId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_ID)));
-            qiscusChatRoom.setName(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_NAME)));
-            qiscusChatRoom.setGroup(cursor.getShort(cursor.getColumnIndexOrThrow(COLUMN_IS_GROUP)) == 1);
+            qiscusChatRoom.setId(cursor.getLong(columns.id));
+            qiscusChatRoom.setDistinctId(cursor.getString(columns.distinctId));
+            qiscusChatRoom.setUniqueId(cursor.getString(columns.uniqueId));
+            qiscusChatRoom.setName(cursor.getString(columns.name));
+            qiscusChatRoom.setGroup(cursor.getShort(columns.isGroup) == 1);
             try {
-                String options = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_OPTIONS));
+                String options = cursor.getString(columns.options);
                 qiscusChatRoom.setOptions(options == null ? null : new JSONObject(options));
             } catch (JSONException ignored) {
                 //Do nothing
             }
-            qiscusChatRoom.setAvatarUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_AVATAR_URL)));
-            qiscusChatRoom.setUnreadCount(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_UNREAD_COUNT)));
-            qiscusChatRoom.setChannel(cursor.getShort(cursor.getColumnIndexOrThrow(COLUMN_IS_CHANNEL)) == 1);
-            qiscusChatRoom.setMemberCount(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_MEMBER_COUNT)));
+            qiscusChatRoom.setAvatarUrl(cursor.getString(columns.avatarUrl));
+            qiscusChatRoom.setUnreadCount(cursor.getInt(columns.unreadCount));
+            qiscusChatRoom.setChannel(cursor.getShort(columns.isChannel) == 1);
+            qiscusChatRoom.setMemberCount(cursor.getInt(columns.memberCount));
             return qiscusChatRoom;
         }
+
+        /**
+         * Column indexes of a room cursor, resolve it once before iterating the rows.
+         */
+        static final class Columns {
+            final int id;
+            final int distinctId;
+            final int uniqueId;
+            final int name;
+            final int isGroup;
+            final int options;
+            final int avatarUrl;
+            final int unreadCount;
+            final int isChannel;
+            final int memberCount;
+
+            Columns(Cursor cursor) {
+                id = cursor.getColumnIndexOrThrow(COLUMN_ID);
+                distinctId = cursor.getColumnIndexOrThrow(COLUMN_DISTINCT_ID);
+                uniqueId = cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_ID);
+                name = cursor.getColumnIndexOrThrow(COLUMN_NAME);
+                isGroup = cursor.getColumnIndexOrThrow(COLUMN_IS_GROUP);
+                options = cursor.getColumnIndexOrThrow(COLUMN_OPTIONS);
+                avatarUrl = cursor.getColumnIndexOrThrow(COLUMN_AVATAR_URL);
+                unreadCount = cursor.getColumnIndexOrThrow(COLUMN_UNREAD_COUNT);
+                isChannel = cursor.getColumnIndexOrThrow(COLUMN_IS_CHANNEL);
+                memberCount = cursor.getColumnIndexOrThrow(COLUMN_MEMBER_COUNT);
+            }
+        }
     }
 
     abstract static class MemberTable {
@@ -110,6 +225,18 @@ final class QiscusDb {
                         COLUMN_USER_EXTRAS + " TEXT" +
                         " ); ";
 
+        /**
+         * Columns read by {@link Columns}, select these instead of *
+         */
+        static final String COLUMNS = columns(TABLE_NAME, COLUMN_USER_EMAIL, COLUMN_USER_NAME, COLUMN_USER_AVATAR,
+                COLUMN_USER_EXTRAS);
+
+        static final String INSERT_OR_REPLACE =
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                        COLUMN_USER_EMAIL + ", " + COLUMN_USER_NAME + ", " +
+                        COLUMN_USER_AVATAR + ", " + COLUMN_USER_EXTRAS +
+                        ") VALUES (?, ?, ?, ?)";
+
         static ContentValues toContentValues(QiscusRoomMember qiscusRoomMember) {
             ContentValues values = new ContentValues();
             values.put(COLUMN_USER_EMAIL, qiscusRoomMember.getEmail());
@@ -120,19 +247,49 @@ final class QiscusDb {
             return values;
         }
 
+        static void bind(SQLiteStatement statement, QiscusRoomMember qiscusRoomMember) {
+            statement.clearBindings();
+            bindString(statement, 1, qiscusRoomMember.getEmail());
+            bindString(statement, 2, qiscusRoomMember.getUsername());
+            bindString(statement, 3, qiscusRoomMember.getAvatar());
+            bindString(statement, 4, qiscusRoomMember.getExtras() == null ? null :
+                    qiscusRoomMember.getExtras().toString());
+        }
+
         static QiscusRoomMember getMember(Cursor cursor) {
+            return getMember(cursor, new Columns(cursor));
+        }
+
+        static QiscusRoomMember getMember(Cursor cursor, Columns columns) {
             QiscusRoomMember qiscusRoomMember = new QiscusRoomMember();
-            qiscusRoomMember.setEmail(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_EMAIL)));
-            qiscusRoomMember.setUsername(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_NAME)));
-            qiscusRoomMember.setAvatar(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_AVATAR)));
+            qiscusRoomMember.setEmail(cursor.getString(columns.userEmail));
+            qiscusRoomMember.setUsername(cursor.getString(columns.userName));
+            qiscusRoomMember.setAvatar(cursor.getString(columns.userAvatar));
             try {
-                String extras = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_EXTRAS));
+                String extras = cursor.getString(columns.userExtras);
                 qiscusRoomMember.setExtras(extras == null ? null : new JSONObject(extras));
             } catch (JSONException ignored) {
                 //Do nothing
             }
             return qiscusRoomMember;
         }
+
+        /**
+         * Column indexes of a member cursor, resolve it once before iterating the rows.
+         */
+        static final class Columns {
+            final int userEmail;
+            final int userName;
+            final int userAvatar;
+            final int userExtras;
+
+            Columns(Cursor cursor) {
+                userEmail = cursor.getColumnIndexOrThrow(COLUMN_USER_EMAIL);
+                userName = cursor.getColumnIndexOrThrow(COLUMN_USER_NAME);
+                userAvatar = cursor.getColumnIndexOrThrow(COLUMN_USER_AVATAR);
+                userExtras = cursor.getColumnIndexOrThrow(COLUMN_USER_EXTRAS);
+            }
+        }
     }
 
     abstract static class RoomMemberTable {
@@ -153,6 +310,18 @@ final class QiscusDb {
                         "PRIMARY KEY (" + COLUMN_ROOM_ID + ", " + COLUMN_USER_EMAIL + ")" +
                         " ); ";
 
+        /**
+         * Columns read by the getters below, select these instead of *
+         */
+        static final String COLUMNS = columns(TABLE_NAME, COLUMN_ROOM_ID, COLUMN_USER_EMAIL, COLUMN_LAST_DELIVERED,
+                COLUMN_LAST_READ);
+
+        static final String INSERT_OR_REPLACE =
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                        COLUMN_ROOM_ID + ", " + COLUMN_DISTINCT_ID + ", " + COLUMN_USER_EMAIL + ", " +
+                        COLUMN_LAST_DELIVERED + ", " + COLUMN_LAST_READ +
+                        ") VALUES (?, ?, ?, ?, ?)";
+
         static ContentValues toContentValues(long roomId, QiscusRoomMember roomMember) {
             return toContentValues(roomId, "default", roomMember);
         }
@@ -167,6 +336,15 @@ final class QiscusDb {
             return values;
         }
 
+        static void bind(SQLiteStatement statement, long roomId, String distinctId, QiscusRoomMember roomMember) {
+            statement.clearBindings();
+            statement.bindLong(1, roomId);
+            bindString(statement, 2, distinctId);
+            bindString(statement, 3, roomMember.getEmail());
+            statement.bindLong(4, roomMember.getLastDeliveredCommentId());
+            statement.bindLong(5, roomMember.getLastReadCommentId());
+        }
+
         static long getRoomId(Cursor cursor) {
             return cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ROOM_ID));
         }
@@ -223,6 +401,38 @@ final class QiscusDb {
                         COLUMN_USER_EXTRAS + " TEXT" +
                         ");";
 
+        /**
+         * Columns read by {@link Columns}, select these instead of *
+         */
+        static final String COLUMNS = columns(TABLE_NAME, COLUMN_ID, COLUMN_ROOM_ID, COLUMN_UNIQUE_ID,
+                COLUMN_COMMENT_BEFORE_ID, COLUMN_MESSAGE, COLUMN_SENDER, COLUMN_SENDER_EMAIL, COLUMN_SENDER_AVATAR,
+                COLUMN_TIME, COLUMN_STATE, COLUMN_DELETED, COLUMN_HARD_DELETED, COLUMN_TYPE, COLUMN_PAYLOAD,
+                COLUMN_EXTRAS, COLUMN_USER_EXTRAS);
+
+        static final String[] CREATE_INDEXES = {
+                "CREATE INDEX IF NOT EXISTS comments_room_id_time_index ON " + TABLE_NAME
+                        + " (" + COLUMN_ROOM_ID + ", " + COLUMN_TIME + ");",
+                "CREATE INDEX IF NOT EXISTS comments_room_id_id_index ON " + TABLE_NAME
+                        + " (" + COLUMN_ROOM_ID + ", " + COLUMN_ID + ");",
+                "CREATE INDEX IF NOT EXISTS comments_id_index ON " + TABLE_NAME
+                        + " (" + COLUMN_ID + ");",
+                "CREATE INDEX IF NOT EXISTS comments_comment_before_id_index ON " + TABLE_NAME
+                        + " (" + COLUMN_COMMENT_BEFORE_ID + ");",
+                "CREATE INDEX IF NOT EXISTS comments_state_index ON " + TABLE_NAME
+                        + " (" + COLUMN_STATE + ");",
+                "CREATE INDEX IF NOT EXISTS comments_time_index ON " + TABLE_NAME
+                        + " (" + COLUMN_TIME + ");"
+        };
+
+        static final String INSERT_OR_REPLACE =
+                "INSERT OR REPLACE INTO " + TABLE_NAME + " (" +
+                        COLUMN_ID + ", " + COLUMN_ROOM_ID + ", " + COLUMN_UNIQUE_ID + ", " +
+                        COLUMN_COMMENT_BEFORE_ID + ", " + COLUMN_MESSAGE + ", " + COLUMN_SENDER + ", " +
+                        COLUMN_SENDER_EMAIL + ", " + COLUMN_SENDER_AVATAR + ", " + COLUMN_TIME + ", " +
+                        COLUMN_STATE + ", " + COLUMN_DELETED + ", " + COLUMN_HARD_DELETED + ", " +
+                        COLUMN_TYPE + ", " + COLUMN_PAYLOAD + ", " + COLUMN_EXTRAS + ", " + COLUMN_USER_EXTRAS +
+                        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
         static ContentValues toContentValues(QiscusComment qiscusComment) {
             ContentValues values = new ContentValues();
             values.put(COLUMN_ID, qiscusComment.getId());
@@ -239,48 +449,165 @@ final class QiscusDb {
             values.put(COLUMN_HARD_DELETED, qiscusComment.isHardDeleted() ? 1 : 0);
             values.put(COLUMN_TYPE, qiscusComment.getRawType());
             values.put(COLUMN_PAYLOAD, qiscusComment.getExtraPayload());
-            values.put(COLUMN_EXTRAS, qiscusComment.getExtras() == null ? null :
-                    qiscusComment.getExtras().toString());
-
-            values.put(COLUMN_USER_EXTRAS, qiscusComment.getUserExtras() == null ? null :
-                    qiscusComment.getUserExtras().toString());
+            values.put(COLUMN_EXTRAS, qiscusComment.getRawExtras());
+            values.put(COLUMN_USER_EXTRAS, qiscusComment.getRawUserExtras());
             return values;
         }
 
+        static void bind(SQLiteStatement statement, QiscusComment qiscusComment) {
+            statement.clearBindings();
+            statement.bindLong(1, qiscusComment.getId());
+            statement.bindLong(2, qiscusComment.getRoomId());
+            bindString(statement, 3, qiscusComment.getUniqueId());
+            statement.bindLong(4, qiscusComment.getCommentBeforeId());
+            bindString(statement, 5, qiscusComment.getMessage());
+            bindString(statement, 6, qiscusComment.getSender());
+            bindString(statement, 7, qiscusComment.getSenderEmail());
+            bindString(statement, 8, qiscusComment.getSenderAvatar());
+            statement.bindLong(9, qiscusComment.getTime().getTime());
+            statement.bindLong(10, qiscusComment.getState());
+            statement.bindLong(11, qiscusComment.isDeleted() ? 1 : 0);
+            statement.bindLong(12, qiscusComment.isHardDeleted() ? 1 : 0);
+            bindString(statement, 13, qiscusComment.getRawType());
+            bindString(statement, 14, qiscusComment.getExtraPayload());
+            bindString(statement, 15, qiscusComment.getRawExtras());
+            bindString(statement, 16, qiscusComment.getRawUserExtras());
+        }
+
         static QiscusComment parseCursor(Cursor cursor) {
+            return parseCursor(cursor, new Columns(cursor));
+        }
+
+        static QiscusComment parseCursor(Cursor cursor, Columns columns) {
             QiscusComment qiscusComment = new QiscusComment();
-            qiscusComment.setId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-            qiscusComment.setRoomId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ROOM_ID)));
-            qiscusComment.setUniqueId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_ID)));
-            qiscusComment.setCommentBeforeId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_COMMENT_BEFORE_ID)));
-            qiscusComment.setMessage(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_MESSAGE)));
-            qiscusComment.setSender(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SENDER)));
-            qiscusComment.setSenderEmail(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SENDER_EMAIL)));
-            qiscusComment.setSenderAvatar(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_SENDER_AVATAR)));
-            qiscusComment.setTime(new Date(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIME))));
-            qiscusComment.setState(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_STATE)));
-            qiscusComment.setDeleted(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_DELETED)) == 1);
-            qiscusComment.setHardDeleted(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_HARD_DELETED)) == 1);
-            qiscusComment.setRawType(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_TYPE)));
-            qiscusComment.setExtraPayload(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_PAYLOAD)));
+            qiscusComment.setId(cursor.getLong(columns.id));
+            qiscusComment.setRoomId(cursor.getLong(columns.roomId));
+            qiscusComment.setUniqueId(cursor.getString(columns.uniqueId));
+            qiscusComment.setCommentBeforeId(cursor.getLong(columns.commentBeforeId));
+            qiscusComment.setMessage(cursor.getString(columns.message));
+            qiscusComment.setSender(cursor.getString(columns.sender));
+            qiscusComment.setSenderEmail(cursor.getString(columns.senderEmail));
+            qiscusComment.setSenderAvatar(cursor.getString(columns.senderAvatar));
+            qiscusComment.setTime(new Date(cursor.getLong(columns.time)));
+            qiscusComment.setState(cursor.getInt(columns.state));
+            qiscusComment.setDeleted(cursor.getInt(columns.deleted) == 1);
+            qiscusComment.setHardDeleted(cursor.getInt(columns.hardDeleted) == 1);
+            qiscusComment.setRawType(cursor.getString(columns.type));
+            qiscusComment.setExtraPayload(cursor.getString(columns.payload));
+            qiscusComment.setRawExtras(cursor.getString(columns.extras));
+            qiscusComment.setRawUserExtras(cursor.getString(columns.userExtras));
+            return qiscusComment;
+        }
 
-            try {
-                String extras = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_EXTRAS));
-                qiscusComment.setExtras(extras == null ? null : new JSONObject(extras));
-            } catch (JSONException e) {
-                e.printStackTrace();
+        /**
+         * Column indexes of a comment cursor, resolve it once before iterating the rows.
+         */
+        static final class Columns {
+            final int id;
+            final int roomId;
+            final int uniqueId;
+            final int commentBeforeId;
+            final int message;
+            final int sender;
+            final int senderEmail;
+            final int senderAvatar;
+            final int time;
+            final int state;
+            final int deleted;
+            final int hardDeleted;
+            final int type;
+            final int payload;
+            final int extras;
+            final int userExtras;
+
+            Columns(Cursor cursor) {
+                id = cursor.getColumnIndexOrThrow(COLUMN_ID);
+                roomId = cursor.getColumnIndexOrThrow(COLUMN_ROOM_ID);
+                uniqueId = cursor.getColumnIndexOrThrow(COLUMN_UNIQUE_ID);
+                commentBeforeId = cursor.getColumnIndexOrThrow(COLUMN_COMMENT_BEFORE_ID);
+                message = cursor.getColumnIndexOrThrow(COLUMN_MESSAGE);
+                sender = cursor.getColumnIndexOrThrow(COLUMN_SENDER);
+                senderEmail = cursor.getColumnIndexOrThrow(COLUMN_SENDER_EMAIL);
+                senderAvatar = cursor.getColumnIndexOrThrow(COLUMN_SENDER_AVATAR);
+                time = cursor.getColumnIndexOrThrow(COLUMN_TIME);
+                state = cursor.getColumnIndexOrThrow(COLUMN_STATE);
+                deleted = cursor.getColumnIndexOrThrow(COLUMN_DELETED);
+                hardDeleted = cursor.getColumnIndexOrThrow(COLUMN_HARD_DELETED);
+                type = cursor.getColumnIndexOrThrow(COLUMN_TYPE);
+                payload = cursor.getColumnIndexOrThrow(COLUMN_PAYLOAD);
+                extras = cursor.getColumnIndexOrThrow(COLUMN_EXTRAS);
+                userExtras = cursor.getColumnIndexOrThrow(COLUMN_USER_EXTRAS);
+            }
+        }
+    }
+
+    /**
+     * FTS4 index over comment messages, docid is the rowid of the comment row.
+     * Kept in sync by triggers, so it needs recursive triggers to catch rows removed by REPLACE.
+     */
+    abstract static class CommentSearchTable {
+        static final String TABLE_NAME = "comments_fts";
+        static final String COLUMN_DOC_ID = "docid";
+        static final String COLUMN_MESSAGE = "message";
+
+        static final String CREATE =
+                "CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_NAME + " USING fts4(" + COLUMN_MESSAGE + ");";
+
+        static final String[] CREATE_TRIGGERS = {
+                "CREATE TRIGGER IF NOT EXISTS comments_fts_after_insert AFTER INSERT ON " + CommentTable.TABLE_NAME
+                        + " BEGIN INSERT INTO " + TABLE_NAME + " (" + COLUMN_DOC_ID + ", " + COLUMN_MESSAGE + ")"
+                        + " VALUES (new.rowid, new." + CommentTable.COLUMN_MESSAGE + "); END;",
+                "CREATE TRIGGER IF NOT EXISTS comments_fts_before_update BEFORE UPDATE OF "
+                        + CommentTable.COLUMN_MESSAGE + " ON " + CommentTable.TABLE_NAME
+                        + " BEGIN DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_DOC_ID + " = old.rowid; END;",
+                "CREATE TRIGGER IF NOT EXISTS comments_fts_after_update AFTER UPDATE OF "
+                        + CommentTable.COLUMN_MESSAGE + " ON " + CommentTable.TABLE_NAME
+                        + " BEGIN INSERT INTO " + TABLE_NAME + " (" + COLUMN_DOC_ID + ", " + COLUMN_MESSAGE + ")"
+                        + " VALUES (new.rowid, new." + CommentTable.COLUMN_MESSAGE + "); END;",
+                "CREATE TRIGGER IF NOT EXISTS comments_fts_before_delete BEFORE DELETE ON " + CommentTable.TABLE_NAME
+                        + " BEGIN DELETE FROM " + TABLE_NAME + " WHERE " + COLUMN_DOC_ID + " = old.rowid; END;"
+        };
+
+        /**
+         * Turn free text into an FTS query matching every word as a prefix, e.g "hel wor" to "hel*" "wor*"
+         *
+         * @return null if there is nothing to search
+         */
+        static String toMatchQuery(String query) {
+            if (query == null) {
+                return null;
             }
 
-            try {
-                String userExtras = cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_USER_EXTRAS));
-                qiscusComment.setUserExtras(userExtras == null ? null : new JSONObject(userExtras));
-            } catch (JSONException e) {
-                e.printStackTrace();
+            StringBuilder matchQuery = new StringBuilder();
+            for (String token : query.replace("\"", " ").trim().split("\\s+")) {
+                if (token.isEmpty()) {
+                    continue;
+                }
+                if (matchQuery.length() > 0) {
+                    matchQuery.append(' ');
+                }
+                matchQuery.append('"').append(token).append("*\"");
             }
-            return qiscusComment;
+            return matchQuery.length() == 0 ? null : matchQuery.toString();
         }
     }
 
+    /**
+     * Progress of indexing comments which were stored before the search index existed.
+     * The row is removed once every old comment has been indexed.
+     */
+    abstract static class CommentSearchBackfillTable {
+        static final String TABLE_NAME = "comments_fts_backfill";
+        static final String COLUMN_NEXT_ROW_ID = "next_row_id";
+        static final String COLUMN_LAST_ROW_ID = "last_row_id";
+
+        static final String CREATE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                        COLUMN_NEXT_ROW_ID + " LONG NOT NULL," +
+                        COLUMN_LAST_ROW_ID + " LONG NOT NULL" +
+                        " ); ";
+    }
+
     abstract static class FilesTable {
         static final String TABLE_NAME = "files";
         static final String COLUMN_COMMENT_ID = "comment_id";
@@ -306,4 +633,89 @@ final class QiscusDb {
             return cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_LOCAL_PATH));
         }
     }
+
+    /**
+     * Attachment uploads of comments which have not been sent yet, so they can continue after the app restarts.
+     */
+    abstract static class UploadTable {
+        static final String TABLE_NAME = "uploads";
+        static final String COLUMN_COMMENT_UNIQUE_ID = "comment_unique_id";
+        static final String COLUMN_ROOM_ID = "room_id";
+        static final String COLUMN_FILE_PATH = "file_path";
+        static final String COLUMN_FILE_LENGTH = "file_length";
+        static final String COLUMN_FILE_LAST_MODIFIED = "file_last_modified";
+        static final String COLUMN_URL = "url";
+        static final String COLUMN_ATTEMPTS = "attempts";
+
+        static final String CREATE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                        COLUMN_COMMENT_UNIQUE_ID + " TEXT PRIMARY KEY," +
+                        COLUMN_ROOM_ID + " LONG NOT NULL," +
+                        COLUMN_FILE_PATH + " TEXT NOT NULL," +
+                        COLUMN_FILE_LENGTH + " LONG NOT NULL," +
+                        COLUMN_FILE_LAST_MODIFIED + " LONG NOT NULL," +
+                        COLUMN_URL + " TEXT," +
+                        COLUMN_ATTEMPTS + " INTEGER DEFAULT 0" +
+                        " ); ";
+
+        static final String COLUMNS = columns(TABLE_NAME, COLUMN_COMMENT_UNIQUE_ID, COLUMN_ROOM_ID, COLUMN_FILE_PATH,
+                COLUMN_FILE_LENGTH, COLUMN_FILE_LAST_MODIFIED, COLUMN_URL, COLUMN_ATTEMPTS);
+
+        static ContentValues toContentValues(QiscusFileUpload qiscusFileUpload) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_COMMENT_UNIQUE_ID, qiscusFileUpload.getCommentUniqueId());
+            values.put(COLUMN_ROOM_ID, qiscusFileUpload.getRoomId());
+            values.put(COLUMN_FILE_PATH, qiscusFileUpload.getFilePath());
+            values.put(COLUMN_FILE_LENGTH, qiscusFileUpload.getFileLength());
+            values.put(COLUMN_FILE_LAST_MODIFIED, qiscusFileUpload.getFileLastModified());
+            values.put(COLUMN_URL, qiscusFileUpload.getUrl());
+            values.put(COLUMN_ATTEMPTS, qiscusFileUpload.getAttempts());
+            return values;
+        }
+
+        static QiscusFileUpload parseCursor(Cursor cursor) {
+            QiscusFileUpload qiscusFileUpload = new QiscusFileUpload();
+            qiscusFileUpload.setCommentUniqueId(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_COMMENT_UNIQUE_ID)));
+            qiscusFileUpload.setRoomId(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_ROOM_ID)));
+            qiscusFileUpload.setFilePath(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_FILE_PATH)));
+            qiscusFileUpload.setFileLength(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FILE_LENGTH)));
+            qiscusFileUpload.setFileLastModified(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_FILE_LAST_MODIFIED)));
+            qiscusFileUpload.setUrl(cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_URL)));
+            qiscusFileUpload.setAttempts(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ATTEMPTS)));
+            return qiscusFileUpload;
+        }
+    }
+
+    /**
+     * Link previews by normalized url, the whole PreviewData is kept as json.
+     */
+    abstract static class LinkPreviewTable {
+        static final String TABLE_NAME = "link_previews";
+        static final String COLUMN_URL = "url";
+        static final String COLUMN_DATA = "data";
+        static final String COLUMN_TIME = "time";
+
+        static final String CREATE =
+                "CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+                        COLUMN_URL + " TEXT PRIMARY KEY," +
+                        COLUMN_DATA + " TEXT NOT NULL," +
+                        COLUMN_TIME + " LONG NOT NULL" +
+                        " ); ";
+
+        static ContentValues toContentValues(String url, String data, long time) {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_URL, url);
+            values.put(COLUMN_DATA, data);
+            values.put(COLUMN_TIME, time);
+            return values;
+        }
+
+        static String parseCursor(Cursor cursor) {
+            return cursor.getString(cursor.getColumnIndexOrThrow(COLUMN_DATA));
+        }
+
+        static long parseTime(Cursor cursor) {
+            return cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIME));
+        }
+    }
 }
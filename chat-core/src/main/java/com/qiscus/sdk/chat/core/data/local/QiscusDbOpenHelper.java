@@ -48,12 +48,26 @@ class QiscusDbOpenHelper extends SQLiteOpenHelper {
             db.execSQL(QiscusDb.RoomMemberTable.CREATE);
             db.execSQL(QiscusDb.CommentTable.CREATE);
             db.execSQL(QiscusDb.FilesTable.CREATE);
+            execAll(db, QiscusDb.RoomTable.CREATE_INDEXES);
+            execAll(db, QiscusDb.CommentTable.CREATE_INDEXES);
+            db.execSQL(QiscusDb.CommentSearchTable.CREATE);
+            execAll(db, QiscusDb.CommentSearchTable.CREATE_TRIGGERS);
+            db.execSQL(QiscusDb.CommentSearchBackfillTable.CREATE);
+            db.execSQL(QiscusDb.UploadTable.CREATE);
+            db.execSQL(QiscusDb.LinkPreviewTable.CREATE);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
         }
     }
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Let REPLACE conflicts fire the delete trigger which keeps comments_fts in sync, set before any write
+        db.execSQL("PRAGMA recursive_triggers = ON;");
+    }
+
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
@@ -135,6 +149,12 @@ class QiscusDbOpenHelper extends SQLiteOpenHelper {
         }
     }
 
+    private void execAll(SQLiteDatabase db, String[] statements) {
+        for (String statement : statements) {
+            db.execSQL(statement);
+        }
+    }
+
     private void clearOldData(SQLiteDatabase db) {
         db.beginTransaction();
         try {
@@ -143,6 +163,10 @@ class QiscusDbOpenHelper extends SQLiteOpenHelper {
             db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.RoomMemberTable.TABLE_NAME);
             db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.CommentTable.TABLE_NAME);
             db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.FilesTable.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.CommentSearchTable.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.CommentSearchBackfillTable.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.UploadTable.TABLE_NAME);
+            db.execSQL("DROP TABLE IF EXISTS " + QiscusDb.LinkPreviewTable.TABLE_NAME);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
@@ -52,4 +52,25 @@ public enum QiscusEventCache {
                     .apply();
         }
     }
+
+    /**
+     * @return id of the newest comment got from sync, 0 if there was no sync yet
+     */
+    public long getLastSyncCommentId() {
+        return sharedPreferences.getLong("last_sync_comment_id", 0);
+    }
+
+    public void setLastSyncCommentId(long commentId) {
+        if (commentId > getLastSyncCommentId()) {
+            sharedPreferences.edit()
+                    .putLong("last_sync_comment_id", commentId)
+                    .apply();
+        }
+    }
+
+    public void clearLastSyncCommentId() {
+        sharedPreferences.edit()
+                .remove("last_sync_comment_id")
+                .apply();
+    }
 }
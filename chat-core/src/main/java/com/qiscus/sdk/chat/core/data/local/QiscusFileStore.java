@@ -33,7 +33,26 @@ public interface QiscusFileStore {
 
     void addOrUpdateLocalPath(long roomId, long commentId, String localPath);
 
+    /**
+     * @return the file of the comment, or null if there is none or it does not exist anymore
+     */
     File getLocalPath(long commentId);
 
+    /**
+     * For binding, answered from memory without checking the file when the room has been opened
+     * with {@link #openLocalPaths(long)}, and null while it is still opening. Use {@link #getLocalPath(long)}
+     * before opening the file, it also drops the path when the file has been deleted.
+     */
+    File getLocalPath(long roomId, long commentId);
+
+    /**
+     * Load the local paths of every comment in the room into memory until {@link #closeLocalPaths(long)},
+     * this reads the database and checks the files, so call it off the main thread.
+     * Every open has to be paired with a close, the room is loaded only by the first one.
+     */
+    void openLocalPaths(long roomId);
+
+    void closeLocalPaths(long roomId);
+
     void deleteLocalPath(long commentId);
 }
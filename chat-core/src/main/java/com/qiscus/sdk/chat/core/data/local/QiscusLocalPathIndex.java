@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.local;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local paths of the comments of the opened rooms, kept in front of the files table of
+ * {@link QiscusDataBaseHelper} so binding attachments of an opened room never queries the database.
+ * Only paths which existed when the room was opened or which were saved afterward are kept.
+ * A room stays open until it has been closed as many times as it was opened.
+ */
+class QiscusLocalPathIndex {
+
+    private final Map<Long, Room> rooms = new HashMap<>();
+
+    /**
+     * @return true if the room was not open yet, then the caller loads it and passes the paths to {@link #onLoaded}
+     */
+    synchronized boolean open(long roomId) {
+        Room room = rooms.get(roomId);
+        if (room == null) {
+            rooms.put(roomId, new Room());
+            return true;
+        }
+        room.openCount++;
+        return false;
+    }
+
+    /**
+     * Paths saved or deleted while the room was loading are newer than the loaded ones and win.
+     */
+    synchronized void onLoaded(long roomId, Map<Long, String> localPaths) {
+        Room room = rooms.get(roomId);
+        if (room == null) {
+            return;
+        }
+
+        for (Map.Entry<Long, String> localPath : localPaths.entrySet()) {
+            if (!room.localPaths.containsKey(localPath.getKey()) && !room.removed.contains(localPath.getKey())) {
+                room.localPaths.put(localPath.getKey(), localPath.getValue());
+            }
+        }
+        room.removed.clear();
+        room.loaded = true;
+    }
+
+    synchronized void close(long roomId) {
+        Room room = rooms.get(roomId);
+        if (room != null && --room.openCount <= 0) {
+            rooms.remove(roomId);
+        }
+    }
+
+    /**
+     * @return true if the room is open, including while it is still loading
+     */
+    synchronized boolean isOpen(long roomId) {
+        return rooms.containsKey(roomId);
+    }
+
+    /**
+     * @return local path of the comment, or null if the room is not opened, is still loading or the comment has no file
+     */
+    synchronized String get(long roomId, long commentId) {
+        Room room = rooms.get(roomId);
+        return room == null ? null : room.localPaths.get(commentId);
+    }
+
+    /**
+     * @return local path of the comment in any opened room, or null if there is none
+     */
+    synchronized String get(long commentId) {
+        for (Room room : rooms.values()) {
+            String localPath = room.localPaths.get(commentId);
+            if (localPath != null) {
+                return localPath;
+            }
+        }
+        return null;
+    }
+
+    synchronized void put(long roomId, long commentId, String localPath) {
+        Room room = rooms.get(roomId);
+        if (room != null) {
+            room.localPaths.put(commentId, localPath);
+            room.removed.remove(commentId);
+        }
+    }
+
+    synchronized void remove(long commentId) {
+        for (Room room : rooms.values()) {
+            room.localPaths.remove(commentId);
+            if (!room.loaded) {
+                room.removed.add(commentId);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        rooms.clear();
+    }
+
+    private static final class Room {
+        private final Map<Long, String> localPaths = new HashMap<>();
+        private final Set<Long> removed = new HashSet<>();
+        private int openCount = 1;
+        private boolean loaded;
+    }
+}
@@ -16,14 +16,18 @@
 
 package com.qiscus.sdk.chat.core.data.model;
 
+import android.media.MediaMetadataRetriever;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.provider.Settings;
 import android.text.TextUtils;
+import android.util.Pair;
 import android.webkit.MimeTypeMap;
 
+import androidx.annotation.RestrictTo;
+
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.qiscus.sdk.chat.core.QiscusCore;
@@ -41,10 +45,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import rx.Subscription;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.schedulers.Schedulers;
 
@@ -95,19 +101,23 @@ public class QiscusComment implements Parcelable {
     protected DownloadingListener downloadingListener;
     protected PlayingAudioListener playingAudioListener;
     protected LinkPreviewListener linkPreviewListener;
-    private List<String> urls;
     private PreviewData previewData;
+    private transient Subscription linkPreviewSubscription;
     private QiscusContact contact;
     private QiscusLocation location;
     private String rawType;
     private String extraPayload;
     private JSONObject userExtras;
     private JSONObject extras;
+    private String rawUserExtras;
+    private String rawExtras;
     private MediaObserver observer;
     private MediaPlayer player;
     private QiscusComment replyTo;
-    private String caption;
-    private String attachmentName;
+    private transient volatile RenderModel renderModel;
+    private transient volatile boolean preparedForRendering;
+    private transient volatile Pair<Object, CharSequence> renderedMessage;
+    private transient volatile int audioDuration = -1;
 
     public QiscusComment() {
 
@@ -130,17 +140,8 @@ public class QiscusComment implements Parcelable {
         rawType = in.readString();
         extraPayload = in.readString();
         replyTo = in.readParcelable(QiscusComment.class.getClassLoader());
-        try {
-            extras = new JSONObject(in.readString());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        try {
-            userExtras = new JSONObject(in.readString());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        rawExtras = in.readString();
+        rawUserExtras = in.readString();
     }
 
     public static QiscusComment generateMessage(long roomId, String content) {
@@ -299,6 +300,7 @@ public class QiscusComment implements Parcelable {
 
     public void setMessage(String message) {
         this.message = message;
+        invalidateRenderCache();
     }
 
     public String getSender() {
@@ -403,6 +405,7 @@ public class QiscusComment implements Parcelable {
 
     public void setRawType(String rawType) {
         this.rawType = rawType;
+        invalidateRenderCache();
     }
 
     public String getExtraPayload() {
@@ -411,22 +414,76 @@ public class QiscusComment implements Parcelable {
 
     public void setExtraPayload(String extraPayload) {
         this.extraPayload = extraPayload;
+        invalidateRenderCache();
     }
 
     public JSONObject getExtras() {
+        if (rawExtras != null) {
+            extras = parseJson(rawExtras);
+            rawExtras = null;
+        }
         return extras;
     }
 
     public void setExtras(JSONObject extras) {
         this.extras = extras;
+        this.rawExtras = null;
     }
 
     public JSONObject getUserExtras() {
+        if (rawUserExtras != null) {
+            userExtras = parseJson(rawUserExtras);
+            rawUserExtras = null;
+        }
         return userExtras;
     }
 
     public void setUserExtras(JSONObject userExtras) {
         this.userExtras = userExtras;
+        this.rawUserExtras = null;
+    }
+
+    /**
+     * Extras as json string, without parsing it when it has not been read yet.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public String getRawExtras() {
+        if (rawExtras != null) {
+            return rawExtras;
+        }
+        return extras == null ? null : extras.toString();
+    }
+
+    /**
+     * Keep the extras json string as is, it will be parsed on the first {@link #getExtras()}.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void setRawExtras(String rawExtras) {
+        this.extras = null;
+        this.rawExtras = rawExtras;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public String getRawUserExtras() {
+        if (rawUserExtras != null) {
+            return rawUserExtras;
+        }
+        return userExtras == null ? null : userExtras.toString();
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void setRawUserExtras(String rawUserExtras) {
+        this.userExtras = null;
+        this.rawUserExtras = rawUserExtras;
+    }
+
+    private static JSONObject parseJson(String json) {
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     public boolean isMyComment() {
@@ -468,9 +525,7 @@ public class QiscusComment implements Parcelable {
     }
 
     public boolean isAttachment() {
-        String trimmedMessage = message.trim().replaceAll(" ", "");
-        return (trimmedMessage.startsWith("[file]") && trimmedMessage.endsWith("[/file]"))
-                || (!TextUtils.isEmpty(rawType) && rawType.equals("file_attachment"));
+        return getRenderModel().attachment;
     }
 
     public Uri getAttachmentUri() {
@@ -483,65 +538,19 @@ public class QiscusComment implements Parcelable {
     }
 
     public String getCaption() {
-        if (!isAttachment()) {
-            return getMessage();
-        }
-        if (caption == null) {
-            try {
-                JSONObject payload = QiscusRawDataExtractor.getPayload(this);
-                caption = payload.optString("caption", "");
-            } catch (Exception ignored) {
-                //Do nothing
-            }
-        }
-        return caption;
+        RenderModel model = getRenderModel();
+        return model.attachment ? model.caption : model.message;
     }
 
     public String getAttachmentName() {
-        if (!isAttachment()) {
+        RenderModel model = getRenderModel();
+        if (!model.attachment) {
             throw new RuntimeException("Current comment is not an attachment");
         }
-
-        if (attachmentName == null) {
-            try {
-                JSONObject payload = QiscusRawDataExtractor.getPayload(this);
-                attachmentName = payload.optString("file_name", "");
-            } catch (Exception ignored) {
-                //Do nothing
-            }
-
-            if (!TextUtils.isEmpty(attachmentName)) {
-                return attachmentName;
-            }
-
-            int fileNameEndIndex = -1;
-            int fileNameBeginIndex;
-            String fileName;
-
-            fileNameEndIndex = message.lastIndexOf(" [/file]");
-
-            if (fileNameEndIndex != -1) {
-                fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
-                fileName = message.substring(fileNameBeginIndex, fileNameEndIndex);
-            } else {
-                fileNameEndIndex = message.lastIndexOf("[/file]");
-                fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
-                fileName = message.substring(fileNameBeginIndex, fileNameEndIndex);
-            }
-
-            try {
-                fileName = fileName.replaceAll("%(?![0-9a-fA-F]{2})", "%25");
-                fileName = fileName.replaceAll("\\+", "%2B");
-                attachmentName = URLDecoder.decode(fileName, "UTF-8");
-                return attachmentName;
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
-
-            throw new RuntimeException("The filename '" + fileName + "' is not valid UTF-8");
+        if (model.attachmentName == null) {
+            throw new RuntimeException("The filename of '" + model.message + "' is not valid");
         }
-
-        return attachmentName;
+        return model.attachmentName;
     }
 
     public String getExtension() {
@@ -553,63 +562,42 @@ public class QiscusComment implements Parcelable {
     }
 
     public boolean isImage() {
-        if (isAttachment()) {
-            String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
-            if (type == null) {
-                return false;
-            } else if (type.contains("image")) {
-                return true;
-            }
-        }
-        return false;
+        RenderModel model = getRenderModel();
+        return model.mimeType != null && model.mimeType.contains("image");
     }
 
     public boolean isVideo() {
-        if (isAttachment()) {
-            String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
-            if (type == null) {
-                return false;
-            } else if (type.contains("video")) {
-                return true;
-            }
-        }
-        return false;
+        RenderModel model = getRenderModel();
+        return model.mimeType != null && model.mimeType.contains("video");
     }
 
     public boolean isAudio() {
-        if (isAttachment()) {
-            String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
-            if (type == null) {
-                return false;
-            } else if (type.contains("audio")) {
-                return true;
-            }
-        }
-        return false;
+        RenderModel model = getRenderModel();
+        return model.mimeType != null && model.mimeType.contains("audio");
     }
 
-    private boolean containsUrl() {
-        if (urls == null) {
-            urls = QiscusTextUtil.extractUrl(message);
+    /**
+     * @return mime type of the attachment from its extension, or null if it is unknown
+     */
+    public String getMimeType() {
+        RenderModel model = getRenderModel();
+        if (!model.attachment) {
+            throw new RuntimeException("Current comment is not an attachment");
         }
-        return !urls.isEmpty();
+        return model.mimeType;
     }
 
     public List<String> getUrls() {
-        if (urls == null) {
-            urls = QiscusTextUtil.extractUrl(message);
-        }
-        return urls;
+        return getRenderModel().urls;
     }
 
     public void loadLinkPreviewData() {
         if (getType() == Type.LINK) {
             if (previewData != null) {
                 linkPreviewListener.onLinkPreviewReady(this, previewData);
-            } else {
-                QiscusUrlScraper.getInstance()
-                        .generatePreviewData(urls.get(0))
-                        .doOnNext(previewData -> previewData.setUrl(urls.get(0)))
+            } else if (linkPreviewSubscription == null || linkPreviewSubscription.isUnsubscribed()) {
+                linkPreviewSubscription = QiscusUrlScraper.getInstance()
+                        .generatePreviewData(getUrls().get(0))
                         .subscribeOn(Schedulers.io())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(previewData -> {
@@ -622,6 +610,16 @@ public class QiscusComment implements Parcelable {
         }
     }
 
+    /**
+     * Stop waiting for the link preview, e.g. when the comment is scrolled out of the screen.
+     */
+    public void cancelLoadLinkPreviewData() {
+        if (linkPreviewSubscription != null) {
+            linkPreviewSubscription.unsubscribe();
+            linkPreviewSubscription = null;
+        }
+    }
+
     public QiscusContact getContact() {
         if (contact == null && getType() == Type.CONTACT) {
             try {
@@ -660,38 +658,90 @@ public class QiscusComment implements Parcelable {
     }
 
     public Type getType() {
-        if (!TextUtils.isEmpty(rawType) && rawType.equals("account_linking")) {
-            return Type.ACCOUNT_LINKING;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("buttons")) {
-            return Type.BUTTONS;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("reply")) {
-            return Type.REPLY;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("card")) {
-            return Type.CARD;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("system_event")) {
-            return Type.SYSTEM_EVENT;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("contact_person")) {
-            return Type.CONTACT;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("location")) {
-            return Type.LOCATION;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("carousel")) {
-            return Type.CAROUSEL;
-        } else if (!TextUtils.isEmpty(rawType) && rawType.equals("custom")) {
-            return Type.CUSTOM;
-        } else if (!isAttachment()) {
-            if (containsUrl()) {
-                return Type.LINK;
+        return getRenderModel().type;
+    }
+
+    /**
+     * Resolve everything binding this comment needs, i.e. the type, the urls, the attachment name and mime type
+     * and the duration of a downloaded audio, so it can be done off the main thread before the comment is shown.
+     */
+    public void prepareForRendering() {
+        getRenderModel();
+        if (audioDuration < 0 && player == null && isAudio()) {
+            File localPath = QiscusCore.getDataStore().getLocalPath(roomId, id);
+            if (localPath != null) {
+                audioDuration = readAudioDuration(localPath);
             }
-            return Type.TEXT;
-        } else if (isImage()) {
-            return Type.IMAGE;
-        } else if (isVideo()) {
-            return Type.VIDEO;
-        } else if (isAudio()) {
-            return Type.AUDIO;
-        } else {
-            return Type.FILE;
         }
+        preparedForRendering = true;
+    }
+
+    /**
+     * @return true if {@link #prepareForRendering()} was called since the message, raw type or payload changed
+     */
+    public boolean isPreparedForRendering() {
+        return preparedForRendering;
+    }
+
+    private static int readAudioDuration(File localPath) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(localPath.getAbsolutePath());
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return duration == null ? -1 : Integer.parseInt(duration);
+        } catch (RuntimeException e) {
+            return -1;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The model is only used while it was built from the current message, raw type and payload. It may be built on
+     * any thread, a model built from values which have been changed meanwhile is never used and never replaces
+     * the current one.
+     */
+    private RenderModel getRenderModel() {
+        String message = this.message;
+        String rawType = this.rawType;
+        String extraPayload = this.extraPayload;
+        RenderModel model = renderModel;
+        if (model == null || !model.isBuiltFrom(message, rawType, extraPayload)) {
+            model = new RenderModel(message, rawType, extraPayload);
+            if (model.isBuiltFrom(this.message, this.rawType, this.extraPayload)) {
+                renderModel = model;
+            }
+        }
+        return model;
+    }
+
+    /**
+     * @return message built before with the same key, or null if there is none
+     */
+    public CharSequence getRenderedMessage(Object key) {
+        Pair<Object, CharSequence> rendered = renderedMessage;
+        return rendered != null && rendered.first.equals(key) ? rendered.second : null;
+    }
+
+    /**
+     * Keep the styled message, e.g. with mention spans, built by the ui for this comment.
+     *
+     * @param key whatever the message was built with besides the comment itself
+     */
+    public void setRenderedMessage(Object key, CharSequence renderedMessage) {
+        this.renderedMessage = Pair.create(key, renderedMessage);
+    }
+
+    private void invalidateRenderCache() {
+        preparedForRendering = false;
+        renderModel = null;
+        renderedMessage = null;
+        previewData = null;
+        cancelLoadLinkPreviewData();
     }
 
     public boolean isDownloading() {
@@ -751,6 +801,11 @@ public class QiscusComment implements Parcelable {
         }
 
         setupPlayer();
+        if (player == null) {
+            //The file has been deleted since the duration was read
+            audioDuration = -1;
+            return;
+        }
 
         if (!player.isPlaying()) {
             player.start();
@@ -769,28 +824,28 @@ public class QiscusComment implements Parcelable {
         return player != null && player.isPlaying();
     }
 
+    /**
+     * The duration read by {@link #prepareForRendering()} is used until the audio is played, otherwise the player
+     * has to be prepared here.
+     */
     public int getAudioDuration() {
+        if (player == null && audioDuration >= 0) {
+            return audioDuration;
+        }
         if (player == null && isAudio()) {
-            File localPath = QiscusCore.getDataStore().getLocalPath(id);
+            File localPath = QiscusCore.getDataStore().getLocalPath(roomId, id);
             if (localPath == null) {
                 return 0;
             } else {
                 setupPlayer();
             }
         }
-        return player.getDuration();
+        return player == null ? 0 : player.getDuration();
     }
 
     public int getCurrentAudioPosition() {
-        if (player == null && isAudio()) {
-            File localPath = QiscusCore.getDataStore().getLocalPath(id);
-            if (localPath == null) {
-                return 0;
-            } else {
-                setupPlayer();
-            }
-        }
-        return player.getCurrentPosition();
+        //An audio which has not been played yet is at the start
+        return player == null ? 0 : player.getCurrentPosition();
     }
 
     public void setProgressListener(ProgressListener progressListener) {
@@ -836,6 +891,8 @@ public class QiscusComment implements Parcelable {
         if (linkPreviewListener != null) {
             linkPreviewListener = null;
         }
+
+        cancelLoadLinkPreviewData();
     }
 
     @Override
@@ -871,9 +928,9 @@ public class QiscusComment implements Parcelable {
                 ", state=" + state +
                 ", deleted=" + deleted +
                 ", hardDeleted=" + hardDeleted +
-                ", userExtras=" + userExtras +
+                ", userExtras=" + getRawUserExtras() +
                 ", extraPayload=" + extraPayload +
-                ", extras=" + extras +
+                ", extras=" + getRawExtras() +
                 '}';
     }
 
@@ -903,23 +960,10 @@ public class QiscusComment implements Parcelable {
         dest.writeString(rawType);
         dest.writeString(extraPayload);
         dest.writeParcelable(replyTo, flags);
-        if (extras == null) {
-            try {
-                extras = new JSONObject("{}");
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-        dest.writeString(extras.toString());
-
-        if (userExtras == null) {
-            try {
-                userExtras = new JSONObject("{}");
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-        }
-        dest.writeString(userExtras.toString());
+        String rawExtras = getRawExtras();
+        dest.writeString(rawExtras == null ? "{}" : rawExtras);
+        String rawUserExtras = getRawUserExtras();
+        dest.writeString(rawUserExtras == null ? "{}" : rawUserExtras);
     }
 
     public boolean areContentsTheSame(QiscusComment qiscusComment) {
@@ -939,7 +983,7 @@ public class QiscusComment implements Parcelable {
                 && highlighted == qiscusComment.highlighted
                 && downloading == qiscusComment.downloading
                 && progress == qiscusComment.progress
-                && userExtras == qiscusComment.getUserExtras();
+                && TextUtils.equals(getRawUserExtras(), qiscusComment.getRawUserExtras());
     }
 
     public enum Type {
@@ -994,4 +1038,119 @@ public class QiscusComment implements Parcelable {
             }
         }
     }
+
+    /**
+     * Everything resolved from the message, raw type and payload of a comment, immutable once built.
+     */
+    private static final class RenderModel {
+        private final String message;
+        private final String rawType;
+        private final String extraPayload;
+        private final boolean attachment;
+        private final String attachmentName;
+        private final String mimeType;
+        private final String caption;
+        private final List<String> urls;
+        private final Type type;
+
+        private RenderModel(String message, String rawType, String extraPayload) {
+            this.message = message;
+            this.rawType = rawType;
+            this.extraPayload = extraPayload;
+
+            String trimmedMessage = message.trim().replaceAll(" ", "");
+            attachment = (trimmedMessage.startsWith("[file]") && trimmedMessage.endsWith("[/file]"))
+                    || "file_attachment".equals(rawType);
+            JSONObject payload = parsePayload(extraPayload);
+            if (attachment) {
+                attachmentName = resolveAttachmentName(message, payload);
+                mimeType = attachmentName == null ? null : MimeTypeMap.getSingleton()
+                        .getMimeTypeFromExtension(QiscusFileUtil.getExtension(attachmentName));
+                caption = payload == null ? null : payload.optString("caption", "");
+            } else {
+                attachmentName = null;
+                mimeType = null;
+                caption = null;
+            }
+            urls = Collections.unmodifiableList(QiscusTextUtil.extractUrl(message));
+            type = resolveType();
+        }
+
+        private boolean isBuiltFrom(String message, String rawType, String extraPayload) {
+            return same(this.message, message) && same(this.rawType, rawType)
+                    && same(this.extraPayload, extraPayload);
+        }
+
+        private Type resolveType() {
+            if ("account_linking".equals(rawType)) {
+                return Type.ACCOUNT_LINKING;
+            } else if ("buttons".equals(rawType)) {
+                return Type.BUTTONS;
+            } else if ("reply".equals(rawType)) {
+                return Type.REPLY;
+            } else if ("card".equals(rawType)) {
+                return Type.CARD;
+            } else if ("system_event".equals(rawType)) {
+                return Type.SYSTEM_EVENT;
+            } else if ("contact_person".equals(rawType)) {
+                return Type.CONTACT;
+            } else if ("location".equals(rawType)) {
+                return Type.LOCATION;
+            } else if ("carousel".equals(rawType)) {
+                return Type.CAROUSEL;
+            } else if ("custom".equals(rawType)) {
+                return Type.CUSTOM;
+            } else if (!attachment) {
+                return urls.isEmpty() ? Type.TEXT : Type.LINK;
+            } else if (mimeType == null) {
+                return Type.FILE;
+            } else if (mimeType.contains("image")) {
+                return Type.IMAGE;
+            } else if (mimeType.contains("video")) {
+                return Type.VIDEO;
+            } else if (mimeType.contains("audio")) {
+                return Type.AUDIO;
+            }
+            return Type.FILE;
+        }
+
+        private static JSONObject parsePayload(String extraPayload) {
+            if (extraPayload == null) {
+                return null;
+            }
+            try {
+                return new JSONObject(extraPayload);
+            } catch (JSONException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return name from the payload, or from the url in the message, or null if it is not valid
+         */
+        private static String resolveAttachmentName(String message, JSONObject payload) {
+            String fileName = payload == null ? null : payload.optString("file_name", "");
+            if (!TextUtils.isEmpty(fileName)) {
+                return fileName;
+            }
+
+            try {
+                int fileNameEndIndex = message.lastIndexOf(" [/file]");
+                if (fileNameEndIndex == -1) {
+                    fileNameEndIndex = message.lastIndexOf("[/file]");
+                }
+                int fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
+                fileName = message.substring(fileNameBeginIndex, fileNameEndIndex);
+                fileName = fileName.replaceAll("%(?![0-9a-fA-F]{2})", "%25");
+                fileName = fileName.replaceAll("\\+", "%2B");
+                return URLDecoder.decode(fileName, "UTF-8");
+            } catch (UnsupportedEncodingException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        private static boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
 }
@@ -12,6 +12,12 @@ public class QiscusCoreChatConfig {
     private QiscusImageCompressionConfig qiscusImageCompressionConfig = new QiscusImageCompressionConfig();
     private NotificationListener notificationListener;
     private DeleteCommentListener deleteCommentListener;
+    private int commentCacheSize = 200;
+    private QiscusMqttQosConfig mqttQosConfig = new QiscusMqttQosConfig();
+    private int maxParallelUploads = 2;
+    private int maxParallelDownloads = 3;
+    private int maxRequestsPerHost = 5;
+    private long httpCacheSize = 10 * 1024 * 1024;
 
     public boolean isEnableFcmPushNotification() {
         return enableFcmPushNotification;
@@ -59,6 +65,75 @@ public class QiscusCoreChatConfig {
         return this;
     }
 
+    public int getCommentCacheSize() {
+        return commentCacheSize;
+    }
+
+    /**
+     * Set how many comments are kept in memory in front of the local database, 0 to disable it.
+     */
+    public QiscusCoreChatConfig setCommentCacheSize(int commentCacheSize) {
+        this.commentCacheSize = Math.max(0, commentCacheSize);
+        return this;
+    }
+
+    public QiscusMqttQosConfig getMqttQosConfig() {
+        return mqttQosConfig;
+    }
+
+    public QiscusCoreChatConfig setMqttQosConfig(QiscusMqttQosConfig mqttQosConfig) {
+        this.mqttQosConfig = mqttQosConfig;
+        return this;
+    }
+
+    public int getMaxParallelUploads() {
+        return maxParallelUploads;
+    }
+
+    /**
+     * Set how many attachments are uploaded at the same time, the others wait for a free slot.
+     */
+    public QiscusCoreChatConfig setMaxParallelUploads(int maxParallelUploads) {
+        this.maxParallelUploads = Math.max(1, maxParallelUploads);
+        return this;
+    }
+
+    public int getMaxParallelDownloads() {
+        return maxParallelDownloads;
+    }
+
+    /**
+     * Set how many attachments are downloaded at the same time, the others wait for a free slot.
+     */
+    public QiscusCoreChatConfig setMaxParallelDownloads(int maxParallelDownloads) {
+        this.maxParallelDownloads = Math.max(1, maxParallelDownloads);
+        return this;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Set how many http requests the sdk runs at the same time to one host, takes effect from the next request.
+     */
+    public QiscusCoreChatConfig setMaxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = Math.max(1, maxRequestsPerHost);
+        return this;
+    }
+
+    public long getHttpCacheSize() {
+        return httpCacheSize;
+    }
+
+    /**
+     * Set the size in bytes of the http cache on disk, 0 to disable it. Takes effect from the next request.
+     */
+    public QiscusCoreChatConfig setHttpCacheSize(long httpCacheSize) {
+        this.httpCacheSize = Math.max(0, httpCacheSize);
+        return this;
+    }
+
     public boolean isEnableLog() {
         return enableLog;
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.model;
+
+import java.io.File;
+
+/**
+ * Saved state of the attachment upload of a comment, kept until the comment has been sent.
+ */
+public class QiscusFileUpload {
+    private String commentUniqueId;
+    private long roomId;
+    private String filePath;
+    private long fileLength;
+    private long fileLastModified;
+    private String url;
+    private int attempts;
+
+    public QiscusFileUpload() {
+    }
+
+    public QiscusFileUpload(QiscusComment qiscusComment, File file) {
+        commentUniqueId = qiscusComment.getUniqueId();
+        roomId = qiscusComment.getRoomId();
+        filePath = file.getAbsolutePath();
+        fileLength = file.length();
+        fileLastModified = file.lastModified();
+    }
+
+    public String getCommentUniqueId() {
+        return commentUniqueId;
+    }
+
+    public void setCommentUniqueId(String commentUniqueId) {
+        this.commentUniqueId = commentUniqueId;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    public void setFileLength(long fileLength) {
+        this.fileLength = fileLength;
+    }
+
+    public long getFileLastModified() {
+        return fileLastModified;
+    }
+
+    public void setFileLastModified(long fileLastModified) {
+        this.fileLastModified = fileLastModified;
+    }
+
+    /**
+     * @return url of the uploaded file, or null if it has not been uploaded yet
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return true if the file is still the one this upload was started with
+     */
+    public boolean isSameFile(File file) {
+        return file.getAbsolutePath().equals(filePath) && file.length() == fileLength
+                && file.lastModified() == fileLastModified;
+    }
+
+    @Override
+    public String toString() {
+        return "QiscusFileUpload{" +
+                "commentUniqueId='" + commentUniqueId + '\'' +
+                ", roomId=" + roomId +
+                ", filePath='" + filePath + '\'' +
+                ", fileLength=" + fileLength +
+                ", url='" + url + '\'' +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.model;
+
+/**
+ * MQTT QoS used to subscribe and publish each kind of realtime topic, values are clamped to 0..2.
+ * Typing and presence are refreshed all the time so losing one is harmless, receipts only need to arrive,
+ * comments and notifications keep exactly once delivery.
+ */
+public class QiscusMqttQosConfig {
+    private int commentQos = 2;
+    private int notificationQos = 2;
+    private int receiptQos = 1;
+    private int typingQos = 0;
+    private int presenceQos = 0;
+    private int eventQos = 1;
+
+    public int getCommentQos() {
+        return commentQos;
+    }
+
+    /**
+     * QoS of the comment and update comment topics, including the channel comment topics.
+     */
+    public QiscusMqttQosConfig setCommentQos(int commentQos) {
+        this.commentQos = checkQos(commentQos);
+        return this;
+    }
+
+    public int getNotificationQos() {
+        return notificationQos;
+    }
+
+    public QiscusMqttQosConfig setNotificationQos(int notificationQos) {
+        this.notificationQos = checkQos(notificationQos);
+        return this;
+    }
+
+    public int getReceiptQos() {
+        return receiptQos;
+    }
+
+    /**
+     * QoS of the delivered and read topics.
+     */
+    public QiscusMqttQosConfig setReceiptQos(int receiptQos) {
+        this.receiptQos = checkQos(receiptQos);
+        return this;
+    }
+
+    public int getTypingQos() {
+        return typingQos;
+    }
+
+    public QiscusMqttQosConfig setTypingQos(int typingQos) {
+        this.typingQos = checkQos(typingQos);
+        return this;
+    }
+
+    public int getPresenceQos() {
+        return presenceQos;
+    }
+
+    /**
+     * QoS of the user online status topics, also used for the status published by this user.
+     */
+    public QiscusMqttQosConfig setPresenceQos(int presenceQos) {
+        this.presenceQos = checkQos(presenceQos);
+        return this;
+    }
+
+    public int getEventQos() {
+        return eventQos;
+    }
+
+    /**
+     * QoS of the room custom event topics.
+     */
+    public QiscusMqttQosConfig setEventQos(int eventQos) {
+        this.eventQos = checkQos(eventQos);
+        return this;
+    }
+
+    private static int checkQos(int qos) {
+        return Math.max(0, Math.min(2, qos));
+    }
+}
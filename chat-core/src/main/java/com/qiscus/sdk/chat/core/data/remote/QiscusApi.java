@@ -26,7 +26,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.qiscus.sdk.chat.core.BuildConfig;
 import com.qiscus.sdk.chat.core.QiscusCore;
-import com.qiscus.sdk.chat.core.R;
+import com.qiscus.sdk.chat.core.data.local.QiscusEventCache;
 import com.qiscus.sdk.chat.core.data.model.QUserPresence;
 import com.qiscus.sdk.chat.core.data.model.QiscusAccount;
 import com.qiscus.sdk.chat.core.data.model.QiscusAppConfig;
@@ -40,21 +40,16 @@ import com.qiscus.sdk.chat.core.event.QiscusClearCommentsEvent;
 import com.qiscus.sdk.chat.core.event.QiscusCommentSentEvent;
 import com.qiscus.sdk.chat.core.event.QiscusCommentUpdateEvent;
 import com.qiscus.sdk.chat.core.util.BuildVersionUtil;
-import com.qiscus.sdk.chat.core.util.QiscusDateUtil;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
-import com.qiscus.sdk.chat.core.util.QiscusFileUtil;
 import com.qiscus.sdk.chat.core.util.QiscusHashMapUtil;
 import com.qiscus.sdk.chat.core.util.QiscusLogger;
-import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
 
 import org.greenrobot.eventbus.EventBus;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -63,7 +58,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import okhttp3.ConnectionSpec;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
@@ -77,6 +71,7 @@ import okhttp3.logging.HttpLoggingInterceptor;
 import okio.BufferedSink;
 import okio.Okio;
 import okio.Source;
+import retrofit2.HttpException;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava.RxJavaCallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
@@ -87,12 +82,10 @@ import retrofit2.http.Headers;
 import retrofit2.http.PATCH;
 import retrofit2.http.POST;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 import rx.Emitter;
 import rx.Observable;
 import rx.Single;
-import rx.android.schedulers.AndroidSchedulers;
-import rx.exceptions.OnErrorThrowable;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : August 18, 2016
@@ -102,42 +95,28 @@ import rx.schedulers.Schedulers;
  */
 public enum QiscusApi {
     INSTANCE;
+    private static final int MAX_SYNC_PAGES = 20;
+    private static final String ROOM_BY_ID_PATH = "/api/v2/mobile/get_room_by_id";
+    //Opening the same room again shortly after is answered from the cache
+    private static final int ROOM_BY_ID_MAX_AGE = 30;
+    private OkHttpClient baseClient;
     private OkHttpClient httpClient;
+    private OkHttpClient uploadHttpClient;
+    private OkHttpClient lbHttpClient;
+    private OkHttpClient downloadHttpClient;
     private Api api;
     private String baseUrl;
 
     QiscusApi() {
         baseUrl = QiscusCore.getAppServer();
 
-        if (Build.VERSION.SDK_INT <= 19) {
-            ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
-                    .supportsTlsExtensions(true)
-                    .allEnabledTlsVersions()
-                    .allEnabledCipherSuites()
-                    .build();
-
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(this::headersInterceptor)
-                    .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                    .connectionSpecs(Collections.singletonList(spec))
-                    .build();
-
-        } else {
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(this::headersInterceptor)
-                    .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                    .build();
-        }
+        buildHttpClients();
 
         api = new Retrofit.Builder()
                 .baseUrl(baseUrl)
-                .client(httpClient)
+                .callFactory(request -> getHttpClient().newCall(request))
                 .addConverterFactory(GsonConverterFactory.create())
-                .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                .addCallAdapterFactory(RxJavaCallAdapterFactory.createAsync())
                 .build()
                 .create(Api.class);
     }
@@ -146,39 +125,46 @@ public enum QiscusApi {
         return INSTANCE;
     }
 
-    public void reInitiateInstance() {
-        baseUrl = QiscusCore.getAppServer();
+    private synchronized OkHttpClient getHttpClient() {
+        updateHttpClients();
+        return httpClient;
+    }
 
-        if (Build.VERSION.SDK_INT <= 19) {
-            ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
-                    .supportsTlsExtensions(true)
-                    .allEnabledTlsVersions()
-                    .allEnabledCipherSuites()
-                    .build();
+    private synchronized OkHttpClient getUploadHttpClient() {
+        updateHttpClients();
+        return uploadHttpClient;
+    }
 
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(this::headersInterceptor)
-                    .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                    .connectionSpecs(Collections.singletonList(spec))
-                    .build();
+    private synchronized OkHttpClient getLbHttpClient() {
+        updateHttpClients();
+        return lbHttpClient;
+    }
 
-        } else {
-            httpClient = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS)
-                    .readTimeout(60, TimeUnit.SECONDS)
-                    .addInterceptor(this::headersInterceptor)
-                    .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                    .build();
+    synchronized OkHttpClient getDownloadHttpClient() {
+        updateHttpClients();
+        return downloadHttpClient;
+    }
+
+    /**
+     * Derive the clients again when the base client was rebuilt for new settings.
+     */
+    private void updateHttpClients() {
+        if (baseClient != QiscusHttpClientFactory.getInstance().getBaseClient()) {
+            buildHttpClients();
         }
+    }
+
+    public void reInitiateInstance() {
+        baseUrl = QiscusCore.getAppServer();
+
+        buildHttpClients();
 
         try {
             api = new Retrofit.Builder()
                     .baseUrl(baseUrl)
-                    .client(httpClient)
+                    .callFactory(request -> getHttpClient().newCall(request))
                     .addConverterFactory(GsonConverterFactory.create())
-                    .addCallAdapterFactory(RxJavaCallAdapterFactory.create())
+                    .addCallAdapterFactory(RxJavaCallAdapterFactory.createAsync())
                     .build()
                     .create(Api.class);
         } catch (IllegalArgumentException e) {
@@ -188,6 +174,38 @@ public enum QiscusApi {
 
     }
 
+    private synchronized void buildHttpClients() {
+        baseClient = QiscusHttpClientFactory.getInstance().getBaseClient();
+        httpClient = baseClient.newBuilder()
+                .addInterceptor(this::headersInterceptor)
+                .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
+                .addNetworkInterceptor(this::roomByIdCacheInterceptor)
+                .build();
+
+        //The server may take a while to store a big file before it responds
+        uploadHttpClient = httpClient.newBuilder()
+                .readTimeout(120, TimeUnit.SECONDS)
+                .build();
+
+        //The node must always come from the load balancer, never from the cache
+        lbHttpClient = httpClient.newBuilder()
+                .cache(null)
+                .build();
+
+        //Attachments would push everything else out of the cache
+        downloadHttpClient = httpClient.newBuilder()
+                .cache(null)
+                .build();
+    }
+
+    private Response roomByIdCacheInterceptor(Interceptor.Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        if (!chain.request().url().encodedPath().equals(ROOM_BY_ID_PATH)) {
+            return response;
+        }
+        return QiscusHttpClientFactory.withMaxAge(response, ROOM_BY_ID_MAX_AGE);
+    }
+
     private Response headersInterceptor(Interceptor.Chain chain) throws IOException {
         Request.Builder builder = chain.request().newBuilder();
         JSONObject jsonCustomHeader = QiscusCore.getCustomHeader();
@@ -377,13 +395,15 @@ public enum QiscusApi {
     @Deprecated
     public Observable<List<QiscusChatRoom>> getChatRooms(int page, int limit, boolean showMembers) {
         return api.getChatRooms(page, limit, showMembers, false, null, false)
-                .map(QiscusApiParser::parseQiscusChatRoomInfo);
+                .concatMap(QiscusStreamParser::parseChatRooms)
+                .toList();
     }
 
     public Observable<List<QiscusChatRoom>> getAllChatRooms(boolean showParticipant, boolean showRemoved,
                                                             boolean showEmpty, int page, int limit) {
         return api.getChatRooms(page, limit, showParticipant, showEmpty, null, showRemoved)
-                .map(QiscusApiParser::parseQiscusChatRoomInfo);
+                .concatMap(QiscusStreamParser::parseChatRooms)
+                .toList();
     }
 
     public Observable<List<QiscusChatRoom>> getAllChatRooms(boolean showParticipant, boolean showRemoved,
@@ -400,7 +420,8 @@ public enum QiscusApi {
         }
 
         return api.getChatRooms(page, limit, showParticipant, showEmpty, type, showRemoved)
-                .map(QiscusApiParser::parseQiscusChatRoomInfo);
+                .concatMap(QiscusStreamParser::parseChatRooms)
+                .toList();
     }
 
     @Deprecated
@@ -439,9 +460,7 @@ public enum QiscusApi {
         }
 
         return api.getComments(roomId, lastCommenID, false, 20)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     @Deprecated
@@ -452,9 +471,7 @@ public enum QiscusApi {
         }
 
         return api.getComments(roomId, lastCommentID, true, 20)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     public Observable<QiscusComment> getPreviousMessagesById(long roomId, int limit, long messageId) {
@@ -464,16 +481,12 @@ public enum QiscusApi {
         }
 
         return api.getComments(roomId, messageID, false, limit)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     public Observable<QiscusComment> getPreviousMessagesById(long roomId, int limit) {
         return api.getComments(roomId, null, false, limit)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     public Observable<QiscusComment> getNextMessagesById(long roomId, int limit, long messageId) {
@@ -483,16 +496,12 @@ public enum QiscusApi {
         }
 
         return api.getComments(roomId, messageID, true, limit)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     public Observable<QiscusComment> getNextMessagesById(long roomId, int limit) {
         return api.getComments(roomId, null, true, limit)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId));
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, roomId));
     }
 
     public Observable<QiscusComment> updateMessage(QiscusComment message) {
@@ -572,52 +581,14 @@ public enum QiscusApi {
     }
 
     public Observable<QiscusComment> sendFileMessage(QiscusComment message, File file, ProgressListener progressUploadListener) {
-        return Observable.create(subscriber -> {
-            long fileLength = file.length();
-
-            RequestBody requestBody = new MultipartBody.Builder()
-                    .setType(MultipartBody.FORM)
-                    .addFormDataPart("file", file.getName(),
-                            new CountingFileRequestBody(file, totalBytes -> {
-                                int progress = (int) (totalBytes * 100 / fileLength);
-                                progressUploadListener.onProgress(progress);
-                            }))
-                    .build();
-
-            Request request = new Request.Builder()
-                    .url(baseUrl + "api/v2/mobile/upload")
-                    .post(requestBody).build();
-
-            try {
-                Response response = httpClient.newCall(request).execute();
-                JSONObject responseJ = new JSONObject(response.body().string());
-                String result = responseJ.getJSONObject("results").getJSONObject("file").getString("url");
-                message.updateAttachmentUrl(Uri.parse(result).toString());
-                QiscusCore.getDataStore().addOrUpdate(message);
-
-                QiscusApi.getInstance().sendMessage(message)
-                        .doOnSubscribe(() -> QiscusCore.getDataStore().addOrUpdate(message))
-                        .doOnError(throwable -> {
-                            subscriber.onError(throwable);
-                        })
-                        .subscribeOn(Schedulers.io())
-                        .observeOn(AndroidSchedulers.mainThread())
-                        .subscribe(commentSend -> {
-                            subscriber.onNext(commentSend);
-                            subscriber.onCompleted();
-                        }, throwable -> {
-                            QiscusErrorLogger.print(throwable);
-                            throwable.printStackTrace();
-                            subscriber.onError(throwable);
-                        });
-
-
-            } catch (IOException | JSONException e) {
-                QiscusErrorLogger.print("UploadFile", e);
-                subscriber.onError(e);
-            }
-        }, Emitter.BackpressureMode.BUFFER);
-
+        return QiscusUploadManager.getInstance().upload(message, file, progressUploadListener)
+                .flatMap(uri -> {
+                    message.updateAttachmentUrl(uri.toString());
+                    QiscusCore.getDataStore().addOrUpdate(message);
+                    return sendMessage(message);
+                })
+                .doOnNext(commentSend -> QiscusUploadManager.getInstance().finish(commentSend))
+                .doOnError(throwable -> QiscusErrorLogger.print("UploadFile", throwable));
     }
 
     @Deprecated
@@ -627,13 +598,8 @@ public enum QiscusApi {
                     QiscusErrorLogger.print("Sync", throwable);
                     return null;
                 })
-                .filter(jsonElement -> jsonElement != null)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> {
-                    JsonObject jsonComment = jsonElement.getAsJsonObject();
-                    return QiscusApiParser.parseQiscusComment(jsonElement, jsonComment.get("room_id").getAsLong());
-                });
+                .filter(responseBody -> responseBody != null)
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, 0));
     }
 
     public Observable<QiscusComment> synchronize(long lastMessageId) {
@@ -642,27 +608,81 @@ public enum QiscusApi {
                     QiscusErrorLogger.print("Sync", throwable);
                     return null;
                 })
-                .filter(jsonElement -> jsonElement != null)
-                .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
-                        .getAsJsonObject().get("comments").getAsJsonArray()))
-                .map(jsonElement -> {
-                    JsonObject jsonComment = jsonElement.getAsJsonObject();
-                    return QiscusApiParser.parseQiscusComment(jsonElement, jsonComment.get("room_id").getAsLong());
-                });
+                .filter(responseBody -> responseBody != null)
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, 0));
+    }
+
+    /**
+     * Get the comments received since the last sync, then the events since the last event.
+     * Pages are requested one after another until caught up, at most {@link #MAX_SYNC_PAGES} pages
+     * for each, and the next page is only requested after the previous one has been consumed.
+     * The last synced comment id is saved after every page, so a sync that is interrupted continues
+     * from the last complete page next time. Comments mqtt delivered since are not requested again,
+     * the sync starts after the latest comment in the database when that is newer.
+     * A page that fails ends the sync with its error.
+     *
+     * @return comments received since the last sync
+     */
+    public Observable<QiscusComment> sync() {
+        return Observable.defer(() -> {
+            long lastCommentId = QiscusEventCache.getInstance().getLastSyncCommentId();
+            QiscusComment latestComment = QiscusCore.getDataStore().getLatestComment();
+            if (latestComment != null) {
+                lastCommentId = Math.max(lastCommentId, latestComment.getId());
+            }
+            if (lastCommentId <= 0) {
+                return Observable.<QiscusComment>empty();
+            }
+            return syncComments(lastCommentId, MAX_SYNC_PAGES);
+        }).concatWith(Observable.defer(() -> syncEvents(QiscusEventCache.getInstance().getLastEventId(),
+                MAX_SYNC_PAGES)).ignoreElements().cast(QiscusComment.class));
     }
 
-    public Observable<QiscusComment> sync() {
-        QiscusComment latestComment = QiscusCore.getDataStore().getLatestComment();
-        if (latestComment == null || !QiscusTextUtil.getString(R.string.qiscus_today)
-                .equals(QiscusDateUtil.toTodayOrDate(latestComment.getTime()))) {
-            return Observable.empty();
-        }
-        return synchronize(latestComment.getId());
+    private Observable<QiscusComment> syncComments(long lastCommentId, int remainingPages) {
+        long[] nextCommentId = {lastCommentId};
+        return api.sync(lastCommentId)
+                .concatMap(responseBody -> QiscusStreamParser.parseComments(responseBody, 0))
+                .doOnNext(qiscusComment -> nextCommentId[0] = Math.max(nextCommentId[0], qiscusComment.getId()))
+                .doOnCompleted(() -> QiscusEventCache.getInstance().setLastSyncCommentId(nextCommentId[0]))
+                .doOnError(throwable -> QiscusErrorLogger.print("Sync", throwable))
+                .concatWith(Observable.defer(() -> {
+                    if (nextCommentId[0] <= lastCommentId || remainingPages <= 1) {
+                        return Observable.<QiscusComment>empty();
+                    }
+                    return syncComments(nextCommentId[0], remainingPages - 1);
+                }));
+    }
+
+    private Observable<JSONObject> syncEvents(long lastEventId, int remainingPages) {
+        return api.getEvents(lastEventId)
+                .doOnError(throwable -> QiscusErrorLogger.print("SyncEvent", throwable))
+                .concatMap(jsonElement -> {
+                    List<JSONObject> events = new ArrayList<>();
+                    long nextEventId = lastEventId;
+                    for (JsonElement jsonEvent : jsonElement.getAsJsonObject().get("events").getAsJsonArray()) {
+                        try {
+                            JSONObject event = new JSONObject(jsonEvent.toString());
+                            events.add(event);
+                            nextEventId = Math.max(nextEventId, event.optLong("id"));
+                        } catch (JSONException e) {
+                            //ignored
+                        }
+                    }
+
+                    long lastPageEventId = nextEventId;
+                    Observable<JSONObject> page = Observable.from(events)
+                            .doOnNext(QiscusPusherApi::handleNotification);
+                    if (lastPageEventId <= lastEventId || remainingPages <= 1) {
+                        return page;
+                    }
+                    return page.concatWith(Observable.defer(() -> syncEvents(lastPageEventId, remainingPages - 1)));
+                });
     }
 
     @Deprecated
     public Observable<Uri> uploadFile(File file, ProgressListener progressListener) {
-        return Observable.create(subscriber -> {
+        String url = baseUrl + "api/v2/mobile/upload";
+        return QiscusHttpClientFactory.getInstance().limitPerHost(url, Observable.create(subscriber -> {
             long fileLength = file.length();
 
             RequestBody requestBody = new MultipartBody.Builder()
@@ -675,11 +695,11 @@ public enum QiscusApi {
                     .build();
 
             Request request = new Request.Builder()
-                    .url(baseUrl + "api/v2/mobile/upload")
+                    .url(url)
                     .post(requestBody).build();
 
             try {
-                Response response = httpClient.newCall(request).execute();
+                Response response = getUploadHttpClient().newCall(request).execute();
                 JSONObject responseJ = new JSONObject(response.body().string());
                 String result = responseJ.getJSONObject("results").getJSONObject("file").getString("url");
 
@@ -689,11 +709,19 @@ public enum QiscusApi {
                 QiscusErrorLogger.print("UploadFile", e);
                 subscriber.onError(e);
             }
-        }, Emitter.BackpressureMode.BUFFER);
+        }, Emitter.BackpressureMode.BUFFER));
     }
 
     public Observable<Uri> upload(File file, ProgressListener progressListener) {
-        return Observable.create(subscriber -> {
+        return upload(getUploadHttpClient(), baseUrl + "api/v2/mobile/upload", file, progressListener);
+    }
+
+    /**
+     * An error response is emitted as {@link HttpException}, so the caller can tell a server error from a
+     * request the server will never accept.
+     */
+    static Observable<Uri> upload(OkHttpClient client, String url, File file, ProgressListener progressListener) {
+        return QiscusHttpClientFactory.getInstance().limitPerHost(url, Observable.create(subscriber -> {
             long fileLength = file.length();
 
             RequestBody requestBody = new MultipartBody.Builder()
@@ -706,11 +734,16 @@ public enum QiscusApi {
                     .build();
 
             Request request = new Request.Builder()
-                    .url(baseUrl + "api/v2/mobile/upload")
+                    .url(url)
                     .post(requestBody).build();
 
             try {
-                Response response = httpClient.newCall(request).execute();
+                Response response = client.newCall(request).execute();
+                if (!response.isSuccessful()) {
+                    ResponseBody errorBody = ResponseBody.create(response.body().contentType(), response.body().bytes());
+                    subscriber.onError(new HttpException(retrofit2.Response.error(errorBody, response)));
+                    return;
+                }
                 JSONObject responseJ = new JSONObject(response.body().string());
                 String result = responseJ.getJSONObject("results").getJSONObject("file").getString("url");
 
@@ -720,58 +753,15 @@ public enum QiscusApi {
                 QiscusErrorLogger.print("UploadFile", e);
                 subscriber.onError(e);
             }
-        }, Emitter.BackpressureMode.BUFFER);
+        }, Emitter.BackpressureMode.BUFFER));
     }
 
+    /**
+     * Download the file through {@link QiscusDownloadManager}, so downloads of the same url are shared
+     * and an interrupted download continues where it stopped.
+     */
     public Observable<File> downloadFile(String url, String fileName, ProgressListener progressListener) {
-        return Observable.create(subscriber -> {
-            InputStream inputStream = null;
-            FileOutputStream fos = null;
-            try {
-                Request request = new Request.Builder().url(url).build();
-
-                Response response = httpClient.newCall(request).execute();
-
-                File output = new File(QiscusFileUtil.generateFilePath(fileName));
-                fos = new FileOutputStream(output.getPath());
-                if (!response.isSuccessful()) {
-                    throw new IOException();
-                } else {
-                    ResponseBody responseBody = response.body();
-                    long fileLength = responseBody.contentLength();
-
-                    inputStream = responseBody.byteStream();
-                    byte[] buffer = new byte[4096];
-                    long total = 0;
-                    int count;
-                    while ((count = inputStream.read(buffer)) != -1) {
-                        total += count;
-                        long totalCurrent = total;
-                        if (fileLength > 0) {
-                            progressListener.onProgress((totalCurrent * 100 / fileLength));
-                        }
-                        fos.write(buffer, 0, count);
-                    }
-                    fos.flush();
-
-                    subscriber.onNext(output);
-                    subscriber.onCompleted();
-                }
-            } catch (Exception e) {
-                throw OnErrorThrowable.from(OnErrorThrowable.addValueAsLastCause(e, url));
-            } finally {
-                try {
-                    if (fos != null) {
-                        fos.close();
-                    }
-                    if (inputStream != null) {
-                        inputStream.close();
-                    }
-                } catch (IOException ignored) {
-                    //Do nothing
-                }
-            }
-        }, Emitter.BackpressureMode.BUFFER);
+        return QiscusDownloadManager.getInstance().download(url, fileName, progressListener);
     }
 
     public Observable<QiscusChatRoom> updateChatRoom(long roomId, String name, String avatarURL, JSONObject extras) {
@@ -1124,44 +1114,20 @@ public enum QiscusApi {
     }
 
     public Observable<String> getMqttBaseUrl() {
-        return Observable.create(subscriber -> {
-            OkHttpClient httpClientLB;
-            if (Build.VERSION.SDK_INT <= 19) {
-                ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
-                        .supportsTlsExtensions(true)
-                        .allEnabledTlsVersions()
-                        .allEnabledCipherSuites()
-                        .build();
-
-                httpClientLB = new OkHttpClient.Builder()
-                        .connectTimeout(60, TimeUnit.SECONDS)
-                        .readTimeout(60, TimeUnit.SECONDS)
-                        .addInterceptor(this::headersInterceptor)
-                        .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                        .connectionSpecs(Collections.singletonList(spec))
-                        .build();
-
-            } else {
-                httpClientLB = new OkHttpClient.Builder()
-                        .connectTimeout(60, TimeUnit.SECONDS)
-                        .readTimeout(60, TimeUnit.SECONDS)
-                        .addInterceptor(this::headersInterceptor)
-                        .addInterceptor(makeLoggingInterceptor(QiscusCore.getChatConfig().isEnableLog()))
-                        .build();
-            }
-
-            String url = QiscusCore.getBaseURLLB();
+        String url = QiscusCore.getBaseURLLB();
+        return QiscusHttpClientFactory.getInstance().limitPerHost(url, Observable.create(subscriber -> {
             Request okHttpRequest = new Request.Builder().url(url).build();
             try {
-                Response response = httpClientLB.newCall(okHttpRequest).execute();
+                Response response = getLbHttpClient().newCall(okHttpRequest).execute();
                 JSONObject jsonResponse = new JSONObject(response.body().string());
                 String node = jsonResponse.getString("node");
                 subscriber.onNext(node);
                 subscriber.onCompleted();
             } catch (IOException | JSONException e) {
-                e.printStackTrace();
+                //Terminate, the slot of the host is only released then
+                subscriber.onError(e);
             }
-        }, Emitter.BackpressureMode.BUFFER);
+        }, Emitter.BackpressureMode.BUFFER));
     }
 
     public Observable<List<QiscusAccount>> getUsers(String searchUsername) {
@@ -1357,8 +1323,9 @@ public enum QiscusApi {
                 @Query("id") long roomId
         );
 
+        @Streaming
         @GET("api/v2/mobile/load_comments")
-        Observable<JsonElement> getComments(
+        Observable<ResponseBody> getComments(
                 @Query("topic_id") long roomId,
                 @Query("last_comment_id") Long lastCommentId,
                 @Query("after") boolean after,
@@ -1377,8 +1344,9 @@ public enum QiscusApi {
                 @Body HashMap<String, Object> data
         );
 
+        @Streaming
         @GET("api/v2/mobile/sync")
-        Observable<JsonElement> sync(
+        Observable<ResponseBody> sync(
                 @Query("last_received_comment_id") long lastCommentId
         );
 
@@ -1406,8 +1374,9 @@ public enum QiscusApi {
                 @Body HashMap<String, Object> data
         );
 
+        @Streaming
         @GET("api/v2/mobile/user_rooms")
-        Observable<JsonElement> getChatRooms(
+        Observable<ResponseBody> getChatRooms(
                 @Query("page") int page,
                 @Query("limit") int limit,
                 @Query("show_participants") boolean showParticipants,
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import rx.Observable;
+import rx.functions.Func0;
+import rx.schedulers.Schedulers;
+import rx.subjects.BehaviorSubject;
+
+/**
+ * Runs at most maxConcurrent observables at the same time without blocking a thread for it. The others wait
+ * in a queue and are subscribed on {@link Schedulers#io()} when a slot is released. A slot is released when the
+ * observable terminates or is unsubscribed, so retrying a limited observable waits for a slot again.
+ */
+final class QiscusConcurrencyLimiter {
+    private final Func0<Integer> maxConcurrent;
+    private final Queue<Slot> waiting = new ArrayDeque<>();
+    private int runningCount;
+
+    /**
+     * @param maxConcurrent read every time a slot is taken, so the limit can change at runtime
+     */
+    QiscusConcurrencyLimiter(Func0<Integer> maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    <T> Observable<T> limit(Observable<T> source) {
+        return Observable.defer(() -> {
+            Slot slot = new Slot();
+            return slot.granted
+                    .first()
+                    .observeOn(Schedulers.io())
+                    .flatMap(ignored -> source)
+                    .doOnSubscribe(() -> request(slot))
+                    .doAfterTerminate(() -> release(slot))
+                    .doOnUnsubscribe(() -> release(slot));
+        });
+    }
+
+    synchronized int getRunningCount() {
+        return runningCount;
+    }
+
+    private void request(Slot slot) {
+        synchronized (this) {
+            if (runningCount >= maxConcurrent.call()) {
+                waiting.add(slot);
+                return;
+            }
+            runningCount++;
+            slot.running = true;
+        }
+        slot.granted.onNext(slot);
+    }
+
+    private void release(Slot slot) {
+        List<Slot> granted = new ArrayList<>();
+        synchronized (this) {
+            if (!slot.running) {
+                waiting.remove(slot);
+                return;
+            }
+            slot.running = false;
+            runningCount--;
+            while (runningCount < maxConcurrent.call() && !waiting.isEmpty()) {
+                Slot next = waiting.poll();
+                next.running = true;
+                runningCount++;
+                granted.add(next);
+            }
+        }
+        for (Slot next : granted) {
+            next.granted.onNext(next);
+        }
+    }
+
+    private static final class Slot {
+        private final BehaviorSubject<Slot> granted = BehaviorSubject.create();
+        private boolean running;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.os.SystemClock;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.util.QiscusFileUtil;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import rx.Emitter;
+import rx.Observable;
+import rx.exceptions.OnErrorThrowable;
+
+/**
+ * Downloads attachments by url, at most {@link com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig#getMaxParallelDownloads()}
+ * at the same time. Downloading a url which is already being downloaded joins the running download instead of
+ * starting another one. Bytes are written to a .part file next to the destination, so a download which was
+ * interrupted continues with a range request, and the file only gets its real name once it is complete.
+ * The ETag or Last-Modified of the file is saved next to the .part file and sent as If-Range, so the rest of a
+ * file which changed on the server is not appended to the start of the old one.
+ */
+public enum QiscusDownloadManager {
+    INSTANCE;
+    private static final String TAG = QiscusDownloadManager.class.getSimpleName();
+    private static final int BUFFER_SIZE = 8192;
+    private static final long PROGRESS_INTERVAL = 200;
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    private final Map<String, Download> downloads = new HashMap<>();
+    private final QiscusConcurrencyLimiter limiter =
+            new QiscusConcurrencyLimiter(() -> QiscusCore.getChatConfig().getMaxParallelDownloads());
+
+    public static QiscusDownloadManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Download the attachment of the comment and save it as the local path of the comment.
+     */
+    public Observable<File> download(QiscusComment qiscusComment, QiscusApi.ProgressListener progressListener) {
+        return download(qiscusComment.getAttachmentUri().toString(), qiscusComment.getAttachmentName(), progressListener)
+                .doOnNext(file -> QiscusCore.getDataStore()
+                        .addOrUpdateLocalPath(qiscusComment.getRoomId(), qiscusComment.getId(), file.getAbsolutePath()));
+    }
+
+    /**
+     * Download the url, the download stops when every subscriber of it has unsubscribed.
+     *
+     * @param progressListener called with the percentage when it changes, at most every 200 ms
+     */
+    public Observable<File> download(String url, String fileName, QiscusApi.ProgressListener progressListener) {
+        return Observable.defer(() -> {
+            Download download = getOrCreate(url, fileName);
+            return download.file
+                    .doOnSubscribe(() -> download.listeners.add(progressListener))
+                    .doOnUnsubscribe(() -> download.listeners.remove(progressListener));
+        });
+    }
+
+    public synchronized boolean isDownloading(String url) {
+        return downloads.containsKey(url);
+    }
+
+    public int getRunningCount() {
+        return limiter.getRunningCount();
+    }
+
+    private synchronized Download getOrCreate(String url, String fileName) {
+        Download download = downloads.get(url);
+        if (download == null) {
+            download = new Download();
+            Download newDownload = download;
+            download.file = limiter.limit(QiscusHttpClientFactory.getInstance()
+                    .limitPerHost(url, fetch(url, fileName, newDownload)))
+                    .doOnTerminate(() -> remove(url, newDownload))
+                    .doOnUnsubscribe(() -> remove(url, newDownload))
+                    .replay(1)
+                    .refCount();
+            downloads.put(url, download);
+        } else {
+            QiscusLogger.print(TAG, "Join running download " + url);
+        }
+        return download;
+    }
+
+    private synchronized void remove(String url, Download download) {
+        if (downloads.get(url) == download) {
+            downloads.remove(url);
+        }
+    }
+
+    private Observable<File> fetch(String url, String fileName, Download download) {
+        return Observable.create(subscriber -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            subscriber.setCancellation(() -> cancelled.set(true));
+
+            File destination = new File(QiscusFileUtil.generateFilePath(fileName));
+            File partFile = new File(destination.getParentFile(), "." + hash(url) + ".part");
+            File validatorFile = new File(destination.getParentFile(), "." + hash(url) + ".part.validator");
+            Response response = null;
+            InputStream inputStream = null;
+            FileOutputStream fos = null;
+            try {
+                long offset = partFile.length();
+                String validator = offset > 0 ? readValidator(validatorFile) : null;
+                if (validator == null) {
+                    //Without a validator the part file can not be checked against the file on the server
+                    offset = 0;
+                }
+                response = execute(url, offset, validator);
+                if (response.code() == HTTP_RANGE_NOT_SATISFIABLE) {
+                    //The part file is not valid anymore, e.g the file has changed, start again
+                    response.close();
+                    offset = 0;
+                    response = execute(url, offset, null);
+                }
+                if (!response.isSuccessful()) {
+                    throw new IOException("Download failed with code " + response.code());
+                }
+                if (offset > 0 && response.code() != HTTP_PARTIAL_CONTENT) {
+                    //The file changed since the part file was written, or the server ignored the range,
+                    //it sends the whole file
+                    offset = 0;
+                }
+                if (offset == 0) {
+                    partFile.delete();
+                    saveValidator(validatorFile, getValidator(response));
+                }
+
+                ResponseBody responseBody = response.body();
+                long contentLength = responseBody.contentLength();
+                long fileLength = contentLength < 0 ? -1 : offset + contentLength;
+                QiscusLogger.print(TAG, "Download " + url + " from " + offset + " of " + fileLength);
+
+                inputStream = responseBody.byteStream();
+                fos = new FileOutputStream(partFile, offset > 0);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long total = offset;
+                int count;
+                while ((count = inputStream.read(buffer)) != -1) {
+                    if (cancelled.get()) {
+                        //Keep what we have, the next download of this url continues from here
+                        return;
+                    }
+                    fos.write(buffer, 0, count);
+                    total += count;
+                    if (fileLength > 0) {
+                        download.onProgress(total * 100 / fileLength);
+                    }
+                }
+                fos.flush();
+                fos.close();
+                fos = null;
+
+                if (!partFile.renameTo(destination)) {
+                    throw new IOException("Can not rename " + partFile + " to " + destination);
+                }
+                validatorFile.delete();
+                download.onProgress(100);
+                subscriber.onNext(destination);
+                subscriber.onCompleted();
+            } catch (Exception e) {
+                subscriber.onError(OnErrorThrowable.addValueAsLastCause(e, url));
+            } finally {
+                try {
+                    if (fos != null) {
+                        fos.close();
+                    }
+                    if (inputStream != null) {
+                        inputStream.close();
+                    }
+                } catch (IOException ignored) {
+                    //Do nothing
+                }
+                if (response != null) {
+                    response.close();
+                }
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    /**
+     * @param validator sent as If-Range, so the server sends the whole file instead of the range if it changed
+     */
+    private Response execute(String url, long offset, String validator) throws IOException {
+        Request.Builder request = new Request.Builder().url(url);
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + "-");
+            request.header("If-Range", validator);
+        }
+        return QiscusApi.getInstance().getDownloadHttpClient().newCall(request.build()).execute();
+    }
+
+    /**
+     * @return the strong ETag of the file, or else its Last-Modified, null if the server sent neither
+     */
+    private static String getValidator(Response response) {
+        String eTag = response.header("ETag");
+        if (eTag != null && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    private static String readValidator(File validatorFile) {
+        if (!validatorFile.exists()) {
+            return null;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(validatorFile);
+            ByteArrayOutputStream validator = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                validator.write(buffer, 0, count);
+            }
+            String value = validator.toString("UTF-8").trim();
+            return value.isEmpty() ? null : value;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    private static void saveValidator(File validatorFile, String validator) throws IOException {
+        if (validator == null) {
+            validatorFile.delete();
+            return;
+        }
+        FileOutputStream outputStream = new FileOutputStream(validatorFile);
+        try {
+            outputStream.write(validator.getBytes(Charset.forName("UTF-8")));
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            //Do nothing
+        }
+    }
+
+    private static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(Charset.forName("UTF-8")));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private static final class Download {
+        private final List<QiscusApi.ProgressListener> listeners = new CopyOnWriteArrayList<>();
+        private Observable<File> file;
+        private long lastProgress = -1;
+        private long lastProgressTime;
+
+        private void onProgress(long percentage) {
+            long now = SystemClock.elapsedRealtime();
+            if (percentage == lastProgress || (percentage < 100 && now - lastProgressTime < PROGRESS_INTERVAL)) {
+                return;
+            }
+            lastProgress = percentage;
+            lastProgressTime = now;
+            for (QiscusApi.ProgressListener listener : listeners) {
+                listener.onProgress(percentage);
+            }
+        }
+    }
+}
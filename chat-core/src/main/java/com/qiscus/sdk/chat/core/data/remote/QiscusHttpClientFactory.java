@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.os.Build;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig;
+import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.ConnectionSpec;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import rx.Observable;
+
+/**
+ * Owner of the OkHttpClient used by the whole sdk, every client is derived from it with {@link #newBuilder()},
+ * so they share the connection pool, the dispatcher and the http cache.
+ * The cache only keeps GET responses which the server allows to be cached, and is cleared on logout
+ * because the cached responses belong to the user.
+ * <p>
+ * The settings of {@link QiscusCoreChatConfig} are read every time the base client is taken, the base client is
+ * rebuilt when the http cache size changed. Take it again for every request instead of keeping it.
+ */
+public enum QiscusHttpClientFactory {
+    INSTANCE;
+    private static final String CACHE_DIRECTORY = "qiscus_http_cache";
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION = 5;
+
+    private final Metrics metrics = new Metrics();
+    private final Dispatcher dispatcher = new Dispatcher();
+    private final ConnectionPool connectionPool =
+            new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION, TimeUnit.MINUTES);
+    private final Map<String, QiscusConcurrencyLimiter> hostLimiters = new HashMap<>();
+    private OkHttpClient baseClient;
+    private Cache cache;
+    private long cacheSize;
+
+    public static QiscusHttpClientFactory getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return builder of a client sharing the connection pool, dispatcher and cache, add the interceptors
+     * or timeouts needed by the caller
+     */
+    public OkHttpClient.Builder newBuilder() {
+        return getBaseClient().newBuilder();
+    }
+
+    public synchronized OkHttpClient getBaseClient() {
+        QiscusCoreChatConfig chatConfig = QiscusCore.getChatConfig();
+        if (dispatcher.getMaxRequestsPerHost() != chatConfig.getMaxRequestsPerHost()) {
+            dispatcher.setMaxRequestsPerHost(chatConfig.getMaxRequestsPerHost());
+        }
+        if (baseClient == null || cacheSize != chatConfig.getHttpCacheSize()) {
+            //The old cache is left open to the calls still running with it, closing it would fail them
+            cacheSize = chatConfig.getHttpCacheSize();
+            baseClient = buildBaseClient();
+        }
+        return baseClient;
+    }
+
+    /**
+     * Calls made with execute() are not counted by the dispatcher, only the enqueued ones are. Observables making
+     * such a call are limited here to {@link QiscusCoreChatConfig#getMaxRequestsPerHost()} per host.
+     */
+    <T> Observable<T> limitPerHost(String url, Observable<T> source) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return source;
+        }
+
+        QiscusConcurrencyLimiter limiter;
+        synchronized (this) {
+            limiter = hostLimiters.get(httpUrl.host());
+            if (limiter == null) {
+                limiter = new QiscusConcurrencyLimiter(() -> QiscusCore.getChatConfig().getMaxRequestsPerHost());
+                hostLimiters.put(httpUrl.host(), limiter);
+            }
+        }
+        return limiter.limit(source);
+    }
+
+    /**
+     * Let the cache keep a successful response for maxAge seconds, whatever the server said. Only for endpoints
+     * whose response does not change that often, used by a network interceptor.
+     */
+    static Response withMaxAge(Response response, int maxAge) {
+        if (!response.isSuccessful()) {
+            return response;
+        }
+        return response.newBuilder()
+                .removeHeader("Pragma")
+                .header("Cache-Control", "max-age=" + maxAge)
+                .build();
+    }
+
+    public synchronized void evictCache() {
+        if (cache == null) {
+            return;
+        }
+
+        try {
+            cache.evictAll();
+        } catch (IOException e) {
+            QiscusErrorLogger.print(e);
+        }
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public int getIdleConnectionCount() {
+        return getBaseClient().connectionPool().idleConnectionCount();
+    }
+
+    private OkHttpClient buildBaseClient() {
+        cache = cacheSize > 0 ? new Cache(new File(QiscusCore.getApps().getCacheDir(), CACHE_DIRECTORY), cacheSize) : null;
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .cache(cache)
+                .eventListenerFactory(QiscusHttpEventListener.FACTORY);
+
+        if (Build.VERSION.SDK_INT <= 19) {
+            ConnectionSpec spec = new ConnectionSpec.Builder(ConnectionSpec.COMPATIBLE_TLS)
+                    .supportsTlsExtensions(true)
+                    .allEnabledTlsVersions()
+                    .allEnabledCipherSuites()
+                    .build();
+            builder.connectionSpecs(Collections.singletonList(spec));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Totals of the http calls made by the sdk clients, durations are in ms.
+     */
+    public static final class Metrics {
+        private long callCount;
+        private long failedCount;
+        private long connectCount;
+        private long totalDns;
+        private long dnsCount;
+        private long totalConnect;
+        private long totalTls;
+        private long tlsCount;
+        private long totalTimeToFirstByte;
+        private long timeToFirstByteCount;
+
+        private Metrics() {
+        }
+
+        synchronized void add(boolean success, long dns, long connect, long tls, long timeToFirstByte) {
+            callCount++;
+            if (!success) {
+                failedCount++;
+            }
+            if (dns >= 0) {
+                dnsCount++;
+                totalDns += dns;
+            }
+            if (connect >= 0) {
+                connectCount++;
+                totalConnect += connect;
+            }
+            if (tls >= 0) {
+                tlsCount++;
+                totalTls += tls;
+            }
+            if (timeToFirstByte >= 0) {
+                timeToFirstByteCount++;
+                totalTimeToFirstByte += timeToFirstByte;
+            }
+        }
+
+        public synchronized long getCallCount() {
+            return callCount;
+        }
+
+        public synchronized long getFailedCount() {
+            return failedCount;
+        }
+
+        /**
+         * @return number of new connections, calls which reused a pooled connection are not counted
+         */
+        public synchronized long getConnectCount() {
+            return connectCount;
+        }
+
+        public synchronized long getAverageDns() {
+            return dnsCount == 0 ? 0 : totalDns / dnsCount;
+        }
+
+        public synchronized long getAverageConnect() {
+            return connectCount == 0 ? 0 : totalConnect / connectCount;
+        }
+
+        public synchronized long getAverageTls() {
+            return tlsCount == 0 ? 0 : totalTls / tlsCount;
+        }
+
+        public synchronized long getAverageTimeToFirstByte() {
+            return timeToFirstByteCount == 0 ? 0 : totalTimeToFirstByte / timeToFirstByteCount;
+        }
+    }
+}
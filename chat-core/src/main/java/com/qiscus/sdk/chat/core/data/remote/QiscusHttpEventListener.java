@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.os.SystemClock;
+
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+/**
+ * Times the phases of one http call, dns, connect, tls and time to first byte, and adds them to
+ * {@link QiscusHttpClientFactory.Metrics}. A phase which did not happen, e.g connect on a pooled connection, is -1.
+ */
+final class QiscusHttpEventListener extends EventListener {
+    private static final String TAG = "QiscusHttp";
+
+    static final Factory FACTORY = call -> new QiscusHttpEventListener();
+
+    private long callStart;
+    private long dnsStart;
+    private long connectStart;
+    private long secureConnectStart;
+    private long dnsDuration = -1;
+    private long connectDuration = -1;
+    private long secureConnectDuration = -1;
+    private long timeToFirstByte = -1;
+
+    private QiscusHttpEventListener() {
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        dnsDuration = SystemClock.elapsedRealtime() - dnsStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        secureConnectStart = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        secureConnectDuration = SystemClock.elapsedRealtime() - secureConnectStart;
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectDuration = SystemClock.elapsedRealtime() - connectStart;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (timeToFirstByte < 0) {
+            timeToFirstByte = SystemClock.elapsedRealtime() - callStart;
+        }
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        onFinish(call, true);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        onFinish(call, false);
+    }
+
+    private void onFinish(Call call, boolean success) {
+        QiscusHttpClientFactory.getInstance().getMetrics()
+                .add(success, dnsDuration, connectDuration, secureConnectDuration, timeToFirstByte);
+        QiscusLogger.print(TAG, call.request().method() + " " + call.request().url().encodedPath()
+                + (success ? "" : " failed") + " dns=" + dnsDuration + "ms connect=" + connectDuration
+                + "ms tls=" + secureConnectDuration + "ms ttfb=" + timeToFirstByte + "ms");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.os.SystemClock;
+
+import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Owner of the mqtt reconnect attempts, there is at most one attempt scheduled at a time.
+ * Retries use capped exponential backoff with full jitter (a random delay between 0 and the cap),
+ * so clients that lost the broker at the same moment do not come back at the same moment.
+ */
+final class QiscusMqttReconnector {
+    private static final String TAG = QiscusMqttReconnector.class.getSimpleName();
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 60000;
+    private static final int MAX_SHIFT = 16;
+
+    private final Runnable reconnect;
+    private final Random random = new Random();
+    private ScheduledFuture<?> scheduledReconnect;
+    private int failures;
+    private long disconnectedAt;
+    private long attemptCount;
+    private long reconnectCount;
+    private long lastReconnectDuration;
+
+    QiscusMqttReconnector(Runnable reconnect) {
+        this.reconnect = reconnect;
+    }
+
+    /**
+     * Connection lost or connect failed, schedule the next attempt after the backoff delay.
+     */
+    synchronized void retry() {
+        scheduleAfterBackoff();
+        failures++;
+    }
+
+    /**
+     * Schedule an attempt only if none is pending, so periodic checks do not bypass the backoff.
+     * A check is not a failure, it waits the backoff of the failures so far without growing it.
+     */
+    synchronized void retryIfIdle() {
+        if (scheduledReconnect == null) {
+            scheduleAfterBackoff();
+        }
+    }
+
+    /**
+     * Network is back, there is no reason to wait for the backoff.
+     */
+    synchronized void retryNow() {
+        if (disconnectedAt == 0) {
+            disconnectedAt = SystemClock.elapsedRealtime();
+        }
+        failures = 0;
+        schedule(0);
+    }
+
+    synchronized void onConnected() {
+        cancel();
+        if (disconnectedAt > 0) {
+            lastReconnectDuration = SystemClock.elapsedRealtime() - disconnectedAt;
+            reconnectCount++;
+            QiscusLogger.print(TAG, "Reconnected in " + lastReconnectDuration + " ms after "
+                    + failures + " failures");
+        }
+        disconnectedAt = 0;
+        failures = 0;
+    }
+
+    synchronized void cancel() {
+        if (scheduledReconnect != null) {
+            scheduledReconnect.cancel(false);
+            scheduledReconnect = null;
+        }
+    }
+
+    synchronized long getAttemptCount() {
+        return attemptCount;
+    }
+
+    synchronized long getReconnectCount() {
+        return reconnectCount;
+    }
+
+    synchronized long getLastReconnectDuration() {
+        return lastReconnectDuration;
+    }
+
+    /**
+     * @return random delay between 0 and the backoff cap of the failure count
+     */
+    static long getBackoffDelay(int failures, Random random) {
+        return (long) (random.nextDouble() * getBackoffCap(failures));
+    }
+
+    /**
+     * @return BASE_DELAY doubled for every failure, at most MAX_DELAY
+     */
+    static long getBackoffCap(int failures) {
+        return Math.min(MAX_DELAY, BASE_DELAY << Math.min(failures, MAX_SHIFT));
+    }
+
+    private void scheduleAfterBackoff() {
+        if (disconnectedAt == 0) {
+            disconnectedAt = SystemClock.elapsedRealtime();
+        }
+        schedule(getBackoffDelay(failures, random));
+    }
+
+    private void schedule(long delay) {
+        cancel();
+        QiscusLogger.print(TAG, "Reconnect in " + delay + " ms");
+        scheduledReconnect = QiscusAndroidUtil.runOnBackgroundThread(this::attempt, delay);
+    }
+
+    private void attempt() {
+        synchronized (this) {
+            scheduledReconnect = null;
+            attemptCount++;
+        }
+        reconnect.run();
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
+import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+
+import org.eclipse.paho.android.service.MqttAndroidClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Desired set of mqtt topics, applied to the broker as a diff against what is already subscribed.
+ * Changes made within a short window are sent together using the multi topic subscribe and unsubscribe,
+ * and the whole set is subscribed again after every reconnect.
+ */
+final class QiscusMqttSubscriptions {
+    private static final String TAG = QiscusMqttSubscriptions.class.getSimpleName();
+    private static final long FLUSH_DELAY = 50;
+    private static final long RETRY_PERIOD = 4000;
+    private static final int BATCH_SIZE = 50;
+    private static final int SUBSCRIBE_FAILURE = 0x80;
+
+    private final Map<String, Integer> desired = new LinkedHashMap<>();
+    private final Map<String, Integer> active = new HashMap<>();
+    private final Set<String> unsubscribing = new HashSet<>();
+    private MqttAndroidClient client;
+    private int session;
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * Client is rebuilt on every restart, nothing is subscribed on the new one yet.
+     */
+    synchronized void setClient(MqttAndroidClient client) {
+        this.client = client;
+        reset();
+    }
+
+    synchronized void add(int qos, String... topics) {
+        for (String topic : topics) {
+            desired.put(topic, qos);
+        }
+        schedule(FLUSH_DELAY);
+    }
+
+    synchronized void remove(String... topics) {
+        for (String topic : topics) {
+            desired.remove(topic);
+        }
+        schedule(FLUSH_DELAY);
+    }
+
+    /**
+     * Connected again, send the whole desired set.
+     */
+    synchronized void restore() {
+        reset();
+        schedule(0);
+    }
+
+    synchronized void clear() {
+        cancel();
+        desired.clear();
+        reset();
+    }
+
+    synchronized void cancel() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+
+    synchronized int getActiveCount() {
+        return active.size();
+    }
+
+    /**
+     * Nothing is subscribed anymore, acknowledgements of what was sent before are ignored.
+     */
+    private void reset() {
+        active.clear();
+        unsubscribing.clear();
+        session++;
+    }
+
+    private void schedule(long delay) {
+        if (scheduledFlush != null) {
+            if (delay > 0) {
+                return;
+            }
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = QiscusAndroidUtil.runOnBackgroundThread(this::flush, delay);
+    }
+
+    private synchronized void flush() {
+        scheduledFlush = null;
+        if (!isConnected()) {
+            return;
+        }
+
+        //Topics stay active until the broker acknowledged the unsubscribe
+        List<String> unsubscribeTopics = new ArrayList<>();
+        for (String topic : active.keySet()) {
+            if (!desired.containsKey(topic) && unsubscribing.add(topic)) {
+                unsubscribeTopics.add(topic);
+            }
+        }
+
+        List<String> subscribeTopics = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : desired.entrySet()) {
+            if (!entry.getValue().equals(active.get(entry.getKey()))) {
+                subscribeTopics.add(entry.getKey());
+                active.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        QiscusLogger.print(TAG, "Subscribe " + subscribeTopics.size() + " topics, unsubscribe "
+                + unsubscribeTopics.size() + " topics");
+
+        for (int start = 0; start < unsubscribeTopics.size(); start += BATCH_SIZE) {
+            unsubscribe(unsubscribeTopics.subList(start, Math.min(start + BATCH_SIZE, unsubscribeTopics.size())));
+        }
+        for (int start = 0; start < subscribeTopics.size(); start += BATCH_SIZE) {
+            subscribe(subscribeTopics.subList(start, Math.min(start + BATCH_SIZE, subscribeTopics.size())));
+        }
+    }
+
+    private void subscribe(List<String> batch) {
+        String[] topics = batch.toArray(new String[batch.size()]);
+        int[] qos = new int[topics.length];
+        for (int i = 0; i < topics.length; i++) {
+            qos[i] = active.get(topics[i]);
+        }
+
+        int batchSession = session;
+        try {
+            client.subscribe(topics, qos, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    int[] grantedQos = asyncActionToken.getGrantedQos();
+                    for (int i = 0; grantedQos != null && i < grantedQos.length && i < topics.length; i++) {
+                        if (grantedQos[i] == SUBSCRIBE_FAILURE) {
+                            onSubscribeFailure(batchSession, topics, "rejected " + topics[i]);
+                            return;
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    onSubscribeFailure(batchSession, topics, String.valueOf(exception));
+                }
+            });
+        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
+            onSubscribeFailure(batchSession, topics, e.toString());
+        }
+    }
+
+    private void unsubscribe(List<String> batch) {
+        String[] topics = batch.toArray(new String[batch.size()]);
+        int batchSession = session;
+        try {
+            client.unsubscribe(topics, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    onUnsubscribeSuccess(batchSession, topics);
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    onUnsubscribeFailure(batchSession, topics, String.valueOf(exception));
+                }
+            });
+        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
+            onUnsubscribeFailure(batchSession, topics, e.toString());
+        }
+    }
+
+    private synchronized void onUnsubscribeSuccess(int batchSession, String[] topics) {
+        if (batchSession != session) {
+            return;
+        }
+
+        boolean desiredAgain = false;
+        for (String topic : topics) {
+            unsubscribing.remove(topic);
+            active.remove(topic);
+            desiredAgain |= desired.containsKey(topic);
+        }
+        if (desiredAgain) {
+            schedule(FLUSH_DELAY);
+        }
+    }
+
+    private synchronized void onUnsubscribeFailure(int batchSession, String[] topics, String reason) {
+        if (batchSession != session) {
+            return;
+        }
+
+        QiscusErrorLogger.print(TAG, "Failure unsubscribe " + topics.length + " topics, try again in "
+                + RETRY_PERIOD + " ms: " + reason);
+        for (String topic : topics) {
+            unsubscribing.remove(topic);
+        }
+        schedule(RETRY_PERIOD);
+    }
+
+    private synchronized void onSubscribeFailure(int batchSession, String[] topics, String reason) {
+        if (batchSession != session) {
+            return;
+        }
+
+        QiscusErrorLogger.print(TAG, "Failure subscribe " + topics.length + " topics, try again in "
+                + RETRY_PERIOD + " ms: " + reason);
+        for (String topic : topics) {
+            active.remove(topic);
+        }
+        schedule(RETRY_PERIOD);
+    }
+
+    private boolean isConnected() {
+        try {
+            return client != null && client.isConnected();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
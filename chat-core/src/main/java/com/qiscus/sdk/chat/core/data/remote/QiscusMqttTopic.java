@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+/**
+ * Parsed form of an incoming mqtt topic.
+ * Topics are matched by comparing regions of the original string and reading the segments by index,
+ * so routing a message does not split the topic or build the expected topic strings.
+ */
+public final class QiscusMqttTopic {
+
+    private static final QiscusMqttTopic NOTIFICATION = new QiscusMqttTopic(Type.NOTIFICATION, 0, null);
+    private static final QiscusMqttTopic COMMENT = new QiscusMqttTopic(Type.COMMENT, 0, null);
+    private static final QiscusMqttTopic UPDATE_COMMENT = new QiscusMqttTopic(Type.UPDATE_COMMENT, 0, null);
+    private static final QiscusMqttTopic UNKNOWN = new QiscusMqttTopic(Type.UNKNOWN, 0, null);
+
+    private final Type type;
+    private final long roomId;
+    private final String user;
+
+    private QiscusMqttTopic(Type type, long roomId, String user) {
+        this.type = type;
+        this.roomId = roomId;
+        this.user = user;
+    }
+
+    /**
+     * @param token  token of the current account, for the private notification and comment topics
+     * @param appId  app id, prefix of the channel comment topics
+     */
+    static QiscusMqttTopic parse(String topic, String token, String appId) {
+        if (isPrivateTopic(topic, token, "/n")) {
+            return NOTIFICATION;
+        }
+        if (isPrivateTopic(topic, token, "/c") || isChannelTopic(topic, appId, "/c")) {
+            return COMMENT;
+        }
+        if (isPrivateTopic(topic, token, "/update") || isChannelTopic(topic, appId, "/update")) {
+            return UPDATE_COMMENT;
+        }
+
+        if (topic.startsWith("r/")) {
+            Type type = getRoomTopicType(topic);
+            if (type == Type.UNKNOWN) {
+                return UNKNOWN;
+            }
+
+            // r/{roomId}/{roomId}/{user}/{type} or r/{roomId}/{roomId}/e
+            int roomIdEnd = topic.indexOf('/', 2);
+            if (roomIdEnd < 0) {
+                return UNKNOWN;
+            }
+            long roomId = parseLong(topic, 2, roomIdEnd);
+            if (type == Type.ROOM_EVENT) {
+                return new QiscusMqttTopic(type, roomId, null);
+            }
+
+            int userStart = topic.indexOf('/', roomIdEnd + 1) + 1;
+            int userEnd = userStart > 0 ? topic.indexOf('/', userStart) : -1;
+            if (userEnd < 0) {
+                return UNKNOWN;
+            }
+            return new QiscusMqttTopic(type, roomId, topic.substring(userStart, userEnd));
+        }
+
+        if (topic.startsWith("u/") && topic.endsWith("/s")) {
+            // u/{user}/s
+            int userEnd = topic.indexOf('/', 2);
+            if (userEnd < 0) {
+                return UNKNOWN;
+            }
+            return new QiscusMqttTopic(Type.USER_STATUS, 0, topic.substring(2, userEnd));
+        }
+
+        return UNKNOWN;
+    }
+
+    private static boolean isPrivateTopic(String topic, String token, String suffix) {
+        return token != null && topic.length() == token.length() + suffix.length()
+                && topic.startsWith(token) && topic.endsWith(suffix);
+    }
+
+    private static boolean isChannelTopic(String topic, String appId, String suffix) {
+        return appId != null && topic.startsWith(appId) && topic.endsWith(suffix);
+    }
+
+    private static Type getRoomTopicType(String topic) {
+        int length = topic.length();
+        if (length < 4 || topic.charAt(length - 2) != '/') {
+            return Type.UNKNOWN;
+        }
+
+        switch (topic.charAt(length - 1)) {
+            case 't':
+                return Type.TYPING;
+            case 'd':
+                return Type.DELIVERED;
+            case 'r':
+                return Type.READ;
+            case 'e':
+                return Type.ROOM_EVENT;
+            default:
+                return Type.UNKNOWN;
+        }
+    }
+
+    /**
+     * Same as Long.parseLong(value.substring(start, end)) without the intermediate string.
+     */
+    static long parseLong(String value, int start, int end) {
+        if (start >= end) {
+            throw new NumberFormatException("Empty number in " + value);
+        }
+
+        boolean negative = value.charAt(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i >= end) {
+            throw new NumberFormatException("Invalid number in " + value);
+        }
+
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number in " + value);
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public enum Type {
+        NOTIFICATION, COMMENT, UPDATE_COMMENT, TYPING, DELIVERED, READ, USER_STATUS, ROOM_EVENT, UNKNOWN
+    }
+}
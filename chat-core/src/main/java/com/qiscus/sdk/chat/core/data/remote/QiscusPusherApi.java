@@ -30,6 +30,7 @@ import com.qiscus.sdk.chat.core.data.local.QiscusEventCache;
 import com.qiscus.sdk.chat.core.data.model.QiscusAccount;
 import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusMqttQosConfig;
 import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
 import com.qiscus.sdk.chat.core.event.QiscusChatRoomEvent;
 import com.qiscus.sdk.chat.core.event.QiscusCommentReceivedEvent;
@@ -41,6 +42,7 @@ import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusFileUtil;
 import com.qiscus.sdk.chat.core.util.QiscusLogger;
+import com.qiscus.sdk.chat.core.util.QiscusStartupTrace;
 import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
 
 import org.eclipse.paho.android.service.MqttAndroidClient;
@@ -58,6 +60,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
@@ -65,6 +68,7 @@ import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
@@ -74,7 +78,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
 
     INSTANCE;
     private static final String TAG = QiscusPusherApi.class.getSimpleName();
-    private static final long RETRY_PERIOD = 4000;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private static Gson gson;
     private static long reconnectCounter;
@@ -86,22 +90,13 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
     private String clientId;
     private MqttAndroidClient mqttAndroidClient;
     private QiscusAccount qiscusAccount;
-    private Runnable fallBackListenRoom;
-    private Runnable fallBackListenUserStatus;
-    private Runnable fallbackListenEvent;
-    private ScheduledFuture<?> scheduledConnect;
-    private ScheduledFuture<?> scheduledListenComment;
-    private ScheduledFuture<?> scheduledListenNotification;
-    private ScheduledFuture<?> scheduledListenRoom;
-    private ScheduledFuture<?> scheduledListenUserStatus;
-    private ScheduledFuture<?> scheduledListenEvent;
     private boolean connecting;
     private boolean reporting = true;
-    private Runnable fallbackConnect = this::restartConnection;
-    private Runnable fallBackListenNotification = this::listenNotification;
+    private final QiscusMqttReconnector reconnector = new QiscusMqttReconnector(this::restartConnection);
+    private final QiscusMqttSubscriptions subscriptions = new QiscusMqttSubscriptions();
     private ScheduledFuture<?> scheduledUserStatus;
-    private Runnable fallBackListenComment = this::listenComment;
     private int setOfflineCounter;
+    private final AtomicLongArray receivedMessageCounts = new AtomicLongArray(QiscusMqttTopic.Type.values().length);
 
     QiscusPusherApi() {
         QiscusLogger.print("QiscusPusherApi", "Creating...");
@@ -346,7 +341,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             mqttAndroidClient.setCallback(this);
             mqttAndroidClient.setTraceEnabled(false);
         }
-
+        subscriptions.setClient(mqttAndroidClient);
     }
 
     /**
@@ -398,7 +393,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             mqttConnectOptions.setCleanSession(false);
             mqttConnectOptions.setWill("u/" + qiscusAccount.getEmail()
                     + "/s", ("0:" + Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTimeInMillis())
-                    .getBytes(), 2, true);
+                    .getBytes(), getQosConfig().getPresenceQos(), true);
             EventBus.getDefault().post(QiscusMqttStatusEvent.RECONNETING);
             try {
                 mqttAndroidClient.connect(mqttConnectOptions, null, this);
@@ -485,32 +480,48 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
         connect();
     }
 
-    private void clearTasks() {
-        if (scheduledConnect != null) {
-            scheduledConnect.cancel(true);
-            scheduledConnect = null;
-        }
-        if (scheduledListenComment != null) {
-            scheduledListenComment.cancel(true);
-            scheduledListenComment = null;
-        }
-        if (scheduledListenNotification != null) {
-            scheduledListenNotification.cancel(true);
-            scheduledListenNotification = null;
-        }
-        if (scheduledListenRoom != null) {
-            scheduledListenRoom.cancel(true);
-            scheduledListenRoom = null;
-        }
-        if (scheduledListenUserStatus != null) {
-            scheduledListenUserStatus.cancel(true);
+    /**
+     * Let the reconnect scheduler try again, unless an attempt is already pending.
+     * Use this for periodic checks, so they follow the backoff instead of reconnecting right away.
+     */
+    public void scheduleReconnect() {
+        if (QiscusCore.hasSetupUser() && !isConnected() && !connecting) {
+            reconnector.retryIfIdle();
         }
-        if (scheduledListenEvent != null) {
-            scheduledListenEvent.cancel(true);
-            scheduledListenEvent = null;
+    }
+
+    /**
+     * Reconnect right away and reset the backoff, e.g. when the network becomes available again.
+     */
+    public void reconnectNow() {
+        if (QiscusCore.hasSetupUser() && !isConnected()) {
+            reconnector.retryNow();
         }
     }
 
+    public long getReconnectAttemptCount() {
+        return reconnector.getAttemptCount();
+    }
+
+    public long getReconnectCount() {
+        return reconnector.getReconnectCount();
+    }
+
+    /**
+     * @return time in ms between losing the connection and the last successful reconnect
+     */
+    public long getLastReconnectDuration() {
+        return reconnector.getLastReconnectDuration();
+    }
+
+    private static QiscusMqttQosConfig getQosConfig() {
+        return QiscusCore.getChatConfig().getMqttQosConfig();
+    }
+
+    private void clearTasks() {
+        subscriptions.cancel();
+    }
+
     public void disconnect() {
         QiscusLogger.print(TAG, "Disconnecting...");
         if (mqttAndroidClient == null) {
@@ -527,6 +538,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             //Do nothing
         }
         clearTasks();
+        reconnector.cancel();
         stopUserStatus();
     }
 
@@ -535,83 +547,17 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             return;
         }
         QiscusLogger.print(TAG, "Listening comment...");
-        try {
-            mqttAndroidClient.subscribe(qiscusAccount.getToken() + "/c", 2);
-            mqttAndroidClient.subscribe(qiscusAccount.getToken() + "/update", 2);
-        } catch (MqttException e) {
-            try {
-                eventReport("MQTT", "FAILED_LISTEN_COMMENT", e.toString());
-            } catch (NullPointerException d) {
-                //ignored
-            } catch (Exception d) {
-                //ignored
-            }
-            disconnect();
-            restartConnection();
-        } catch (NullPointerException | IllegalArgumentException e) {
-            try {
-                eventReport("MQTT", "FAILED_LISTEN_COMMENT", e.toString());
-            } catch (NullPointerException d) {
-                //ignored
-            } catch (Exception d) {
-                //ignored
-            }
-            QiscusErrorLogger.print(TAG, "Failure listen comment, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            scheduledListenComment = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenComment, RETRY_PERIOD);
-        }
+        subscriptions.add(getQosConfig().getCommentQos(), qiscusAccount.getToken() + "/c", qiscusAccount.getToken() + "/update");
     }
 
     private void listenNotification() {
         QiscusLogger.print(TAG, "Listening notification...");
-        try {
-            mqttAndroidClient.subscribe(qiscusAccount.getToken() + "/n", 2);
-        } catch (MqttException e) {
-            try {
-                eventReport("MQTT", "FAILED_LISTEN_NOTIFICATION", e.toString());
-            } catch (NullPointerException d) {
-                //ignored
-            } catch (Exception d) {
-                //ignored
-            }
-        } catch (NullPointerException | IllegalArgumentException e) {
-            try {
-                eventReport("MQTT", "FAILED_LISTEN_NOTIFICATION", e.toString());
-            } catch (NullPointerException d) {
-                //ignored
-            } catch (Exception d) {
-                //ignored
-            }
-            QiscusErrorLogger.print(TAG, "Failure listen notification, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            scheduledListenNotification = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenNotification, RETRY_PERIOD);
-        }
+        subscriptions.add(getQosConfig().getNotificationQos(), qiscusAccount.getToken() + "/n");
     }
 
     @Deprecated
     public void listenRoom(QiscusChatRoom qiscusChatRoom) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-        QiscusLogger.print(TAG, "Listening room...");
-        fallBackListenRoom = () -> listenRoom(qiscusChatRoom);
-        try {
-            long roomId = qiscusChatRoom.getId();
-            if (!qiscusChatRoom.isChannel()) {
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/t", 2);
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/d", 2);
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/r", 2);
-
-            } else {
-                mqttAndroidClient.subscribe(QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c", 2);
-            }
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            QiscusErrorLogger.print(TAG, "Failure listen room, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            scheduledListenRoom = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenRoom, RETRY_PERIOD);
-        }
+        subscribeChatRoom(qiscusChatRoom);
     }
 
     public void subscribeChatRoom(QiscusChatRoom qiscusChatRoom) {
@@ -619,86 +565,34 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             return;
         }
         QiscusLogger.print(TAG, "Listening room...");
-        fallBackListenRoom = () -> subscribeChatRoom(qiscusChatRoom);
-        try {
-            long roomId = qiscusChatRoom.getId();
-            if (!qiscusChatRoom.isChannel()) {
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/t", 2);
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/d", 2);
-                mqttAndroidClient.subscribe("r/" + roomId + "/+/+/r", 2);
-
-            } else {
-                mqttAndroidClient.subscribe(QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c", 2);
-
-            }
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            QiscusErrorLogger.print(TAG, "Failure listen room, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            scheduledListenRoom = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenRoom, RETRY_PERIOD);
+        long roomId = qiscusChatRoom.getId();
+        if (!qiscusChatRoom.isChannel()) {
+            QiscusMqttQosConfig qosConfig = getQosConfig();
+            subscriptions.add(qosConfig.getTypingQos(), "r/" + roomId + "/+/+/t");
+            subscriptions.add(qosConfig.getReceiptQos(), "r/" + roomId + "/+/+/d", "r/" + roomId + "/+/+/r");
+        } else {
+            subscriptions.add(getQosConfig().getCommentQos(), QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c");
         }
     }
 
     @Deprecated
     public void unListenRoom(QiscusChatRoom qiscusChatRoom) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-
-        try {
-            long roomId = qiscusChatRoom.getId();
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/t");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/d");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/r");
-            mqttAndroidClient.unsubscribe(QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenRoom != null) {
-            scheduledListenRoom.cancel(true);
-            scheduledListenRoom = null;
-        }
-        fallBackListenRoom = null;
+        unsubsribeChatRoom(qiscusChatRoom);
     }
 
-
     public void unsubsribeChatRoom(QiscusChatRoom qiscusChatRoom) {
         if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
             return;
         }
 
-        try {
-            long roomId = qiscusChatRoom.getId();
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/t");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/d");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/r");
-            mqttAndroidClient.unsubscribe(QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenRoom != null) {
-            scheduledListenRoom.cancel(true);
-            scheduledListenRoom = null;
-        }
-        fallBackListenRoom = null;
+        long roomId = qiscusChatRoom.getId();
+        subscriptions.remove("r/" + roomId + "/+/+/t", "r/" + roomId + "/+/+/d", "r/" + roomId + "/+/+/r",
+                QiscusCore.getAppId() + "/" + qiscusChatRoom.getUniqueId() + "/c");
     }
 
     @Deprecated
     public void listenUserStatus(String user) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-
-        fallBackListenUserStatus = () -> listenUserStatus(user);
-        try {
-            mqttAndroidClient.subscribe("u/" + user + "/s", 2);
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            connect();
-            scheduledListenUserStatus = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenUserStatus, RETRY_PERIOD);
-        }
+        subscribeUserOnlinePresence(user);
     }
 
     public void subscribeUserOnlinePresence(String userId) {
@@ -706,33 +600,12 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             return;
         }
 
-        fallBackListenUserStatus = () -> subscribeUserOnlinePresence(userId);
-        try {
-            mqttAndroidClient.subscribe("u/" + userId + "/s", 2);
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            connect();
-            scheduledListenUserStatus = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenUserStatus, RETRY_PERIOD);
-        }
+        subscriptions.add(getQosConfig().getPresenceQos(), "u/" + userId + "/s");
     }
 
     @Deprecated
     public void unListenUserStatus(String user) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-
-        try {
-            mqttAndroidClient.unsubscribe("u/" + user + "/s");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenUserStatus != null) {
-            scheduledListenUserStatus.cancel(true);
-            scheduledListenUserStatus = null;
-        }
-        fallBackListenUserStatus = null;
+        unsubscribeUserOnlinePresence(user);
     }
 
     public void unsubscribeUserOnlinePresence(String userId) {
@@ -740,16 +613,14 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             return;
         }
 
-        try {
-            mqttAndroidClient.unsubscribe("u/" + userId + "/s");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenUserStatus != null) {
-            scheduledListenUserStatus.cancel(true);
-            scheduledListenUserStatus = null;
-        }
-        fallBackListenUserStatus = null;
+        subscriptions.remove("u/" + userId + "/s");
+    }
+
+    /**
+     * @return number of topics currently subscribed on the broker connection
+     */
+    public int getActiveSubscriptionCount() {
+        return subscriptions.getActiveCount();
     }
 
     @Deprecated
@@ -765,7 +636,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
                 try {
                     MqttMessage message = new MqttMessage();
                     message.setPayload(online ? "1".getBytes() : "0".getBytes());
-                    message.setQos(1);
+                    message.setQos(getQosConfig().getPresenceQos());
                     message.setRetained(true);
                     mqttAndroidClient.publish("u/" + qiscusAccount.getEmail() + "/s", message);
                 } catch (MqttException | NullPointerException | IllegalArgumentException e) {
@@ -792,7 +663,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
                 try {
                     MqttMessage message = new MqttMessage();
                     message.setPayload(isOnline ? "1".getBytes() : "0".getBytes());
-                    message.setQos(1);
+                    message.setQos(getQosConfig().getPresenceQos());
                     message.setRetained(true);
                     mqttAndroidClient.publish("u/" + qiscusAccount.getEmail() + "/s", message);
                 } catch (MqttException | NullPointerException | IllegalArgumentException e) {
@@ -817,6 +688,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
         try {
             MqttMessage message = new MqttMessage();
             message.setPayload((typing ? "1" : "0").getBytes());
+            message.setQos(getQosConfig().getTypingQos());
             mqttAndroidClient.publish("r/" + roomId + "/" + roomId + "/"
                     + qiscusAccount.getEmail() + "/t", message);
         } catch (MqttException | NullPointerException | IllegalArgumentException e) {
@@ -833,6 +705,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
         try {
             MqttMessage message = new MqttMessage();
             message.setPayload((isTyping ? "1" : "0").getBytes());
+            message.setQos(getQosConfig().getTypingQos());
             mqttAndroidClient.publish("r/" + roomId + "/" + roomId + "/"
                     + qiscusAccount.getEmail() + "/t", message);
         } catch (MqttException | NullPointerException | IllegalArgumentException e) {
@@ -898,6 +771,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
 
             MqttMessage message = new MqttMessage();
             message.setPayload((payload.toString().getBytes()));
+            message.setQos(getQosConfig().getEventQos());
 
             mqttAndroidClient.publish("r/" + roomId + "/" + roomId + "/e", message);
         } catch (MqttException | NullPointerException | IllegalArgumentException | JSONException e) {
@@ -918,6 +792,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
 
             MqttMessage message = new MqttMessage();
             message.setPayload((payload.toString().getBytes()));
+            message.setQos(getQosConfig().getEventQos());
 
             mqttAndroidClient.publish("r/" + roomId + "/" + roomId + "/e", message);
         } catch (MqttException | NullPointerException | IllegalArgumentException | JSONException e) {
@@ -927,19 +802,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
 
     @Deprecated
     public void listenEvent(long roomId) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-        QiscusLogger.print(TAG, "Listening event...");
-        fallbackListenEvent = () -> listenEvent(roomId);
-        try {
-            mqttAndroidClient.subscribe("r/" + roomId + "/" + roomId + "/e", 2);
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            connect();
-            scheduledListenEvent = QiscusAndroidUtil.runOnBackgroundThread(fallbackListenEvent, RETRY_PERIOD);
-        }
+        subsribeCustomEvent(roomId);
     }
 
     public void subsribeCustomEvent(long roomId) {
@@ -948,33 +811,12 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
         }
 
         QiscusLogger.print(TAG, "Listening event...");
-        fallbackListenEvent = () -> subsribeCustomEvent(roomId);
-        try {
-            mqttAndroidClient.subscribe("r/" + roomId + "/" + roomId + "/e", 2);
-        } catch (MqttException e) {
-            //Do nothing
-        } catch (NullPointerException | IllegalArgumentException e) {
-            connect();
-            scheduledListenEvent = QiscusAndroidUtil.runOnBackgroundThread(fallbackListenEvent, RETRY_PERIOD);
-        }
+        subscriptions.add(getQosConfig().getEventQos(), "r/" + roomId + "/" + roomId + "/e");
     }
 
     @Deprecated
     public void unlistenEvent(long roomId) {
-        if (!QiscusCore.getEnableRealtime() || !QiscusCore.getStatusRealtimeEnableDisable()) {
-            return;
-        }
-
-        try {
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/" + roomId + "/e");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenEvent != null) {
-            scheduledListenEvent.cancel(true);
-            scheduledListenEvent = null;
-        }
-        fallbackListenEvent = null;
+        unsubsribeCustomEvent(roomId);
     }
 
     public void unsubsribeCustomEvent(long roomId) {
@@ -982,16 +824,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
             return;
         }
 
-        try {
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/" + roomId + "/e");
-        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
-            //Do nothing
-        }
-        if (scheduledListenEvent != null) {
-            scheduledListenEvent.cancel(true);
-            scheduledListenEvent = null;
-        }
-        fallbackListenEvent = null;
+        subscriptions.remove("r/" + roomId + "/" + roomId + "/e");
     }
 
     private void checkAndConnect() {
@@ -1023,106 +856,125 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
                 //ignored
             }
         } else {
-            eventReport("MQTT", "CONNECTION_LOST",
-                    "Lost connection, will try reconnect in " + RETRY_PERIOD + " ms");
+            eventReport("MQTT", "CONNECTION_LOST", "Lost connection, will try reconnect");
         }
 
-        QiscusErrorLogger.print(TAG, "Lost connection, will try reconnect in "
-                + RETRY_PERIOD + " ms");
+        QiscusErrorLogger.print(TAG, "Lost connection, will try reconnect");
         connecting = false;
-        scheduledConnect = QiscusAndroidUtil.runOnBackgroundThread(fallbackConnect, RETRY_PERIOD);
+        reconnector.retry();
     }
 
     @Override
     public void messageArrived(String topic, MqttMessage message) throws Exception {
         try {
-            handleMessage(topic, new String(message.getPayload()));
+            handleMessage(topic, new String(message.getPayload(), UTF_8));
         } catch (Exception ignored) {
             //Do nothing
         }
     }
 
+    /**
+     * Number of messages received since start for the given kind of topic.
+     */
+    public long getReceivedMessageCount(QiscusMqttTopic.Type type) {
+        return receivedMessageCounts.get(type.ordinal());
+    }
+
     private void handleMessage(String topic, String message) {
-        if (topic.equals(qiscusAccount.getToken() + "/n")) {
-            try {
-                handleNotification(new JSONObject(message));
-            } catch (JSONException e) {
-                QiscusLogger.print(e.getMessage());
-            }
-        } else if (topic.equals(qiscusAccount.getToken() + "/c")
-                || (topic.startsWith(QiscusCore.getAppId()) && topic.endsWith("/c"))) {
-            QiscusComment qiscusComment = jsonToComment(message);
-            if (qiscusComment == null) {
-                return;
-            }
-            handleReceivedComment(qiscusComment);
-        } else if (topic.equals(qiscusAccount.getToken() + "/update")
-                || (topic.startsWith(QiscusCore.getAppId()) && topic.endsWith("/update"))) {
-            QiscusComment qiscusComment = jsonToComment(message);
-            if (qiscusComment == null) {
-                return;
-            }
-            handleUpdateComment(qiscusComment);
-        } else if (topic.startsWith("r/") && topic.endsWith("/t")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Long.parseLong(data[1]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.TYPING)
-                        .setTyping("1".equals(message));
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("r/") && topic.endsWith("/d")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                String[] payload = message.split(":");
-                QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Long.parseLong(data[1]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.DELIVERED)
-                        .setCommentId(Long.parseLong(payload[0]))
-                        .setCommentUniqueId(payload[1]);
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("r/") && topic.endsWith("/r")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                String[] payload = message.split(":");
+        QiscusMqttTopic mqttTopic = QiscusMqttTopic.parse(topic, qiscusAccount.getToken(), QiscusCore.getAppId());
+        receivedMessageCounts.incrementAndGet(mqttTopic.getType().ordinal());
+
+        switch (mqttTopic.getType()) {
+            case NOTIFICATION:
+                try {
+                    handleNotification(new JSONObject(message));
+                } catch (JSONException e) {
+                    QiscusLogger.print(e.getMessage());
+                }
+                break;
+            case COMMENT:
+                QiscusComment qiscusComment = jsonToComment(message);
+                if (qiscusComment != null) {
+                    handleReceivedComment(qiscusComment);
+                }
+                break;
+            case UPDATE_COMMENT:
+                QiscusComment updatedComment = jsonToComment(message);
+                if (updatedComment != null) {
+                    handleUpdateComment(updatedComment);
+                }
+                break;
+            case TYPING:
+                handleTyping(mqttTopic, message);
+                break;
+            case DELIVERED:
+                handleCommentState(mqttTopic, message, QiscusChatRoomEvent.Event.DELIVERED);
+                break;
+            case READ:
+                handleCommentState(mqttTopic, message, QiscusChatRoomEvent.Event.READ);
+                break;
+            case USER_STATUS:
+                handleUserStatus(mqttTopic, message);
+                break;
+            case ROOM_EVENT:
+                handleRoomEvent(mqttTopic, message);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleTyping(QiscusMqttTopic mqttTopic, String message) {
+        if (!mqttTopic.getUser().equals(qiscusAccount.getEmail())) {
+            QiscusChatRoomEvent event = new QiscusChatRoomEvent()
+                    .setRoomId(mqttTopic.getRoomId())
+                    .setUser(mqttTopic.getUser())
+                    .setEvent(QiscusChatRoomEvent.Event.TYPING)
+                    .setTyping("1".equals(message));
+            EventBus.getDefault().post(event);
+        }
+    }
+
+    private void handleCommentState(QiscusMqttTopic mqttTopic, String message, QiscusChatRoomEvent.Event state) {
+        if (!mqttTopic.getUser().equals(qiscusAccount.getEmail())) {
+            // {commentId}:{commentUniqueId}
+            int separator = message.indexOf(':');
+            QiscusChatRoomEvent event = new QiscusChatRoomEvent()
+                    .setRoomId(mqttTopic.getRoomId())
+                    .setUser(mqttTopic.getUser())
+                    .setEvent(state)
+                    .setCommentId(QiscusMqttTopic.parseLong(message, 0, separator))
+                    .setCommentUniqueId(message.substring(separator + 1));
+            EventBus.getDefault().post(event);
+        }
+    }
+
+    private void handleUserStatus(QiscusMqttTopic mqttTopic, String message) {
+        if (!mqttTopic.getUser().equals(qiscusAccount.getEmail())) {
+            // {1 or 0}:{timestamp}
+            int separator = message.indexOf(':');
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            calendar.setTimeInMillis(QiscusMqttTopic.parseLong(message, separator + 1, separator + 14));
+            QiscusUserStatusEvent event = new QiscusUserStatusEvent(mqttTopic.getUser(),
+                    message.startsWith("1:"), calendar.getTime());
+            EventBus.getDefault().post(event);
+        }
+    }
+
+    private void handleRoomEvent(QiscusMqttTopic mqttTopic, String message) {
+        JSONObject eventPayload = parseEventData(message);
+        try {
+            if (eventPayload != null &&
+                    !eventPayload.getString("sender").equals(qiscusAccount.getEmail())) {
                 QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Long.parseLong(data[1]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.READ)
-                        .setCommentId(Long.parseLong(payload[0]))
-                        .setCommentUniqueId(payload[1]);
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("u/") && topic.endsWith("/s")) {
-            String[] data = topic.split("/");
-            if (!data[1].equals(qiscusAccount.getEmail())) {
-                String[] status = message.split(":");
-                Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                calendar.setTimeInMillis(Long.parseLong(status[1].substring(0, 13)));
-                QiscusUserStatusEvent event = new QiscusUserStatusEvent(data[1], "1".equals(status[0]),
-                        calendar.getTime());
+                        .setRoomId(mqttTopic.getRoomId())
+                        .setUser(eventPayload.getString("sender"))
+                        .setEvent(QiscusChatRoomEvent.Event.CUSTOM)
+                        .setEventData(eventPayload.getJSONObject("data"));
                 EventBus.getDefault().post(event);
             }
-        } else if (topic.startsWith("r/") && topic.endsWith("/e")) {
-            String[] data = topic.split("/");
-            JSONObject eventPayload = parseEventData(message);
-            try {
-                if (eventPayload != null &&
-                        !eventPayload.getString("sender").equals(qiscusAccount.getEmail())) {
-                    QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                            .setRoomId(Long.parseLong(data[1]))
-                            .setUser(eventPayload.getString("sender"))
-                            .setEvent(QiscusChatRoomEvent.Event.CUSTOM)
-                            .setEventData(eventPayload.getJSONObject("data"));
-                    EventBus.getDefault().post(event);
-                }
-            } catch (JSONException e) {
-                QiscusErrorLogger.print(e);
-            }
+        } catch (JSONException e) {
+            QiscusErrorLogger.print(e);
         }
     }
 
@@ -1162,16 +1014,9 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
                 reconnectCounter = 0;
                 listenComment();
                 listenNotification();
-                if (fallBackListenRoom != null) {
-                    scheduledListenRoom = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenRoom);
-                }
-                if (fallBackListenUserStatus != null) {
-                    scheduledListenUserStatus = QiscusAndroidUtil.runOnBackgroundThread(fallBackListenUserStatus);
-                }
-                if (scheduledConnect != null) {
-                    scheduledConnect.cancel(true);
-                    scheduledConnect = null;
-                }
+                subscriptions.restore();
+                reconnector.onConnected();
+                QiscusStartupTrace.mark(QiscusStartupTrace.Phase.MQTT_CONNECTED);
                 scheduleUserStatus();
             } catch (NullPointerException e) {
                 //ignored
@@ -1213,14 +1058,13 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
                 //ignored
             }
         } else {
-            eventReport("MQTT", "FAILURE_TO_CONNECT", "Failure to connect, try again in "
-                    + RETRY_PERIOD + " ms");
+            eventReport("MQTT", "FAILURE_TO_CONNECT", "Failure to connect, try again");
         }
 
         reconnectCounter++;
-        QiscusErrorLogger.print(TAG, "Failure to connect, try again in " + RETRY_PERIOD + " ms");
+        QiscusErrorLogger.print(TAG, "Failure to connect, try again");
         connecting = false;
-        scheduledConnect = QiscusAndroidUtil.runOnBackgroundThread(fallbackConnect, RETRY_PERIOD);
+        reconnector.retry();
     }
 
     @Subscribe
@@ -1228,6 +1072,7 @@ public enum QiscusPusherApi implements MqttCallbackExtended, IMqttActionListener
         switch (userEvent) {
             case LOGOUT:
                 disconnect();
+                subscriptions.clear();
                 break;
         }
     }
@@ -26,6 +26,7 @@ import org.greenrobot.eventbus.EventBus;
 import org.json.JSONException;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,12 +53,9 @@ public final class QiscusResendCommentHelper {
     public static void tryResendPendingComment() {
         QiscusCore.getDataStore()
                 .getObservablePendingComments()
+                .doOnSubscribe(QiscusUploadManager.getInstance()::restoreInterrupted)
+                .doOnNext(QiscusResendCommentHelper::resendPendingFiles)
                 .flatMap(Observable::from)
-                .doOnNext(qiscusComment -> {
-                    if (qiscusComment.isAttachment() && !pendingTask.containsKey(qiscusComment.getUniqueId())) {
-                        resendFile(qiscusComment);
-                    }
-                })
                 .filter(qiscusComment -> !qiscusComment.isAttachment())
                 .take(1)
                 .doOnNext(qiscusComment -> {
@@ -110,10 +108,29 @@ public final class QiscusResendCommentHelper {
         processingComment.add(qiscusComment.getUniqueId());
     }
 
+    private static void resendPendingFiles(List<QiscusComment> pendingComments) {
+        List<QiscusComment> pendingFiles = new ArrayList<>();
+        for (QiscusComment qiscusComment : pendingComments) {
+            if (qiscusComment.isAttachment() && !pendingTask.containsKey(qiscusComment.getUniqueId())) {
+                qiscusComment.setState(QiscusComment.STATE_SENDING);
+                pendingFiles.add(qiscusComment);
+            }
+        }
+
+        //Save all sending states at once, then start the uploads
+        QiscusCore.getDataStore().addOrUpdateComments(pendingFiles);
+        for (QiscusComment qiscusComment : pendingFiles) {
+            uploadAndSendFile(qiscusComment);
+        }
+    }
+
     private static void resendFile(QiscusComment qiscusComment) {
         qiscusComment.setState(QiscusComment.STATE_SENDING);
         QiscusCore.getDataStore().addOrUpdate(qiscusComment);
+        uploadAndSendFile(qiscusComment);
+    }
 
+    private static void uploadAndSendFile(QiscusComment qiscusComment) {
         if (qiscusComment.getAttachmentUri().toString().startsWith("http")) { //We forward file message
             forwardFile(qiscusComment);
             return;
@@ -132,8 +149,8 @@ public final class QiscusResendCommentHelper {
         qiscusComment.setProgress(0);
         EventBus.getDefault().post(new QiscusCommentResendEvent(qiscusComment));
 
-        Subscription subscription = QiscusApi.getInstance()
-                .upload(file, percentage -> qiscusComment.setProgress((int) percentage))
+        Subscription subscription = QiscusUploadManager.getInstance()
+                .upload(qiscusComment, file, percentage -> qiscusComment.setProgress((int) percentage))
                 .flatMap(uri -> {
                     qiscusComment.updateAttachmentUrl(uri.toString());
                     return QiscusApi.getInstance().sendMessage(qiscusComment);
@@ -141,6 +158,7 @@ public final class QiscusResendCommentHelper {
                 .doOnNext(commentSend -> {
                     QiscusCore.getDataStore()
                             .addOrUpdateLocalPath(commentSend.getRoomId(), commentSend.getId(), file.getAbsolutePath());
+                    QiscusUploadManager.getInstance().finish(commentSend);
                     qiscusComment.setDownloading(false);
                     commentSuccess(commentSend);
                 })
@@ -191,8 +209,8 @@ public final class QiscusResendCommentHelper {
         return ((throwable instanceof HttpException && ((HttpException) throwable).code() >= 400) ||
                 //if throwable from JSONException, e.g response from server not json as expected
                 (throwable instanceof JSONException) ||
-                // if attachment type
-                qiscusComment.isAttachment());
+                // if attachment can not be uploaded anymore
+                (qiscusComment.isAttachment() && !QiscusUploadManager.getInstance().canRetry(qiscusComment)));
     }
 
     private static void commentFail(Throwable throwable, QiscusComment qiscusComment) {
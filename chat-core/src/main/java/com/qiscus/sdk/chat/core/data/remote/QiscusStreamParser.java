@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.ResponseBody;
+import rx.Emitter;
+import rx.Observable;
+
+/**
+ * Streaming counterpart of {@link QiscusApiParser} for the responses that can get big, the models are read
+ * straight from the response body and emitted one by one, without building the json tree first.
+ * Nested json (payload and extras) is copied as a string, so it is only parsed when it is used.
+ */
+final class QiscusStreamParser {
+
+    private QiscusStreamParser() {
+    }
+
+    interface ItemReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * Emit every item of results.{arrayName} of the response body. Unsubscribing stops reading and closes the body.
+     */
+    static <T> Observable<T> parseResults(ResponseBody responseBody, String arrayName, ItemReader<T> itemReader) {
+        return Observable.create(subscriber -> {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            subscriber.setCancellation(() -> {
+                cancelled.set(true);
+                responseBody.close();
+            });
+
+            JsonReader reader = new JsonReader(responseBody.charStream());
+            try {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("results".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            if (arrayName.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                                reader.beginArray();
+                                while (reader.hasNext()) {
+                                    if (cancelled.get()) {
+                                        return;
+                                    }
+                                    subscriber.onNext(itemReader.read(reader));
+                                }
+                                reader.endArray();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                subscriber.onCompleted();
+            } catch (IOException | RuntimeException e) {
+                //Closing the body on unsubscribe fails the read, nobody is listening anymore
+                if (!cancelled.get()) {
+                    subscriber.onError(e);
+                }
+            } finally {
+                closeQuietly(reader);
+            }
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    static Observable<QiscusComment> parseComments(ResponseBody responseBody, long roomId) {
+        return parseResults(responseBody, "comments", reader -> readComment(reader, roomId));
+    }
+
+    static Observable<QiscusChatRoom> parseChatRooms(ResponseBody responseBody) {
+        return parseResults(responseBody, "rooms_info", QiscusStreamParser::readChatRoom);
+    }
+
+    /**
+     * @param roomId room id of the comment, or 0 to use the room_id of the comment json
+     */
+    static QiscusComment readComment(JsonReader reader, long roomId) throws IOException {
+        QiscusComment qiscusComment = new QiscusComment();
+        long jsonRoomId = 0;
+        String uniqueId = null;
+        String uniqueTempId = null;
+        String payload = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (name) {
+                case "id":
+                    qiscusComment.setId(reader.nextLong());
+                    break;
+                case "room_id":
+                    jsonRoomId = reader.nextLong();
+                    break;
+                case "comment_before_id":
+                    qiscusComment.setCommentBeforeId(reader.nextLong());
+                    break;
+                case "message":
+                    qiscusComment.setMessage(reader.nextString());
+                    break;
+                case "username":
+                    qiscusComment.setSender(reader.nextString());
+                    break;
+                case "email":
+                    qiscusComment.setSenderEmail(reader.nextString());
+                    break;
+                case "user_avatar_url":
+                    qiscusComment.setSenderAvatar(reader.nextString());
+                    break;
+                case "status":
+                    setCommentState(qiscusComment, reader.nextString());
+                    break;
+                case "unix_nano_timestamp":
+                    //timestamp is in nano seconds format, convert it to milliseconds by divide it
+                    qiscusComment.setTime(new Date(reader.nextLong() / 1000000L));
+                    break;
+                case "is_deleted":
+                    qiscusComment.setDeleted(reader.nextBoolean());
+                    break;
+                case "room_name":
+                    qiscusComment.setRoomName(reader.nextString());
+                    break;
+                case "room_type":
+                    qiscusComment.setGroupMessage(!"single".equals(reader.nextString()));
+                    break;
+                case "unique_id":
+                    uniqueId = reader.nextString();
+                    break;
+                case "unique_temp_id":
+                    uniqueTempId = reader.nextString();
+                    break;
+                case "type":
+                    qiscusComment.setRawType(reader.nextString());
+                    break;
+                case "payload":
+                    payload = readRawJson(reader);
+                    break;
+                case "extras":
+                    qiscusComment.setRawExtras(readRawJsonObject(reader));
+                    break;
+                case "user_extras":
+                    qiscusComment.setRawUserExtras(readRawJsonObject(reader));
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        qiscusComment.setRoomId(roomId > 0 ? roomId : jsonRoomId);
+
+        if (uniqueId != null) {
+            qiscusComment.setUniqueId(uniqueId);
+        } else if (uniqueTempId != null) {
+            qiscusComment.setUniqueId(uniqueTempId);
+        } else {
+            qiscusComment.setUniqueId(String.valueOf(qiscusComment.getId()));
+        }
+
+        if (qiscusComment.getRawType() != null) {
+            qiscusComment.setExtraPayload(payload == null ? "null" : payload);
+            if (payload != null && (qiscusComment.getType() == QiscusComment.Type.BUTTONS
+                    || qiscusComment.getType() == QiscusComment.Type.REPLY
+                    || qiscusComment.getType() == QiscusComment.Type.CARD)) {
+                try {
+                    JSONObject jsonPayload = new JSONObject(payload);
+                    String text = jsonPayload.isNull("text") ? null : jsonPayload.optString("text");
+                    if (QiscusTextUtil.isNotBlank(text)) {
+                        qiscusComment.setMessage(text.trim());
+                    }
+                } catch (JSONException ignored) {
+                    //Do nothing
+                }
+            }
+        }
+
+        return qiscusComment;
+    }
+
+    static QiscusRoomMember readRoomMember(JsonReader reader) throws IOException {
+        QiscusRoomMember member = new QiscusRoomMember();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (name) {
+                case "email":
+                    member.setEmail(reader.nextString());
+                    break;
+                case "username":
+                    member.setUsername(reader.nextString());
+                    break;
+                case "avatar_url":
+                    member.setAvatar(reader.nextString());
+                    break;
+                case "extras":
+                    String extras = readRawJsonObject(reader);
+                    if (extras != null) {
+                        try {
+                            member.setExtras(new JSONObject(extras));
+                        } catch (JSONException ignored) {
+                            //Do nothing
+                        }
+                    }
+                    break;
+                case "last_comment_received_id":
+                    member.setLastDeliveredCommentId(reader.nextLong());
+                    break;
+                case "last_comment_read_id":
+                    member.setLastReadCommentId(reader.nextLong());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        return member;
+    }
+
+    static QiscusChatRoom readChatRoom(JsonReader reader) throws IOException {
+        QiscusChatRoom qiscusChatRoom = new QiscusChatRoom();
+        String rawRoomName = null;
+        List<QiscusRoomMember> members = new ArrayList<>();
+        QiscusComment lastComment = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (name) {
+                case "id":
+                    qiscusChatRoom.setId(reader.nextLong());
+                    break;
+                case "chat_type":
+                    qiscusChatRoom.setGroup(!"single".equals(reader.nextString()));
+                    break;
+                case "room_name":
+                    qiscusChatRoom.setName(reader.nextString());
+                    break;
+                case "raw_room_name":
+                    rawRoomName = reader.nextString();
+                    break;
+                case "unique_id":
+                    qiscusChatRoom.setUniqueId(reader.nextString());
+                    break;
+                case "options":
+                    try {
+                        qiscusChatRoom.setOptions(new JSONObject(reader.nextString()));
+                    } catch (JSONException ignored) {
+                        //Do nothing
+                    }
+                    break;
+                case "avatar_url":
+                    qiscusChatRoom.setAvatarUrl(reader.nextString());
+                    break;
+                case "unread_count":
+                    qiscusChatRoom.setUnreadCount(reader.nextInt());
+                    break;
+                case "is_public_channel":
+                    qiscusChatRoom.setChannel(reader.nextBoolean());
+                    break;
+                case "room_total_participants":
+                    qiscusChatRoom.setMemberCount(reader.nextInt());
+                    break;
+                case "participants":
+                    if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            members.add(readRoomMember(reader));
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "last_comment":
+                    lastComment = readComment(reader, 0);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        qiscusChatRoom.setDistinctId(qiscusChatRoom.isGroup() ? qiscusChatRoom.getUniqueId() : rawRoomName);
+        qiscusChatRoom.setMember(members);
+        if (lastComment != null) {
+            lastComment.setRoomId(qiscusChatRoom.getId());
+        }
+        qiscusChatRoom.setLastComment(lastComment);
+
+        return qiscusChatRoom;
+    }
+
+    private static void setCommentState(QiscusComment qiscusComment, String status) {
+        switch (status) {
+            case "delivered":
+                qiscusComment.setState(QiscusComment.STATE_DELIVERED);
+                break;
+            case "read":
+                qiscusComment.setState(QiscusComment.STATE_READ);
+                break;
+            default:
+                qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+                break;
+        }
+    }
+
+    /**
+     * @return the json object as a string, or null if the value is not an object
+     */
+    private static String readRawJsonObject(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        return readRawJson(reader);
+    }
+
+    private static String readRawJson(JsonReader reader) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter writer = new JsonWriter(stringWriter);
+        writer.setLenient(true);
+        copy(reader, writer);
+        writer.flush();
+        return stringWriter.toString();
+    }
+
+    private static void copy(JsonReader reader, JsonWriter writer) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copy(reader, writer);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                writer.beginObject();
+                while (reader.hasNext()) {
+                    writer.name(reader.nextName());
+                    copy(reader, writer);
+                }
+                reader.endObject();
+                writer.endObject();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                writer.value(new BigDecimal(reader.nextString()));
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                reader.skipValue();
+                break;
+        }
+    }
+
+    private static void closeQuietly(JsonReader reader) {
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+            //Do nothing
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.net.Uri;
+
+import androidx.annotation.RestrictTo;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusFileUpload;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.HttpException;
+import rx.Observable;
+
+/**
+ * Uploads comment attachments with a limit of {@link com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig#getMaxParallelUploads()}
+ * uploads at the same time. The state of every upload is saved in the local database until the comment is sent,
+ * so a network error is retried with backoff instead of failing the comment, a file which was uploaded is not
+ * uploaded again when only sending the comment failed, and uploads interrupted by the app being killed continue
+ * with the pending comments.
+ */
+public enum QiscusUploadManager {
+    INSTANCE;
+    private static final String TAG = QiscusUploadManager.class.getSimpleName();
+    private static final int MAX_RETRIES = 5;
+    private static final long RETRY_DELAY = 2000;
+
+    private final Set<String> uploading = new HashSet<>();
+    private final QiscusConcurrencyLimiter limiter =
+            new QiscusConcurrencyLimiter(() -> QiscusCore.getChatConfig().getMaxParallelUploads());
+    private boolean restored;
+
+    public static QiscusUploadManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Upload the attachment file of the comment, or get the url if the same file has been uploaded before.
+     *
+     * @param progressListener called with the percentage, only when it changes
+     * @return url of the uploaded file
+     */
+    public Observable<Uri> upload(QiscusComment qiscusComment, File file, QiscusApi.ProgressListener progressListener) {
+        return Observable.defer(() -> {
+            QiscusFileUpload qiscusFileUpload = QiscusCore.getDataStore().getUpload(qiscusComment.getUniqueId());
+            if (qiscusFileUpload == null || !qiscusFileUpload.isSameFile(file)) {
+                qiscusFileUpload = new QiscusFileUpload(qiscusComment, file);
+                QiscusCore.getDataStore().addOrUpdateUpload(qiscusFileUpload);
+            }
+
+            if (qiscusFileUpload.getUrl() != null) {
+                progressListener.onProgress(100);
+                return Observable.just(Uri.parse(qiscusFileUpload.getUrl()));
+            }
+
+            QiscusFileUpload finalFileUpload = qiscusFileUpload;
+            long[] lastProgress = {-1};
+            Observable<Uri> attempt = QiscusApi.getInstance().upload(file, percentage -> {
+                if (percentage != lastProgress[0]) {
+                    lastProgress[0] = percentage;
+                    progressListener.onProgress(percentage);
+                }
+            });
+            return Observable.using(() -> markUploading(qiscusComment.getUniqueId()),
+                    uniqueId -> uploadWithRetry(finalFileUpload, attempt, RETRY_DELAY),
+                    this::unmarkUploading);
+        });
+    }
+
+    /**
+     * @return false if the attachment of this comment has used all of its upload retries
+     */
+    public boolean canRetry(QiscusComment qiscusComment) {
+        QiscusFileUpload qiscusFileUpload = QiscusCore.getDataStore().getUpload(qiscusComment.getUniqueId());
+        return qiscusFileUpload != null && qiscusFileUpload.getAttempts() < MAX_RETRIES
+                && new File(qiscusFileUpload.getFilePath()).exists();
+    }
+
+    /**
+     * The comment has been sent, the upload state is not needed anymore.
+     */
+    public void finish(QiscusComment qiscusComment) {
+        QiscusCore.getDataStore().deleteUpload(qiscusComment.getUniqueId());
+    }
+
+    public int getRunningCount() {
+        return limiter.getRunningCount();
+    }
+
+    /**
+     * Uploads which were running when the app was killed left their comments on sending state,
+     * put them back to pending so they are resent with the other pending comments. Only done once per process.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void restoreInterrupted() {
+        synchronized (this) {
+            if (restored) {
+                return;
+            }
+            restored = true;
+        }
+
+        for (QiscusFileUpload qiscusFileUpload : QiscusCore.getDataStore().getUploads()) {
+            QiscusComment qiscusComment = QiscusCore.getDataStore().getComment(qiscusFileUpload.getCommentUniqueId());
+            if (qiscusComment == null) {
+                QiscusCore.getDataStore().deleteUpload(qiscusFileUpload.getCommentUniqueId());
+            } else if (qiscusComment.getState() == QiscusComment.STATE_SENDING && !isUploading(qiscusComment)) {
+                QiscusLogger.print(TAG, "Continue interrupted upload " + qiscusFileUpload);
+                qiscusComment.setState(QiscusComment.STATE_PENDING);
+                QiscusCore.getDataStore().addOrUpdate(qiscusComment);
+            }
+        }
+    }
+
+    private synchronized boolean isUploading(QiscusComment qiscusComment) {
+        return uploading.contains(qiscusComment.getUniqueId());
+    }
+
+    /**
+     * Upload attempts which failed on the network or on the server are tried again with backoff, the attempts
+     * of the upload only count those retries.
+     *
+     * @param retryDelay delay before the first retry, doubled for every next one
+     */
+    Observable<Uri> uploadWithRetry(QiscusFileUpload qiscusFileUpload, Observable<Uri> attempt, long retryDelay) {
+        //Every attempt takes its own upload slot, so the backoff between attempts does not hold one
+        return limiter.limit(attempt)
+                .retryWhen(errors -> errors.flatMap(throwable -> {
+                    if (!isRetryable(throwable) || qiscusFileUpload.getAttempts() >= MAX_RETRIES) {
+                        return Observable.error(throwable);
+                    }
+                    qiscusFileUpload.setAttempts(qiscusFileUpload.getAttempts() + 1);
+                    QiscusCore.getDataStore().addOrUpdateUpload(qiscusFileUpload);
+
+                    long delay = retryDelay << (qiscusFileUpload.getAttempts() - 1);
+                    QiscusLogger.print(TAG, "Upload failed, try again in " + delay + " ms: " + throwable);
+                    return Observable.timer(delay, TimeUnit.MILLISECONDS);
+                }))
+                .doOnNext(uri -> {
+                    qiscusFileUpload.setUrl(uri.toString());
+                    QiscusCore.getDataStore().addOrUpdateUpload(qiscusFileUpload);
+                });
+    }
+
+    /**
+     * Network errors, server errors and too many requests may pass next time, other error responses will not.
+     */
+    private static boolean isRetryable(Throwable throwable) {
+        if (throwable instanceof HttpException) {
+            int code = ((HttpException) throwable).code();
+            return code >= 500 || code == 429;
+        }
+        return throwable instanceof IOException;
+    }
+
+    private synchronized String markUploading(String uniqueId) {
+        uploading.add(uniqueId);
+        return uniqueId;
+    }
+
+    private synchronized void unmarkUploading(String uniqueId) {
+        uploading.remove(uniqueId);
+    }
+}
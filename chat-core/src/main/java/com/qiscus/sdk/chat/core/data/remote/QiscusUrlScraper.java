@@ -16,9 +16,22 @@
 
 package com.qiscus.sdk.chat.core.data.remote;
 
+import android.net.Uri;
+import android.util.LruCache;
+
+import androidx.core.util.Pair;
+
+import com.google.gson.Gson;
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
 import com.schinizer.rxunfurl.RxUnfurl;
 import com.schinizer.rxunfurl.model.PreviewData;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
 import rx.Observable;
 import rx.schedulers.Schedulers;
 
@@ -27,23 +40,149 @@ import rx.schedulers.Schedulers;
  * Author     : zetbaitsu
  * Name       : Zetra
  * GitHub     : https://github.com/zetbaitsu
+ * <p>
+ * Previews are cached by normalized url in memory and in the local database for {@link #MAX_AGE}, so the same
+ * link is only unfurled once a day. Requests for a url which is being unfurled join the running one, and at most
+ * {@link #MAX_PARALLEL_REQUESTS} urls are unfurled at the same time.
  */
 public enum QiscusUrlScraper {
     INSTANCE;
+    private static final String TAG = QiscusUrlScraper.class.getSimpleName();
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+    private static final int MAX_PARALLEL_REQUESTS = 3;
+    private static final int MEMORY_CACHE_SIZE = 100;
 
-    private final RxUnfurl rxUnfurl;
-
-    QiscusUrlScraper() {
-        rxUnfurl = new RxUnfurl.Builder()
-                .scheduler(Schedulers.io())
-                .build();
-    }
+    private final Gson gson = new Gson();
+    private final LruCache<String, CachedPreview> memoryCache = new LruCache<>(MEMORY_CACHE_SIZE);
+    private final Map<String, Observable<PreviewData>> requests = new HashMap<>();
+    private final QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> MAX_PARALLEL_REQUESTS);
+    private OkHttpClient baseClient;
+    private RxUnfurl rxUnfurl;
+    private boolean pruned;
 
     public static QiscusUrlScraper getInstance() {
         return INSTANCE;
     }
 
+    /**
+     * Built again when the base client was rebuilt for new settings. The pages are kept in the http cache for
+     * {@link #MAX_AGE} too, so a preview dropped from the database does not download the page again.
+     */
+    private synchronized RxUnfurl getRxUnfurl() {
+        OkHttpClient currentBaseClient = QiscusHttpClientFactory.getInstance().getBaseClient();
+        if (rxUnfurl == null || baseClient != currentBaseClient) {
+            baseClient = currentBaseClient;
+            rxUnfurl = new RxUnfurl.Builder()
+                    .client(baseClient.newBuilder()
+                            .addNetworkInterceptor(chain -> QiscusHttpClientFactory
+                                    .withMaxAge(chain.proceed(chain.request()), (int) (MAX_AGE / 1000)))
+                            .build())
+                    .scheduler(Schedulers.io())
+                    .build();
+        }
+        return rxUnfurl;
+    }
+
+    /**
+     * Unsubscribing stops the unfurl when nobody else is waiting for the same url.
+     */
     public Observable<PreviewData> generatePreviewData(String url) {
-        return rxUnfurl.generatePreview(url);
+        return Observable.defer(() -> {
+            String key = normalizeUrl(url);
+            CachedPreview cachedPreview = memoryCache.get(key);
+            if (cachedPreview != null && !cachedPreview.isExpired()) {
+                return Observable.just(cachedPreview.previewData);
+            }
+            return getOrCreateRequest(key, url);
+        }).map(previewData -> copyWithUrl(previewData, url));
+    }
+
+    /**
+     * The cached preview is shared by every url with the same key, callers get their own copy with their own url.
+     */
+    private PreviewData copyWithUrl(PreviewData previewData, String url) {
+        PreviewData copy = gson.fromJson(gson.toJson(previewData), PreviewData.class);
+        copy.setUrl(url);
+        return copy;
+    }
+
+    private synchronized Observable<PreviewData> getOrCreateRequest(String key, String url) {
+        Observable<PreviewData> request = requests.get(key);
+        if (request == null) {
+            request = Observable.fromCallable(() -> getFromDatabase(key))
+                    .subscribeOn(Schedulers.io())
+                    .flatMap(cachedPreview -> cachedPreview != null ? Observable.just(cachedPreview) : unfurl(key, url))
+                    .doOnNext(cachedPreview -> memoryCache.put(key, cachedPreview))
+                    .map(cachedPreview -> cachedPreview.previewData)
+                    .doOnTerminate(() -> remove(key))
+                    .doOnUnsubscribe(() -> remove(key))
+                    .replay(1)
+                    .refCount();
+            requests.put(key, request);
+        }
+        return request;
+    }
+
+    private synchronized void remove(String key) {
+        requests.remove(key);
+    }
+
+    private CachedPreview getFromDatabase(String key) {
+        synchronized (this) {
+            if (!pruned) {
+                pruned = true;
+                QiscusCore.getDataStore().deleteLinkPreviews(MAX_AGE);
+            }
+        }
+        Pair<PreviewData, Long> linkPreview = QiscusCore.getDataStore().getLinkPreview(key, MAX_AGE);
+        return linkPreview == null || linkPreview.first == null ? null : new CachedPreview(linkPreview.first, linkPreview.second);
+    }
+
+    /**
+     * The normalized key is only used for caching, the url is fetched the way it was written.
+     */
+    private Observable<CachedPreview> unfurl(String key, String url) {
+        return limiter.limit(Observable.defer(() -> getRxUnfurl().generatePreview(url)))
+                .doOnSubscribe(() -> QiscusLogger.print(TAG, "Unfurl " + url))
+                .doOnNext(previewData -> QiscusCore.getDataStore().addOrUpdateLinkPreview(key, previewData))
+                .map(previewData -> new CachedPreview(previewData, System.currentTimeMillis()));
+    }
+
+    /**
+     * Trim, add the missing scheme, lowercase scheme and host and drop the fragment,
+     * so different ways of writing the same link share one preview.
+     */
+    static String normalizeUrl(String url) {
+        String trimmed = url.trim();
+        if (!trimmed.contains("://")) {
+            trimmed = "http://" + trimmed;
+        }
+        Uri uri = Uri.parse(trimmed);
+        if (uri.getScheme() == null || uri.getEncodedAuthority() == null) {
+            return trimmed;
+        }
+        return uri.buildUpon()
+                .scheme(uri.getScheme().toLowerCase(Locale.US))
+                .encodedAuthority(uri.getEncodedAuthority().toLowerCase(Locale.US))
+                .fragment(null)
+                .build()
+                .toString();
+    }
+
+    private static final class CachedPreview {
+        private final PreviewData previewData;
+        private final long time;
+
+        /**
+         * @param time when the preview was fetched, a preview read from the database keeps its own age
+         */
+        private CachedPreview(PreviewData previewData, long time) {
+            this.previewData = previewData;
+            this.time = time;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - time > MAX_AGE;
+        }
     }
 }
@@ -16,6 +16,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,6 +29,28 @@ import java.util.concurrent.TimeUnit;
  **/
 public class QiscusChatRoomEventHandler {
 
+    /**
+     * Delivered, read and typing events arriving within this window are merged before they are handled.
+     */
+    private static final long EVENT_WINDOW = 300;
+
+    /**
+     * A user is typing again at every key, one not heard of for this long has stopped without telling us, e.g. it
+     * went offline.
+     */
+    private static final long TYPING_TIMEOUT = 10000;
+
+    private final Object pendingEventsLock = new Object();
+    private final Map<String, Boolean> pendingTyping = new HashMap<>();
+    /**
+     * Users typing now, with the time they were last heard of typing. A user is removed when it stops, times out or
+     * leaves the room, so the map only holds the few users typing.
+     */
+    private final Map<String, Long> typingUsers = new HashMap<>();
+    private long pendingLastDeliveredCommentId;
+    private long pendingLastReadCommentId;
+    private ScheduledFuture<?> scheduledFlushEvents;
+
     private QiscusAccount qiscusAccount;
     private StateListener listener;
     private QiscusChatRoom qiscusChatRoom;
@@ -72,6 +97,14 @@ public class QiscusChatRoomEventHandler {
     }
 
     public void detach() {
+        synchronized (pendingEventsLock) {
+            if (scheduledFlushEvents != null) {
+                scheduledFlushEvents.cancel(false);
+                scheduledFlushEvents = null;
+            }
+            pendingTyping.clear();
+            typingUsers.clear();
+        }
         QiscusAndroidUtil.cancelRunOnUIThread(listenChatRoomTask);
         QiscusPusherApi.getInstance().unsubsribeChatRoom(qiscusChatRoom);
         EventBus.getDefault().unregister(this);
@@ -83,22 +116,89 @@ public class QiscusChatRoomEventHandler {
     }
 
     private void handleEvent(QiscusChatRoomEvent event) {
-        if (event.getRoomId() == qiscusChatRoom.getId()) {
+        if (event.getRoomId() != qiscusChatRoom.getId()) {
+            return;
+        }
+
+        synchronized (pendingEventsLock) {
             switch (event.getEvent()) {
                 case TYPING:
-                    listener.onUserTypng(event.getUser(), event.isTyping());
+                    pendingTyping.put(event.getUser(), event.isTyping());
                     break;
                 case DELIVERED:
-                    long lastDeliveredCommentId = event.getCommentId();
-                    QiscusCore.getDataStore().updateLastDeliveredComment(qiscusChatRoom.getId(), lastDeliveredCommentId);
-                    listener.onChangeLastDelivered(lastDeliveredCommentId);
+                    pendingLastDeliveredCommentId = Math.max(pendingLastDeliveredCommentId, event.getCommentId());
                     break;
                 case READ:
-                    long lastReadCommentId = event.getCommentId();
-                    QiscusCore.getDataStore().updateLastReadComment(qiscusChatRoom.getId(), lastReadCommentId);
-                    listener.onChangeLastRead(lastReadCommentId);
+                    pendingLastReadCommentId = Math.max(pendingLastReadCommentId, event.getCommentId());
                     break;
+                default:
+                    return;
+            }
+
+            //A flush waiting to time out typing users comes too late for this event
+            if (scheduledFlushEvents != null && scheduledFlushEvents.getDelay(TimeUnit.MILLISECONDS) > EVENT_WINDOW) {
+                scheduledFlushEvents.cancel(false);
+                scheduledFlushEvents = null;
+            }
+            if (scheduledFlushEvents == null) {
+                scheduledFlushEvents = QiscusAndroidUtil.runOnBackgroundThread(this::flushEvents, EVENT_WINDOW);
+            }
+        }
+    }
+
+    /**
+     * Apply the events merged during the last window, one update and one callback per kind of event,
+     * and only report typing for users whose state really changed, or who timed out.
+     */
+    private void flushEvents() {
+        long lastDeliveredCommentId;
+        long lastReadCommentId;
+        Map<String, Boolean> typing;
+        synchronized (pendingEventsLock) {
+            lastDeliveredCommentId = pendingLastDeliveredCommentId;
+            lastReadCommentId = pendingLastReadCommentId;
+            pendingLastDeliveredCommentId = 0;
+            pendingLastReadCommentId = 0;
+
+            long now = System.currentTimeMillis();
+            typing = new HashMap<>();
+            for (Map.Entry<String, Boolean> entry : pendingTyping.entrySet()) {
+                if (entry.getValue()) {
+                    if (typingUsers.put(entry.getKey(), now) == null) {
+                        typing.put(entry.getKey(), true);
+                    }
+                } else if (typingUsers.remove(entry.getKey()) != null) {
+                    typing.put(entry.getKey(), false);
+                }
+            }
+            pendingTyping.clear();
+
+            Iterator<Map.Entry<String, Long>> iterator = typingUsers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (now - entry.getValue() >= TYPING_TIMEOUT) {
+                    iterator.remove();
+                    typing.put(entry.getKey(), false);
+                }
             }
+
+            //Come back to time out the users still typing, if no event does it before
+            scheduledFlushEvents = typingUsers.isEmpty() ? null
+                    : QiscusAndroidUtil.runOnBackgroundThread(this::flushEvents, TYPING_TIMEOUT);
+        }
+
+        for (Map.Entry<String, Boolean> entry : typing.entrySet()) {
+            listener.onUserTypng(entry.getKey(), entry.getValue());
+        }
+
+        if (lastDeliveredCommentId > 0) {
+            QiscusCore.getDataStore().updateLastDeliveredComment(qiscusChatRoom.getId(), lastDeliveredCommentId);
+            listener.onChangeLastDelivered(lastDeliveredCommentId);
+        }
+
+        if (lastReadCommentId > 0) {
+            QiscusCore.getDataStore().updateLastReadComment(qiscusChatRoom.getId(), lastReadCommentId);
+            listener.onChangeLastRead(lastReadCommentId);
         }
     }
 
@@ -165,6 +265,15 @@ public class QiscusChatRoomEventHandler {
     }
 
     private void handleMemberRemoved(QiscusRoomMember member) {
+        boolean wasTyping;
+        synchronized (pendingEventsLock) {
+            pendingTyping.remove(member.getEmail());
+            wasTyping = typingUsers.remove(member.getEmail()) != null;
+        }
+        if (wasTyping) {
+            listener.onUserTypng(member.getEmail(), false);
+        }
+
         if (memberState.remove(member.getEmail()) != null) {
 
             listener.onChatRoomMemberRemoved(member);
@@ -22,6 +22,7 @@ import android.content.Intent;
 import android.util.Log;
 
 import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
 import com.qiscus.sdk.chat.core.data.remote.QiscusResendCommentHelper;
 import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusLogger;
@@ -41,6 +42,10 @@ public class QiscusNetworkStateReceiver extends BroadcastReceiver {
             boolean isConnected = QiscusAndroidUtil.isNetworkAvailable();
             QiscusLogger.print(TAG, "isConnected : " + isConnected);
             QiscusAndroidUtil.runOnBackgroundThread(() -> {
+                if (isConnected && QiscusCore.hasSetupUser()) {
+                    QiscusPusherApi.getInstance().reconnectNow();
+                }
+
                 if (needResend(isConnected)) {
                     QiscusResendCommentHelper.cancelAll();
                     QiscusResendCommentHelper.tryResendPendingComment();
@@ -23,23 +23,15 @@ import android.content.Intent;
 import android.os.Build;
 
 import com.qiscus.sdk.chat.core.QiscusCore;
-import com.qiscus.sdk.chat.core.data.local.QiscusEventCache;
-import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
 import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
-import com.qiscus.sdk.chat.core.event.QiscusSyncEvent;
 import com.qiscus.sdk.chat.core.event.QiscusUserEvent;
 import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
-import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusLogger;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import androidx.annotation.RequiresApi;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : November 23, 2018
@@ -51,50 +43,12 @@ import rx.schedulers.Schedulers;
 public class QiscusSyncJobService extends JobService {
 
     private static final String TAG = QiscusSyncJobService.class.getSimpleName();
-    private Timer timer;
 
     public void syncJob(Context context) {
         QiscusLogger.print(TAG, "syncJob...");
-
-        stopSync();
-
-        Long hearbeat = QiscusCore.getHeartBeat();
-
-        if (!QiscusCore.getStatusRealtimeEnableDisable()) {
-            hearbeat = QiscusCore.getAutomaticHeartBeat();
-        }
-
-        try {
-            timer = new Timer();
-            timer.schedule(new TimerTask() {
-                public void run() {
-                    // time ran out.
-                    newSchedule(context);
-                }
-            }, hearbeat);
-        } catch (IllegalStateException e) {
-            QiscusLogger.print(TAG, "Error timer canceled");
-        } catch (Exception e) {
-            QiscusLogger.print(TAG, "Error timer exception");
-        }
-    }
-
-    private void newSchedule(Context context) {
-        QiscusLogger.print(TAG, "Job started...");
-
-        if (QiscusCore.hasSetupUser() && !QiscusPusherApi.getInstance().isConnected()) {
-            if (QiscusCore.getStatusRealtimeEnableDisable()) {
-                QiscusAndroidUtil.runOnUIThread(() -> QiscusPusherApi.getInstance().restartConnection());
-                scheduleSync();
-            } else {
-                scheduleSync();
-            }
-        }
-
-        syncJob(context);
+        QiscusSyncScheduler.getInstance().start();
     }
 
-
     @Override
     public void onCreate() {
         super.onCreate();
@@ -115,56 +69,6 @@ public class QiscusSyncJobService extends JobService {
         return START_STICKY;
     }
 
-    private void scheduleSync() {
-        if (QiscusCore.isOnForeground()) {
-            QiscusLogger.print(TAG, "Job started sync service... ");
-            syncComments();
-        }
-    }
-
-    private void syncEvents() {
-        QiscusApi.getInstance().synchronizeEvent(QiscusEventCache.getInstance().getLastEventId())
-                .subscribeOn(Schedulers.io())
-                .subscribe(events -> {
-                }, QiscusErrorLogger::print);
-    }
-
-    private void syncComments() {
-        QiscusApi.getInstance().sync()
-                .doOnSubscribe(() -> {
-                    EventBus.getDefault().post((QiscusSyncEvent.STARTED));
-                    QiscusLogger.print("Sync started...");
-                })
-                .doOnCompleted(() -> {
-                    EventBus.getDefault().post((QiscusSyncEvent.COMPLETED));
-                    syncEvents();
-                    QiscusLogger.print("Sync completed...");
-                })
-                .subscribeOn(Schedulers.io())
-                .subscribe(QiscusPusherApi::handleReceivedComment, throwable -> {
-                    QiscusErrorLogger.print(throwable);
-                    EventBus.getDefault().post(QiscusSyncEvent.FAILED);
-                    QiscusLogger.print("Sync failed...");
-                });
-    }
-
-    private void stopSync() {
-        if (timer != null) {
-            try {
-                timer.cancel();
-                timer.purge();
-            } catch (NullPointerException e) {
-                // do nothing
-            } catch (RuntimeException e) {
-                // do nothing
-            } catch (Exception e) {
-                // do nothing
-            }
-
-            timer = null;
-        }
-    }
-
     @Subscribe
     public void onUserEvent(QiscusUserEvent userEvent) {
         switch (userEvent) {
@@ -173,7 +77,7 @@ public class QiscusSyncJobService extends JobService {
                 syncJob(this);
                 break;
             case LOGOUT:
-                stopSync();
+                QiscusSyncScheduler.getInstance().stop();
                 break;
         }
     }
@@ -182,7 +86,7 @@ public class QiscusSyncJobService extends JobService {
     public void onDestroy() {
         QiscusLogger.print(TAG, "Destroying...");
         EventBus.getDefault().unregister(this);
-        stopSync();
+        QiscusSyncScheduler.getInstance().stop();
         super.onDestroy();
     }
 
@@ -190,13 +94,11 @@ public class QiscusSyncJobService extends JobService {
     public boolean onStartJob(JobParameters params) {
         QiscusLogger.print(TAG, "Job started...");
 
-        if (QiscusCore.hasSetupUser() && !QiscusPusherApi.getInstance().isConnected()) {
-            QiscusAndroidUtil.runOnBackgroundThread(() -> QiscusPusherApi.getInstance().restartConnection());
-            scheduleSync();
+        if (QiscusCore.hasSetupUser()) {
+            QiscusSyncScheduler.getInstance().start();
+            QiscusSyncScheduler.getInstance().syncNow();
         }
 
-        syncJob(this);
-
         return true;
     }
 
@@ -207,4 +109,4 @@ public class QiscusSyncJobService extends JobService {
         return true;
     }
 
-}
\ No newline at end of file
+}
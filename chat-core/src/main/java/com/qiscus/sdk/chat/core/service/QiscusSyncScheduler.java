@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.service;
+
+import android.os.SystemClock;
+
+import androidx.annotation.RestrictTo;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
+import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
+import com.qiscus.sdk.chat.core.event.QiscusMqttStatusEvent;
+import com.qiscus.sdk.chat.core.event.QiscusSyncEvent;
+import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
+import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
+import com.qiscus.sdk.chat.core.util.QiscusLogger;
+import com.qiscus.sdk.chat.core.util.QiscusStartupTrace;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.concurrent.ScheduledFuture;
+
+import rx.schedulers.Schedulers;
+
+/**
+ * Periodic sync loop shared by {@link QiscusSyncService} and {@link QiscusSyncJobService}, running on
+ * {@link QiscusCore#getTaskExecutor()}.
+ * The interval starts at the heartbeat and doubles on every tick that found nothing new, up to 16 times
+ * while mqtt is connected and 4 times while it is not. Getting comments from sync or losing mqtt goes back
+ * to the heartbeat, and the loop pauses while the app is on background.
+ */
+public enum QiscusSyncScheduler {
+    INSTANCE;
+    private static final String TAG = QiscusSyncScheduler.class.getSimpleName();
+    private static final int MAX_CONNECTED_SHIFT = 4;
+    private static final int MAX_DISCONNECTED_SHIFT = 2;
+    private static final long HOUR = 3600000;
+
+    private ScheduledFuture<?> scheduledTick;
+    private boolean running;
+    private boolean syncing;
+    private int idleCount;
+    private long startTime;
+    private long wakeupCount;
+    private long networkCallCount;
+
+    QiscusSyncScheduler() {
+        if (!EventBus.getDefault().isRegistered(this)) {
+            EventBus.getDefault().register(this);
+        }
+    }
+
+    public static QiscusSyncScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public synchronized void start() {
+        if (startTime == 0) {
+            startTime = SystemClock.elapsedRealtime();
+        }
+        running = true;
+        idleCount = 0;
+        schedule(getInterval(0));
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public synchronized void stop() {
+        running = false;
+        cancel();
+    }
+
+    /**
+     * Tick right away, e.g. when the app is back on foreground after the loop was paused.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public synchronized void syncNow() {
+        if (running && !syncing) {
+            idleCount = 0;
+            schedule(0);
+        }
+    }
+
+    /**
+     * Same as {@link #syncNow()}, but only when the loop is paused.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public synchronized void resume() {
+        if (scheduledTick == null) {
+            syncNow();
+        }
+    }
+
+    public synchronized long getWakeupCount() {
+        return wakeupCount;
+    }
+
+    /**
+     * @return number of syncs started by the loop, each sync pages through comments and events
+     */
+    public synchronized long getNetworkCallCount() {
+        return networkCallCount;
+    }
+
+    public synchronized long getWakeupsPerHour() {
+        return perHour(wakeupCount);
+    }
+
+    public synchronized long getNetworkCallsPerHour() {
+        return perHour(networkCallCount);
+    }
+
+    private long perHour(long count) {
+        long elapsed = startTime == 0 ? 0 : SystemClock.elapsedRealtime() - startTime;
+        return elapsed <= 0 ? 0 : count * HOUR / elapsed;
+    }
+
+    @Subscribe
+    public void onMqttStatusChanged(QiscusMqttStatusEvent event) {
+        if (event == QiscusMqttStatusEvent.DISCONNECTED) {
+            synchronized (this) {
+                if (running && scheduledTick != null) {
+                    idleCount = 0;
+                    schedule(getInterval(0));
+                }
+            }
+        } else if (event == QiscusMqttStatusEvent.CONNECTED) {
+            catchUp();
+        }
+    }
+
+    /**
+     * Mqtt only delivers what is published while connected, sync once to get what was missed before.
+     */
+    private void catchUp() {
+        synchronized (this) {
+            if (!running || syncing || !QiscusCore.hasSetupUser()) {
+                return;
+            }
+            cancel();
+            syncing = true;
+            networkCallCount++;
+        }
+        syncComments();
+    }
+
+    private long getInterval(int maxShift) {
+        long interval = QiscusCore.getStatusRealtimeEnableDisable()
+                ? QiscusCore.getHeartBeat() : QiscusCore.getAutomaticHeartBeat();
+        return interval << Math.min(idleCount, maxShift);
+    }
+
+    private void schedule(long delay) {
+        cancel();
+        if (running && !syncing) {
+            scheduledTick = QiscusAndroidUtil.runOnBackgroundThread(this::tick, delay);
+        }
+    }
+
+    private void cancel() {
+        if (scheduledTick != null) {
+            scheduledTick.cancel(false);
+            scheduledTick = null;
+        }
+    }
+
+    private void tick() {
+        synchronized (this) {
+            scheduledTick = null;
+            if (!running) {
+                return;
+            }
+
+            wakeupCount++;
+            if (!QiscusCore.hasSetupUser() || !QiscusCore.isOnForeground()) {
+                QiscusLogger.print(TAG, "Paused until the app is on foreground");
+                return;
+            }
+
+            if (QiscusPusherApi.getInstance().isConnected()) {
+                idleCount++;
+                schedule(getInterval(MAX_CONNECTED_SHIFT));
+                return;
+            }
+
+            syncing = true;
+            networkCallCount++;
+        }
+
+        if (QiscusCore.getStatusRealtimeEnableDisable()) {
+            QiscusPusherApi.getInstance().scheduleReconnect();
+        }
+        syncComments();
+    }
+
+    private synchronized void onSynced(boolean changed) {
+        syncing = false;
+        idleCount = changed ? 0 : idleCount + 1;
+        schedule(getInterval(MAX_DISCONNECTED_SHIFT));
+    }
+
+    private void syncComments() {
+        QiscusApi.getInstance().sync()
+                .doOnSubscribe(() -> {
+                    EventBus.getDefault().post((QiscusSyncEvent.STARTED));
+                    QiscusLogger.print("Sync started...");
+                })
+                .doOnCompleted(() -> {
+                    EventBus.getDefault().post((QiscusSyncEvent.COMPLETED));
+                    QiscusStartupTrace.mark(QiscusStartupTrace.Phase.FIRST_SYNC_COMPLETED);
+                    QiscusLogger.print("Sync completed...");
+                })
+                .doOnNext(QiscusPusherApi::handleReceivedComment)
+                .count()
+                .subscribeOn(Schedulers.io())
+                .subscribe(count -> onSynced(count > 0), throwable -> {
+                    QiscusErrorLogger.print(throwable);
+                    EventBus.getDefault().post(QiscusSyncEvent.FAILED);
+                    QiscusLogger.print("Sync failed...");
+                    onSynced(false);
+                });
+    }
+}
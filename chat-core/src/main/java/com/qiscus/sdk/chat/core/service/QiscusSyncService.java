@@ -36,23 +36,15 @@ import android.content.Intent;
 import android.os.IBinder;
 
 import com.qiscus.sdk.chat.core.QiscusCore;
-import com.qiscus.sdk.chat.core.data.local.QiscusEventCache;
-import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
 import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
-import com.qiscus.sdk.chat.core.event.QiscusSyncEvent;
 import com.qiscus.sdk.chat.core.event.QiscusUserEvent;
 import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
-import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusLogger;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import androidx.annotation.Nullable;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : June 29, 2016
@@ -63,8 +55,6 @@ import rx.schedulers.Schedulers;
 public class QiscusSyncService extends Service {
     private static final String TAG = QiscusSyncService.class.getSimpleName();
 
-    private Timer timer;
-
     @Override
     public void onCreate() {
         super.onCreate();
@@ -90,84 +80,11 @@ public class QiscusSyncService extends Service {
     }
 
     private void scheduleSync() {
-        long period = QiscusCore.getHeartBeat();
-
-        if (!QiscusCore.getStatusRealtimeEnableDisable()) {
-            period = QiscusCore.getAutomaticHeartBeat();
-        }
-
-        stopSync();
-
-        try {
-            timer = new Timer();
-            timer.schedule(new TimerTask() {
-                public void run() {
-                    // time ran out.
-                    if (QiscusCore.hasSetupUser() && !QiscusPusherApi.getInstance().isConnected()) {
-                        if (QiscusCore.getStatusRealtimeEnableDisable()) {
-                            QiscusAndroidUtil.runOnUIThread(() -> QiscusPusherApi.getInstance().restartConnection());
-                            if (QiscusCore.isOnForeground()) {
-                                syncComments();
-                            }
-                        } else {
-                            if (QiscusCore.isOnForeground()) {
-                                syncComments();
-                            }
-                        }
-                    }
-
-                    scheduleSync();
-                }
-            }, period);
-        } catch (IllegalStateException e) {
-            QiscusLogger.print(TAG, "Error timer canceled");
-        } catch (Exception e) {
-            QiscusLogger.print(TAG, "Error timer exception");
-        }
-
-    }
-
-    private void syncEvents() {
-        QiscusApi.getInstance().synchronizeEvent(QiscusEventCache.getInstance().getLastEventId())
-                .subscribeOn(Schedulers.io())
-                .subscribe(events -> {
-                }, QiscusErrorLogger::print);
-    }
-
-    private void syncComments() {
-        QiscusApi.getInstance().sync()
-                .doOnSubscribe(() -> {
-                    EventBus.getDefault().post((QiscusSyncEvent.STARTED));
-                    QiscusLogger.print("Sync started...");
-                })
-                .doOnCompleted(() -> {
-                    EventBus.getDefault().post((QiscusSyncEvent.COMPLETED));
-                    QiscusLogger.print("Sync completed...");
-                    syncEvents();
-                })
-                .subscribeOn(Schedulers.io())
-                .subscribe(QiscusPusherApi::handleReceivedComment, throwable -> {
-                    QiscusErrorLogger.print(throwable);
-                    EventBus.getDefault().post(QiscusSyncEvent.FAILED);
-                    QiscusLogger.print("Sync failed...");
-                });
+        QiscusSyncScheduler.getInstance().start();
     }
 
     private void stopSync() {
-        if (timer != null) {
-            try {
-                timer.cancel();
-                timer.purge();
-            } catch (NullPointerException e) {
-                // do nothing
-            } catch (RuntimeException e) {
-                // do nothing
-            } catch (Exception e) {
-                // do nothing
-            }
-
-            timer = null;
-        }
+        QiscusSyncScheduler.getInstance().stop();
     }
 
     @Subscribe
@@ -27,9 +27,7 @@ public final class QiscusFirebaseMessagingUtil {
     public static boolean handleMessageReceived(RemoteMessage remoteMessage) {
         if (remoteMessage.getData().containsKey("qiscus_sdk")) {
             if (QiscusCore.hasSetupUser()) {
-                if (!QiscusPusherApi.getInstance().isConnected()) {
-                    QiscusPusherApi.getInstance().restartConnection();
-                }
+                QiscusPusherApi.getInstance().scheduleReconnect();
                 if (remoteMessage.getData().containsKey("payload")) {
                     if (remoteMessage.getData().get("qiscus_sdk").equals("post_comment")) {
                         handlePostCommentEvent(remoteMessage);
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.chat.core.util;
+
+import android.os.SystemClock;
+
+import androidx.annotation.RestrictTo;
+
+import java.util.Arrays;
+
+/**
+ * Time spent from {@link com.qiscus.sdk.chat.core.QiscusCore} init until each startup phase first happened.
+ */
+public final class QiscusStartupTrace {
+    private static final String TAG = QiscusStartupTrace.class.getSimpleName();
+    private static final long[] durations = new long[Phase.values().length];
+    private static long startTime;
+
+    static {
+        Arrays.fill(durations, -1);
+    }
+
+    private QiscusStartupTrace() {
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static synchronized void start() {
+        startTime = SystemClock.elapsedRealtime();
+        Arrays.fill(durations, -1);
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public static synchronized void mark(Phase phase) {
+        if (startTime == 0 || durations[phase.ordinal()] >= 0) {
+            return;
+        }
+
+        durations[phase.ordinal()] = SystemClock.elapsedRealtime() - startTime;
+        QiscusLogger.print(TAG, phase + " after " + durations[phase.ordinal()] + " ms");
+    }
+
+    /**
+     * @return time in ms from init until the phase, or -1 if it has not happened yet
+     */
+    public static synchronized long getDuration(Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    public enum Phase {
+        APP_CONFIG_FETCHED, MQTT_CONNECTED, FIRST_SYNC_COMPLETED
+    }
+}
@@ -0,0 +1,149 @@
+package com.qiscus.sdk.chat.core;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.InstrumentationRegistry;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Setup and timing helpers for the instrumentation tests of chat-core and chat, the source folder is shared by the
+ * androidTest of both modules. Results are written to logcat with the QiscusBenchmark tag, they are meant to be
+ * compared between runs on the same device.
+ */
+public final class QiscusBenchmark {
+    public static final String APP_ID = "qiscus-benchmark";
+    public static final String SERVER_URL = "http://127.0.0.1/";
+    public static final String BROKER_URL = "ssl://127.0.0.1:1885";
+    public static final String ACCOUNT_EMAIL = "me@example.com";
+
+    private static final String TAG = "QiscusBenchmark";
+    private static final int WARM_UP_RUNS = 2;
+
+    private static boolean initialized;
+
+    private QiscusBenchmark() {
+    }
+
+    /**
+     * Init the core against an unreachable server with a cached account, so the data store can be used without any
+     * network.
+     */
+    public static void initQiscus() {
+        initQiscus(application -> QiscusCore.initWithCustomServer(application, APP_ID, SERVER_URL, BROKER_URL, null));
+    }
+
+    /**
+     * Like {@link #initQiscus()}, with the given init, e.g. of the chat ui against {@link #SERVER_URL} and
+     * {@link #BROKER_URL}. Only the first init of the test process runs.
+     */
+    public static synchronized void initQiscus(Initializer initializer) {
+        if (initialized) {
+            return;
+        }
+        Application application = (Application) InstrumentationRegistry.getTargetContext().getApplicationContext();
+        try {
+            JSONObject account = new JSONObject()
+                    .put("email", ACCOUNT_EMAIL)
+                    .put("username", "Me")
+                    .put("token", "benchmark");
+            application.getSharedPreferences("qiscus.cfg", Context.MODE_PRIVATE)
+                    .edit()
+                    .putString("cached_account", account.toString())
+                    .commit();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        initializer.init(application);
+        initialized = true;
+    }
+
+    /**
+     * Wait until the tasks scheduled on the sdk executor before this call have finished, e.g. comments prepared for
+     * rendering. Every thread of the executor is taken by a barrier, which only happens once the tasks started before
+     * have finished.
+     */
+    public static void awaitBackgroundTasks() {
+        ScheduledThreadPoolExecutor executor = QiscusCore.getTaskExecutor();
+        int threads = executor.getCorePoolSize();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Run the task a few times to warm up, then the given number of times.
+     *
+     * @return median duration in nano seconds
+     */
+    public static long measure(String name, int runs, Runnable task) {
+        return measure(name, runs, () -> {
+        }, task);
+    }
+
+    /**
+     * Like {@link #measure(String, int, Runnable)}, the set up runs before every run of the task and is not timed.
+     */
+    public static long measure(String name, int runs, Runnable setUp, Runnable task) {
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            setUp.run();
+            task.run();
+        }
+
+        long[] durations = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            setUp.run();
+            long start = System.nanoTime();
+            task.run();
+            durations[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(durations);
+
+        long median = durations[runs / 2];
+        Log.i(TAG, String.format(Locale.US, "%s: median %.3f ms, min %.3f ms, max %.3f ms (%d runs)",
+                name, median / 1e6, durations[0] / 1e6, durations[runs - 1] / 1e6, runs));
+        return median;
+    }
+
+    /**
+     * Fail unless the median of a measure is below the median of the baseline it replaces.
+     */
+    public static void assertFaster(String name, long median, long baselineMedian) {
+        assertTrue(String.format(Locale.US, "%s: median %.3f ms is not below the baseline %.3f ms",
+                name, median / 1e6, baselineMedian / 1e6), median < baselineMedian);
+    }
+
+    public static void report(String name, String result) {
+        Log.i(TAG, name + ": " + result);
+    }
+
+    public interface Initializer {
+        void init(Application application);
+    }
+}
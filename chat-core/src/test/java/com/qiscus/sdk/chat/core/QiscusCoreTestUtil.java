@@ -0,0 +1,35 @@
+package com.qiscus.sdk.chat.core;
+
+import android.app.Application;
+
+import com.qiscus.sdk.chat.core.data.local.QiscusDataStore;
+import com.qiscus.sdk.chat.core.data.model.QiscusCoreChatConfig;
+
+import java.lang.reflect.Field;
+
+/**
+ * Sets the state {@link QiscusCore} keeps after init, so the classes reading it can be tested without the network
+ * and services the init starts.
+ */
+public final class QiscusCoreTestUtil {
+    public static final String APP_SERVER = "https://api.example.com/";
+
+    private QiscusCoreTestUtil() {
+    }
+
+    public static void init(Application application) throws ReflectiveOperationException {
+        setField("appInstance", application);
+        setField("appServer", APP_SERVER);
+        setField("chatConfig", new QiscusCoreChatConfig());
+    }
+
+    public static void setDataStore(QiscusDataStore dataStore) {
+        QiscusCore.setDataStore(dataStore);
+    }
+
+    private static void setField(String name, Object value) throws ReflectiveOperationException {
+        Field field = QiscusCore.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+}
@@ -0,0 +1,45 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CommentSearchTableTest {
+
+    @Test
+    public void singleWordIsPrefixMatched() {
+        assertEquals("\"hello*\"", QiscusDb.CommentSearchTable.toMatchQuery("hello"));
+    }
+
+    @Test
+    public void everyWordMustMatch() {
+        assertEquals("\"see*\" \"you*\" \"tomorrow*\"",
+                QiscusDb.CommentSearchTable.toMatchQuery("see you tomorrow"));
+    }
+
+    @Test
+    public void whitespaceIsCollapsed() {
+        assertEquals("\"see*\" \"you*\"", QiscusDb.CommentSearchTable.toMatchQuery("  see \t\n you  "));
+    }
+
+    @Test
+    public void quotesCanNotBreakOutOfTheToken() {
+        assertEquals("\"say*\" \"hi*\"", QiscusDb.CommentSearchTable.toMatchQuery("say\"hi\""));
+        assertEquals("\"a*\" \"OR*\" \"b*\"", QiscusDb.CommentSearchTable.toMatchQuery("\"a OR b\""));
+    }
+
+    @Test
+    public void operatorsAreSearchedAsText() {
+        assertEquals("\"-foo*\" \"bar*\"", QiscusDb.CommentSearchTable.toMatchQuery("-foo bar"));
+        assertEquals("\"NEAR*\" \"AND*\"", QiscusDb.CommentSearchTable.toMatchQuery("NEAR AND"));
+    }
+
+    @Test
+    public void emptyQueryHasNoMatchQuery() {
+        assertNull(QiscusDb.CommentSearchTable.toMatchQuery(null));
+        assertNull(QiscusDb.CommentSearchTable.toMatchQuery(""));
+        assertNull(QiscusDb.CommentSearchTable.toMatchQuery("   "));
+        assertNull(QiscusDb.CommentSearchTable.toMatchQuery("\"\""));
+    }
+}
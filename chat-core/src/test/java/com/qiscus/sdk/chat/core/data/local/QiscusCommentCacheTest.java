@@ -0,0 +1,73 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import com.qiscus.sdk.chat.core.QiscusCoreTestUtil;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * A comment read from the database before a write was committed must not be cached over that write.
+ */
+public class QiscusCommentCacheTest {
+
+    private QiscusCommentCache commentCache;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        //The cache is sized through the chat config, which is created by the init of the sdk
+        QiscusCoreTestUtil.init(null);
+        commentCache = new QiscusCommentCache();
+    }
+
+    @Test
+    public void readBeforeAWriteIsNotCachedOverIt() {
+        long generation = commentCache.generation();
+        QiscusComment read = createComment("Before");
+        commentCache.put(createComment("After"));
+
+        commentCache.putIfUnchanged(read, generation);
+
+        assertEquals("After", commentCache.get("comment-1").getMessage());
+    }
+
+    @Test
+    public void readBeforeARemoveIsNotCached() {
+        long generation = commentCache.generation();
+        commentCache.remove("comment-1");
+
+        commentCache.putIfUnchanged(createComment("Deleted"), generation);
+
+        assertNull(commentCache.get("comment-1"));
+    }
+
+    @Test
+    public void readBeforeAStateUpdateIsNotCached() {
+        long generation = commentCache.generation();
+        commentCache.updateState(1, 1, QiscusComment.STATE_READ);
+
+        commentCache.putIfUnchanged(createComment("Sent"), generation);
+
+        assertNull(commentCache.get("comment-1"));
+    }
+
+    @Test
+    public void readWithoutWritesIsCached() {
+        commentCache.putIfUnchanged(createComment("Hello"), commentCache.generation());
+
+        assertEquals("Hello", commentCache.get("comment-1").getMessage());
+    }
+
+    private static QiscusComment createComment(String message) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(1);
+        qiscusComment.setRoomId(1);
+        qiscusComment.setUniqueId("comment-1");
+        qiscusComment.setMessage(message);
+        qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+        return qiscusComment;
+    }
+}
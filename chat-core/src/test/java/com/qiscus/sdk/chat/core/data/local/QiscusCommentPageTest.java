@@ -0,0 +1,129 @@
+package com.qiscus.sdk.chat.core.data.local;
+
+import com.qiscus.sdk.chat.core.QiscusCoreTestUtil;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Keyset pages of the comments of a room, anchored on the time then the id of a shown comment.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class QiscusCommentPageTest {
+
+    private static final long ROOM_ID = 607;
+    private static final long OTHER_ROOM_ID = 608;
+    private static final long TIME = 1580000000000L;
+
+    private QiscusDataBaseHelper dataBaseHelper;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        //The store logs and sizes its cache through the chat config, which is created by the init of the sdk
+        QiscusCoreTestUtil.init(RuntimeEnvironment.getApplication());
+        dataBaseHelper = new QiscusDataBaseHelper(RuntimeEnvironment.getApplication());
+
+        //Comments 1 to 10, 5 and 6 sent in the same millisecond
+        List<QiscusComment> comments = new ArrayList<>();
+        for (long id = 1; id <= 10; id++) {
+            comments.add(createComment(ROOM_ID, id, id == 6 ? TIME + 5 : TIME + id));
+        }
+        QiscusComment hardDeleted = createComment(ROOM_ID, 11, TIME + 11);
+        hardDeleted.setHardDeleted(true);
+        comments.add(hardDeleted);
+        comments.add(createComment(OTHER_ROOM_ID, 12, TIME + 7));
+        dataBaseHelper.addOrUpdateComments(comments);
+    }
+
+    @Test
+    public void latestPageIsNewestFirst() {
+        assertIds(dataBaseHelper.getOlderComments(ROOM_ID, null, 3), 10, 9, 8);
+    }
+
+    @Test
+    public void olderPagesFollowEachOtherWithoutGapsOrDuplicates() {
+        List<Long> ids = new ArrayList<>();
+        QiscusComment anchor = null;
+        List<QiscusComment> page;
+        while (!(page = dataBaseHelper.getOlderComments(ROOM_ID, anchor, 3)).isEmpty()) {
+            assertTrue(page.size() <= 3);
+            for (QiscusComment qiscusComment : page) {
+                ids.add(qiscusComment.getId());
+            }
+            anchor = page.get(page.size() - 1);
+        }
+
+        List<Long> expected = new ArrayList<>();
+        for (long id = 10; id >= 1; id--) {
+            expected.add(id);
+        }
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    public void commentsOfTheSameTimeAreOrderedById() {
+        assertIds(dataBaseHelper.getOlderComments(ROOM_ID, comment(6), 2), 5, 4);
+        assertIds(dataBaseHelper.getNewerComments(ROOM_ID, comment(5), 2), 7, 6);
+    }
+
+    @Test
+    public void newerPageHoldsTheCommentsRightAfterTheAnchorNewestFirst() {
+        assertIds(dataBaseHelper.getNewerComments(ROOM_ID, comment(2), 3), 5, 4, 3);
+        assertIds(dataBaseHelper.getNewerComments(ROOM_ID, null, 2), 2, 1);
+        assertIds(dataBaseHelper.getNewerComments(ROOM_ID, comment(10), 3));
+    }
+
+    @Test
+    public void otherRoomsAndHardDeletedCommentsAreLeftOut() {
+        List<QiscusComment> comments = dataBaseHelper.getOlderComments(ROOM_ID, null, 20);
+        assertEquals(10, comments.size());
+        for (QiscusComment qiscusComment : comments) {
+            assertEquals(ROOM_ID, qiscusComment.getRoomId());
+        }
+    }
+
+    private QiscusComment comment(long id) {
+        return dataBaseHelper.getComment("comment-" + id);
+    }
+
+    private static void assertIds(List<QiscusComment> comments, long... ids) {
+        List<Long> expected = new ArrayList<>();
+        for (long id : ids) {
+            expected.add(id);
+        }
+        List<Long> actual = new ArrayList<>();
+        for (QiscusComment qiscusComment : comments) {
+            actual.add(qiscusComment.getId());
+        }
+        assertEquals(expected, actual);
+    }
+
+    private static QiscusComment createComment(long roomId, long id, long time) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(id);
+        qiscusComment.setRoomId(roomId);
+        qiscusComment.setUniqueId("comment-" + id);
+        qiscusComment.setCommentBeforeId(id - 1);
+        qiscusComment.setMessage("Message number " + id);
+        qiscusComment.setSenderEmail("user@example.com");
+        qiscusComment.setSender("User");
+        qiscusComment.setTime(new Date(time));
+        qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+        qiscusComment.setRawType("text");
+        qiscusComment.setExtraPayload("{}");
+        return qiscusComment;
+    }
+}
@@ -0,0 +1,169 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Observable;
+import rx.Subscription;
+import rx.functions.Func0;
+import rx.subjects.PublishSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QiscusConcurrencyLimiterTest {
+
+    private static final long TIMEOUT = 5000;
+
+    @Test
+    public void passesTheValuesThrough() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 1);
+
+        List<Integer> values = limiter.limit(Observable.just(1, 2, 3)).toList().toBlocking().single();
+
+        assertEquals(Arrays.asList(1, 2, 3), values);
+        await(() -> limiter.getRunningCount() == 0);
+    }
+
+    @Test
+    public void runsAtMostMaxConcurrent() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 2);
+        PublishSubject<Integer> first = PublishSubject.create();
+        PublishSubject<Integer> second = PublishSubject.create();
+        PublishSubject<Integer> third = PublishSubject.create();
+
+        limiter.limit(first).subscribe();
+        limiter.limit(second).subscribe();
+        limiter.limit(third).subscribe();
+
+        await(() -> first.hasObservers() && second.hasObservers());
+        assertFalse(third.hasObservers());
+        assertEquals(2, limiter.getRunningCount());
+
+        first.onCompleted();
+
+        await(third::hasObservers);
+        assertEquals(2, limiter.getRunningCount());
+
+        second.onCompleted();
+        third.onCompleted();
+
+        await(() -> limiter.getRunningCount() == 0);
+    }
+
+    @Test
+    public void errorReleasesTheSlot() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 1);
+        PublishSubject<Integer> first = PublishSubject.create();
+        PublishSubject<Integer> second = PublishSubject.create();
+
+        limiter.limit(first).subscribe(value -> {
+        }, throwable -> {
+        });
+        limiter.limit(second).subscribe();
+
+        await(first::hasObservers);
+        first.onError(new RuntimeException("failed"));
+
+        await(second::hasObservers);
+        assertEquals(1, limiter.getRunningCount());
+    }
+
+    @Test
+    public void unsubscribeReleasesTheSlot() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 1);
+        PublishSubject<Integer> first = PublishSubject.create();
+        PublishSubject<Integer> second = PublishSubject.create();
+
+        Subscription subscription = limiter.limit(first).subscribe();
+        limiter.limit(second).subscribe();
+
+        await(first::hasObservers);
+        subscription.unsubscribe();
+
+        await(second::hasObservers);
+        assertFalse(first.hasObservers());
+        assertEquals(1, limiter.getRunningCount());
+    }
+
+    @Test
+    public void unsubscribeWhileWaitingLeavesTheQueue() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 1);
+        PublishSubject<Integer> first = PublishSubject.create();
+        PublishSubject<Integer> second = PublishSubject.create();
+        PublishSubject<Integer> third = PublishSubject.create();
+
+        limiter.limit(first).subscribe();
+        Subscription waiting = limiter.limit(second).subscribe();
+        limiter.limit(third).subscribe();
+
+        await(first::hasObservers);
+        waiting.unsubscribe();
+        first.onCompleted();
+
+        await(third::hasObservers);
+        assertFalse(second.hasObservers());
+        assertEquals(1, limiter.getRunningCount());
+    }
+
+    @Test
+    public void limitIsReadWhenSlotsAreTaken() {
+        AtomicInteger max = new AtomicInteger(1);
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(max::get);
+        PublishSubject<Integer> first = PublishSubject.create();
+        PublishSubject<Integer> second = PublishSubject.create();
+        PublishSubject<Integer> third = PublishSubject.create();
+
+        limiter.limit(first).subscribe();
+        limiter.limit(second).subscribe();
+        limiter.limit(third).subscribe();
+
+        await(first::hasObservers);
+        max.set(3);
+        first.onCompleted();
+
+        await(() -> second.hasObservers() && third.hasObservers());
+        assertEquals(2, limiter.getRunningCount());
+    }
+
+    @Test
+    public void retryWaitsForASlotAgain() {
+        QiscusConcurrencyLimiter limiter = new QiscusConcurrencyLimiter(() -> 1);
+        AtomicInteger attempts = new AtomicInteger();
+        PublishSubject<Integer> other = PublishSubject.create();
+
+        Observable<Integer> failingOnce = Observable.defer(() -> attempts.incrementAndGet() == 1
+                ? Observable.<Integer>error(new RuntimeException("failed"))
+                : Observable.just(attempts.get()));
+
+        AtomicInteger value = new AtomicInteger();
+        limiter.limit(failingOnce)
+                .doOnError(throwable -> limiter.limit(other).subscribe())
+                .retry(1)
+                .subscribe(value::set);
+
+        await(other::hasObservers);
+        assertEquals(0, value.get());
+
+        other.onCompleted();
+
+        await(() -> value.get() == 2);
+        await(() -> limiter.getRunningCount() == 0);
+    }
+
+    private static void await(Func0<Boolean> condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.call()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
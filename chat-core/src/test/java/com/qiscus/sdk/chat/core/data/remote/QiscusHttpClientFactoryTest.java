@@ -0,0 +1,73 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.QiscusCoreTestUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Settings changed after the first request apply to the next one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class QiscusHttpClientFactoryTest {
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        QiscusCoreTestUtil.init(RuntimeEnvironment.getApplication());
+    }
+
+    @Test
+    public void maxRequestsPerHostIsReadForEveryClient() {
+        OkHttpClient client = QiscusHttpClientFactory.getInstance().getBaseClient();
+
+        QiscusCore.getChatConfig().setMaxRequestsPerHost(2);
+
+        assertSame(client, QiscusHttpClientFactory.getInstance().getBaseClient());
+        assertEquals(2, client.dispatcher().getMaxRequestsPerHost());
+    }
+
+    @Test
+    public void clientIsRebuiltWhenTheCacheSizeChanges() {
+        OkHttpClient client = QiscusHttpClientFactory.getInstance().getBaseClient();
+
+        QiscusCore.getChatConfig().setHttpCacheSize(0);
+        OkHttpClient rebuilt = QiscusHttpClientFactory.getInstance().getBaseClient();
+
+        assertNotSame(client, rebuilt);
+        assertNull(rebuilt.cache());
+        assertSame(client.dispatcher(), rebuilt.dispatcher());
+        assertSame(client.connectionPool(), rebuilt.connectionPool());
+    }
+
+    @Test
+    public void maxAgeIsOnlySetOnSuccessfulResponses() {
+        assertEquals("max-age=30", QiscusHttpClientFactory.withMaxAge(response(200), 30).header("Cache-Control"));
+        assertEquals("no-cache", QiscusHttpClientFactory.withMaxAge(response(500), 30).header("Cache-Control"));
+    }
+
+    private static Response response(int code) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("https://api.example.com/api/v2/mobile/get_room_by_id").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .header("Cache-Control", "no-cache")
+                .build();
+    }
+}
@@ -0,0 +1,283 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of an MQTT 3.1.1 broker on localhost to pass the realtime topics of the sdk from one client to
+ * another, with a thread per client, no sessions and no retained messages. It counts the publish packets and their
+ * acknowledgements going through it, the packets the QoS of a topic decides.
+ */
+final class QiscusLocalMqttBroker implements Closeable {
+    private static final int CONNECT = 1;
+    private static final int CONNACK = 2;
+    private static final int PUBLISH = 3;
+    private static final int PUBACK = 4;
+    private static final int PUBREC = 5;
+    private static final int PUBREL = 6;
+    private static final int PUBCOMP = 7;
+    private static final int SUBSCRIBE = 8;
+    private static final int SUBACK = 9;
+    private static final int UNSUBSCRIBE = 10;
+    private static final int UNSUBACK = 11;
+    private static final int PINGREQ = 12;
+    private static final int PINGRESP = 13;
+    private static final int DISCONNECT = 14;
+
+    private final ServerSocket serverSocket;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong publishPackets = new AtomicLong();
+    private volatile long lastPacketNanos = System.nanoTime();
+
+    QiscusLocalMqttBroker() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        startThread(this::accept, "local-mqtt-broker");
+    }
+
+    String getServerUri() {
+        return "tcp://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return PUBLISH, PUBACK, PUBREC, PUBREL and PUBCOMP packets received and sent since the last reset
+     */
+    long getPublishPackets() {
+        return publishPackets.get();
+    }
+
+    void resetPublishPackets() {
+        publishPackets.set(0);
+    }
+
+    /**
+     * Wait until no packet went through for a while, the last acknowledgements of a QoS 2 delivery come after the
+     * message reached the subscriber.
+     */
+    void awaitIdle(long idleMillis) throws InterruptedException {
+        while (System.nanoTime() - lastPacketNanos < idleMillis * 1000000L) {
+            Thread.sleep(idleMillis / 4);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                startThread(connection, "local-mqtt-connection");
+            }
+        } catch (IOException e) {
+            //Closed
+        }
+    }
+
+    private void forward(String topic, int qos, byte[] payload) throws IOException {
+        for (Connection connection : connections) {
+            Integer subscribedQos = connection.getSubscribedQos(topic);
+            if (subscribedQos != null) {
+                connection.sendPublish(topic, Math.min(qos, subscribedQos), payload);
+            }
+        }
+    }
+
+    private void onPacket(int type) {
+        if (type >= PUBLISH && type <= PUBCOMP) {
+            publishPackets.incrementAndGet();
+        }
+        lastPacketNanos = System.nanoTime();
+    }
+
+    static boolean matches(String filter, String topic) {
+        String[] filterLevels = filter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for (int i = 0; i < filterLevels.length; i++) {
+            if (filterLevels[i].equals("#")) {
+                return true;
+            }
+            if (i >= topicLevels.length || !filterLevels[i].equals("+") && !filterLevels[i].equals(topicLevels[i])) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+
+    private static void startThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private final class Connection implements Runnable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final OutputStream out;
+        private final Map<String, Integer> subscriptions = new ConcurrentHashMap<>();
+        private int lastPacketId;
+
+        private Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        @Override
+        public void run() {
+            try {
+                int header;
+                while ((header = in.read()) >= 0) {
+                    byte[] body = new byte[readRemainingLength()];
+                    in.readFully(body);
+                    onPacket(header >> 4);
+                    handle(header, new DataInputStream(new ByteArrayInputStream(body)));
+                }
+            } catch (IOException e) {
+                //Disconnected
+            } finally {
+                connections.remove(this);
+                close();
+            }
+        }
+
+        private void handle(int header, DataInputStream body) throws IOException {
+            switch (header >> 4) {
+                case CONNECT:
+                    send(CONNACK << 4, new byte[]{0, 0});
+                    break;
+                case PUBLISH:
+                    int qos = (header >> 1) & 3;
+                    String topic = body.readUTF();
+                    int packetId = qos > 0 ? body.readUnsignedShort() : 0;
+                    byte[] payload = new byte[body.available()];
+                    body.readFully(payload);
+                    if (qos == 1) {
+                        sendAcknowledgement(PUBACK << 4, packetId);
+                    } else if (qos == 2) {
+                        sendAcknowledgement(PUBREC << 4, packetId);
+                    }
+                    forward(topic, qos, payload);
+                    break;
+                case PUBREC:
+                    sendAcknowledgement(PUBREL << 4 | 2, body.readUnsignedShort());
+                    break;
+                case PUBREL:
+                    sendAcknowledgement(PUBCOMP << 4, body.readUnsignedShort());
+                    break;
+                case SUBSCRIBE:
+                    ByteArrayOutputStream subAck = new ByteArrayOutputStream();
+                    new DataOutputStream(subAck).writeShort(body.readUnsignedShort());
+                    while (body.available() > 0) {
+                        String filter = body.readUTF();
+                        int requestedQos = body.readUnsignedByte();
+                        subscriptions.put(filter, requestedQos);
+                        subAck.write(requestedQos);
+                    }
+                    send(SUBACK << 4, subAck.toByteArray());
+                    break;
+                case UNSUBSCRIBE:
+                    int unsubscribeId = body.readUnsignedShort();
+                    while (body.available() > 0) {
+                        subscriptions.remove(body.readUTF());
+                    }
+                    sendAcknowledgement(UNSUBACK << 4, unsubscribeId);
+                    break;
+                case PINGREQ:
+                    send(PINGRESP << 4, new byte[0]);
+                    break;
+                case DISCONNECT:
+                    close();
+                    break;
+                default:
+                    //PUBACK and PUBCOMP of the messages sent to this client end their delivery
+                    break;
+            }
+        }
+
+        private Integer getSubscribedQos(String topic) {
+            Integer qos = null;
+            for (Map.Entry<String, Integer> subscription : subscriptions.entrySet()) {
+                if (matches(subscription.getKey(), topic) && (qos == null || subscription.getValue() > qos)) {
+                    qos = subscription.getValue();
+                }
+            }
+            return qos;
+        }
+
+        private void sendPublish(String topic, int qos, byte[] payload) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(body);
+            data.writeUTF(topic);
+            if (qos > 0) {
+                data.writeShort(nextPacketId());
+            }
+            data.write(payload);
+            send(PUBLISH << 4 | qos << 1, body.toByteArray());
+        }
+
+        private void sendAcknowledgement(int header, int packetId) throws IOException {
+            send(header, new byte[]{(byte) (packetId >> 8), (byte) packetId});
+        }
+
+        private synchronized int nextPacketId() {
+            lastPacketId = lastPacketId % 65535 + 1;
+            return lastPacketId;
+        }
+
+        private synchronized void send(int header, byte[] body) throws IOException {
+            out.write(header);
+            int length = body.length;
+            do {
+                int digit = length % 128;
+                length /= 128;
+                out.write(length > 0 ? digit | 0x80 : digit);
+            } while (length > 0);
+            out.write(body);
+            out.flush();
+            onPacket(header >> 4);
+        }
+
+        private int readRemainingLength() throws IOException {
+            int length = 0;
+            int multiplier = 1;
+            int digit;
+            do {
+                digit = in.read();
+                if (digit < 0) {
+                    throw new IOException("Connection closed");
+                }
+                length += (digit & 0x7f) * multiplier;
+                multiplier *= 128;
+            } while ((digit & 0x80) != 0);
+            return length;
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //Already closed
+            }
+        }
+    }
+}
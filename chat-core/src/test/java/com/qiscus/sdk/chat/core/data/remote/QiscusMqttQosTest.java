@@ -0,0 +1,179 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import com.qiscus.sdk.chat.core.data.model.QiscusMqttQosConfig;
+
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Messages per second and packets per message of every kind of realtime topic, published by one client and
+ * received by another through a local broker, with the default QoS policy and with QoS 2 everywhere as before.
+ * The topics and their QoS are the ones {@link QiscusPusherApi} subscribes and publishes with.
+ */
+public class QiscusMqttQosTest {
+    private static final int MESSAGES = 500;
+    private static final long TIMEOUT_SECONDS = 60;
+    private static final long IDLE_MILLIS = 200;
+
+    private static final String TOKEN = "aBcD1234token";
+    private static final String OTHER_EMAIL = "other@example.com";
+    private static final long ROOM_ID = 1307;
+
+    private QiscusLocalMqttBroker broker;
+
+    @Before
+    public void setUp() throws IOException {
+        broker = new QiscusLocalMqttBroker();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        broker.close();
+    }
+
+    @Test
+    public void typingAndPresenceAreNotAcknowledged() throws Exception {
+        assertPacketsPerMessage(TopicKind.TYPING, 2, 8);
+        assertPacketsPerMessage(TopicKind.PRESENCE, 2, 8);
+    }
+
+    @Test
+    public void receiptsAndEventsAreAcknowledgedOnce() throws Exception {
+        assertPacketsPerMessage(TopicKind.RECEIPT, 4, 8);
+        assertPacketsPerMessage(TopicKind.EVENT, 4, 8);
+    }
+
+    @Test
+    public void commentsAndNotificationsKeepExactlyOnce() throws Exception {
+        assertPacketsPerMessage(TopicKind.COMMENT, 8, 8);
+        assertPacketsPerMessage(TopicKind.NOTIFICATION, 8, 8);
+    }
+
+    /**
+     * Both legs are counted, publisher to broker and broker to subscriber, each a PUBLISH and for QoS 1 a PUBACK,
+     * for QoS 2 a PUBREC, PUBREL and PUBCOMP.
+     */
+    private void assertPacketsPerMessage(TopicKind kind, int defaultPackets, int qos2Packets) throws Exception {
+        QiscusMqttQosConfig qos2Everywhere = new QiscusMqttQosConfig()
+                .setCommentQos(2)
+                .setNotificationQos(2)
+                .setReceiptQos(2)
+                .setTypingQos(2)
+                .setPresenceQos(2)
+                .setEventQos(2);
+
+        assertEquals(defaultPackets, run(kind, "default policy", new QiscusMqttQosConfig()), 0);
+        assertEquals(qos2Packets, run(kind, "QoS 2 everywhere", qos2Everywhere), 0);
+    }
+
+    /**
+     * @return packets per message
+     */
+    private double run(TopicKind kind, String policy, QiscusMqttQosConfig qosConfig) throws Exception {
+        int qos = kind.getQos(qosConfig);
+        MqttClient subscriber = connect("subscriber");
+        MqttClient publisher = connect("publisher");
+        try {
+            CountDownLatch received = new CountDownLatch(MESSAGES);
+            subscriber.subscribe(kind.filter, qos, (topic, message) -> received.countDown());
+            broker.awaitIdle(IDLE_MILLIS);
+            broker.resetPublishPackets();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < MESSAGES; i++) {
+                publisher.publish(kind.topic, kind.payload.getBytes(), qos, false);
+            }
+            assertTrue(kind + " messages did not arrive", received.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            long elapsed = System.nanoTime() - start;
+            broker.awaitIdle(IDLE_MILLIS);
+
+            double packetsPerMessage = (double) broker.getPublishPackets() / MESSAGES;
+            System.out.println(String.format(Locale.US, "%s, %s: QoS %d, %.0f messages/s, %.1f packets per message",
+                    kind, policy, qos, MESSAGES / (elapsed / 1e9), packetsPerMessage));
+            return packetsPerMessage;
+        } finally {
+            disconnect(publisher);
+            disconnect(subscriber);
+        }
+    }
+
+    private MqttClient connect(String clientId) throws MqttException {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMqttVersion(MqttConnectOptions.MQTT_VERSION_3_1_1);
+        MqttClient client = new MqttClient(broker.getServerUri(), clientId, new MemoryPersistence());
+        client.connect(options);
+        return client;
+    }
+
+    private static void disconnect(MqttClient client) throws MqttException {
+        if (client.isConnected()) {
+            client.disconnect();
+        }
+        client.close();
+    }
+
+    private enum TopicKind {
+        COMMENT(TOKEN + "/c", TOKEN + "/c", "{\"id\":1,\"message\":\"Hello\"}") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getCommentQos();
+            }
+        },
+        NOTIFICATION(TOKEN + "/n", TOKEN + "/n", "{\"action_topic\":\"delete_message\"}") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getNotificationQos();
+            }
+        },
+        RECEIPT("r/" + ROOM_ID + "/+/+/d", "r/" + ROOM_ID + "/" + ROOM_ID + "/" + OTHER_EMAIL + "/d", "1:unique-1") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getReceiptQos();
+            }
+        },
+        TYPING("r/" + ROOM_ID + "/+/+/t", "r/" + ROOM_ID + "/" + ROOM_ID + "/" + OTHER_EMAIL + "/t", "1") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getTypingQos();
+            }
+        },
+        PRESENCE("u/" + OTHER_EMAIL + "/s", "u/" + OTHER_EMAIL + "/s", "1:1580000000000") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getPresenceQos();
+            }
+        },
+        EVENT("r/" + ROOM_ID + "/" + ROOM_ID + "/e", "r/" + ROOM_ID + "/" + ROOM_ID + "/e", "{\"data\":{}}") {
+            @Override
+            int getQos(QiscusMqttQosConfig qosConfig) {
+                return qosConfig.getEventQos();
+            }
+        };
+
+        private final String filter;
+        private final String topic;
+        private final String payload;
+
+        TopicKind(String filter, String topic, String payload) {
+            this.filter = filter;
+            this.topic = topic;
+            this.payload = payload;
+        }
+
+        abstract int getQos(QiscusMqttQosConfig qosConfig);
+    }
+}
@@ -0,0 +1,78 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QiscusMqttReconnectorTest {
+    private static final int SAMPLES = 10000;
+
+    @Test
+    public void capDoublesFromOneSecond() {
+        assertEquals(1000, QiscusMqttReconnector.getBackoffCap(0));
+        assertEquals(2000, QiscusMqttReconnector.getBackoffCap(1));
+        assertEquals(4000, QiscusMqttReconnector.getBackoffCap(2));
+        assertEquals(32000, QiscusMqttReconnector.getBackoffCap(5));
+    }
+
+    @Test
+    public void capStopsAtOneMinute() {
+        assertEquals(60000, QiscusMqttReconnector.getBackoffCap(6));
+        assertEquals(60000, QiscusMqttReconnector.getBackoffCap(100));
+        assertEquals(60000, QiscusMqttReconnector.getBackoffCap(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void delayStaysWithinCap() {
+        Random random = new Random(42);
+        for (int failures = 0; failures < 20; failures++) {
+            long cap = QiscusMqttReconnector.getBackoffCap(failures);
+            for (int i = 0; i < SAMPLES; i++) {
+                long delay = QiscusMqttReconnector.getBackoffDelay(failures, random);
+                assertTrue("delay " + delay + " out of [0, " + cap + ")", delay >= 0 && delay < cap);
+            }
+        }
+    }
+
+    @Test
+    public void delayUsesTheWholeRange() {
+        assertEquals(0, QiscusMqttReconnector.getBackoffDelay(3, new FixedRandom(0)));
+        assertEquals(7999, QiscusMqttReconnector.getBackoffDelay(3, new FixedRandom(0.9999)));
+    }
+
+    @Test
+    public void delayIsSpreadAcrossClients() {
+        Random random = new Random(7);
+        long cap = QiscusMqttReconnector.getBackoffCap(10);
+        Set<Long> delays = new HashSet<>();
+        long total = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            long delay = QiscusMqttReconnector.getBackoffDelay(10, random);
+            delays.add(delay);
+            total += delay;
+        }
+
+        //Full jitter is uniform over [0, cap), so clients which failed together come back spread out
+        assertTrue(delays.size() > SAMPLES / 2);
+        double mean = (double) total / SAMPLES;
+        assertTrue("mean " + mean, Math.abs(mean - cap / 2.0) < cap * 0.05);
+    }
+
+    private static final class FixedRandom extends Random {
+        private final double value;
+
+        private FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class QiscusMqttTopicTest {
+    private static final String TOKEN = "aBcD1234token";
+    private static final String APP_ID = "sdksample";
+
+    @Test
+    public void parsePrivateTopics() {
+        assertEquals(QiscusMqttTopic.Type.NOTIFICATION, parse(TOKEN + "/n").getType());
+        assertEquals(QiscusMqttTopic.Type.COMMENT, parse(TOKEN + "/c").getType());
+        assertEquals(QiscusMqttTopic.Type.UPDATE_COMMENT, parse(TOKEN + "/update").getType());
+    }
+
+    @Test
+    public void parsePrivateTopicOfAnotherToken() {
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("otherToken/n").getType());
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse(TOKEN + "x/n").getType());
+    }
+
+    @Test
+    public void parseChannelTopics() {
+        assertEquals(QiscusMqttTopic.Type.COMMENT, parse(APP_ID + "/my-channel/c").getType());
+        assertEquals(QiscusMqttTopic.Type.UPDATE_COMMENT, parse(APP_ID + "/my-channel/update").getType());
+    }
+
+    @Test
+    public void parseRoomTopics() {
+        QiscusMqttTopic typing = parse("r/123/123/john@mail.com/t");
+        assertEquals(QiscusMqttTopic.Type.TYPING, typing.getType());
+        assertEquals(123, typing.getRoomId());
+        assertEquals("john@mail.com", typing.getUser());
+
+        QiscusMqttTopic delivered = parse("r/45/45/jane/d");
+        assertEquals(QiscusMqttTopic.Type.DELIVERED, delivered.getType());
+        assertEquals(45, delivered.getRoomId());
+        assertEquals("jane", delivered.getUser());
+
+        QiscusMqttTopic read = parse("r/9876543210/9876543210/jane/r");
+        assertEquals(QiscusMqttTopic.Type.READ, read.getType());
+        assertEquals(9876543210L, read.getRoomId());
+    }
+
+    @Test
+    public void parseRoomEventTopic() {
+        QiscusMqttTopic event = parse("r/77/77/e");
+        assertEquals(QiscusMqttTopic.Type.ROOM_EVENT, event.getType());
+        assertEquals(77, event.getRoomId());
+        assertNull(event.getUser());
+    }
+
+    @Test
+    public void parseUserStatusTopic() {
+        QiscusMqttTopic status = parse("u/john@mail.com/s");
+        assertEquals(QiscusMqttTopic.Type.USER_STATUS, status.getType());
+        assertEquals("john@mail.com", status.getUser());
+    }
+
+    @Test
+    public void parseUnknownTopics() {
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("r/123/123/john/x").getType());
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("r/123/t").getType());
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("r/t").getType());
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("u/john").getType());
+        assertEquals(QiscusMqttTopic.Type.UNKNOWN, parse("random").getType());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseRoomTopicWithInvalidRoomId() {
+        parse("r/12a/12a/john/t");
+    }
+
+    @Test
+    public void parseLongMatchesLongParseLong() {
+        String[] values = {"0", "7", "-7", "123456789", "-123456789", String.valueOf(Long.MAX_VALUE)};
+        for (String value : values) {
+            String topic = "x/" + value + "/y";
+            assertEquals(Long.parseLong(value), QiscusMqttTopic.parseLong(topic, 2, 2 + value.length()));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseLongRejectsEmpty() {
+        QiscusMqttTopic.parseLong("r//", 2, 2);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseLongRejectsSignOnly() {
+        QiscusMqttTopic.parseLong("r/-/", 2, 3);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseLongRejectsNonDigits() {
+        QiscusMqttTopic.parseLong("r/1x2/", 2, 5);
+    }
+
+    private static QiscusMqttTopic parse(String topic) {
+        return QiscusMqttTopic.parse(topic, TOKEN, APP_ID);
+    }
+}
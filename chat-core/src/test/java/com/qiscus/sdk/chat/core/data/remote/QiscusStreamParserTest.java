@@ -0,0 +1,196 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The stream parser must give the same models as the tree parser did for the recorded responses.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class QiscusStreamParserTest {
+
+    private static final long ROOM_ID = 1207;
+
+    @Test
+    public void parseCommentsLikeTheTreeParser() throws IOException {
+        String json = readResource("load_comments.json");
+
+        List<QiscusComment> expected = new ArrayList<>();
+        for (JsonElement jsonComment : new JsonParser().parse(json).getAsJsonObject()
+                .get("results").getAsJsonObject().get("comments").getAsJsonArray()) {
+            expected.add(QiscusApiParser.parseQiscusComment(jsonComment, ROOM_ID));
+        }
+
+        List<QiscusComment> actual = QiscusStreamParser.parseComments(toBody(json), ROOM_ID)
+                .toList()
+                .toBlocking()
+                .single();
+
+        assertEquals(6, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameComment(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void parseChatRoomsLikeTheTreeParser() throws IOException {
+        String json = readResource("rooms_info.json");
+
+        List<QiscusChatRoom> expected = QiscusApiParser.parseQiscusChatRoomInfo(new JsonParser().parse(json));
+        List<QiscusChatRoom> actual = QiscusStreamParser.parseChatRooms(toBody(json))
+                .toList()
+                .toBlocking()
+                .single();
+
+        assertEquals(2, expected.size());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameChatRoom(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void nestedJsonIsParsedOnFirstAccess() throws IOException {
+        QiscusComment comment = QiscusStreamParser.parseComments(toBody(readResource("load_comments.json")), ROOM_ID)
+                .toList()
+                .toBlocking()
+                .single()
+                .get(0);
+
+        assertNotNull(comment.getRawExtras());
+        assertEquals(true, comment.getExtras().optBoolean("pinned"));
+        assertEquals(12.5, comment.getUserExtras().optDouble("score"), 0);
+    }
+
+    @Test
+    public void emptyResultsEmitNothing() {
+        List<QiscusComment> comments = QiscusStreamParser
+                .parseComments(toBody("{\"results\":{\"comments\":[]},\"status\":200}"), ROOM_ID)
+                .toList()
+                .toBlocking()
+                .single();
+
+        assertEquals(0, comments.size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void malformedBodyFails() {
+        QiscusStreamParser.parseComments(toBody("{\"results\":{\"comments\":[{\"id\":"), ROOM_ID)
+                .toList()
+                .toBlocking()
+                .single();
+    }
+
+    private static void assertSameComment(QiscusComment expected, QiscusComment actual) {
+        String id = "comment " + expected.getId() + ": ";
+        assertEquals(id + "id", expected.getId(), actual.getId());
+        assertEquals(id + "room id", expected.getRoomId(), actual.getRoomId());
+        assertEquals(id + "unique id", expected.getUniqueId(), actual.getUniqueId());
+        assertEquals(id + "comment before id", expected.getCommentBeforeId(), actual.getCommentBeforeId());
+        assertEquals(id + "message", expected.getMessage(), actual.getMessage());
+        assertEquals(id + "sender", expected.getSender(), actual.getSender());
+        assertEquals(id + "sender email", expected.getSenderEmail(), actual.getSenderEmail());
+        assertEquals(id + "sender avatar", expected.getSenderAvatar(), actual.getSenderAvatar());
+        assertEquals(id + "time", expected.getTime(), actual.getTime());
+        assertEquals(id + "state", expected.getState(), actual.getState());
+        assertEquals(id + "deleted", expected.isDeleted(), actual.isDeleted());
+        assertEquals(id + "room name", expected.getRoomName(), actual.getRoomName());
+        assertEquals(id + "group message", expected.isGroupMessage(), actual.isGroupMessage());
+        assertEquals(id + "raw type", expected.getRawType(), actual.getRawType());
+        assertEquals(id + "type", expected.getType(), actual.getType());
+        assertSameJson(id + "payload", expected.getExtraPayload(), actual.getExtraPayload());
+        assertSameJson(id + "extras", expected.getRawExtras(), actual.getRawExtras());
+        assertSameJson(id + "user extras", expected.getRawUserExtras(), actual.getRawUserExtras());
+    }
+
+    private static void assertSameChatRoom(QiscusChatRoom expected, QiscusChatRoom actual) {
+        String id = "room " + expected.getId() + ": ";
+        assertEquals(id + "id", expected.getId(), actual.getId());
+        assertEquals(id + "group", expected.isGroup(), actual.isGroup());
+        assertEquals(id + "name", expected.getName(), actual.getName());
+        assertEquals(id + "distinct id", expected.getDistinctId(), actual.getDistinctId());
+        assertEquals(id + "unique id", expected.getUniqueId(), actual.getUniqueId());
+        assertSameJson(id + "options", toString(expected.getOptions()), toString(actual.getOptions()));
+        assertEquals(id + "avatar", expected.getAvatarUrl(), actual.getAvatarUrl());
+        assertEquals(id + "unread count", expected.getUnreadCount(), actual.getUnreadCount());
+        assertEquals(id + "channel", expected.isChannel(), actual.isChannel());
+        assertEquals(id + "member count", expected.getMemberCount(), actual.getMemberCount());
+
+        assertEquals(id + "members", expected.getMember().size(), actual.getMember().size());
+        for (int i = 0; i < expected.getMember().size(); i++) {
+            assertSameMember(id, expected.getMember().get(i), actual.getMember().get(i));
+        }
+
+        assertSameComment(expected.getLastComment(), actual.getLastComment());
+    }
+
+    private static void assertSameMember(String id, QiscusRoomMember expected, QiscusRoomMember actual) {
+        id = id + "member " + expected.getEmail() + ": ";
+        assertEquals(id + "email", expected.getEmail(), actual.getEmail());
+        assertEquals(id + "username", expected.getUsername(), actual.getUsername());
+        assertEquals(id + "avatar", expected.getAvatar(), actual.getAvatar());
+        assertEquals(id + "last delivered", expected.getLastDeliveredCommentId(), actual.getLastDeliveredCommentId());
+        assertEquals(id + "last read", expected.getLastReadCommentId(), actual.getLastReadCommentId());
+        assertSameJson(id + "extras", toString(expected.getExtras()), toString(actual.getExtras()));
+    }
+
+    /**
+     * Compare json by value, numbers may be written differently, e.g. 12.50 and 12.5.
+     */
+    private static void assertSameJson(String message, String expected, String actual) {
+        if (expected == null) {
+            assertNull(message, actual);
+            return;
+        }
+        assertNotNull(message, actual);
+        assertEquals(message, new JsonParser().parse(expected), new JsonParser().parse(actual));
+    }
+
+    private static String toString(JSONObject jsonObject) {
+        return jsonObject == null ? null : jsonObject.toString();
+    }
+
+    private static ResponseBody toBody(String json) {
+        return ResponseBody.create(MediaType.parse("application/json"), json);
+    }
+
+    private String readResource(String name) throws IOException {
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(name);
+        assertNotNull(name, inputStream);
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+}
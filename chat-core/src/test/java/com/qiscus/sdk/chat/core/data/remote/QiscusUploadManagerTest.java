@@ -0,0 +1,158 @@
+package com.qiscus.sdk.chat.core.data.remote;
+
+import android.net.Uri;
+
+import com.qiscus.sdk.chat.core.QiscusCore;
+import com.qiscus.sdk.chat.core.QiscusCoreTestUtil;
+import com.qiscus.sdk.chat.core.data.local.QiscusDataBaseHelper;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusFileUpload;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+import retrofit2.HttpException;
+import rx.observers.TestSubscriber;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Retries of an attachment upload against a local server: network errors, server errors and too many requests are
+ * tried again and counted as attempts of the upload, other error responses fail right away.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class QiscusUploadManagerTest {
+    private static final long RETRY_DELAY = 1;
+    private static final int MAX_RETRIES = 5;
+    private static final String FILE_URL = "https://files.example.com/image.jpg";
+
+    private MockWebServer server;
+    private OkHttpClient client;
+    private File file;
+    private QiscusComment qiscusComment;
+    private QiscusFileUpload qiscusFileUpload;
+
+    @Before
+    public void setUp() throws Exception {
+        QiscusCoreTestUtil.init(RuntimeEnvironment.getApplication());
+        QiscusCoreTestUtil.setDataStore(new QiscusDataBaseHelper());
+
+        server = new MockWebServer();
+        server.start();
+        //OkHttp must not retry a dropped connection by itself, the upload manager is tested here
+        client = new OkHttpClient.Builder()
+                .retryOnConnectionFailure(false)
+                .build();
+
+        file = File.createTempFile("upload", ".jpg");
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[4096]);
+        }
+
+        qiscusComment = new QiscusComment();
+        qiscusComment.setUniqueId("upload-1");
+        qiscusComment.setRoomId(1807);
+        qiscusFileUpload = new QiscusFileUpload(qiscusComment, file);
+        QiscusCore.getDataStore().addOrUpdateUpload(qiscusFileUpload);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+        file.delete();
+    }
+
+    @Test
+    public void serverErrorsAreRetried() {
+        server.enqueue(new MockResponse().setResponseCode(503));
+        server.enqueue(new MockResponse().setResponseCode(500));
+        server.enqueue(uploaded());
+
+        assertEquals(Uri.parse(FILE_URL), upload().getOnNextEvents().get(0));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, qiscusFileUpload.getAttempts());
+    }
+
+    @Test
+    public void tooManyRequestsIsRetried() {
+        server.enqueue(new MockResponse().setResponseCode(429));
+        server.enqueue(uploaded());
+
+        assertEquals(Uri.parse(FILE_URL), upload().getOnNextEvents().get(0));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, qiscusFileUpload.getAttempts());
+    }
+
+    @Test
+    public void networkErrorsAreRetried() {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        server.enqueue(uploaded());
+
+        assertEquals(Uri.parse(FILE_URL), upload().getOnNextEvents().get(0));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(1, qiscusFileUpload.getAttempts());
+    }
+
+    @Test
+    public void rejectedUploadIsNotRetriedNorCounted() {
+        server.enqueue(new MockResponse().setResponseCode(413));
+        server.enqueue(uploaded());
+
+        assertHttpError(413, upload());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, qiscusFileUpload.getAttempts());
+        assertTrue(QiscusUploadManager.getInstance().canRetry(qiscusComment));
+    }
+
+    @Test
+    public void retriesStopAfterTheLastRetry() {
+        for (int i = 0; i <= MAX_RETRIES; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+        }
+        server.enqueue(uploaded());
+
+        assertHttpError(503, upload());
+        assertEquals(MAX_RETRIES + 1, server.getRequestCount());
+        assertEquals(MAX_RETRIES, qiscusFileUpload.getAttempts());
+        assertFalse(QiscusUploadManager.getInstance().canRetry(qiscusComment));
+    }
+
+    private TestSubscriber<Uri> upload() {
+        TestSubscriber<Uri> subscriber = new TestSubscriber<>();
+        QiscusUploadManager.getInstance()
+                .uploadWithRetry(qiscusFileUpload, QiscusApi.upload(client, server.url("/upload").toString(), file,
+                        percentage -> {
+                        }), RETRY_DELAY)
+                .subscribe(subscriber);
+        subscriber.awaitTerminalEvent(30, TimeUnit.SECONDS);
+        return subscriber;
+    }
+
+    private static void assertHttpError(int code, TestSubscriber<Uri> subscriber) {
+        subscriber.assertNoValues();
+        subscriber.assertError(HttpException.class);
+        assertEquals(code, ((HttpException) subscriber.getOnErrorEvents().get(0)).code());
+    }
+
+    private static MockResponse uploaded() {
+        return new MockResponse().setBody("{\"results\":{\"file\":{\"url\":\"" + FILE_URL + "\"}}}");
+    }
+}
@@ -0,0 +1,108 @@
+package com.qiscus.sdk;
+
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.qiscus.sdk.chat.core.QiscusBenchmark.ACCOUNT_EMAIL;
+
+/**
+ * Rooms and comments for the instrumentation tests of the chat ui, the setup and timing helpers are in
+ * {@link QiscusBenchmark}.
+ */
+public final class QiscusChatTestData {
+    public static final String OTHER_EMAIL = "other@example.com";
+
+    private QiscusChatTestData() {
+    }
+
+    /**
+     * Init the chat ui against an unreachable server with a cached account, so the adapters and the data store can
+     * be used without any network.
+     */
+    public static void initQiscus() {
+        QiscusBenchmark.initQiscus(application -> Qiscus.initWithCustomServer(application, QiscusBenchmark.APP_ID,
+                QiscusBenchmark.SERVER_URL, QiscusBenchmark.BROKER_URL));
+    }
+
+    /**
+     * A group room of the account and 9 other members.
+     */
+    public static QiscusChatRoom createChatRoom(long roomId) {
+        List<QiscusRoomMember> members = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            QiscusRoomMember member = new QiscusRoomMember();
+            member.setEmail(i == 0 ? ACCOUNT_EMAIL : i == 1 ? OTHER_EMAIL : "user" + i + "@example.com");
+            member.setUsername("User " + i);
+            member.setAvatar("https://example.com/avatar/" + i + ".png");
+            members.add(member);
+        }
+
+        QiscusChatRoom chatRoom = new QiscusChatRoom();
+        chatRoom.setId(roomId);
+        chatRoom.setUniqueId("room-" + roomId);
+        chatRoom.setName("Room " + roomId);
+        chatRoom.setGroup(true);
+        chatRoom.setMember(members);
+        chatRoom.setMemberCount(members.size());
+        return chatRoom;
+    }
+
+    /**
+     * Sent comments with ids from firstId, newer ones have bigger ids. They are mostly texts, with mentions, links,
+     * multiple lines, replies and not downloaded images and files in between, half of them from the account.
+     */
+    public static List<QiscusComment> createComments(long roomId, long firstId, int count) {
+        List<QiscusComment> comments = new ArrayList<>(count);
+        for (long id = firstId; id < firstId + count; id++) {
+            QiscusComment qiscusComment = new QiscusComment();
+            qiscusComment.setId(id);
+            qiscusComment.setRoomId(roomId);
+            qiscusComment.setUniqueId("comment-" + id);
+            qiscusComment.setCommentBeforeId(id - 1);
+            qiscusComment.setSenderEmail(id % 2 == 0 ? ACCOUNT_EMAIL : OTHER_EMAIL);
+            qiscusComment.setSender(id % 2 == 0 ? "User 0" : "User 1");
+            qiscusComment.setSenderAvatar("https://example.com/avatar/" + id % 2 + ".png");
+            qiscusComment.setTime(new Date(1580000000000L + id * 1000L));
+            qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+            qiscusComment.setRawType("text");
+            qiscusComment.setExtraPayload("{}");
+
+            if (id % 17 == 0) {
+                setAttachment(qiscusComment, "https://example.com/files/image-" + id + ".jpg");
+            } else if (id % 13 == 0) {
+                setAttachment(qiscusComment, "https://example.com/files/document-" + id + ".pdf");
+            } else if (id % 10 == 0) {
+                qiscusComment.setRawType("reply");
+                qiscusComment.setMessage("Reply to " + (id - 1));
+                qiscusComment.setExtraPayload("{\"text\":\"Reply to " + (id - 1) + "\",\"replied_comment_id\":" + (id - 1)
+                        + ",\"replied_comment_message\":\"Message number " + (id - 1) + "\""
+                        + ",\"replied_comment_sender_username\":\"User 1\""
+                        + ",\"replied_comment_sender_email\":\"" + OTHER_EMAIL + "\""
+                        + ",\"replied_comment_type\":\"text\",\"replied_comment_payload\":{}}");
+            } else if (id % 7 == 0) {
+                qiscusComment.setMessage("Message number " + id + " with a link https://example.com/" + id);
+            } else if (id % 5 == 0) {
+                qiscusComment.setMessage("Message number " + id + " for @[" + ACCOUNT_EMAIL + "] and @[user3@example.com]");
+            } else if (id % 3 == 0) {
+                qiscusComment.setMessage("Message number " + id + "\nwith a second line");
+            } else {
+                qiscusComment.setMessage("Message number " + id);
+            }
+            comments.add(qiscusComment);
+        }
+        return comments;
+    }
+
+    private static void setAttachment(QiscusComment qiscusComment, String url) {
+        qiscusComment.setRawType("file_attachment");
+        qiscusComment.setMessage("[file] " + url + " [/file]");
+        qiscusComment.setExtraPayload("{\"url\":\"" + url + "\",\"caption\":\"\",\"file_name\":\""
+                + url.substring(url.lastIndexOf('/') + 1) + "\"}");
+    }
+}
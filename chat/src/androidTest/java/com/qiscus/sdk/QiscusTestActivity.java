@@ -0,0 +1,26 @@
+package com.qiscus.sdk;
+
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.qiscus.sdk.ui.view.QiscusRecyclerView;
+
+/**
+ * Shows a list of comments the way the chat room does, so instrumentation tests can measure it on screen.
+ */
+public class QiscusTestActivity extends AppCompatActivity {
+    private QiscusRecyclerView recyclerView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        recyclerView = new QiscusRecyclerView(this);
+        recyclerView.setUpAsBottomList();
+        setContentView(recyclerView);
+    }
+
+    public QiscusRecyclerView getRecyclerView() {
+        return recyclerView;
+    }
+}
@@ -0,0 +1,113 @@
+package com.qiscus.sdk.ui.adapter;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.QiscusChatTestData;
+import com.qiscus.sdk.R;
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.ui.adapter.viewholder.QiscusBaseMessageViewHolder;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Main thread time of binding 1000 messages, with the render models and mention spans prepared on background as
+ * the presenter does before comments reach the adapter, and with everything resolved while binding as before.
+ * The view holders are created once per view type and rebound, so inflating them is not measured.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusChatAdapterBindBenchmark {
+    private static final long ROOM_ID = 2307;
+    private static final int MESSAGES = 1000;
+    private static final int RUNS = 10;
+
+    private Instrumentation instrumentation;
+    private QiscusChatRoom chatRoom;
+
+    @Before
+    public void setUp() {
+        QiscusChatTestData.initQiscus();
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        chatRoom = QiscusChatTestData.createChatRoom(ROOM_ID);
+    }
+
+    @Test
+    public void bind1000Messages() {
+        Binding prepared = new Binding(true);
+        Binding notPrepared = new Binding(false);
+
+        long preparedMedian = QiscusBenchmark.measure(MESSAGES + " messages, prepared on background", RUNS,
+                prepared::setComments, prepared::bindAll);
+        long notPreparedMedian = QiscusBenchmark.measure(MESSAGES + " messages, resolved while binding", RUNS,
+                notPrepared::setComments, notPrepared::bindAll);
+        QiscusBenchmark.assertFaster("Binding prepared comments", preparedMedian, notPreparedMedian);
+    }
+
+    /**
+     * An adapter with its own view holders, which gets new comments before every run.
+     */
+    private class Binding {
+        private final boolean prepare;
+        private final SparseArray<QiscusBaseMessageViewHolder<QiscusComment>> holders = new SparseArray<>();
+        private QiscusChatAdapter adapter;
+        private RecyclerView parent;
+
+        private Binding(boolean prepare) {
+            this.prepare = prepare;
+            instrumentation.runOnMainSync(() -> {
+                Context context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.QiscusTheme);
+                parent = new RecyclerView(context);
+                parent.setLayoutManager(new LinearLayoutManager(context));
+                adapter = new QiscusChatAdapter(context, true) {
+                    @Override
+                    protected void prepareForRendering(List<QiscusComment> comments) {
+                        //Not prepared comments are left to be resolved while binding
+                    }
+                };
+                adapter.setQiscusChatRoom(chatRoom);
+            });
+        }
+
+        private void setComments() {
+            List<QiscusComment> comments = QiscusChatTestData.createComments(ROOM_ID, 1, MESSAGES);
+            if (prepare) {
+                QiscusCommentRenderer.prepare(comments, QiscusCommentRenderer.getMembers(chatRoom.getMember()),
+                        QiscusBenchmark.ACCOUNT_EMAIL);
+            }
+            instrumentation.runOnMainSync(() -> adapter.refreshWithData(comments));
+            assertEquals(MESSAGES, adapter.getItemCount());
+        }
+
+        private void bindAll() {
+            instrumentation.runOnMainSync(() -> {
+                for (int i = 0; i < adapter.getItemCount(); i++) {
+                    int viewType = adapter.getItemViewType(i);
+                    QiscusBaseMessageViewHolder<QiscusComment> holder = holders.get(viewType);
+                    if (holder == null) {
+                        holder = adapter.onCreateViewHolder(parent, viewType);
+                        holders.put(viewType, holder);
+                    } else {
+                        adapter.onViewRecycled(holder);
+                    }
+                    adapter.onBindViewHolder(holder, i);
+                }
+            });
+        }
+    }
+}
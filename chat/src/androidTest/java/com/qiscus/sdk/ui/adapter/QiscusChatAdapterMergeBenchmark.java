@@ -0,0 +1,98 @@
+package com.qiscus.sdk.ui.adapter;
+
+import android.app.Instrumentation;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.QiscusChatTestData;
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Main thread time of merging comments into an adapter holding as many comments, for 100, 1000 and 10000 messages.
+ * The remote comments are new instances of every local comment and a tenth of newer ones, the way a room is
+ * refreshed from the server after it was shown from the database. Comments are found through the indexes of the
+ * adapter, so 10 times more messages must take well below the 100 times of a search through every item.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusChatAdapterMergeBenchmark {
+    private static final long ROOM_ID = 2407;
+    private static final int MAX_GROWTH = 30;
+
+    private Instrumentation instrumentation;
+    private QiscusChatAdapter adapter;
+    private List<QiscusComment> remoteComments;
+
+    @Before
+    public void setUp() {
+        QiscusChatTestData.initQiscus();
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.runOnMainSync(() -> {
+            adapter = new QiscusChatAdapter(instrumentation.getTargetContext(), true) {
+                @Override
+                protected void prepareForRendering(List<QiscusComment> comments) {
+                    //The presenter prepares them on its io thread, it is not part of the merge
+                }
+            };
+            adapter.setQiscusChatRoom(QiscusChatTestData.createChatRoom(ROOM_ID));
+        });
+    }
+
+    @Test
+    public void merge100Messages() {
+        benchmark(100, 20);
+    }
+
+    @Test
+    public void merge1000Messages() {
+        benchmark(1000, 10);
+    }
+
+    @Test
+    public void merge10000Messages() {
+        long[] medians = benchmark(10000, 5);
+        long[] baselineMedians = benchmark(1000, 5);
+        assertGrowth("mergeLocalAndRemoteData", medians[0], baselineMedians[0]);
+        assertGrowth("addOrUpdate", medians[1], baselineMedians[1]);
+    }
+
+    /**
+     * @return median durations of mergeLocalAndRemoteData and of addOrUpdate
+     */
+    private long[] benchmark(int count, int runs) {
+        int total = count + count / 10;
+
+        long mergeMedian = QiscusBenchmark.measure(count + " messages, mergeLocalAndRemoteData", runs,
+                () -> setUpComments(count),
+                () -> instrumentation.runOnMainSync(() -> adapter.mergeLocalAndRemoteData(remoteComments)));
+        assertEquals(total, adapter.getItemCount());
+
+        long addOrUpdateMedian = QiscusBenchmark.measure(count + " messages, addOrUpdate", runs,
+                () -> setUpComments(count),
+                () -> instrumentation.runOnMainSync(() -> adapter.addOrUpdate(remoteComments)));
+        assertEquals(total, adapter.getItemCount());
+        return new long[]{mergeMedian, addOrUpdateMedian};
+    }
+
+    private static void assertGrowth(String name, long median, long baselineMedian) {
+        assertTrue(String.format(Locale.US, "%s of 10 times more messages took %.1f times longer",
+                name, (double) median / baselineMedian), median < baselineMedian * MAX_GROWTH);
+    }
+
+    private void setUpComments(int count) {
+        List<QiscusComment> localComments = QiscusChatTestData.createComments(ROOM_ID, 1, count);
+        remoteComments = QiscusChatTestData.createComments(ROOM_ID, 1, count + count / 10);
+        instrumentation.runOnMainSync(() -> adapter.refreshWithData(localComments));
+    }
+}
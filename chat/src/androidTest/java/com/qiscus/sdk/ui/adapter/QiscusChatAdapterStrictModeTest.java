@@ -0,0 +1,269 @@
+package com.qiscus.sdk.ui.adapter;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.QiscusChatTestData;
+import com.qiscus.sdk.R;
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.local.QiscusDataStore;
+import com.qiscus.sdk.chat.core.data.model.QiscusChatRoom;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+import com.qiscus.sdk.ui.adapter.viewholder.QiscusBaseMessageViewHolder;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Binding the comments of an opened room must not read the disk on the main thread, the local paths of the room
+ * are in memory and what else binding needs is prepared on background. The comments are bound with a StrictMode
+ * thread policy detecting disk reads, its violations are collected with a listener, which needs api 28.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusChatAdapterStrictModeTest {
+    private static final long ROOM_ID = 2207;
+    private static final String OTHER_EMAIL = "other@example.com";
+    private static final String FILES_URL = "https://example.com/files/";
+
+    private static final long IMAGE_ID = 10;
+    private static final long VIDEO_ID = 11;
+    private static final long FILE_ID = 12;
+    private static final long AUDIO_ID = 13;
+    private static final long NOT_DOWNLOADED_FILE_ID = 14;
+    private static final long[] DOWNLOADED_IDS = {IMAGE_ID, FILE_ID, AUDIO_ID};
+
+    private Instrumentation instrumentation;
+    private QiscusDataStore dataStore;
+    private QiscusChatRoom chatRoom;
+    private Map<String, QiscusRoomMember> members;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+        QiscusChatTestData.initQiscus();
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        dataStore = Qiscus.getDataStore();
+        createChatRoom();
+
+        File dir = new File(instrumentation.getTargetContext().getCacheDir(), "strict-mode-test");
+        dir.mkdirs();
+        saveDownloadedFile(new File(dir, "image.jpg"), IMAGE_ID, new byte[1024]);
+        saveDownloadedFile(new File(dir, "document.pdf"), FILE_ID, new byte[1024]);
+        saveDownloadedFile(new File(dir, "voice.wav"), AUDIO_ID, createWav());
+    }
+
+    @After
+    public void tearDown() {
+        if (dataStore == null) {
+            return;
+        }
+        for (long commentId : DOWNLOADED_IDS) {
+            dataStore.deleteLocalPath(commentId);
+        }
+    }
+
+    @Test
+    public void bindingAnOpenedRoomDoesNotReadTheDisk() {
+        dataStore.openLocalPaths(ROOM_ID);
+        try {
+            List<Violation> violations = bindAllComments();
+            assertTrue("Disk reads while binding:\n" + describe(violations), violations.isEmpty());
+        } finally {
+            dataStore.closeLocalPaths(ROOM_ID);
+        }
+    }
+
+    @Test
+    public void bindingARoomNotOpenedReadsTheDisk() {
+        //Without the room opened the local paths are looked up and checked while binding, this shows the policy works
+        assertFalse(bindAllComments().isEmpty());
+    }
+
+    private List<Violation> bindAllComments() {
+        //Warm up what is loaded once for the whole app, e.g. Glide, fonts and the classes of the views
+        bind(createComments(), false);
+        return bind(createComments(), true);
+    }
+
+    private List<Violation> bind(List<QiscusComment> comments, boolean detectDiskReads) {
+        //The presenter prepares the comments on its io thread before they reach the adapter
+        QiscusCommentRenderer.prepare(comments, members, QiscusBenchmark.ACCOUNT_EMAIL);
+
+        List<Violation> violations = Collections.synchronizedList(new ArrayList<>());
+        StrictMode.ThreadPolicy[] oldPolicy = new StrictMode.ThreadPolicy[1];
+        instrumentation.runOnMainSync(() -> {
+            oldPolicy[0] = StrictMode.getThreadPolicy();
+            if (detectDiskReads) {
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .penaltyListener(Runnable::run, violations::add)
+                        .build());
+            }
+        });
+        try {
+            instrumentation.runOnMainSync(() -> {
+                Context context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.QiscusTheme);
+                RecyclerView parent = new RecyclerView(context);
+                parent.setLayoutManager(new LinearLayoutManager(context));
+                QiscusChatAdapter adapter = new QiscusChatAdapter(context, true);
+                adapter.setQiscusChatRoom(chatRoom);
+                adapter.refreshWithData(comments);
+
+                for (int i = 0; i < adapter.getItemCount(); i++) {
+                    QiscusBaseMessageViewHolder<QiscusComment> holder =
+                            adapter.onCreateViewHolder(parent, adapter.getItemViewType(i));
+                    adapter.onBindViewHolder(holder, i);
+                }
+            });
+        } finally {
+            //Violations of a looper thread are reported after its message, the policy is kept until then
+            instrumentation.runOnMainSync(() -> StrictMode.setThreadPolicy(oldPolicy[0]));
+        }
+        return violations;
+    }
+
+    private void createChatRoom() {
+        QiscusRoomMember me = new QiscusRoomMember();
+        me.setEmail(QiscusBenchmark.ACCOUNT_EMAIL);
+        me.setUsername("Me");
+        QiscusRoomMember other = new QiscusRoomMember();
+        other.setEmail(OTHER_EMAIL);
+        other.setUsername("Other");
+
+        chatRoom = new QiscusChatRoom();
+        chatRoom.setId(ROOM_ID);
+        chatRoom.setGroup(true);
+        chatRoom.setMember(Arrays.asList(me, other));
+
+        //The instance the adapter binds with, the messages are kept for it
+        members = QiscusCommentRenderer.getMembers(chatRoom.getMember());
+    }
+
+    private static List<QiscusComment> createComments() {
+        List<QiscusComment> comments = new ArrayList<>();
+        comments.add(createComment(1, OTHER_EMAIL, "text", "Hello @[" + QiscusBenchmark.ACCOUNT_EMAIL + "]", "{}"));
+        comments.add(createComment(2, QiscusBenchmark.ACCOUNT_EMAIL, "text", "See https://example.com/page", "{}"));
+        comments.add(createAttachment(IMAGE_ID, OTHER_EMAIL, FILES_URL + "image.jpg"));
+        comments.add(createAttachment(VIDEO_ID, QiscusBenchmark.ACCOUNT_EMAIL, FILES_URL + "video.mp4"));
+        comments.add(createAttachment(FILE_ID, OTHER_EMAIL, FILES_URL + "document.pdf"));
+        comments.add(createAttachment(AUDIO_ID, QiscusBenchmark.ACCOUNT_EMAIL, FILES_URL + "voice.wav"));
+        comments.add(createAttachment(NOT_DOWNLOADED_FILE_ID, OTHER_EMAIL, FILES_URL + "other.pdf"));
+
+        try {
+            JSONObject reply = new JSONObject()
+                    .put("text", "Nice picture")
+                    .put("replied_comment_id", IMAGE_ID)
+                    .put("replied_comment_message", "[file] " + FILES_URL + "image.jpg [/file]")
+                    .put("replied_comment_sender_username", "Other")
+                    .put("replied_comment_sender_email", OTHER_EMAIL)
+                    .put("replied_comment_type", "file_attachment")
+                    .put("replied_comment_payload", new JSONObject()
+                            .put("url", FILES_URL + "image.jpg")
+                            .put("file_name", "image.jpg"));
+            comments.add(createComment(15, QiscusBenchmark.ACCOUNT_EMAIL, "reply", "Nice picture", reply.toString()));
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+
+        QiscusComment sendingImage = createAttachment(-1, QiscusBenchmark.ACCOUNT_EMAIL, "/sdcard/DCIM/photo.jpg");
+        sendingImage.setUniqueId("sending-image");
+        sendingImage.setState(QiscusComment.STATE_SENDING);
+        comments.add(sendingImage);
+        return comments;
+    }
+
+    private static QiscusComment createAttachment(long id, String senderEmail, String url) {
+        String payload;
+        try {
+            payload = new JSONObject()
+                    .put("url", url)
+                    .put("caption", "")
+                    .put("file_name", url.substring(url.lastIndexOf('/') + 1))
+                    .toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return createComment(id, senderEmail, "file_attachment", "[file] " + url + " [/file]", payload);
+    }
+
+    private static QiscusComment createComment(long id, String senderEmail, String rawType, String message,
+                                               String payload) {
+        QiscusComment qiscusComment = new QiscusComment();
+        qiscusComment.setId(id);
+        qiscusComment.setRoomId(ROOM_ID);
+        qiscusComment.setUniqueId("comment-" + id);
+        qiscusComment.setCommentBeforeId(id - 1);
+        qiscusComment.setMessage(message);
+        qiscusComment.setRawType(rawType);
+        qiscusComment.setExtraPayload(payload);
+        qiscusComment.setSenderEmail(senderEmail);
+        qiscusComment.setSender(senderEmail.equals(OTHER_EMAIL) ? "Other" : "Me");
+        qiscusComment.setSenderAvatar("https://example.com/avatar.png");
+        qiscusComment.setTime(new Date(1580000000000L + id * 1000L));
+        qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+        return qiscusComment;
+    }
+
+    private void saveDownloadedFile(File file, long commentId, byte[] content) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content);
+        }
+        dataStore.addOrUpdateLocalPath(ROOM_ID, commentId, file.getAbsolutePath());
+    }
+
+    /**
+     * One second of silence, so the duration of the downloaded audio can be read.
+     */
+    private static byte[] createWav() {
+        int sampleRate = 8000;
+        int dataSize = sampleRate * 2;
+        ByteBuffer wav = ByteBuffer.allocate(44 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        wav.put("RIFF".getBytes()).putInt(36 + dataSize).put("WAVE".getBytes());
+        wav.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        wav.put("data".getBytes()).putInt(dataSize);
+        return wav.array();
+    }
+
+    private static String describe(List<Violation> violations) {
+        StringBuilder description = new StringBuilder();
+        for (Violation violation : violations) {
+            description.append(Log.getStackTraceString(violation)).append('\n');
+        }
+        return description.toString();
+    }
+}
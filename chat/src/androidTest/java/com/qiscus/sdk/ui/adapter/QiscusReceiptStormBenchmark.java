@@ -0,0 +1,190 @@
+package com.qiscus.sdk.ui.adapter;
+
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.qiscus.sdk.QiscusChatTestData;
+import com.qiscus.sdk.QiscusTestActivity;
+import com.qiscus.sdk.chat.core.QiscusBenchmark;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Frame times of a chat room on screen while delivered and read receipts arrive every few milliseconds, with a
+ * new comment now and then, like a busy group room. The storm runs once with the fine-grained notifications of the
+ * adapter and once with notifyDataSetChanged after every change, as the adapter did before, which has to drop
+ * more frames. The frames are timed with {@link Choreographer}, run it with the screen on and unlocked. It is
+ * skipped on a device fast enough to not drop any frame with notifyDataSetChanged.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QiscusReceiptStormBenchmark {
+    private static final long ROOM_ID = 2507;
+    private static final int MESSAGES = 1000;
+    private static final long STORM_MILLIS = 5000;
+    private static final long RECEIPT_INTERVAL_MILLIS = 4;
+    private static final int RECEIPTS_PER_COMMENT = 25;
+
+    private Instrumentation instrumentation;
+    private QiscusTestActivity activity;
+
+    @Before
+    public void setUp() {
+        QiscusChatTestData.initQiscus();
+        instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(instrumentation.getTargetContext(), QiscusTestActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        activity = (QiscusTestActivity) instrumentation.startActivitySync(intent);
+    }
+
+    @After
+    public void tearDown() {
+        if (activity != null) {
+            activity.finish();
+        }
+    }
+
+    @Test
+    public void receiptStorm() throws InterruptedException {
+        int fineGrainedJanky = report("fine-grained notifications", runStorm(false));
+        int notifyDataSetChangedJanky = report("notifyDataSetChanged", runStorm(true));
+
+        assumeTrue("No janky frame with notifyDataSetChanged", notifyDataSetChangedJanky > 0);
+        assertTrue("Fine-grained notifications had " + fineGrainedJanky + " janky frames, notifyDataSetChanged "
+                + notifyDataSetChangedJanky, fineGrainedJanky < notifyDataSetChangedJanky);
+    }
+
+    private List<Long> runStorm(boolean notifyDataSetChanged) throws InterruptedException {
+        QiscusChatAdapter[] adapter = new QiscusChatAdapter[1];
+        instrumentation.runOnMainSync(() -> {
+            adapter[0] = new QiscusChatAdapter(activity, true);
+            adapter[0].setQiscusChatRoom(QiscusChatTestData.createChatRoom(ROOM_ID));
+            adapter[0].refreshWithData(QiscusChatTestData.createComments(ROOM_ID, 1, MESSAGES));
+            adapter[0].updateLastReadComment(MESSAGES - 200);
+            adapter[0].updateLastDeliveredComment(MESSAGES - 100);
+            activity.getRecyclerView().setAdapter(adapter[0]);
+        });
+        QiscusBenchmark.awaitBackgroundTasks();
+        instrumentation.waitForIdleSync();
+
+        ReceiptStorm storm = new ReceiptStorm(adapter[0], notifyDataSetChanged);
+        instrumentation.runOnMainSync(storm::start);
+        assertTrue("The storm did not finish", storm.finished.await(STORM_MILLIS * 4, TimeUnit.MILLISECONDS));
+        return storm.frameTimes;
+    }
+
+    /**
+     * @return janky frames, which took more than one and a half frame interval
+     */
+    private int report(String name, List<Long> frameTimes) {
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        long frameIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / refreshRate);
+
+        List<Long> durations = new ArrayList<>();
+        for (int i = 1; i < frameTimes.size(); i++) {
+            durations.add(frameTimes.get(i) - frameTimes.get(i - 1));
+        }
+        Collections.sort(durations);
+        int janky = 0;
+        for (long duration : durations) {
+            if (duration > frameIntervalNanos * 3 / 2) {
+                janky++;
+            }
+        }
+
+        QiscusBenchmark.report("Receipt storm, " + name, String.format(Locale.US,
+                "%d frames, median %.1f ms, 90th %.1f ms, 99th %.1f ms, max %.1f ms, %d janky frames (%.1f%%)",
+                durations.size(), percentile(durations, 50) / 1e6, percentile(durations, 90) / 1e6,
+                percentile(durations, 99) / 1e6, durations.get(durations.size() - 1) / 1e6,
+                janky, 100f * janky / durations.size()));
+        return janky;
+    }
+
+    private static long percentile(List<Long> sortedDurations, int percentile) {
+        return sortedDurations.get((sortedDurations.size() - 1) * percentile / 100);
+    }
+
+    /**
+     * Posts a receipt every few milliseconds on the main thread and records the time of every frame meanwhile.
+     */
+    private static final class ReceiptStorm implements Runnable, Choreographer.FrameCallback {
+        private final QiscusChatAdapter adapter;
+        private final boolean notifyDataSetChanged;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final List<Long> frameTimes = new ArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private long startMillis;
+        private boolean stopped;
+        private int receipts;
+        private long lastDeliveredCommentId = MESSAGES - 100;
+        private long lastReadCommentId = MESSAGES - 200;
+        private long nextCommentId = MESSAGES + 1;
+
+        private ReceiptStorm(QiscusChatAdapter adapter, boolean notifyDataSetChanged) {
+            this.adapter = adapter;
+            this.notifyDataSetChanged = notifyDataSetChanged;
+        }
+
+        private void start() {
+            startMillis = SystemClock.uptimeMillis();
+            Choreographer.getInstance().postFrameCallback(this);
+            handler.post(this);
+        }
+
+        @Override
+        public void run() {
+            if (SystemClock.uptimeMillis() - startMillis >= STORM_MILLIS) {
+                stopped = true;
+                return;
+            }
+
+            receipts++;
+            if (receipts % RECEIPTS_PER_COMMENT == 0) {
+                QiscusComment qiscusComment = QiscusChatTestData.createComments(ROOM_ID, nextCommentId++, 1).get(0);
+                adapter.addOrUpdate(qiscusComment);
+            } else if (receipts % 2 == 0) {
+                lastDeliveredCommentId = Math.min(lastDeliveredCommentId + 1, nextCommentId - 1);
+                adapter.updateLastDeliveredComment(lastDeliveredCommentId);
+            } else {
+                lastReadCommentId = Math.min(lastReadCommentId + 1, lastDeliveredCommentId);
+                adapter.updateLastReadComment(lastReadCommentId);
+                //Reading a comment also delivers it, the adapter has moved its delivered receipt to the read one
+                adapter.updateLastDeliveredComment(lastDeliveredCommentId);
+            }
+            if (notifyDataSetChanged) {
+                adapter.notifyDataSetChanged();
+            }
+            handler.postDelayed(this, RECEIPT_INTERVAL_MILLIS);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameTimes.add(frameTimeNanos);
+            if (stopped) {
+                finished.countDown();
+            } else {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+    }
+}
@@ -30,8 +30,10 @@ import com.qiscus.sdk.chat.core.data.model.QiscusContact;
 import com.qiscus.sdk.chat.core.data.model.QiscusLocation;
 import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
 import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
+import com.qiscus.sdk.chat.core.data.remote.QiscusDownloadManager;
 import com.qiscus.sdk.chat.core.data.remote.QiscusPusherApi;
 import com.qiscus.sdk.chat.core.data.remote.QiscusResendCommentHelper;
+import com.qiscus.sdk.chat.core.data.remote.QiscusUploadManager;
 import com.qiscus.sdk.chat.core.event.QiscusClearCommentsEvent;
 import com.qiscus.sdk.chat.core.event.QiscusCommentDeletedEvent;
 import com.qiscus.sdk.chat.core.event.QiscusCommentReceivedEvent;
@@ -43,6 +45,7 @@ import com.qiscus.sdk.chat.core.util.QiscusAndroidUtil;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusFileUtil;
 import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
 import com.qiscus.sdk.util.QiscusImageUtil;
 
 import org.greenrobot.eventbus.EventBus;
@@ -75,6 +78,8 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
     private QiscusChatRoomEventHandler chatRoomEventHandler;
 
+    private boolean localPathsOpened;
+
     public QiscusChatPresenter(View view, QiscusChatRoom room) {
         super(view);
         if (!EventBus.getDefault().isRegistered(this)) {
@@ -111,8 +116,9 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
         return ((throwable instanceof HttpException && ((HttpException) throwable).code() >= 400) ||
                 //if throwable from JSONException, e.g response from server not json as expected
                 (throwable instanceof JSONException) ||
-                // if attachment type
-                qiscusComment.isAttachment() || qiscusComment.getType() == QiscusComment.Type.REPLY);
+                // if attachment can not be uploaded anymore
+                (qiscusComment.isAttachment() && !QiscusUploadManager.getInstance().canRetry(qiscusComment)) ||
+                qiscusComment.getType() == QiscusComment.Type.REPLY);
     }
 
     private void commentFail(Throwable throwable, QiscusComment qiscusComment) {
@@ -308,8 +314,8 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
         qiscusComment.setDownloading(true);
         qiscusComment.setProgress(0);
-        Subscription subscription = QiscusApi.getInstance()
-                .upload(file, percentage -> qiscusComment.setProgress((int) percentage))
+        Subscription subscription = QiscusUploadManager.getInstance()
+                .upload(qiscusComment, file, percentage -> qiscusComment.setProgress((int) percentage))
                 .doOnSubscribe(() -> Qiscus.getDataStore().addOrUpdate(qiscusComment))
                 .flatMap(uri -> {
                     qiscusComment.updateAttachmentUrl(uri.toString());
@@ -318,6 +324,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 .doOnNext(commentSend -> {
                     Qiscus.getDataStore()
                             .addOrUpdateLocalPath(commentSend.getRoomId(), commentSend.getId(), file.getAbsolutePath());
+                    QiscusUploadManager.getInstance().finish(commentSend);
                     qiscusComment.setDownloading(false);
                     commentSuccess(commentSend);
                 })
@@ -395,35 +402,23 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
                     Qiscus.getDataStore().addOrUpdate(roomData.first);
                 })
-                .doOnNext(roomData -> {
-                    for (QiscusComment qiscusComment : roomData.second) {
-                        Qiscus.getDataStore().addOrUpdate(qiscusComment);
-                    }
-                })
+                .doOnNext(roomData -> Qiscus.getDataStore().addOrUpdateComments(roomData.second))
                 .subscribeOn(Schedulers.io())
                 .onErrorReturn(throwable -> null);
     }
 
     private Observable<List<QiscusComment>> getCommentsFromNetwork(long lastCommentId) {
         return QiscusApi.getInstance().getPreviousMessagesById(room.getId(), 20, lastCommentId)
-                .doOnNext(qiscusComment -> {
-                    QiscusCore.getDataStore().addOrUpdate(qiscusComment);
-                    qiscusComment.setRoomId(room.getId());
-                })
+                .toList()
+                .doOnNext(qiscusComments -> QiscusCore.getDataStore().addOrUpdateComments(qiscusComments))
+                .flatMap(Observable::from)
+                .doOnNext(qiscusComment -> qiscusComment.setRoomId(room.getId()))
                 .toSortedList(commentComparator)
                 .subscribeOn(Schedulers.io());
     }
 
     private Observable<List<QiscusComment>> getLocalComments(int count, boolean forceFailedSendingComment) {
-        return Qiscus.getDataStore().getObservableComments(room.getId(), 2 * count)
-                .flatMap(Observable::from)
-                .toSortedList(commentComparator)
-                .map(comments -> {
-                    if (comments.size() > count) {
-                        return comments.subList(0, count);
-                    }
-                    return comments;
-                })
+        return Qiscus.getDataStore().getObservableOlderComments(room.getId(), null, count)
                 .subscribeOn(Schedulers.io());
     }
 
@@ -432,9 +427,19 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
     }
 
     public void loadComments(int count) {
+        //Opened once per presenter, so the single close on detach releases it
+        long roomId = room.getId();
+        boolean openLocalPaths = !localPathsOpened;
+        localPathsOpened = true;
         Observable.merge(getInitRoomData(), getLocalComments(count, true)
                 .map(comments -> Pair.create(room, comments)))
                 .filter(qiscusChatRoomListPair -> qiscusChatRoomListPair != null)
+                .doOnNext(roomData -> prepareForRendering(roomData.first, roomData.second))
+                .doOnSubscribe(() -> {
+                    if (openLocalPaths) {
+                        Qiscus.getDataStore().openLocalPaths(roomId);
+                    }
+                })
                 .subscribeOn(Schedulers.newThread())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
@@ -454,6 +459,15 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 });
     }
 
+    /**
+     * Resolve types and build the messages of the comments before they are given to the view, so binding them
+     * only sets views. Called on the thread which loaded them.
+     */
+    private void prepareForRendering(QiscusChatRoom room, List<QiscusComment> comments) {
+        QiscusCommentRenderer.prepare(comments, QiscusCommentRenderer.getMembers(room.getMember()),
+                qiscusAccount.getEmail());
+    }
+
     private List<QiscusComment> cleanFailedComments(List<QiscusComment> qiscusComments) {
         List<QiscusComment> comments = new ArrayList<>();
         for (QiscusComment qiscusComment : qiscusComments) {
@@ -501,19 +515,10 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
     public void loadOlderCommentThan(QiscusComment qiscusComment) {
         view.showLoadMoreLoading();
-        Qiscus.getDataStore().getObservableOlderCommentsThan(qiscusComment, room.getId(), 40)
-                .flatMap(Observable::from)
-                .filter(qiscusComment1 -> qiscusComment.getId() == -1 || qiscusComment1.getId() < qiscusComment.getId())
-                .toSortedList(commentComparator)
-                .map(comments -> {
-                    if (comments.size() >= 20) {
-                        return comments.subList(0, 20);
-                    }
-                    return comments;
-                })
+        Qiscus.getDataStore().getObservableOlderComments(room.getId(), qiscusComment, 20)
                 .doOnNext(this::updateRepliedSender)
                 .flatMap(comments -> isValidOlderComments(comments, qiscusComment) ?
-                        Observable.from(comments).toSortedList(commentComparator) :
+                        Observable.just(comments) :
                         getCommentsFromNetwork(qiscusComment.getId()).map(comments1 -> {
                             for (QiscusComment localComment : comments) {
                                 if (localComment.getState() <= QiscusComment.STATE_SENDING) {
@@ -522,6 +527,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                             }
                             return comments1;
                         }))
+                .doOnNext(comments -> prepareForRendering(room, comments))
                 .subscribeOn(Schedulers.newThread())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
@@ -567,6 +573,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 .doOnNext(qiscusComment -> qiscusComment.setRoomId(room.getId()))
                 .toSortedList(commentComparator)
                 .doOnNext(Collections::reverse)
+                .doOnNext(comments -> prepareForRendering(room, comments))
                 .subscribeOn(Schedulers.newThread())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
@@ -642,12 +649,14 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     QiscusPusherApi.getInstance().markAsRead(room.getId(), qiscusComment.getId());
                 }
             });
+            prepareForRendering(room, Collections.singletonList(qiscusComment));
             view.onNewComment(qiscusComment);
         }
     }
 
     private void onGotUpdateComment(QiscusComment qiscusComment) {
         if (qiscusComment.getRoomId() == room.getId()) {
+            prepareForRendering(room, Collections.singletonList(qiscusComment));
             QiscusAndroidUtil.runOnUIThread(() -> {
                 if (view != null) {
                     view.refreshComment(qiscusComment);
@@ -661,20 +670,18 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
             return;
         }
 
+        //Checks the file, a path which was bound as downloaded but has been deleted is downloaded again
         File file = Qiscus.getDataStore().getLocalPath(qiscusComment.getId());
         if (file == null) {
             qiscusComment.setDownloading(true);
-            QiscusApi.getInstance()
-                    .downloadFile(qiscusComment.getAttachmentUri().toString(), qiscusComment.getAttachmentName(),
-                            percentage -> qiscusComment.setProgress((int) percentage))
+            QiscusDownloadManager.getInstance()
+                    .download(qiscusComment, percentage -> qiscusComment.setProgress((int) percentage))
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .doOnNext(file1 -> {
                         QiscusFileUtil.notifySystem(file1);
                         qiscusComment.setDownloading(false);
-                        Qiscus.getDataStore().addOrUpdateLocalPath(qiscusComment.getRoomId(), qiscusComment.getId(),
-                                file1.getAbsolutePath());
                     })
                     .subscribe(file1 -> {
                         view.notifyDataChanged();
@@ -735,6 +742,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 .flatMap(comments -> isValidChainingComments(comments) ?
                         Observable.from(comments).toSortedList(commentComparator) :
                         Observable.just(new ArrayList<QiscusComment>()))
+                .doOnNext(comments -> prepareForRendering(room, comments))
                 .subscribeOn(Schedulers.newThread())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
@@ -790,6 +798,10 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
         super.detachView();
         chatRoomEventHandler.detach();
         clearUnreadCount();
+        if (localPathsOpened) {
+            localPathsOpened = false;
+            Qiscus.getDataStore().closeLocalPaths(room.getId());
+        }
         room = null;
         EventBus.getDefault().unregister(this);
     }
@@ -21,7 +21,7 @@ import androidx.core.util.Pair;
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
-import com.qiscus.sdk.chat.core.data.remote.QiscusApi;
+import com.qiscus.sdk.chat.core.data.remote.QiscusDownloadManager;
 import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
 import com.qiscus.sdk.chat.core.util.QiscusFileUtil;
 import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
@@ -88,17 +88,14 @@ public class QiscusPhotoViewerPresenter extends QiscusPresenter<QiscusPhotoViewe
             return;
         }
         qiscusComment.setDownloading(true);
-        downloadSubscription = QiscusApi.getInstance()
-                .downloadFile(qiscusComment.getAttachmentUri().toString(), qiscusComment.getAttachmentName(),
-                        percentage -> qiscusComment.setProgress((int) percentage))
+        downloadSubscription = QiscusDownloadManager.getInstance()
+                .download(qiscusComment, percentage -> qiscusComment.setProgress((int) percentage))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
                 .doOnNext(file1 -> {
                     QiscusFileUtil.notifySystem(file1);
                     qiscusComment.setDownloading(false);
-                    Qiscus.getDataStore().addOrUpdateLocalPath(qiscusComment.getRoomId(), qiscusComment.getId(),
-                            file1.getAbsolutePath());
                 })
                 .subscribe(file1 -> view.onFileDownloaded(Pair.create(qiscusComment, file1)), throwable -> {
                     QiscusErrorLogger.print(throwable);
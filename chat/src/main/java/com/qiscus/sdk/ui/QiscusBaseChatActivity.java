@@ -228,7 +228,7 @@ public abstract class QiscusBaseChatActivity extends RxAppCompatActivity impleme
                     actionMode.getMenu().findItem(R.id.action_info).setVisible(false);
                 }
 
-                File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getId());
+                File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getRoomId(), qiscusComment.getId());
                 if (localPath != null) {
                     actionMode.getMenu().findItem(R.id.action_share)
                             .setVisible(Qiscus.getChatConfig().isEnableShareMedia());
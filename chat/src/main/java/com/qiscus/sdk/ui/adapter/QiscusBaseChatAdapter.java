@@ -17,6 +17,8 @@
 package com.qiscus.sdk.ui.adapter;
 
 import android.content.Context;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
 import androidx.recyclerview.widget.SortedList;
 import androidx.recyclerview.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -32,12 +34,16 @@ import com.qiscus.sdk.chat.core.util.QiscusDateUtil;
 import com.qiscus.sdk.ui.adapter.viewholder.QiscusBaseMessageViewHolder;
 import com.qiscus.sdk.ui.view.QiscusCarouselItemView;
 import com.qiscus.sdk.ui.view.QiscusChatButtonView;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Created on : September 27, 2016
@@ -47,6 +53,15 @@ import java.util.Map;
  */
 public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends QiscusBaseMessageViewHolder<E>>
         extends RecyclerView.Adapter<H> {
+    /**
+     * Payload of changes which only need the state icon of the comment to be updated.
+     */
+    public static final String PAYLOAD_STATE = "state";
+    /**
+     * Payload of changes which only need the selection of the comment to be updated.
+     */
+    public static final String PAYLOAD_SELECTION = "selection";
+
     protected Context context;
     protected SortedList<E> data;
     protected OnItemClickListener itemClickListener;
@@ -65,6 +80,12 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     protected boolean channelRoom;
 
     private Map<String, QiscusRoomMember> members;
+    private final Map<String, E> itemsByUniqueId = new HashMap<>();
+    private final Map<Long, E> itemsById = new HashMap<>();
+    //Every change of the sorted list and of the neighbors it affects, dispatched at the end of a batch
+    private final BatchingListUpdateCallback updates = new BatchingListUpdateCallback(new AdapterListUpdateCallback(this));
+    private int notifiedItemCount;
+    private int batchDepth;
 
     public QiscusBaseChatAdapter(Context context, boolean groupChat) {
         this(context, groupChat, false);
@@ -82,27 +103,41 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
             @Override
             public void onInserted(int position, int count) {
+                notifiedItemCount += count;
+                updates.onInserted(position, count);
+                notifyChanged(position - 1);
+                dispatchUpdates();
                 checkChaining(position);
             }
 
             @Override
             public void onRemoved(int position, int count) {
+                notifiedItemCount -= count;
+                updates.onRemoved(position, count);
+                notifyChanged(position - 1);
+                dispatchUpdates();
             }
 
             @Override
             public void onMoved(int fromPosition, int toPosition) {
-                notifyItemMoved(fromPosition, toPosition);
-                notifyItemChanged(toPosition);
+                updates.onMoved(fromPosition, toPosition);
+                notifyChanged(toPosition);
+                notifyChanged(toPosition - 1);
+                //The newer neighbor left behind, the items after the old position have shifted by one
+                notifyChanged(fromPosition < toPosition ? fromPosition - 1 : fromPosition);
+                dispatchUpdates();
             }
 
             @Override
             public void onChanged(int position, int count) {
+                updates.onChanged(position, count, null);
+                dispatchUpdates();
                 checkChaining(position);
             }
 
             @Override
             public boolean areContentsTheSame(E oldE, E newE) {
-                return oldE.equals(newE);
+                return oldE.areContentsTheSame(newE);
             }
 
             @Override
@@ -114,6 +149,36 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         members = new HashMap<>();
     }
 
+    /**
+     * The date and the first bubble indicator of a comment depend on the comment before it,
+     * so the newer comment next to an inserted, removed or moved one has to be bound again.
+     * During a batch the events of the sorted list come later than its changes, so the position is checked against
+     * the items notified so far instead of the size of the list. It goes through the same batch as the list events,
+     * so it reaches the recycler view in their order.
+     */
+    private void notifyChanged(int position) {
+        if (position >= 0 && position < notifiedItemCount) {
+            updates.onChanged(position, 1, null);
+        }
+    }
+
+    private void dispatchUpdates() {
+        if (batchDepth == 0) {
+            updates.dispatchLastEvent();
+        }
+    }
+
+    private void beginBatchedUpdates() {
+        batchDepth++;
+        data.beginBatchedUpdates();
+    }
+
+    private void endBatchedUpdates() {
+        data.endBatchedUpdates();
+        batchDepth--;
+        dispatchUpdates();
+    }
+
     private void checkChaining(int position) {
         if (position < data.size() - 1) {
             QiscusComment comment = data.get(position);
@@ -153,9 +218,24 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     }
 
     private void updateMember() {
-        members.clear();
-        for (QiscusRoomMember roomMember : qiscusChatRoom.getMember()) {
-            members.put(roomMember.getEmail(), roomMember);
+        //The same instance the presenter prepares the comments with, so their messages are built only once
+        members = QiscusCommentRenderer.getMembers(qiscusChatRoom.getMember());
+    }
+
+    /**
+     * Comments should be prepared with {@link QiscusCommentRenderer#prepare(List, Map, String)} before they are
+     * given to the adapter, e.g. by the presenter on its io thread. The ones which are not, e.g. a comment just
+     * sent, are prepared here on the calling thread, so a comment is never prepared while it is bound.
+     */
+    protected void prepareForRendering(List<E> es) {
+        List<E> unprepared = new ArrayList<>();
+        for (E e : es) {
+            if (!e.isPreparedForRendering()) {
+                unprepared.add(e);
+            }
+        }
+        if (!unprepared.isEmpty()) {
+            QiscusCommentRenderer.prepare(unprepared, members, qiscusAccount.getEmail());
         }
     }
 
@@ -216,6 +296,32 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         holder.bind(data.get(position));
     }
 
+    @Override
+    public void onBindViewHolder(H holder, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        E e = data.get(position);
+        for (Object payload : payloads) {
+            if (PAYLOAD_STATE.equals(payload)) {
+                holder.bindState(e);
+            } else if (PAYLOAD_SELECTION.equals(payload)) {
+                holder.bindSelection(e);
+            } else {
+                onBindViewHolder(holder, position);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onViewRecycled(H holder) {
+        super.onViewRecycled(holder);
+        holder.onRecycled();
+    }
+
     protected void determineIsNeedToShowFirstMessageIndicator(H holder, int position) {
         if (holder.isNeedToShowDate() || data.get(position + 1).getType() == QiscusComment.Type.CARD
                 || data.get(position + 1).getType() == QiscusComment.Type.CAROUSEL) {
@@ -295,64 +401,83 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     }
 
     public int add(E e) {
+        prepareForRendering(Collections.singletonList(e));
         int i = data.add(e);
-        notifyItemInserted(i);
+        putIndex(e);
         return i;
     }
 
     public void add(final List<E> es) {
+        prepareForRendering(es);
         data.addAll(es);
-        notifyDataSetChanged();
+        putIndex(es);
     }
 
     public void addOrUpdate(E e) {
+        prepareForRendering(Collections.singletonList(e));
         int i = findPosition(e);
         if (i >= 0) {
-            if (!e.areContentsTheSame(data.get(i))) {
-                e.setSelected(data.get(i).isSelected());
-                data.updateItemAt(i, e);
-            }
-            notifyItemChanged(i);
+            updateAt(i, e);
         } else {
             add(e);
         }
     }
 
     public void addOrUpdate(final List<E> es) {
+        prepareForRendering(es);
+        beginBatchedUpdates();
+        try {
+            addOrUpdateItems(es);
+        } finally {
+            endBatchedUpdates();
+        }
+    }
+
+    private void addOrUpdateItems(List<E> es) {
         for (E e : es) {
             int i = findPosition(e);
             if (i >= 0) {
-                if (!e.areContentsTheSame(data.get(i))) {
-                    e.setSelected(data.get(i).isSelected());
-                    data.updateItemAt(i, e);
-                }
+                updateAt(i, e);
             } else {
                 data.add(e);
+                putIndex(e);
             }
         }
-        notifyDataSetChanged();
     }
 
     public void update(E e) {
+        prepareForRendering(Collections.singletonList(e));
         int i = findPosition(e);
         if (i >= 0) {
-            if (!e.areContentsTheSame(data.get(i))) {
-                e.setSelected(data.get(i).isSelected());
-                data.updateItemAt(i, e);
-            }
-            notifyItemChanged(i);
+            updateAt(i, e);
         }
     }
 
     public void update(final List<E> es) {
-        for (E e : es) {
-            int i = findPosition(e);
-            if (i >= 0 && !e.areContentsTheSame(data.get(i))) {
-                e.setSelected(data.get(i).isSelected());
-                data.updateItemAt(i, e);
+        prepareForRendering(es);
+        beginBatchedUpdates();
+        try {
+            for (E e : es) {
+                int i = findPosition(e);
+                if (i >= 0) {
+                    updateAt(i, e);
+                }
             }
+        } finally {
+            endBatchedUpdates();
+        }
+    }
+
+    /**
+     * Replace the comment at the position if it has changed, the same instance is always treated as changed
+     * because it may have been changed in place.
+     */
+    private void updateAt(int position, E e) {
+        E current = data.get(position);
+        if (e == current || !e.areContentsTheSame(current)) {
+            e.setSelected(current.isSelected());
+            replaceItemAt(position, e);
         }
-        notifyDataSetChanged();
     }
 
     public void mergeLocalAndRemoteData(List<E> es) {
@@ -389,11 +514,19 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         }
 
         if (es.size() < 20) {
+            Set<String> uniqueIds = new HashSet<>();
+            Set<Long> ids = new HashSet<>();
+            for (E e : es) {
+                uniqueIds.add(e.getUniqueId());
+                ids.add(e.getId());
+            }
             int need = 20 - es.size();
             int size = data.size();
             for (int i = size - 1; i >= 0; i--) {
-                if (!es.contains(data.get(i))) {
-                    es.add(data.get(i));
+                E e = data.get(i);
+                //Same as es.contains(e), comments are equal by uniqueId, or by id once they have one
+                if (!uniqueIds.contains(e.getUniqueId()) && (e.getId() == -1 || !ids.contains(e.getId()))) {
+                    es.add(e);
                     need--;
                 }
                 if (need <= 0) {
@@ -401,23 +534,30 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
                 }
             }
         }
-        //Clear old comments
-        data.clear();
         //Add all new comments to keep
         keep.addAll(es);
-        addOrUpdate(keep);
+        prepareForRendering(keep);
+        beginBatchedUpdates();
+        try {
+            //Clear old comments
+            clear();
+            addOrUpdateItems(keep);
+        } finally {
+            endBatchedUpdates();
+        }
     }
 
     public void refreshWithData(List<E> es) {
-        data.clear();
-        data.addAll(es);
-        notifyDataSetChanged();
+        prepareForRendering(es);
+        data.replaceAll(es);
+        itemsByUniqueId.clear();
+        itemsById.clear();
+        putIndex(es);
     }
 
     public void remove(int position) {
         if (position >= 0 && position < data.size()) {
-            data.removeItemAt(position);
-            notifyItemRemoved(position);
+            removeIndex(data.removeItemAt(position));
         }
     }
 
@@ -428,13 +568,37 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
     public void clear() {
         data.clear();
+        itemsByUniqueId.clear();
+        itemsById.clear();
     }
 
+    /**
+     * Find the item through the uniqueId and id index, then its position with a binary search of the sorted list.
+     * Comments only get into the index through this adapter, so changing {@link #getData()} directly is not supported.
+     */
     public int findPosition(E e) {
+        return indexOf(e);
+    }
+
+    private int indexOf(QiscusComment e) {
         if (data == null) {
             return -1;
         }
 
+        E item = itemsByUniqueId.get(e.getUniqueId());
+        if (item == null && e.getId() != -1) {
+            item = itemsById.get(e.getId());
+        }
+        if (item == null) {
+            return -1;
+        }
+
+        int position = data.indexOf(item);
+        if (position >= 0 && data.get(position).equals(e)) {
+            return position;
+        }
+
+        //The sort key of the item has been changed after it was added, find it the slow way
         int size = data.size();
         for (int i = 0; i < size; i++) {
             if (data.get(i).equals(e)) {
@@ -445,10 +609,37 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         return -1;
     }
 
+    private void replaceItemAt(int position, E e) {
+        removeIndex(data.get(position));
+        data.updateItemAt(position, e);
+        putIndex(e);
+    }
+
+    private void putIndex(List<E> es) {
+        for (E e : es) {
+            putIndex(e);
+        }
+    }
+
+    private void putIndex(E e) {
+        itemsByUniqueId.put(e.getUniqueId(), e);
+        if (e.getId() != -1) {
+            itemsById.put(e.getId(), e);
+        }
+    }
+
+    private void removeIndex(E e) {
+        if (itemsByUniqueId.get(e.getUniqueId()) == e) {
+            itemsByUniqueId.remove(e.getUniqueId());
+        }
+        if (itemsById.get(e.getId()) == e) {
+            itemsById.remove(e.getId());
+        }
+    }
+
     public void updateLastDeliveredComment(long lastDeliveredCommentId) {
         this.lastDeliveredCommentId = lastDeliveredCommentId;
         updateCommentState();
-        notifyDataSetChanged();
     }
 
     private void updateCommentState() {
@@ -460,11 +651,13 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
                         break;
                     }
                     data.get(i).setState(QiscusComment.STATE_READ);
+                    notifyItemChanged(i, PAYLOAD_STATE);
                 } else if (data.get(i).getId() <= lastDeliveredCommentId) {
                     if (data.get(i).getState() == QiscusComment.STATE_DELIVERED) {
                         break;
                     }
                     data.get(i).setState(QiscusComment.STATE_DELIVERED);
+                    notifyItemChanged(i, PAYLOAD_STATE);
                 }
             }
         }
@@ -474,7 +667,6 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         this.lastReadCommentId = lastReadCommentId;
         this.lastDeliveredCommentId = lastReadCommentId;
         updateCommentState();
-        notifyDataSetChanged();
     }
 
     public List<E> getSelectedComments() {
@@ -493,9 +685,19 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         for (int i = size - 1; i >= 0; i--) {
             if (data.get(i).isSelected()) {
                 data.get(i).setSelected(false);
+                notifyItemChanged(i, PAYLOAD_SELECTION);
             }
         }
-        notifyDataSetChanged();
+    }
+
+    /**
+     * Show the selection or highlight of the comment after it has been changed in place.
+     */
+    public void notifySelectionChanged(QiscusComment qiscusComment) {
+        int position = indexOf(qiscusComment);
+        if (position >= 0) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
     }
 
     public QiscusComment getLatestSentComment() {
@@ -517,13 +719,17 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     }
 
     public void clearCommentsBefore(long timestamp) {
-        int size = data.size();
-        for (int i = size - 1; i >= 0; i--) {
-            if (data.get(i).getTime().getTime() <= timestamp) {
-                data.get(i).destroy();
-                data.removeItemAt(i);
+        beginBatchedUpdates();
+        try {
+            int size = data.size();
+            for (int i = size - 1; i >= 0; i--) {
+                if (data.get(i).getTime().getTime() <= timestamp) {
+                    data.get(i).destroy();
+                    removeIndex(data.removeItemAt(i));
+                }
             }
+        } finally {
+            endBatchedUpdates();
         }
-        notifyDataSetChanged();
     }
 }
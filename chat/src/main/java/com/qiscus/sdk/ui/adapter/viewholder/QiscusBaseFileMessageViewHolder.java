@@ -32,8 +32,6 @@ import com.qiscus.sdk.ui.adapter.OnLongItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnUploadIconClickListener;
 import com.qiscus.sdk.ui.view.QiscusProgressView;
 
-import java.io.File;
-
 /**
  * Created on : September 27, 2016
  * Author     : zetbaitsu
@@ -146,14 +144,10 @@ public abstract class QiscusBaseFileMessageViewHolder extends QiscusBaseMessageV
     @Override
     protected void showMessage(QiscusComment qiscusComment) {
         if (downloadIconView != null) {
-            File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getId());
-            if (localPath == null) {
-                File file = new File(qiscusComment.getAttachmentUri().toString());
-                if (file.exists()) {
-                    localPath = file;
-                }
-            }
-            downloadIconView.setVisibility(localPath == null ? View.VISIBLE : View.GONE);
+            //A file still uploading is local, there is nothing to download
+            boolean downloadable = qiscusComment.getAttachmentUri().toString().startsWith("http")
+                    && Qiscus.getDataStore().getLocalPath(qiscusComment.getRoomId(), qiscusComment.getId()) == null;
+            downloadIconView.setVisibility(downloadable ? View.VISIBLE : View.GONE);
         }
 
         fileNameView.setText(qiscusComment.getAttachmentName());
@@ -37,13 +37,12 @@ import com.qiscus.nirmana.Nirmana;
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
-import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
-import com.qiscus.sdk.data.model.QiscusMentionConfig;
 import com.qiscus.sdk.ui.adapter.OnItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnLongItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnUploadIconClickListener;
 import com.qiscus.sdk.ui.view.ClickableMovementMethod;
 import com.qiscus.sdk.ui.view.QiscusProgressView;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
 import com.qiscus.sdk.util.QiscusImageUtil;
 
 import java.io.File;
@@ -186,20 +185,7 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
     protected void showCaption(QiscusComment qiscusComment) {
         if (captionView != null) {
             captionView.setVisibility(TextUtils.isEmpty(qiscusComment.getCaption()) ? View.GONE : View.VISIBLE);
-            QiscusMentionConfig mentionConfig = Qiscus.getChatConfig().getMentionConfig();
-            if (mentionConfig.isEnableMention()) {
-                Spannable spannable = QiscusTextUtil.createQiscusSpannableText(
-                        qiscusComment.getCaption(),
-                        roomMembers,
-                        messageFromMe ? mentionConfig.getRightMentionAllColor() : mentionConfig.getLeftMentionAllColor(),
-                        messageFromMe ? mentionConfig.getRightMentionOtherColor() : mentionConfig.getLeftMentionOtherColor(),
-                        messageFromMe ? mentionConfig.getRightMentionMeColor() : mentionConfig.getLeftMentionMeColor(),
-                        mentionConfig.getMentionClickHandler()
-                );
-                captionView.setText(spannable);
-            } else {
-                captionView.setText(qiscusComment.getCaption());
-            }
+            captionView.setText(QiscusCommentRenderer.getCaption(qiscusComment, roomMembers, messageFromMe));
         }
     }
 
@@ -212,7 +198,7 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
     }
 
     protected void showSentImage(QiscusComment qiscusComment) {
-        File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getId());
+        File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getRoomId(), qiscusComment.getId());
         if (localPath == null) { //If the image not yet downloaded
             showDownloadIcon(true);
             showBlurryImage(qiscusComment);
@@ -235,15 +221,8 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
 
     protected void showSendingImage(QiscusComment qiscusComment) {
         showDownloadIcon(true);
-        File localPath = new File(qiscusComment.getAttachmentUri().toString());
-        if (localPath.exists()) { //If the image still exist
-            showLocalFileImage(localPath);
-        } else { //If the image file have been removed
-            Nirmana.getInstance().get()
-                    .setDefaultRequestOptions(new RequestOptions().dontAnimate())
-                    .load(R.drawable.qiscus_image_placeholder)
-                    .into(thumbnailView);
-        }
+        //Glide shows the placeholder if the image file has been removed, without checking it on the main thread
+        showLocalFileImage(new File(qiscusComment.getAttachmentUri().toString()));
     }
 
     protected void showBlurryImage(QiscusComment qiscusComment) {
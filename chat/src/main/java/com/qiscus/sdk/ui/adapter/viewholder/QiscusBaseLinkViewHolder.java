@@ -67,6 +67,14 @@ public abstract class QiscusBaseLinkViewHolder extends QiscusBaseTextMessageView
         qiscusComment.loadLinkPreviewData();
     }
 
+    @Override
+    public void onRecycled() {
+        super.onRecycled();
+        if (qiscusComment != null) {
+            qiscusComment.cancelLoadLinkPreviewData();
+        }
+    }
+
     @Override
     protected void showMessage(QiscusComment qiscusComment) {
         super.showMessage(qiscusComment);
@@ -197,6 +197,30 @@ public abstract class QiscusBaseMessageViewHolder<E extends QiscusComment> exten
         onCommentSelected(qiscusComment);
     }
 
+    /**
+     * Only the state of the comment has changed, e.g. it has been read, so only update the state icon.
+     */
+    public void bindState(E qiscusComment) {
+        showIconReadOrNot(qiscusComment);
+    }
+
+    /**
+     * Only the selection or highlight of the comment has changed.
+     */
+    public void bindSelection(E qiscusComment) {
+        onCommentSelected(qiscusComment);
+    }
+
+    /**
+     * Called when this view holder is recycled, release whatever was started for the bound comment.
+     * Here the avatar load, so a pending load does not land on the next comment and the bitmap can be reused.
+     */
+    public void onRecycled() {
+        if (avatarView != null) {
+            Nirmana.getInstance().get().clear(avatarView);
+        }
+    }
+
     private void showSenderName(E qiscusComment) {
         if (senderNameView != null && !messageFromMe && groupChat) {
             if (needToShowFirstMessageBubbleIndicator) {
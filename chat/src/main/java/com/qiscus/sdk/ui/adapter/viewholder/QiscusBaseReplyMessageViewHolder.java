@@ -154,7 +154,7 @@ public abstract class QiscusBaseReplyMessageViewHolder extends QiscusBaseTextMes
             case VIDEO:
                 if (originImageView != null) {
                     originImageView.setVisibility(View.VISIBLE);
-                    File localPath = Qiscus.getDataStore().getLocalPath(originComment.getId());
+                    File localPath = Qiscus.getDataStore().getLocalPath(qiscusComment.getRoomId(), originComment.getId());
                     if (localPath == null) {
                         showBlurryImage(originComment);
                     } else {
@@ -17,17 +17,14 @@
 package com.qiscus.sdk.ui.adapter.viewholder;
 
 import androidx.annotation.NonNull;
-import android.text.Spannable;
 import android.view.View;
 import android.widget.TextView;
 
-import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.chat.core.data.model.QiscusComment;
-import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
-import com.qiscus.sdk.data.model.QiscusMentionConfig;
 import com.qiscus.sdk.ui.adapter.OnItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnLongItemClickListener;
 import com.qiscus.sdk.ui.view.ClickableMovementMethod;
+import com.qiscus.sdk.util.QiscusCommentRenderer;
 
 /**
  * Created on : September 27, 2016
@@ -61,19 +58,6 @@ public abstract class QiscusBaseTextMessageViewHolder extends QiscusBaseMessageV
 
     @Override
     protected void showMessage(QiscusComment qiscusComment) {
-        QiscusMentionConfig mentionConfig = Qiscus.getChatConfig().getMentionConfig();
-        if (mentionConfig.isEnableMention()) {
-            Spannable spannable = QiscusTextUtil.createQiscusSpannableText(
-                    qiscusComment.getMessage(),
-                    roomMembers,
-                    messageFromMe ? mentionConfig.getRightMentionAllColor() : mentionConfig.getLeftMentionAllColor(),
-                    messageFromMe ? mentionConfig.getRightMentionOtherColor() : mentionConfig.getLeftMentionOtherColor(),
-                    messageFromMe ? mentionConfig.getRightMentionMeColor() : mentionConfig.getLeftMentionMeColor(),
-                    mentionConfig.getMentionClickHandler()
-            );
-            messageTextView.setText(spannable);
-        } else {
-            messageTextView.setText(qiscusComment.getMessage());
-        }
+        messageTextView.setText(QiscusCommentRenderer.getMessage(qiscusComment, roomMembers, messageFromMe));
     }
 }
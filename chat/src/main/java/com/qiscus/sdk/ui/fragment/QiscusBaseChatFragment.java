@@ -1158,7 +1158,7 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     protected void toggleSelectComment(QiscusComment qiscusComment) {
         qiscusComment.setSelected(!qiscusComment.isSelected());
-        chatAdapter.notifyDataSetChanged();
+        chatAdapter.notifySelectionChanged(qiscusComment);
         if (commentSelectedListener != null) {
             commentSelectedListener.onCommentSelected(chatAdapter.getSelectedComments());
         }
@@ -1174,10 +1174,10 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     protected void highlightComment(QiscusComment qiscusComment) {
         qiscusComment.setHighlighted(true);
-        chatAdapter.notifyDataSetChanged();
+        chatAdapter.notifySelectionChanged(qiscusComment);
         commentHighlightTask = () -> {
             qiscusComment.setHighlighted(false);
-            chatAdapter.notifyDataSetChanged();
+            chatAdapter.notifySelectionChanged(qiscusComment);
         };
         QiscusAndroidUtil.runOnUIThread(commentHighlightTask, 2000);
     }
@@ -1477,7 +1477,6 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
     @Override
     public void onCommentDeleted(QiscusComment qiscusComment) {
         chatAdapter.remove(qiscusComment);
-        chatAdapter.notifyDataSetChanged();
     }
 
     @Override
@@ -120,7 +120,7 @@ public class QiscusReplyPreviewView extends LinearLayout {
                 case VIDEO:
                     image.setVisibility(VISIBLE);
                     icon.setVisibility(GONE);
-                    File localPath = Qiscus.getDataStore().getLocalPath(originComment.getId());
+                    File localPath = Qiscus.getDataStore().getLocalPath(originComment.getRoomId(), originComment.getId());
                     if (localPath == null) {
                         showBlurryImage(originComment);
                     } else {
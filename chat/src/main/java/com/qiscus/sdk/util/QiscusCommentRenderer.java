@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.util;
+
+import android.text.TextUtils;
+
+import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.chat.core.data.model.QiscusComment;
+import com.qiscus.sdk.chat.core.data.model.QiscusRoomMember;
+import com.qiscus.sdk.chat.core.util.QiscusErrorLogger;
+import com.qiscus.sdk.chat.core.util.QiscusTextUtil;
+import com.qiscus.sdk.data.model.QiscusMentionConfig;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the styled message and caption of comments and keeps them on the comment, so binding the same comment
+ * again does not parse mentions again. {@link #prepare(List, Map, String)} does all of it for a list of comments,
+ * call it off the main thread before the comments are given to the adapter.
+ */
+public final class QiscusCommentRenderer {
+    private static Map<String, QiscusRoomMember> lastMembers;
+
+    private QiscusCommentRenderer() {
+
+    }
+
+    /**
+     * The messages are kept for one instance of the member map, so the map the comments are prepared with and the
+     * one the adapter binds them with must be the same. This returns the same instance as the previous call as long
+     * as the members and their names have not changed.
+     */
+    public static synchronized Map<String, QiscusRoomMember> getMembers(List<QiscusRoomMember> roomMembers) {
+        Map<String, QiscusRoomMember> members = new HashMap<>();
+        for (QiscusRoomMember roomMember : roomMembers) {
+            members.put(roomMember.getEmail(), roomMember);
+        }
+        if (!isSameMembers(members, lastMembers)) {
+            lastMembers = members;
+        }
+        return lastMembers;
+    }
+
+    private static boolean isSameMembers(Map<String, QiscusRoomMember> members, Map<String, QiscusRoomMember> other) {
+        if (other == null || members.size() != other.size()) {
+            return false;
+        }
+        for (Map.Entry<String, QiscusRoomMember> member : members.entrySet()) {
+            QiscusRoomMember otherMember = other.get(member.getKey());
+            if (otherMember == null || !TextUtils.equals(member.getValue().getUsername(), otherMember.getUsername())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static CharSequence getMessage(QiscusComment qiscusComment, Map<String, QiscusRoomMember> members,
+                                          boolean fromMe) {
+        return render(qiscusComment, qiscusComment.getMessage(), members, fromMe);
+    }
+
+    public static CharSequence getCaption(QiscusComment qiscusComment, Map<String, QiscusRoomMember> members,
+                                          boolean fromMe) {
+        return render(qiscusComment, qiscusComment.getCaption(), members, fromMe);
+    }
+
+    /**
+     * @param members must not be changed afterward, the rendered messages are kept for this instance
+     */
+    public static void prepare(List<? extends QiscusComment> comments, Map<String, QiscusRoomMember> members,
+                               String myEmail) {
+        for (QiscusComment qiscusComment : comments) {
+            try {
+                qiscusComment.prepareForRendering();
+                boolean fromMe = qiscusComment.getSenderEmail().equals(myEmail);
+                switch (qiscusComment.getType()) {
+                    case TEXT:
+                    case LINK:
+                        getMessage(qiscusComment, members, fromMe);
+                        break;
+                    case IMAGE:
+                    case VIDEO:
+                        getCaption(qiscusComment, members, fromMe);
+                        break;
+                    default:
+                        break;
+                }
+            } catch (Exception e) {
+                QiscusErrorLogger.print(e);
+            }
+        }
+    }
+
+    private static CharSequence render(QiscusComment qiscusComment, String text,
+                                       Map<String, QiscusRoomMember> members, boolean fromMe) {
+        QiscusMentionConfig mentionConfig = Qiscus.getChatConfig().getMentionConfig();
+        if (text == null || !mentionConfig.isEnableMention()) {
+            return text;
+        }
+
+        Key key = new Key(text, members, fromMe);
+        CharSequence renderedMessage = qiscusComment.getRenderedMessage(key);
+        if (renderedMessage == null) {
+            renderedMessage = QiscusTextUtil.createQiscusSpannableText(
+                    text,
+                    members,
+                    fromMe ? mentionConfig.getRightMentionAllColor() : mentionConfig.getLeftMentionAllColor(),
+                    fromMe ? mentionConfig.getRightMentionOtherColor() : mentionConfig.getLeftMentionOtherColor(),
+                    fromMe ? mentionConfig.getRightMentionMeColor() : mentionConfig.getLeftMentionMeColor(),
+                    mentionConfig.getMentionClickHandler()
+            );
+            qiscusComment.setRenderedMessage(key, renderedMessage);
+        }
+        return renderedMessage;
+    }
+
+    private static final class Key {
+        private final String text;
+        private final Map<String, QiscusRoomMember> members;
+        private final boolean fromMe;
+
+        private Key(String text, Map<String, QiscusRoomMember> members, boolean fromMe) {
+            this.text = text;
+            this.members = members;
+            this.fromMe = fromMe;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fromMe == key.fromMe && members == key.members && text.equals(key.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * text.hashCode() + (fromMe ? 1 : 0);
+        }
+    }
+}